@@ -220,6 +220,8 @@ Composite wjapwjap_purityChild = wjapwjap_purityCreate(getPageContainer());
 
 Composite sopsop_cpfChild = sopsop_cpfCreate(getPageContainer());
 
+Composite sopsop_cseChild = sopsop_cseCreate(getPageContainer());
+
 Composite jopjop_cseChild = jopjop_cseCreate(getPageContainer());
 
 Composite jopjop_bcmChild = jopjop_bcmCreate(getPageContainer());
@@ -713,6 +715,9 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		addToEnableGroup("cg", getcgtrim_clinit_widget(), "trim-clinit");
 		
 		
+		addToEnableGroup("cg", getcgcompact_widget(), "compact");
+		
+		
 		getcgenabled_widget().getButton().addSelectionListener(this);
 		
 		getcgsafe_forname_widget().getButton().addSelectionListener(this);
@@ -727,6 +732,8 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		getcgtrim_clinit_widget().getButton().addSelectionListener(this);
 		
+		getcgcompact_widget().getButton().addSelectionListener(this);
+		
 		
 		makeNewEnableGroup("cg", "cg.cha");
 		
@@ -759,6 +766,9 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkpre_jimplify_widget(), "pre-jimplify");
 
 		
+		addToEnableGroup("cg", "cg.spark", getcgcg_sparkincremental_widget(), "incremental");
+
+		
 		addToEnableGroup("cg", "cg.spark", getcgcg_sparkvta_widget(), "vta");
 
 		
@@ -1270,6 +1280,14 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		getsopsop_cpfprune_cfg_widget().getButton().addSelectionListener(this);
 		
 		
+		makeNewEnableGroup("sop", "sop.cse");
+		
+		
+		addToEnableGroup("sop", "sop.cse", getsopsop_cseenabled_widget(), "enabled");
+		
+		getsopsop_cseenabled_widget().getButton().addSelectionListener(this);
+		
+		
 		makeNewEnableGroup("jtp");
 		
 		
@@ -2002,6 +2020,26 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			getConfig().put(getGeneral_Optionson_the_fly_widget().getAlias(), new Boolean(boolRes));
 		}
 		
+		boolRes = getGeneral_Optionslazy_resolution_widget().getButton().getSelection();
+		
+		
+		defBoolRes = false;
+		
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getGeneral_Optionslazy_resolution_widget().getAlias(), new Boolean(boolRes));
+		}
+		
+		boolRes = getGeneral_Optionsprefetch_classes_widget().getButton().getSelection();
+		
+		
+		defBoolRes = false;
+		
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getGeneral_Optionsprefetch_classes_widget().getAlias(), new Boolean(boolRes));
+		}
+		
 		boolRes = getGeneral_Optionsvalidate_widget().getButton().getSelection();
 		
 		
@@ -2130,6 +2168,15 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			getConfig().put(getInput_Optionssoot_classpath_widget().getAlias(), stringRes);
 		}
 		
+		stringRes = getInput_Optionsclasspath_index_widget().getText().getText();
+		
+		defStringRes = "";
+		
+
+	        if ( (!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getInput_Optionsclasspath_index_widget().getAlias(), stringRes);
+		}
+		
 		stringRes = getInput_Optionsprocess_dir_widget().getText().getText();
 		
 		defStringRes = "";
@@ -2379,6 +2426,15 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 	        if ( (!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
 			getConfig().put(getProcessing_Optionsplugin_widget().getAlias(), stringRes);
 		}
+		
+		stringRes = getProcessing_Optionsnum_threads_widget().getText().getText();
+		
+		defStringRes = "1";
+		
+
+	        if ( (!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getProcessing_Optionsnum_threads_widget().getAlias(), stringRes);
+		}
 		 
 		stringRes = getProcessing_Optionsthrow_analysis_widget().getSelectedAlias();
 
@@ -2970,6 +3026,16 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			getConfig().put(getcgtrim_clinit_widget().getAlias(), new Boolean(boolRes));
 		}
 		
+		boolRes = getcgcompact_widget().getButton().getSelection();
+		
+		
+		defBoolRes = false;
+		
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getcgcompact_widget().getAlias(), new Boolean(boolRes));
+		}
+		
 		stringRes = getcgjdkver_widget().getText().getText();
 		
 		defStringRes = "3";
@@ -2979,6 +3045,15 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			getConfig().put(getcgjdkver_widget().getAlias(), stringRes);
 		}
 		
+		stringRes = getcgexport_widget().getText().getText();
+		
+		defStringRes = "";
+		
+
+	        if ( (!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getcgexport_widget().getAlias(), stringRes);
+		}
+		
 		stringRes = getcgreflection_log_widget().getText().getText();
 		
 		defStringRes = "";
@@ -3067,6 +3142,25 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			getConfig().put(getcgcg_sparkpre_jimplify_widget().getAlias(), new Boolean(boolRes));
 		}
 		
+		boolRes = getcgcg_sparkincremental_widget().getButton().getSelection();
+		
+		
+		defBoolRes = false;
+		
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getcgcg_sparkincremental_widget().getAlias(), new Boolean(boolRes));
+		}
+		
+		stringRes = getcgcg_sparksnapshot_widget().getText().getText();
+		
+		defStringRes = "";
+		
+
+	        if ( (!(stringRes.equals(defStringRes))) && (stringRes != null) && (stringRes.length() != 0)) {
+			getConfig().put(getcgcg_sparksnapshot_widget().getAlias(), stringRes);
+		}
+		
 		boolRes = getcgcg_sparkvta_widget().getButton().getSelection();
 		
 		
@@ -4333,6 +4427,16 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			getConfig().put(getsopsop_cpfprune_cfg_widget().getAlias(), new Boolean(boolRes));
 		}
 		
+		boolRes = getsopsop_cseenabled_widget().getButton().getSelection();
+		
+		
+		defBoolRes = true;
+		
+
+		if (boolRes != defBoolRes) {
+			getConfig().put(getsopsop_cseenabled_widget().getAlias(), new Boolean(boolRes));
+		}
+		
 		boolRes = getjtpenabled_widget().getButton().getSelection();
 		
 		
@@ -5967,6 +6071,16 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 			subSectParent = sop_sop_cpf_branch;
 			
 			
+			SootOption sop_sop_cse_branch = new SootOption("Shimple Common Subexpression Eliminator", "sopsop_cse");
+			subParent.addChild(sop_sop_cse_branch);
+
+
+			
+
+			
+			subSectParent = sop_sop_cse_branch;
+			
+			
 			//Jimple Transformation Pack
 			SootOption jtp_branch = new SootOption("Jimple Transformation Pack", "jtp");
 			parent.addChild(jtp_branch);
@@ -6625,6 +6739,26 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		return General_Optionson_the_fly_widget;
 	}	
 	
+	private BooleanOptionWidget General_Optionslazy_resolution_widget;
+	
+	private void setGeneral_Optionslazy_resolution_widget(BooleanOptionWidget widget) {
+		General_Optionslazy_resolution_widget = widget;
+	}
+	
+	public BooleanOptionWidget getGeneral_Optionslazy_resolution_widget() {
+		return General_Optionslazy_resolution_widget;
+	}	
+	
+	private BooleanOptionWidget General_Optionsprefetch_classes_widget;
+	
+	private void setGeneral_Optionsprefetch_classes_widget(BooleanOptionWidget widget) {
+		General_Optionsprefetch_classes_widget = widget;
+	}
+	
+	public BooleanOptionWidget getGeneral_Optionsprefetch_classes_widget() {
+		return General_Optionsprefetch_classes_widget;
+	}	
+	
 	private BooleanOptionWidget General_Optionsvalidate_widget;
 	
 	private void setGeneral_Optionsvalidate_widget(BooleanOptionWidget widget) {
@@ -6772,6 +6906,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 	
 	
 	
+	private StringOptionWidget Input_Optionsclasspath_index_widget;
+	
+	private void setInput_Optionsclasspath_index_widget(StringOptionWidget widget) {
+		Input_Optionsclasspath_index_widget = widget;
+	}
+	
+	public StringOptionWidget getInput_Optionsclasspath_index_widget() {
+		return Input_Optionsclasspath_index_widget;
+	}
+	
+	
+	
 	private StringOptionWidget Input_Optionsandroid_jars_widget;
 	
 	private void setInput_Optionsandroid_jars_widget(StringOptionWidget widget) {
@@ -7042,6 +7188,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 	
 	
 	
+	private StringOptionWidget Processing_Optionsnum_threads_widget;
+	
+	private void setProcessing_Optionsnum_threads_widget(StringOptionWidget widget) {
+		Processing_Optionsnum_threads_widget = widget;
+	}
+	
+	public StringOptionWidget getProcessing_Optionsnum_threads_widget() {
+		return Processing_Optionsnum_threads_widget;
+	}
+	
+	
+	
 	private MultiOptionWidget Processing_Optionsthrow_analysis_widget;
 	
 	private void setProcessing_Optionsthrow_analysis_widget(MultiOptionWidget widget) {
@@ -7635,6 +7793,16 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		return cgtrim_clinit_widget;
 	}	
 	
+	private BooleanOptionWidget cgcompact_widget;
+	
+	private void setcgcompact_widget(BooleanOptionWidget widget) {
+		cgcompact_widget = widget;
+	}
+	
+	public BooleanOptionWidget getcgcompact_widget() {
+		return cgcompact_widget;
+	}	
+	
 	
 	private StringOptionWidget cgjdkver_widget;
 	
@@ -7648,6 +7816,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 	
 	
 	
+	private StringOptionWidget cgexport_widget;
+	
+	private void setcgexport_widget(StringOptionWidget widget) {
+		cgexport_widget = widget;
+	}
+	
+	public StringOptionWidget getcgexport_widget() {
+		return cgexport_widget;
+	}
+	
+	
+	
 	private StringOptionWidget cgreflection_log_widget;
 	
 	private void setcgreflection_log_widget(StringOptionWidget widget) {
@@ -7741,6 +7921,28 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		return cgcg_sparkpre_jimplify_widget;
 	}	
 	
+	private BooleanOptionWidget cgcg_sparkincremental_widget;
+	
+	private void setcgcg_sparkincremental_widget(BooleanOptionWidget widget) {
+		cgcg_sparkincremental_widget = widget;
+	}
+	
+	public BooleanOptionWidget getcgcg_sparkincremental_widget() {
+		return cgcg_sparkincremental_widget;
+	}	
+	
+	
+	private StringOptionWidget cgcg_sparksnapshot_widget;
+	
+	private void setcgcg_sparksnapshot_widget(StringOptionWidget widget) {
+		cgcg_sparksnapshot_widget = widget;
+	}
+	
+	public StringOptionWidget getcgcg_sparksnapshot_widget() {
+		return cgcg_sparksnapshot_widget;
+	}
+	
+	
 	private BooleanOptionWidget cgcg_sparkvta_widget;
 	
 	private void setcgcg_sparkvta_widget(BooleanOptionWidget widget) {
@@ -9083,6 +9285,16 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		return sopsop_cpfprune_cfg_widget;
 	}	
 	
+	private BooleanOptionWidget sopsop_cseenabled_widget;
+	
+	private void setsopsop_cseenabled_widget(BooleanOptionWidget widget) {
+		sopsop_cseenabled_widget = widget;
+	}
+	
+	public BooleanOptionWidget getsopsop_cseenabled_widget() {
+		return sopsop_cseenabled_widget;
+	}	
+	
 	private BooleanOptionWidget jtpenabled_widget;
 	
 	private void setjtpenabled_widget(BooleanOptionWidget widget) {
@@ -10366,6 +10578,38 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		
 		
+		defKey = ""+" "+""+" "+"lazy-resolution";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		}
+		else {
+			
+			defaultBool = false;
+			
+		}
+
+		setGeneral_Optionslazy_resolution_widget(new BooleanOptionWidget(editGroupGeneral_Options, SWT.NONE, new OptionData("Lazy Resolution", "", "","lazy-resolution", "\nNormally, Soot resolves the classes it needs before running any \npacks: in whole-program mode, every class reachable through \nreferences from the argument classes. With this option, Soot \nonly resolves the argument and basic classes up front. Any other \nclass is brought to the level an operation needs, such as \nSIGNATURES for looking up a method, when that operation is first \nperformed on it. Classes that are never used are never read. \nHierarchy queries only see the classes resolved so far. ", defaultBool)));
+		
+		
+		
+		defKey = ""+" "+""+" "+"prefetch-classes";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		}
+		else {
+			
+			defaultBool = false;
+			
+		}
+
+		setGeneral_Optionsprefetch_classes_widget(new BooleanOptionWidget(editGroupGeneral_Options, SWT.NONE, new OptionData("Prefetch Classes", "", "","prefetch-classes", "\nWith -lazy-resolution, read the class files of the classes \nreferenced by each class whose bodies are loaded on a background \nthread, so that they are already in memory when they are first \nused. ", defaultBool)));
+		
+		
+		
 		defKey = ""+" "+""+" "+"validate";
 		defKey = defKey.trim();
 
@@ -10665,6 +10909,21 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		setInput_Optionssoot_classpath_widget(new StringOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Soot Classpath",  "", "","cp", "\nUse PATH as the list of directories in which Soot should search \nfor classes. PATH should be a series of directories, separated \nby the path separator character for your system. If no classpath \nis set on the command line, but the system property \nsoot.class.path has been set, Soot uses its value as the \nclasspath. If neither the command line nor the system properties \nspecify a Soot classpath, Soot falls back on a default classpath \nconsisting of the value of the system property java.class.path \nfollowed java.home/lib/rt.jar, where java.home stands for the \ncontents of the system property java.home and / stands for the \nsystem file separator.", defaultString)));
 		
 		
+		defKey = ""+" "+""+" "+"classpath-index";
+		defKey = defKey.trim();
+		
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		}
+		else {
+			
+			defaultString = "";
+			
+		}
+
+		setInput_Optionsclasspath_index_widget(new StringOptionWidget(editGroupInput_Options, SWT.NONE, new OptionData("Classpath Index",  "", "","classpath-index", "\nSoot reads the directory of each jar and zip file on the \nclasspath once, and looks up classes in the resulting index. \nWith this option, the index is kept in FILE, and later runs read \nit from there instead of reading the archives again. Archives \nwhose size or modification time has changed are indexed again, \nand FILE is updated. ", defaultString)));
+		
+		
 		defKey = ""+" "+""+" "+"android-jars";
 		defKey = defKey.trim();
 		
@@ -11333,6 +11592,21 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 
 		setProcessing_Optionsplugin_widget(new ListOptionWidget(editGroupProcessing_Options, SWT.NONE, new OptionData("Plugin Configuration",  "", "","plugin", "\nLoads the plugin configuration FILE and registers all plugins. \nMake sure that the option is specified before you try to pass \noptions to the loaded plugins.", defaultString)));
 		
+		
+		defKey = ""+" "+""+" "+"num-threads";
+		defKey = defKey.trim();
+		
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		}
+		else {
+			
+			defaultString = "1";
+			
+		}
+
+		setProcessing_Optionsnum_threads_widget(new StringOptionWidget(editGroupProcessing_Options, SWT.NONE, new OptionData("Number of threads",  "", "","num-threads", "\nRuns the intraprocedural body packs (jtp, jop, jap, gb, gop, \nbb, bop and tag) on a pool of NUM worker threads, one \napplication class per task. The default, 1, runs all packs \nsequentially; a value of 0 or less uses one thread per available \nprocessor. Transformers that implement \nsoot.ThreadSafeBodyTransformer run concurrently; all other body \ntransformers are executed one at a time, so third-party \ntransformers keep working unchanged. The body packs fall back to \nsequential execution when -time, -interactive-mode, Shimple or \nDava output is requested. The same pool builds the method bodies \nof all classes (the jb pack) before the body packs run. This \nstep stays sequential with the -coffi front-end and for Java \nsource input. Output classes are serialized on the same pool and \nwritten by a single thread in their original order, so the \noutput is the same for any number of threads. Dava, dex, XML and \ntemplate output, and -xml-attributes, are written sequentially.", defaultString)));
+		
 
 		
 		return editGroupProcessing_Options;
@@ -13146,6 +13420,22 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		
 		
+		defKey = "p"+" "+"cg"+" "+"compact";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		}
+		else {
+			
+			defaultBool = false;
+			
+		}
+
+		setcgcompact_widget(new BooleanOptionWidget(editGroupcg, SWT.NONE, new OptionData("Compact Call Graph", "p", "cg","compact", "\nWhen this option is true, once the call graph has been built and \ntrimmed, it is copied into a compact form that keeps its edges \nsorted in int arrays indexed by method and call site numbers, \nrather than as linked Edge objects. This takes much less memory \nand makes iterating over the edges faster. Edges added to the \ncall graph afterwards, as by the Static Method Binder, are kept \nas linked Edge objects beside the arrays, so the call graph only \nstays compact if few are added. The call graph must be \ncontext-insensitive. ", defaultBool)));
+		
+		
+		
 		defKey = "p"+" "+"cg"+" "+"jdkver";
 		defKey = defKey.trim();
 		
@@ -13161,6 +13451,21 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		setcgjdkver_widget(new StringOptionWidget(editGroupcg, SWT.NONE, new OptionData("JDK version",  "p", "cg","jdkver", "\nThis option sets the JDK version of the standard library being \nanalyzed so that Soot can simulate the native methods in the \nspecific version of the library. The default, 3, refers to Java \n1.3.x.", defaultString)));
 		
 		
+		defKey = "p"+" "+"cg"+" "+"export";
+		defKey = defKey.trim();
+		
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		}
+		else {
+			
+			defaultString = "";
+			
+		}
+
+		setcgexport_widget(new StringOptionWidget(editGroupcg, SWT.NONE, new OptionData("Export File",  "p", "cg","export", "\nWhen a file name is given, once the call graph has been built \nand trimmed, its edges are written to that file in a compact \nbinary format, with methods stored once by their signature. The \nfile can be read back with \nsoot.jimple.toolkits.callgraph.CallGraphReader, also without \nloading the program into Soot. The call graph must be \ncontext-insensitive. ", defaultString)));
+		
+		
 		defKey = "p"+" "+"cg"+" "+"reflection-log";
 		defKey = defKey.trim();
 		
@@ -13392,6 +13697,37 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		setcgcg_sparkpre_jimplify_widget(new BooleanOptionWidget(editGroupcgSpark_General_Options, SWT.NONE, new OptionData("Pre Jimplify", "p", "cg.spark","pre-jimplify", "\nWhen this option is set to true, Spark converts all available \nmethods to Jimple before starting the points-to analysis. This \nallows the Jimplification time to be separated from the \npoints-to time. However, it increases the total time and memory \nrequirement, because all methods are Jimplified, rather than \nonly those deemed reachable by the points-to analysis. ", defaultBool)));
 		
 		
+		
+		defKey = "p"+" "+"cg.spark"+" "+"incremental";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		}
+		else {
+			
+			defaultBool = false;
+			
+		}
+
+		setcgcg_sparkincremental_widget(new BooleanOptionWidget(editGroupcgSpark_General_Options, SWT.NONE, new OptionData("Incremental", "p", "cg.spark","incremental", "\nWhen this option is set to true, Spark keeps the pointer \nassignment graph and the points-to sets it computed. When Spark \nis run again with the same options, only the methods whose \nbodies have been replaced (or have been reported with \nSparkTransformer.methodChanged()) since the previous run are \nrebuilt; the points-to sets that could depend on them are \ninvalidated and propagated again, and all other sets are kept. \nThe worklist propagator resumes from the invalidated sets; the \nother propagators propagate the updated graph again from \nscratch. This option requires the CHA call graph \n(on-fly-cg:false) and cannot be combined with vta, \nsimplify-sccs, simplify-offline or the merge propagator. The \ngraph and the points-to sets are kept in memory only, as the \npoints-to analysis of the Scene, and are dropped with it, so \nthis option only helps when Spark runs more than once in the \nsame Soot process, for example from a driver that changes method \nbodies and then runs the cg.spark phase again. To reuse results \nacross separate runs of Soot, use the snapshot option instead. \n", defaultBool)));
+		
+		
+		
+		defKey = "p"+" "+"cg.spark"+" "+"snapshot";
+		defKey = defKey.trim();
+		
+		if (isInDefList(defKey)) {
+			defaultString = getStringDef(defKey);	
+		}
+		else {
+			
+			defaultString = "";
+			
+		}
+
+		setcgcg_sparksnapshot_widget(new StringOptionWidget(editGroupcgSpark_General_Options, SWT.NONE, new OptionData("Snapshot File",  "p", "cg.spark","snapshot", "\nWhen a file name is given, Spark first tries to load the \npointer assignment graph, its points-to sets and the call graph \nfrom that file. The file is used only if it was written for the \nsame class path, entry points and Spark options; otherwise Spark \nruns as usual and then saves its results to the file for the \nnext run. Snapshots are not used with incremental, geom-pta or \ncs-demand. ", defaultString)));
+		
 
 		
 		return editGroupcgSpark_General_Options;
@@ -13721,6 +14057,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		true),
 		
+		new OptionData("Parallel",
+		"parallel",
+		"\nParallel is a variant of the worklist algorithm that propagates \npoints-to sets along assignment edges on several threads; the \nnumber of threads is given by the -num-threads option. It \ncomputes the same points-to sets as Worklist. Propagation falls \nback to a single thread unless set-impl is double and neither \ndouble-set-old nor double-set-new is heintze, sharedlist or \ninterned. ",
+		
+		false),
+		
+		new OptionData("Diff",
+		"diff",
+		"\nDiff is a variant of the worklist algorithm that takes nodes \nfrom a priority queue in topological order. Rather than scanning \nall field stores and loads after each pass over the worklist, it \nonly propagates the field nodes whose points-to sets have grown. \n",
+		
+		false),
+		
 		new OptionData("Cycle",
 		"cycle",
 		"\nThis algorithm finds cycles in the PAG on-the-fly. It is not yet \nfinished.",
@@ -13799,6 +14147,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		false),
 		
+		new OptionData("Compressed",
+		"compressed",
+		"\nCompressed is an implementation that splits the numbers of the \nallocation sites into blocks of 65536. The members of each block \nare kept in a sorted array of up to 4096 elements, and in a bit \nvector covering only that block when there are more. ",
+		
+		false),
+		
+		new OptionData("Interned",
+		"interned",
+		"\nInterned keeps each distinct points-to set once, as an \nimmutable sorted array in a table shared by all sets, so that \nnodes with equal points-to sets share their storage. Unions of \nsuch sets are cached, so repeating a union only costs a table \nlookup. ",
+		
+		false),
+		
 		new OptionData("Double",
 		"double",
 		"\nDouble is an implementation that itself uses a pair of sets for \neach points-to set. The first set in the pair stores new \npointed-to objects that have not yet been propagated, while the \nsecond set stores old pointed-to objects that have been \npropagated and need not be reconsidered. This allows the \npropagation algorithms to be incremental, often speeding them up \nsignificantly. ",
@@ -13859,6 +14219,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		false),
 		
+		new OptionData("Compressed",
+		"compressed",
+		"\nCompressed is an implementation that splits the numbers of the \nallocation sites into blocks of 65536. The members of each block \nare kept in a sorted array of up to 4096 elements, and in a bit \nvector covering only that block when there are more. ",
+		
+		false),
+		
+		new OptionData("Interned",
+		"interned",
+		"\nInterned keeps each distinct points-to set once, as an \nimmutable sorted array in a table shared by all sets, so that \nnodes with equal points-to sets share their storage. Unions of \nsuch sets are cached, so repeating a union only costs a table \nlookup. ",
+		
+		false),
+		
 		};
 		
 										
@@ -13913,6 +14285,18 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 		
 		false),
 		
+		new OptionData("Compressed",
+		"compressed",
+		"\nCompressed is an implementation that splits the numbers of the \nallocation sites into blocks of 65536. The members of each block \nare kept in a sorted array of up to 4096 elements, and in a bit \nvector covering only that block when there are more. ",
+		
+		false),
+		
+		new OptionData("Interned",
+		"interned",
+		"\nInterned keeps each distinct points-to set once, as an \nimmutable sorted array in a table shared by all sets, so that \nnodes with equal points-to sets share their storage. Unions of \nsuch sets are cached, so repeating a union only costs a table \nlookup. ",
+		
+		false),
+		
 		};
 		
 										
@@ -16961,6 +17345,52 @@ Composite dbdb_force_recompileChild = dbdb_force_recompileCreate(getPageContaine
 
 
 
+	private Composite sopsop_cseCreate(Composite parent) {
+		String defKey;
+		String defaultString;
+		boolean defaultBool = false;
+	    String defaultArray;
+       
+		Group editGroupsopsop_cse = new Group(parent, SWT.NONE);
+		GridLayout layout = new GridLayout();
+		editGroupsopsop_cse.setLayout(layout);
+	
+	 	editGroupsopsop_cse.setText("Shimple Common Subexpression Eliminator");
+	 	
+		editGroupsopsop_cse.setData("id", "sopsop_cse");
+		
+		String descsopsop_cse = "Shimple common subexpression eliminator";	
+		if (descsopsop_cse.length() > 0) {
+			Label descLabelsopsop_cse = new Label(editGroupsopsop_cse, SWT.WRAP);
+			descLabelsopsop_cse.setText(descsopsop_cse);
+		}
+		OptionData [] data;	
+		
+		
+		
+		
+		defKey = "p"+" "+"sop.cse"+" "+"enabled";
+		defKey = defKey.trim();
+
+		if (isInDefList(defKey)) {
+			defaultBool = getBoolDef(defKey);	
+		}
+		else {
+			
+			defaultBool = true;
+			
+		}
+
+		setsopsop_cseenabled_widget(new BooleanOptionWidget(editGroupsopsop_cse, SWT.NONE, new OptionData("Enabled", "p", "sop.cse","enabled", "\n", defaultBool)));
+		
+		
+
+		
+		return editGroupsopsop_cse;
+	}
+
+
+
 	private Composite jtpCreate(Composite parent) {
 		String defKey;
 		String defaultString;
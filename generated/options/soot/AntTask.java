@@ -168,6 +168,14 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-on-the-fly");
         }
   
+        public void setlazy_resolution(boolean arg) {
+            if(arg) addArg("-lazy-resolution");
+        }
+  
+        public void setprefetch_classes(boolean arg) {
+            if(arg) addArg("-prefetch-classes");
+        }
+  
         public void setvalidate(boolean arg) {
             if(arg) addArg("-validate");
         }
@@ -189,6 +197,11 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-prepend-classpath");
         }
   
+        public void setclasspath_index(String arg) {
+            addArg("-classpath-index");
+            addArg(arg);
+        }
+  
         public void setprocess_dir(Path arg) {
             if(process_dir == null )
                 process_dir = new Path(getProject());
@@ -1174,12 +1187,24 @@ public class AntTask extends MatchingTask {
             addArg("trim-clinit:"+(arg?"true":"false"));
           }
       
+          public void setcompact(boolean arg) {
+            addArg("-p");
+            addArg("cg");
+            addArg("compact:"+(arg?"true":"false"));
+          }
+      
           public void setjdkver(String arg) {
             addArg("-p");
             addArg("cg");
             addArg("jdkver:"+arg);
           }
       
+          public void setexport(String arg) {
+            addArg("-p");
+            addArg("cg");
+            addArg("export:"+arg);
+          }
+      
           public void setreflection_log(String arg) {
             addArg("-p");
             addArg("cg");
@@ -1252,6 +1277,12 @@ public class AntTask extends MatchingTask {
             addArg("pre-jimplify:"+(arg?"true":"false"));
           }
       
+          public void setincremental(boolean arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("incremental:"+(arg?"true":"false"));
+          }
+      
           public void setvta(boolean arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -1426,6 +1457,12 @@ public class AntTask extends MatchingTask {
             addArg("geom-app-only:"+(arg?"true":"false"));
           }
       
+          public void setsnapshot(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("snapshot:"+arg);
+          }
+      
           public void setpropagator(String arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -2211,6 +2248,21 @@ public class AntTask extends MatchingTask {
       
         }
     
+        public Object createp_sop_cse() {
+            Object ret = new PhaseOptsop_cse();
+            phaseopts.add(ret);
+            return ret;
+        }
+        public class PhaseOptsop_cse {
+      
+          public void setenabled(boolean arg) {
+            addArg("-p");
+            addArg("sop.cse");
+            addArg("enabled:"+(arg?"true":"false"));
+          }
+      
+        }
+    
         public Object createp_jtp() {
             Object ret = new PhaseOptjtp();
             phaseopts.add(ret);
@@ -142,6 +142,24 @@ public class CGOptions
         return soot.PhaseOptions.getBoolean( options, "trim-clinit" );
     }
     
+    /** Compact Call Graph --
+    
+     * Stores the call graph in compact arrays.
+    
+     * When this option is true, once the call graph has been built and 
+     * trimmed, it is copied into a compact form that keeps its edges 
+     * sorted in int arrays indexed by method and call site numbers, 
+     * rather than as linked Edge objects. This takes much less memory 
+     * and makes iterating over the edges faster. Edges added to the 
+     * call graph afterwards, as by the Static Method Binder, are kept 
+     * as linked Edge objects beside the arrays, so the call graph only 
+     * stays compact if few are added. The call graph must be 
+     * context-insensitive. 
+     */
+    public boolean compact() {
+        return soot.PhaseOptions.getBoolean( options, "compact" );
+    }
+    
     /** JDK version --
     
      * JDK version for native methods.
@@ -155,6 +173,22 @@ public class CGOptions
         return soot.PhaseOptions.getInt( options, "jdkver" );
     }
     
+    /** Export File --
+    
+     * Writes the call graph to file in a compact binary format.
+    
+     * When a file name is given, once the call graph has been built 
+     * and trimmed, its edges are written to that file in a compact 
+     * binary format, with methods stored once by their signature. The 
+     * file can be read back with 
+     * soot.jimple.toolkits.callgraph.CallGraphReader, also without 
+     * loading the program into Soot. The call graph must be 
+     * context-insensitive. 
+     */
+    public String export() {
+        return soot.PhaseOptions.getString( options, "export" );
+    }
+    
     /** Reflection Log --
     
      * Uses a reflection log to resolve reflective calls..
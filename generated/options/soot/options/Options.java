@@ -196,6 +196,16 @@ public class Options extends OptionsBase {
             )
                 on_the_fly = true;
   
+            else if( false 
+            || option.equals( "lazy-resolution" )
+            )
+                lazy_resolution = true;
+  
+            else if( false 
+            || option.equals( "prefetch-classes" )
+            )
+                prefetch_classes = true;
+  
             else if( false 
             || option.equals( "validate" )
             )
@@ -236,6 +246,23 @@ public class Options extends OptionsBase {
             )
                 prepend_classpath = true;
   
+            else if( false
+            || option.equals( "classpath-index" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( classpath_index.length() == 0 )
+                    classpath_index = value;
+                else {
+                    G.v().out.println( "Duplicate values "+classpath_index+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
             else if( false
             || option.equals( "process-path" )
             || option.equals( "process-dir" )
@@ -1061,6 +1088,23 @@ public class Options extends OptionsBase {
             )
                 ignore_resolution_errors = true;
   
+            else if( false
+            || option.equals( "num-threads" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                try {
+                    num_threads = Integer.parseInt( value );
+                } catch( NumberFormatException e ) {
+                    G.v().out.println( "Invalid value "+value+" given for option -"+option );
+                    return false;
+                }
+            }
+  
             else if( false
             || option.equals( "i" )
             || option.equals( "include" )
@@ -1320,6 +1364,14 @@ public class Options extends OptionsBase {
     private boolean on_the_fly = false;
     public void set_on_the_fly( boolean setting ) { on_the_fly = setting; }
   
+    public boolean lazy_resolution() { return lazy_resolution; }
+    private boolean lazy_resolution = false;
+    public void set_lazy_resolution( boolean setting ) { lazy_resolution = setting; }
+  
+    public boolean prefetch_classes() { return prefetch_classes; }
+    private boolean prefetch_classes = false;
+    public void set_prefetch_classes( boolean setting ) { prefetch_classes = setting; }
+  
     public boolean validate() { return validate; }
     private boolean validate = false;
     public void set_validate( boolean setting ) { validate = setting; }
@@ -1339,6 +1391,9 @@ public class Options extends OptionsBase {
     private boolean prepend_classpath = false;
     public void set_prepend_classpath( boolean setting ) { prepend_classpath = setting; }
   
+    public String classpath_index() { return classpath_index; }
+    public void set_classpath_index( String setting ) { classpath_index = setting; }
+    private String classpath_index = "";
     public List<String> process_dir() { 
         if( process_dir == null )
             return java.util.Collections.emptyList();
@@ -1488,6 +1543,9 @@ public class Options extends OptionsBase {
     private boolean ignore_resolution_errors = false;
     public void set_ignore_resolution_errors( boolean setting ) { ignore_resolution_errors = setting; }
   
+    public int num_threads() { return num_threads; }
+    public void set_num_threads( int setting ) { num_threads = setting; }
+    private int num_threads = 1;
     public List<String> include() { 
         if( include == null )
             return java.util.Collections.emptyList();
@@ -1571,6 +1629,8 @@ public class Options extends OptionsBase {
 +padOpt(" -w -whole-program", "Run in whole-program mode" )
 +padOpt(" -ws -whole-shimple", "Run in whole-shimple mode" )
 +padOpt(" -fly -on-the-fly", "Run in on-the-fly mode" )
++padOpt(" -lazy-resolution", "Resolve classes when they are first used" )
++padOpt(" -prefetch-classes", "Read class files likely needed next in the background" )
 +padOpt(" -validate", "Run internal validation on bodies" )
 +padOpt(" -debug", "Print various Soot debugging info" )
 +padOpt(" -debug-resolver", "Print debugging info from SootResolver" )
@@ -1578,6 +1638,7 @@ public class Options extends OptionsBase {
       
 +padOpt(" -cp PATH -soot-class-path PATH -soot-classpath PATH", "Use PATH as the classpath for finding classes." )
 +padOpt(" -pp -prepend-classpath", "Prepend the given soot classpath to the default classpath." )
++padOpt(" -classpath-index FILE", "Keep the index of classpath archives in FILE" )
 +padOpt(" -process-path DIR -process-dir DIR", "Process all classes found in DIR" )
 +padOpt(" -oaat", "From the process-dir, processes one class at a time." )
 +padOpt(" -android-jars PATH", "Use PATH as the path for finding the android.jar file" )
@@ -1655,6 +1716,7 @@ public class Options extends OptionsBase {
 +padOpt(" -omit-excepting-unit-edges", "Omit CFG edges to handlers from excepting units which lack side effects" )
 +padOpt(" -trim-cfgs", "Trim unrealizable exceptional edges from CFGs" )
 +padOpt(" -ire -ignore-resolution-errors", "Does not throw an exception when a program references an undeclared field or method." )
++padOpt(" -num-threads NUM", "Build bodies and run the body packs on NUM threads" )
 +"\nApplication Mode Options:\n"
       
 +padOpt(" -i PKG -include PKG", "Include classes in PKG as application classes" )
@@ -1738,6 +1800,7 @@ public class Options extends OptionsBase {
         +padOpt("stp", "Shimple transformation pack")
         +padOpt("sop", "Shimple optimization pack")
         +padVal("sop.cpf", "Shimple constant propagator and folder")
+        +padVal("sop.cse", "Shimple common subexpression eliminator")
         +padOpt("jtp", "Jimple transformation pack: intraprocedural analyses added to Soot")
         +padOpt("jop", "Jimple optimization pack (intraprocedural)")
         +padVal("jop.cse", "Common subexpression eliminator")
@@ -2003,6 +2066,8 @@ public class Options extends OptionsBase {
                 +padOpt( "all-reachable (false)", "Assume all methods of application classes are reachable." )
                 +padOpt( "implicit-entry (true)", "Include methods called implicitly by the VM as entry points" )
                 +padOpt( "trim-clinit (true)", "Removes redundant static initializer calls" )
+                +padOpt( "compact (false)", "Stores the call graph in compact arrays" )
+                +padOpt( "export ()", "Writes the call graph to file in a compact binary format" )
                 +padOpt( "reflection-log", "Uses a reflection log to resolve reflective calls." )
                 +padOpt( "guards (ignore)", "Describes how to guard the program from unsound assumptions." );
     
@@ -2022,6 +2087,8 @@ public class Options extends OptionsBase {
                 +padOpt( "ignore-types (false)", "Make Spark completely ignore declared types of variables" )
                 +padOpt( "force-gc (false)", "Force garbage collection for measuring memory usage" )
                 +padOpt( "pre-jimplify (false)", "Jimplify all methods before starting Spark" )
+                +padOpt( "incremental (false)", "Re-analyze only changed methods when Spark runs again" )
+                +padOpt( "snapshot ()", "Load and save the results of Spark in file" )
                 +padOpt( "vta (false)", "Emulate Variable Type Analysis" )
                 +padOpt( "rta (false)", "Emulate Rapid Type Analysis" )
                 +padOpt( "field-based (false)", "Use a field-based rather than field-sensitive representation" )
@@ -2041,6 +2108,10 @@ public class Options extends OptionsBase {
                 
                 +padVal( "worklist (default)", "Fast, worklist-based algorithm" )
                 
+                +padVal( "parallel", "Worklist-based algorithm propagating on several threads" )
+                
+                +padVal( "diff", "Difference propagation with a prioritized worklist" )
+                
                 +padVal( "cycle", "Unfinished on-the-fly cycle detection algorithm" )
                 
                 +padVal( "merge", "Unfinished field reference merging algorithms" )
@@ -2062,6 +2133,10 @@ public class Options extends OptionsBase {
                 
                 +padVal( "sharedlist", "Shared list representation" )
                 
+                +padVal( "compressed", "Compressed bitmap representation" )
+                
+                +padVal( "interned", "Hash-consed immutable sets with memoized unions" )
+                
                 +padVal( "double (default)", "Double set representation for incremental propagation" )
                 
                 +padOpt( "double-set-old", "Select implementation of points-to set for old part of double set" )
@@ -2077,6 +2152,10 @@ public class Options extends OptionsBase {
                 
                 +padVal( "sharedlist", "Shared list representation" )
                 
+                +padVal( "compressed", "Compressed bitmap representation" )
+                
+                +padVal( "interned", "Hash-consed immutable sets with memoized unions" )
+                
                 +padOpt( "double-set-new", "Select implementation of points-to set for new part of double set" )
                 +padVal( "hash", "Use Java HashSet" )
                 
@@ -2090,6 +2169,10 @@ public class Options extends OptionsBase {
                 
                 +padVal( "sharedlist", "Shared list representation" )
                 
+                +padVal( "compressed", "Compressed bitmap representation" )
+                
+                +padVal( "interned", "Hash-consed immutable sets with memoized unions" )
+                
                 +padOpt( "dump-html (false)", "Dump pointer assignment graph to HTML for debugging" )
                 +padOpt( "dump-pag (false)", "Dump pointer assignment graph for other solvers" )
                 +padOpt( "dump-solution (false)", "Dump final solution for comparison with other solvers" )
@@ -2434,6 +2517,12 @@ public class Options extends OptionsBase {
                 +padOpt( "enabled (true)", "" )
                 +padOpt( "prune-cfg (true)", "Take advantage of CFG optimization             opportunities." );
     
+        if( phaseName.equals( "sop.cse" ) )
+            return "Phase "+phaseName+":\n"+
+                "\nEliminates common subexpressions by numbering \nvalues over the dominator tree of the method. \nThanks to the SSA property, an expression that is \ncomputed again in a statement dominated by an \nequal one is replaced by the local that holds the \nfirst, without an available expressions analysis. \nArithmetic, casts, instanceof, array lengths and \nPhi nodes are numbered; field and array reads are \nnot. The replaced expressions leave \ncopies behind, which the Jimple copy propagator \nand dead assignment eliminator remove. \n"
+                +"\n\nRecognized options (with default values):\n"
+                +padOpt( "enabled (true)", "" );
+    
         if( phaseName.equals( "jtp" ) )
             return "Phase "+phaseName+":\n"+
                 "\nSoot applies the contents of the Jimple Transformation Pack to \neach method under analysis. This pack contains no \ntransformations in an unmodified version of Soot. "
@@ -2956,6 +3045,8 @@ public class Options extends OptionsBase {
                 +"all-reachable "
                 +"implicit-entry "
                 +"trim-clinit "
+                +"compact "
+                +"export "
                 +"reflection-log "
                 +"guards ";
     
@@ -2971,6 +3062,8 @@ public class Options extends OptionsBase {
                 +"ignore-types "
                 +"force-gc "
                 +"pre-jimplify "
+                +"incremental "
+                +"snapshot "
                 +"vta "
                 +"rta "
                 +"field-based "
@@ -3163,6 +3256,10 @@ public class Options extends OptionsBase {
                 +"enabled "
                 +"prune-cfg ";
     
+        if( phaseName.equals( "sop.cse" ) )
+            return ""
+                +"enabled ";
+    
         if( phaseName.equals( "jtp" ) )
             return ""
                 +"enabled ";
@@ -3567,6 +3664,8 @@ public class Options extends OptionsBase {
               +"all-reachable:false "
               +"implicit-entry:true "
               +"trim-clinit:true "
+              +"compact:false "
+              +"export: "
               +"guards:ignore ";
     
         if( phaseName.equals( "cg.cha" ) )
@@ -3581,6 +3680,8 @@ public class Options extends OptionsBase {
               +"ignore-types:false "
               +"force-gc:false "
               +"pre-jimplify:false "
+              +"incremental:false "
+              +"snapshot: "
               +"vta:false "
               +"rta:false "
               +"field-based:false "
@@ -3773,6 +3874,10 @@ public class Options extends OptionsBase {
               +"enabled:true "
               +"prune-cfg:true ";
     
+        if( phaseName.equals( "sop.cse" ) )
+            return ""
+              +"enabled:true ";
+    
         if( phaseName.equals( "jtp" ) )
             return ""
               +"enabled:true ";
@@ -4083,6 +4188,7 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "stp" ) ) return;
         if( phaseName.equals( "sop" ) ) return;
         if( phaseName.equals( "sop.cpf" ) ) return;
+        if( phaseName.equals( "sop.cse" ) ) return;
         if( phaseName.equals( "jtp" ) ) return;
         if( phaseName.equals( "jop" ) ) return;
         if( phaseName.equals( "jop.cse" ) ) return;
@@ -4248,6 +4354,8 @@ public class Options extends OptionsBase {
             G.v().out.println( "Warning: Options exist for non-existent phase sop" );
         if( !PackManager.v().hasPhase( "sop.cpf" ) )
             G.v().out.println( "Warning: Options exist for non-existent phase sop.cpf" );
+        if( !PackManager.v().hasPhase( "sop.cse" ) )
+            G.v().out.println( "Warning: Options exist for non-existent phase sop.cse" );
         if( !PackManager.v().hasPhase( "jtp" ) )
             G.v().out.println( "Warning: Options exist for non-existent phase jtp" );
         if( !PackManager.v().hasPhase( "jop" ) )
@@ -91,6 +91,34 @@ public class SparkOptions
         return soot.PhaseOptions.getBoolean( options, "pre-jimplify" );
     }
     
+    /** Incremental --
+    
+     * Re-analyze only changed methods when Spark runs again.
+    
+     * When this option is set to true, Spark keeps the pointer 
+     * assignment graph and the points-to sets it computed. When Spark 
+     * is run again with the same options, only the methods whose 
+     * bodies have been replaced (or have been reported with 
+     * SparkTransformer.methodChanged()) since the previous run are 
+     * rebuilt; the points-to sets that could depend on them are 
+     * invalidated and propagated again, and all other sets are kept. 
+     * The worklist propagator resumes from the invalidated sets; the 
+     * other propagators propagate the updated graph again from 
+     * scratch. This option requires the CHA call graph 
+     * (on-fly-cg:false) and cannot be combined with vta, 
+     * simplify-sccs, simplify-offline or the merge propagator. The 
+     * graph and the points-to sets are kept in memory only, as the 
+     * points-to analysis of the Scene, and are dropped with it, so 
+     * this option only helps when Spark runs more than once in the 
+     * same Soot process, for example from a driver that changes method 
+     * bodies and then runs the cg.spark phase again. To reuse results 
+     * across separate runs of Soot, use the snapshot option instead. 
+     * 
+     */
+    public boolean incremental() {
+        return soot.PhaseOptions.getBoolean( options, "incremental" );
+    }
+    
     /** VTA --
     
      * Emulate Variable Type Analysis.
@@ -536,6 +564,22 @@ public class SparkOptions
         return soot.PhaseOptions.getInt( options, "geom-runs" );
     }
     
+    /** Snapshot File --
+    
+     * Load and save the results of Spark in file.
+    
+     * When a file name is given, Spark first tries to load the 
+     * pointer assignment graph, its points-to sets and the call graph 
+     * from that file. The file is used only if it was written for the 
+     * same class path, entry points and Spark options; otherwise Spark 
+     * runs as usual and then saves its results to the file for the 
+     * next run. Snapshots are not used with incremental, geom-pta or 
+     * cs-demand. 
+     */
+    public String snapshot() {
+        return soot.PhaseOptions.getString( options, "snapshot" );
+    }
+    
     /** Verbose dump file --
     
      * Filename for detailed execution log.
@@ -564,10 +608,12 @@ public class SparkOptions
     
     public static final int propagator_iter = 1;
     public static final int propagator_worklist = 2;
-    public static final int propagator_cycle = 3;
-    public static final int propagator_merge = 4;
-    public static final int propagator_alias = 5;
-    public static final int propagator_none = 6;
+    public static final int propagator_parallel = 3;
+    public static final int propagator_diff = 4;
+    public static final int propagator_cycle = 5;
+    public static final int propagator_merge = 6;
+    public static final int propagator_alias = 7;
+    public static final int propagator_none = 8;
     /** Propagator --
     
      * Select propagation algorithm.
@@ -584,6 +630,12 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "worklist" ) )
             return propagator_worklist;
         
+        if( s.equalsIgnoreCase( "parallel" ) )
+            return propagator_parallel;
+        
+        if( s.equalsIgnoreCase( "diff" ) )
+            return propagator_diff;
+        
         if( s.equalsIgnoreCase( "cycle" ) )
             return propagator_cycle;
         
@@ -605,7 +657,9 @@ public class SparkOptions
     public static final int set_impl_array = 4;
     public static final int set_impl_heintze = 5;
     public static final int set_impl_sharedlist = 6;
-    public static final int set_impl_double = 7;
+    public static final int set_impl_compressed = 7;
+    public static final int set_impl_interned = 8;
+    public static final int set_impl_double = 9;
     /** Set Implementation --
     
      * Select points-to set implementation.
@@ -633,6 +687,12 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "sharedlist" ) )
             return set_impl_sharedlist;
         
+        if( s.equalsIgnoreCase( "compressed" ) )
+            return set_impl_compressed;
+        
+        if( s.equalsIgnoreCase( "interned" ) )
+            return set_impl_interned;
+        
         if( s.equalsIgnoreCase( "double" ) )
             return set_impl_double;
         
@@ -645,6 +705,8 @@ public class SparkOptions
     public static final int double_set_old_array = 4;
     public static final int double_set_old_heintze = 5;
     public static final int double_set_old_sharedlist = 6;
+    public static final int double_set_old_compressed = 7;
+    public static final int double_set_old_interned = 8;
     /** Double Set Old --
     
      * Select implementation of points-to set for old part of double 
@@ -675,6 +737,12 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "sharedlist" ) )
             return double_set_old_sharedlist;
         
+        if( s.equalsIgnoreCase( "compressed" ) )
+            return double_set_old_compressed;
+        
+        if( s.equalsIgnoreCase( "interned" ) )
+            return double_set_old_interned;
+        
         throw new RuntimeException( "Invalid value "+s+" of phase option double-set-old" );
     }
     
@@ -684,6 +752,8 @@ public class SparkOptions
     public static final int double_set_new_array = 4;
     public static final int double_set_new_heintze = 5;
     public static final int double_set_new_sharedlist = 6;
+    public static final int double_set_new_compressed = 7;
+    public static final int double_set_new_interned = 8;
     /** Double Set New --
     
      * Select implementation of points-to set for new part of double 
@@ -714,6 +784,12 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "sharedlist" ) )
             return double_set_new_sharedlist;
         
+        if( s.equalsIgnoreCase( "compressed" ) )
+            return double_set_new_compressed;
+        
+        if( s.equalsIgnoreCase( "interned" ) )
+            return double_set_new_interned;
+        
         throw new RuntimeException( "Invalid value "+s+" of phase option double-set-new" );
     }
     
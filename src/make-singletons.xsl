@@ -33,14 +33,22 @@ public class Singletons {
     public final class Global {
         private Global() {}
     }
-    private Global g = new Global();
+    private final Global g = new Global();
+
+    /* Singletons are created lazily; the double-checked locking below makes
+     * sure that worker threads (e.g. those used for -num-threads) never see
+     * two instances of the same singleton. */
 <xsl:for-each select="/singletons/class">
     <xsl:variable name="class" select="."/>
     <xsl:variable name="undottedClass" select="translate(.,'.','_')"/>
     <xsl:variable name="instanceName">instance_<xsl:value-of select="$undottedClass"/></xsl:variable>
-    private <xsl:value-of select="$class"/><xsl:text> </xsl:text><xsl:value-of select="$instanceName"/>;
+    private volatile <xsl:value-of select="$class"/><xsl:text> </xsl:text><xsl:value-of select="$instanceName"/>;
     public <xsl:value-of select="$class"/><xsl:text> </xsl:text><xsl:value-of select="$undottedClass"/>() {
-        if( <xsl:value-of select="$instanceName"/> == null ) <xsl:value-of select="$instanceName"/> = new <xsl:value-of select="$class"/>( g );
+        if( <xsl:value-of select="$instanceName"/> == null ) {
+            synchronized( this ) {
+                if( <xsl:value-of select="$instanceName"/> == null ) <xsl:value-of select="$instanceName"/> = new <xsl:value-of select="$class"/>( g );
+            }
+        }
         return <xsl:value-of select="$instanceName"/>;
     }
 </xsl:for-each>
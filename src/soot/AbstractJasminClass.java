@@ -302,10 +302,13 @@ public abstract class AbstractJasminClass
     		new HashMap<Integer, VisibilityAnnotationTag>();
     
     private VisibilityAnnotationTag getSafeVisibilityAnnotationTag(int kind) {
-    	VisibilityAnnotationTag safeVat = safeVats.get(kind);
-		if (safeVat == null)
-			safeVats.put(kind, safeVat = new VisibilityAnnotationTag(kind));
-		return safeVat;
+    	// classes may be printed on several threads at once
+    	synchronized (safeVats) {
+	    	VisibilityAnnotationTag safeVat = safeVats.get(kind);
+			if (safeVat == null)
+				safeVats.put(kind, safeVat = new VisibilityAnnotationTag(kind));
+			return safeVat;
+    	}
 	}
 
 	private String getElemAttr(AnnotationElem elem){
@@ -140,6 +140,7 @@ public class AbstractTrap implements Trap, Serializable
     public void setException(SootClass exception)
     {
         this.exception = exception;
+        Body.contentsModified();
     }
 
     public Object clone()
@@ -56,6 +56,7 @@ public abstract class AbstractUnitBox implements UnitBox
 
         // Perform link
             this.unit = unit;
+            Body.contentsModified();
 
         // Add this to back pointers
             if(this.unit != null)
@@ -38,9 +38,11 @@ public abstract class AbstractValueBox extends AbstractHost implements ValueBox
     public void setValue(Value value)
     {
     	if(value==null) throw new IllegalArgumentException("value may not be null");
-        if(canContainValue(value))
+        if(canContainValue(value)) {
+            // filling a new box is not a change to any body yet
+            if(this.value != null) Body.contentsModified();
             this.value = value;
-        else
+        } else
             throw new RuntimeException("Box " + this + " cannot contain value: " + value + "(" + value.getClass() + ")" );
     }
 
@@ -29,6 +29,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -83,6 +84,33 @@ public abstract class Body extends AbstractHost implements Serializable
 
     /** The chain of units for this Body. */
     protected PatchingChain<Unit> unitChain = new PatchingChain<Unit>(new HashChain<Unit>());
+
+    /** The analyses kept for this Body, or null. They are held softly, so
+     * that bodies nobody releases them for do not pin them. */
+    private transient SoftReference<BodyAnalysisCache> analysisCache;
+
+    /** The changes one thread made to the boxes, locals and traps of
+     * bodies, which the chains do not count. Only its own thread writes it,
+     * so it takes a plain increment and no other thread contends for it. */
+    private static final class ContentsStamp {
+    	long count;
+    }
+
+    /** The stamps of all threads that have changed the contents of a body. */
+    private static volatile ContentsStamp[] contentsStamps = new ContentsStamp[0];
+
+    private static final ThreadLocal<ContentsStamp> contentsStamp = new ThreadLocal<ContentsStamp>() {
+    	@Override
+    	protected ContentsStamp initialValue() {
+    		ContentsStamp stamp = new ContentsStamp();
+    		synchronized (ContentsStamp.class) {
+    			ContentsStamp[] stamps = Arrays.copyOf(contentsStamps, contentsStamps.length + 1);
+    			stamps[stamps.length - 1] = stamp;
+    			contentsStamps = stamps;
+    		}
+    		return stamp;
+    	}
+    };
     
 	private static BodyValidator[] validators;
 
@@ -595,6 +623,48 @@ public abstract class Body extends AbstractHost implements Serializable
     	return localChain.getModificationCount() + unitChain.getModificationCount() + trapChain.getModificationCount();
     }
 
+    /**
+     * Notes that the contents of a box, local or trap of some body have
+     * changed, in a way that the chains of the body do not see.
+     * @see #getContentsModificationCount()
+     */
+    public static void contentsModified() {
+    	contentsStamp.get().count++;
+    }
+
+    /**
+     * Returns a number that grows whenever a box, local or trap of any body
+     * gets new contents. A body whose own count and this number have not
+     * changed has not changed either; the other way round does not hold,
+     * as changes to other bodies count too. Changes made on other threads
+     * are seen once the body is handed over to this thread.
+     */
+    public static long getContentsModificationCount() {
+    	long ret = 0;
+    	for (ContentsStamp stamp : contentsStamps)
+    		ret += stamp.count;
+    	return ret;
+    }
+
+    /**
+     * Returns the graphs and analyses computed for this body that are still
+     * valid, creating the cache on first use. The body only holds the cache
+     * softly, so it may be a new one if memory ran short in between.
+     */
+    public BodyAnalysisCache getAnalysisCache() {
+    	BodyAnalysisCache ret = analysisCache == null ? null : analysisCache.get();
+    	if (ret == null) {
+    		ret = new BodyAnalysisCache(this);
+    		analysisCache = new SoftReference<BodyAnalysisCache>(ret);
+    	}
+    	return ret;
+    }
+
+    /** Drops the graphs and analyses cached for this body. */
+    public void releaseAnalysisCache() {
+    	analysisCache = null;
+    }
+
 }
 
 
@@ -0,0 +1,243 @@
+package soot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import soot.jimple.CastExpr;
+import soot.options.Options;
+import soot.toolkits.exceptions.ThrowAnalysis;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.LiveLocals;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.LocalUses;
+import soot.toolkits.scalar.SimpleLiveLocals;
+import soot.toolkits.scalar.SimpleLocalDefs;
+import soot.toolkits.scalar.SimpleLocalUses;
+
+/** Keeps the {@link ExceptionalUnitGraph}s of a body, and the local defs,
+ * local uses and live locals computed on them, for as long as the body
+ * does not change.
+ *
+ * <p>Transformers that run one after the other on the same body, such as
+ * those of the jb and jop packs, each used to build these for themselves.
+ * Through {@link Body#getAnalysisCache()}, and through
+ * {@link LocalDefs.Factory} and {@link LocalUses.Factory}, which use the
+ * cache, a transformer that leaves the body as it found it lets the next
+ * one reuse what it built. Any change to the body drops everything, so a
+ * transformer that changes the body may keep using the results it got
+ * before, but gets new ones when it asks again. Packs release the cache of
+ * a body when they are done with it, and the body holds it softly, so that
+ * the caches of bodies used outside packs do not pin memory either.
+ *
+ * <p>Adding, removing or moving units, locals and traps is seen through
+ * {@link Body#getModificationCount()}. Boxes, locals and traps do not know
+ * their body, so the cache also keeps what they held when the first entry
+ * was computed: the values and targets of all boxes, the types of casts,
+ * locals and traps. Whenever {@link Body#getContentsModificationCount()}
+ * shows that the contents of some body changed, these are compared, by
+ * identity, with what the body holds now, and any difference drops
+ * everything as well. Changes to other bodies, on this thread or others,
+ * thus cost a walk over the body but keep the cache. Each thread counts
+ * its own changes, so counting them costs a plain increment.
+ */
+public class BodyAnalysisCache {
+    private final Body body;
+    private long modificationCount;
+    private long contentsModificationCount;
+    /** What the boxes, locals and traps of the body held when the entries
+     * were computed, or null if there are no entries. */
+    private Object[] contents;
+    private int contentsLength;
+    private int position;
+    private final List<Entry> entries = new ArrayList<Entry>( 2 );
+    private int hits;
+    private int misses;
+
+    /** The graph built with one throw analysis, and the analyses on it. */
+    private static class Entry {
+        final ThrowAnalysis throwAnalysis;
+        final boolean omitExceptingUnitEdges;
+        final ExceptionalUnitGraph graph;
+        LocalDefs defs;
+        /** The defs computed without the shortcut for locals with one def,
+         * for bodies that may use undefined locals. */
+        LocalDefs defsExpectingUndefined;
+        LocalDefs usesDefs;
+        LocalUses uses;
+        LiveLocals live;
+
+        Entry( ThrowAnalysis throwAnalysis, boolean omitExceptingUnitEdges, ExceptionalUnitGraph graph ) {
+            this.throwAnalysis = throwAnalysis;
+            this.omitExceptingUnitEdges = omitExceptingUnitEdges;
+            this.graph = graph;
+        }
+    }
+
+    BodyAnalysisCache( Body body ) {
+        this.body = body;
+        modificationCount = body.getModificationCount();
+        contentsModificationCount = Body.getContentsModificationCount();
+    }
+
+    /** Drops everything computed before the last change to the body. */
+    private void validate() {
+        long count = body.getModificationCount();
+        long contentsCount = Body.getContentsModificationCount();
+        boolean contentsChanged = contentsCount != contentsModificationCount;
+        contentsModificationCount = contentsCount;
+        if( count != modificationCount
+                || ( contents != null && contentsChanged && !sameContents() ) ) {
+            entries.clear();
+            contents = null;
+            modificationCount = count;
+        }
+    }
+
+    private void add( Entry e ) {
+        if( contents == null ) {
+            contents = new Object[64];
+            position = 0;
+            scan( false );
+            contentsLength = position;
+        }
+        entries.add( e );
+    }
+
+    private boolean sameContents() {
+        position = 0;
+        return scan( true ) && position == contentsLength;
+    }
+
+    /** Walks the contents of the body, either recording them or, if
+     * compare, checking them against those recorded. */
+    private boolean scan( boolean compare ) {
+        for( Unit u : body.getUnits() ) {
+            for( ValueBox vb : u.getUseAndDefBoxes() ) {
+                Value v = vb.getValue();
+                if( !item( v, compare ) ) return false;
+                if( v instanceof CastExpr && !item( ( (CastExpr) v ).getCastType(), compare ) ) return false;
+                if( vb instanceof UnitBox && !item( ( (UnitBox) vb ).getUnit(), compare ) ) return false;
+            }
+            for( UnitBox ub : u.getUnitBoxes() ) {
+                if( !item( ub.getUnit(), compare ) ) return false;
+            }
+        }
+        for( Local l : body.getLocals() ) {
+            if( !item( l.getType(), compare ) ) return false;
+        }
+        for( Trap t : body.getTraps() ) {
+            if( !item( t.getException(), compare ) ) return false;
+            for( UnitBox ub : t.getUnitBoxes() ) {
+                if( !item( ub.getUnit(), compare ) ) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean item( Object o, boolean compare ) {
+        if( compare ) {
+            return position < contentsLength && contents[position++] == o;
+        }
+        if( position == contents.length ) {
+            contents = Arrays.copyOf( contents, position * 2 );
+        }
+        contents[position++] = o;
+        return true;
+    }
+
+    private Entry entryOf( UnitGraph graph ) {
+        validate();
+        for( Entry e : entries ) {
+            if( e.graph == graph ) return e;
+        }
+        return null;
+    }
+
+    /** Returns the graph of the body built with the default throw analysis
+     * and options, as by {@link ExceptionalUnitGraph#ExceptionalUnitGraph(Body)}. */
+    public ExceptionalUnitGraph getExceptionalUnitGraph() {
+        return getExceptionalUnitGraph( Scene.v().getDefaultThrowAnalysis(),
+                Options.v().omit_excepting_unit_edges() );
+    }
+
+    /** Returns the graph of the body built with the given throw analysis
+     * and options, as by
+     * {@link ExceptionalUnitGraph#ExceptionalUnitGraph(Body, ThrowAnalysis, boolean)}. */
+    public ExceptionalUnitGraph getExceptionalUnitGraph( ThrowAnalysis throwAnalysis,
+            boolean omitExceptingUnitEdges ) {
+        validate();
+        for( Entry e : entries ) {
+            if( e.throwAnalysis == throwAnalysis
+                    && e.omitExceptingUnitEdges == omitExceptingUnitEdges ) {
+                hits++;
+                return e.graph;
+            }
+        }
+        misses++;
+        ExceptionalUnitGraph graph =
+            new ExceptionalUnitGraph( body, throwAnalysis, omitExceptingUnitEdges );
+        add( new Entry( throwAnalysis, omitExceptingUnitEdges, graph ) );
+        return graph;
+    }
+
+    /** Returns the local defs of the body on graph, computed with the
+     * shortcut for locals with one def unless expectUndefined. Only
+     * results on graphs returned by this cache are kept. */
+    public LocalDefs getLocalDefs( UnitGraph graph, boolean expectUndefined ) {
+        Entry e = entryOf( graph );
+        if( e == null ) return new SimpleLocalDefs( graph, expectUndefined );
+        LocalDefs ret = expectUndefined ? e.defsExpectingUndefined : e.defs;
+        if( ret != null ) {
+            hits++;
+            return ret;
+        }
+        misses++;
+        ret = new SimpleLocalDefs( graph, expectUndefined );
+        if( expectUndefined ) e.defsExpectingUndefined = ret;
+        else e.defs = ret;
+        return ret;
+    }
+
+    /** Returns the local uses of the body given by defs. They are only kept
+     * if defs were returned by this cache. */
+    public LocalUses getLocalUses( LocalDefs defs ) {
+        validate();
+        for( Entry e : entries ) {
+            if( e.usesDefs == defs && e.uses != null ) {
+                hits++;
+                return e.uses;
+            }
+        }
+        LocalUses ret = new SimpleLocalUses( body, defs );
+        for( Entry e : entries ) {
+            if( e.defs == defs || e.defsExpectingUndefined == defs ) {
+                misses++;
+                e.usesDefs = defs;
+                e.uses = ret;
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the live locals of the body on graph. Only results on graphs
+     * returned by this cache are kept. */
+    public LiveLocals getLiveLocals( UnitGraph graph ) {
+        Entry e = entryOf( graph );
+        if( e == null ) return new SimpleLiveLocals( graph );
+        if( e.live != null ) {
+            hits++;
+            return e.live;
+        }
+        misses++;
+        return e.live = new SimpleLiveLocals( graph );
+    }
+
+    /** Returns how many times a graph or analysis was found in the cache. */
+    public int hits() { return hits; }
+
+    /** Returns how many graphs and analyses the cache has computed. */
+    public int misses() { return misses; }
+}
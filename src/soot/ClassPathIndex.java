@@ -0,0 +1,412 @@
+package soot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/** An index of the files in the jar and zip archives of a class path.
+ *
+ * <p>Each archive is memory-mapped once, and its central directory is read
+ * into arrays holding, for each file, its name and where its data is in the
+ * archive. A single hash map gives, for each name, the file of that name in
+ * the first archive of the class path that has one. Files are read
+ * straight from the mapped archives: stored files without copying, and
+ * deflated files by inflating them into an array of their size.
+ *
+ * <p>The index can be kept in a file, and read from it in later runs
+ * instead of reading the central directories again; archives whose length
+ * or modification time changed are read again. An archive is only mapped
+ * when a file is first read from it.
+ *
+ * <p>Archives that cannot be indexed, such as ZIP64 archives, are left out;
+ * {@link #isIndexed(int)} tells which entries of the class path are.
+ */
+public class ClassPathIndex {
+    static final int MAGIC = 0x53435049;
+    static final int VERSION = 1;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    /** The class path entries, and for each archive in the index, its
+     * length and modification time; files are null for the other entries. */
+    private final File[] files;
+    private final long[] lengths;
+    private final long[] modified;
+    private final MappedByteBuffer[] buffers;
+    /** The number of the first file of each class path entry; one longer
+     * than the class path. */
+    private final int[] firstFile;
+
+    /** The name, class path entry and local header offset of each file, its
+     * size in the archive and inflated, and its compression method. */
+    private final String[] names;
+    private final int[] positions;
+    private final int[] offsets;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+    private final short[] methods;
+
+    /** The first file of each name in the class path. */
+    private final Map<String, Integer> firstOfName;
+    private final Map<String, Integer> positionOfPath = new HashMap<String, Integer>();
+
+    /** Indexes the archives of classPath, a list of canonical paths. If
+     * cache is not null, the index is read from it where it is still valid,
+     * and written back to it if anything had to be read again. */
+    public static ClassPathIndex build( List<String> classPath, File cache ) {
+        Map<String, Archive> cached = new HashMap<String, Archive>();
+        if( cache != null && cache.exists() ) {
+            try {
+                cached = readCache( cache );
+            } catch( IOException e ) {
+                G.v().out.println( "Warning: ignoring class path index "+cache+": "+e );
+            }
+        }
+        List<Archive> archives = new ArrayList<Archive>();
+        boolean changed = false;
+        for( String path : classPath ) {
+            File f = new File( path );
+            Archive a = null;
+            if( isArchive( f ) ) {
+                a = cached.get( path );
+                if( a == null || a.length != f.length() || a.modified != f.lastModified() ) {
+                    a = readArchive( f );
+                    changed = true;
+                }
+            }
+            archives.add( a );
+        }
+        ClassPathIndex ret = new ClassPathIndex( classPath, archives );
+        if( cache != null && ( changed || cached.size() != ret.positionOfPath.size() ) ) {
+            try {
+                ret.writeCache( cache );
+            } catch( IOException e ) {
+                G.v().out.println( "Warning: couldn't write class path index "+cache+": "+e );
+            }
+        }
+        return ret;
+    }
+
+    private ClassPathIndex( List<String> classPath, List<Archive> archives ) {
+        int n = classPath.size();
+        files = new File[n];
+        lengths = new long[n];
+        modified = new long[n];
+        buffers = new MappedByteBuffer[n];
+        firstFile = new int[n+1];
+        int count = 0;
+        for( Archive a : archives ) {
+            if( a != null ) count += a.names.size();
+        }
+        names = new String[count];
+        positions = new int[count];
+        offsets = new int[count];
+        compressedSizes = new int[count];
+        sizes = new int[count];
+        methods = new short[count];
+        firstOfName = new HashMap<String, Integer>( count*4/3+1 );
+
+        int next = 0;
+        for( int i = 0; i < n; i++ ) {
+            firstFile[i] = next;
+            Archive a = archives.get( i );
+            if( a == null ) continue;
+            files[i] = a.file;
+            lengths[i] = a.length;
+            modified[i] = a.modified;
+            buffers[i] = a.buffer;
+            positionOfPath.put( classPath.get( i ), i );
+            for( int j = 0; j < a.names.size(); j++ ) {
+                names[next] = a.names.get( j );
+                positions[next] = i;
+                offsets[next] = a.offsets[j];
+                compressedSizes[next] = a.compressedSizes[j];
+                sizes[next] = a.sizes[j];
+                methods[next] = a.methods[j];
+                if( !firstOfName.containsKey( names[next] ) ) firstOfName.put( names[next], next );
+                next++;
+            }
+        }
+        firstFile[n] = next;
+    }
+
+    /** Returns whether the class path entry at position is an archive in
+     * this index. */
+    public boolean isIndexed( int position ) {
+        return files[position] != null;
+    }
+
+    /** Returns the position in the class path of the archive with the given
+     * canonical path, or -1 if it is not in this index. */
+    public int positionOf( String path ) {
+        Integer ret = positionOfPath.get( path );
+        return ret == null ? -1 : ret.intValue();
+    }
+
+    /** Returns the number of the file with the given name in the first
+     * archive that has one, or -1. */
+    public int lookup( String name ) {
+        Integer ret = firstOfName.get( name );
+        return ret == null ? -1 : ret.intValue();
+    }
+
+    /** Returns the position in the class path of the archive of file. */
+    public int positionOfFile( int file ) {
+        return positions[file];
+    }
+
+    /** Returns the archive of file. */
+    public File archiveOf( int file ) {
+        return files[positions[file]];
+    }
+
+    /** Returns the names of the files in the archive at position. */
+    public List<String> namesIn( int position ) {
+        List<String> ret = new ArrayList<String>( firstFile[position+1]-firstFile[position] );
+        for( int i = firstFile[position]; i < firstFile[position+1]; i++ ) ret.add( names[i] );
+        return ret;
+    }
+
+    /** Returns the contents of file. */
+    public InputStream inputStream( int file ) throws IOException {
+        ByteBuffer buf = buffer( positions[file] ).duplicate();
+        buf.order( ByteOrder.LITTLE_ENDIAN );
+        int offset = offsets[file];
+        if( buf.getInt( offset ) != LOCAL_HEADER ) {
+            throw new ZipException( "Bad local header for "+names[file]+" in "+archiveOf( file ) );
+        }
+        int data = offset + 30 + ( buf.getShort( offset+26 ) & 0xffff )
+            + ( buf.getShort( offset+28 ) & 0xffff );
+        buf.position( data );
+        buf.limit( data+compressedSizes[file] );
+        ByteBuffer contents = buf.slice();
+        switch( methods[file] ) {
+        case STORED:
+            return new ByteBufferInputStream( contents );
+        case DEFLATED:
+            byte[] compressed = new byte[compressedSizes[file]];
+            contents.get( compressed );
+            byte[] ret = new byte[sizes[file]];
+            Inflater inflater = new Inflater( true );
+            try {
+                inflater.setInput( compressed );
+                int n = 0;
+                while( n < ret.length ) {
+                    int read = inflater.inflate( ret, n, ret.length-n );
+                    if( read == 0 && ( inflater.finished() || inflater.needsInput() ) ) break;
+                    n += read;
+                }
+                if( n != ret.length ) {
+                    throw new ZipException( "Truncated "+names[file]+" in "+archiveOf( file ) );
+                }
+            } catch( DataFormatException e ) {
+                throw new ZipException( "Bad data for "+names[file]+" in "+archiveOf( file )+": "+e.getMessage() );
+            } finally {
+                inflater.end();
+            }
+            return new ByteArrayInputStream( ret );
+        default:
+            throw new ZipException( "Unsupported compression method "+methods[file]
+                    +" for "+names[file]+" in "+archiveOf( file ) );
+        }
+    }
+
+    private synchronized MappedByteBuffer buffer( int position ) throws IOException {
+        if( buffers[position] == null ) buffers[position] = map( files[position] );
+        return buffers[position];
+    }
+
+    private static boolean isArchive( File f ) {
+        String name = f.getName();
+        return ( name.endsWith( ".jar" ) || name.endsWith( ".zip" ) )
+            && f.isFile() && f.canRead() && f.length() <= Integer.MAX_VALUE;
+    }
+
+    private static MappedByteBuffer map( File f ) throws IOException {
+        RandomAccessFile file = new RandomAccessFile( f, "r" );
+        try {
+            return file.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, file.length() );
+        } finally {
+            file.close();
+        }
+    }
+
+    /** The files of one archive. */
+    private static class Archive {
+        File file;
+        long length;
+        long modified;
+        MappedByteBuffer buffer;
+        List<String> names = new ArrayList<String>();
+        int[] offsets;
+        int[] compressedSizes;
+        int[] sizes;
+        short[] methods;
+
+        void allocate( int count ) {
+            offsets = new int[count];
+            compressedSizes = new int[count];
+            sizes = new int[count];
+            methods = new short[count];
+        }
+    }
+
+    /** Reads the central directory of f, or returns null if f cannot be
+     * indexed. */
+    private static Archive readArchive( File f ) {
+        Archive ret = new Archive();
+        ret.file = f;
+        ret.length = f.length();
+        ret.modified = f.lastModified();
+        try {
+            ret.buffer = map( f );
+            ByteBuffer buf = ret.buffer.duplicate();
+            buf.order( ByteOrder.LITTLE_ENDIAN );
+            int end = buf.limit()-22;
+            int stop = Math.max( 0, end-0xffff );
+            while( end >= stop && buf.getInt( end ) != END_OF_CENTRAL_DIRECTORY ) end--;
+            if( end < stop ) throw new ZipException( "No central directory" );
+            int count = buf.getShort( end+10 ) & 0xffff;
+            long offset = buf.getInt( end+16 ) & 0xffffffffL;
+            if( count == 0xffff || offset == 0xffffffffL ) throw new ZipException( "ZIP64 archive" );
+            ret.allocate( count );
+            int p = (int) offset;
+            int n = 0;
+            byte[] name = new byte[256];
+            for( int i = 0; i < count; i++ ) {
+                if( buf.getInt( p ) != CENTRAL_HEADER ) throw new ZipException( "Bad central directory" );
+                int flags = buf.getShort( p+8 ) & 0xffff;
+                int nameLength = buf.getShort( p+28 ) & 0xffff;
+                int extraLength = buf.getShort( p+30 ) & 0xffff;
+                int commentLength = buf.getShort( p+32 ) & 0xffff;
+                if( nameLength > name.length ) name = new byte[nameLength];
+                buf.position( p+46 );
+                buf.get( name, 0, nameLength );
+                String s = new String( name, 0, nameLength, UTF8 );
+                // leave out directories and encrypted files
+                if( !s.endsWith( "/" ) && ( flags & 1 ) == 0 ) {
+                    ret.names.add( s );
+                    ret.methods[n] = buf.getShort( p+10 );
+                    ret.compressedSizes[n] = buf.getInt( p+20 );
+                    ret.sizes[n] = buf.getInt( p+24 );
+                    ret.offsets[n] = buf.getInt( p+42 );
+                    if( ret.compressedSizes[n] < 0 || ret.sizes[n] < 0 || ret.offsets[n] < 0 ) {
+                        throw new ZipException( "ZIP64 archive" );
+                    }
+                    n++;
+                }
+                p += 46+nameLength+extraLength+commentLength;
+            }
+            return ret;
+        } catch( IOException e ) {
+            return null;
+        } catch( RuntimeException e ) {
+            // a malformed archive can make the offsets point anywhere
+            return null;
+        }
+    }
+
+    private static Map<String, Archive> readCache( File cache ) throws IOException {
+        Map<String, Archive> ret = new HashMap<String, Archive>();
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( cache ), 1<<16 ) );
+        try {
+            if( in.readInt() != MAGIC ) throw new IOException( "not a class path index" );
+            if( in.readInt() != VERSION ) throw new IOException( "unsupported version" );
+            for( int a = in.readInt(); a > 0; a-- ) {
+                Archive archive = new Archive();
+                String path = in.readUTF();
+                archive.file = new File( path );
+                archive.length = in.readLong();
+                archive.modified = in.readLong();
+                int count = in.readInt();
+                archive.allocate( count );
+                for( int i = 0; i < count; i++ ) {
+                    archive.names.add( in.readUTF() );
+                    archive.offsets[i] = in.readInt();
+                    archive.compressedSizes[i] = in.readInt();
+                    archive.sizes[i] = in.readInt();
+                    archive.methods[i] = in.readShort();
+                }
+                ret.put( path, archive );
+            }
+        } finally {
+            in.close();
+        }
+        return ret;
+    }
+
+    private void writeCache( File cache ) throws IOException {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( cache ), 1<<16 ) );
+        try {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( positionOfPath.size() );
+            for( int position = 0; position < files.length; position++ ) {
+                if( files[position] == null ) continue;
+                out.writeUTF( files[position].getPath() );
+                out.writeLong( lengths[position] );
+                out.writeLong( modified[position] );
+                out.writeInt( firstFile[position+1]-firstFile[position] );
+                for( int i = firstFile[position]; i < firstFile[position+1]; i++ ) {
+                    out.writeUTF( names[i] );
+                    out.writeInt( offsets[i] );
+                    out.writeInt( compressedSizes[i] );
+                    out.writeInt( sizes[i] );
+                    out.writeShort( methods[i] );
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Reads the bytes of a buffer. */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+        ByteBufferInputStream( ByteBuffer buf ) { this.buf = buf; }
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+        public int read( byte[] b, int off, int len ) {
+            if( len == 0 ) return 0;
+            if( !buf.hasRemaining() ) return -1;
+            len = Math.min( len, buf.remaining() );
+            buf.get( b, off, len );
+            return len;
+        }
+        public long skip( long n ) {
+            int skipped = (int) Math.max( 0, Math.min( n, buf.remaining() ) );
+            buf.position( buf.position()+skipped );
+            return skipped;
+        }
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package soot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Reads the class files of classes that are likely to be resolved soon on
+ * a background thread, so that the resolver finds their contents in memory.
+ *
+ * <p>In lazy resolution mode, the resolver passes the classes referenced by
+ * each class it brings to bodies to {@link #prefetch(String)}. The
+ * prefetcher looks up their class files on the class path and reads them
+ * into memory, and {@link SourceLocator#lookupInClassPath(String)} takes
+ * them from there, each at most once. Only file contents are shared with
+ * the background thread, never Scene objects.
+ */
+public class ClassPrefetcher {
+    /** The most class files kept in memory; further requests are dropped
+     * until the resolver has taken some. */
+    public static final int MAX_PREFETCHED = 1024;
+
+    private final SourceLocator locator;
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+    private final Set<String> requested =
+        Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+    private final ConcurrentMap<String, SourceLocator.FoundFile> prefetched =
+        new ConcurrentHashMap<String, SourceLocator.FoundFile>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final Thread worker;
+    private volatile boolean stopped;
+
+    ClassPrefetcher( SourceLocator locator ) {
+        this.locator = locator;
+        worker = new Thread( new Runnable() {
+            public void run() { work(); }
+        }, "soot-class-prefetcher" );
+        worker.setDaemon( true );
+        worker.setPriority( Thread.MIN_PRIORITY );
+        worker.start();
+    }
+
+    /** Asks for the class file of className to be read, unless it has been
+     * asked for before. */
+    public void prefetch( String className ) {
+        String fileName = className.replace( '.', '/' ) + ".class";
+        if( requested.add( fileName ) ) queue.add( fileName );
+    }
+
+    /** Returns the class file with the given name if it has been read,
+     * removing it from memory, or null. */
+    public SourceLocator.FoundFile take( String fileName ) {
+        SourceLocator.FoundFile ret = prefetched.remove( fileName );
+        if( ret != null ) hits.incrementAndGet();
+        return ret;
+    }
+
+    /** Returns whether the class file with the given name has been read
+     * and not taken yet. */
+    boolean isPrefetched( String fileName ) {
+        return prefetched.containsKey( fileName );
+    }
+
+    /** Stops the background thread and drops the files read so far. */
+    public void shutdown() {
+        stopped = true;
+        worker.interrupt();
+        prefetched.clear();
+    }
+
+    /** Returns the number of class files read ahead that the resolver used. */
+    public int hits() { return hits.get(); }
+
+    /** Returns the number of class files asked for but not read, because
+     * too many files were in memory. */
+    public int dropped() { return dropped.get(); }
+
+    private void work() {
+        while( !stopped ) {
+            String fileName;
+            try {
+                fileName = queue.take();
+            } catch( InterruptedException e ) {
+                return;
+            }
+            if( prefetched.size() >= MAX_PREFETCHED ) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            try {
+                SourceLocator.FoundFile file = locator.findInClassPath( fileName );
+                if( file == null ) continue;
+                file.contents = readFully( file.inputStream() );
+                if( !stopped ) prefetched.put( fileName, file );
+            } catch( RuntimeException e ) {
+                // leave it to the resolver to report unreadable files
+            } catch( IOException e ) {
+            }
+        }
+    }
+
+    private static byte[] readFully( InputStream in ) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 32, in.available() ) );
+            byte[] buf = new byte[8192];
+            int n;
+            while( ( n = in.read( buf ) ) > 0 ) out.write( buf, 0, n );
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
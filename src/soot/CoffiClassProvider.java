@@ -32,7 +32,7 @@ public class CoffiClassProvider implements ClassProvider
             SourceLocator.v().lookupInClassPath(fileName);
         if( file == null ) return null;
         return new CoffiClassSource(className, file.inputStream(), file.inputFile().getAbsolutePath(),
-        		file.zipFile == null ? null : file.zipFile.getName());
+        		file.archivePath());
     }
 }
 
@@ -0,0 +1,112 @@
+package soot;
+
+import java.text.DecimalFormat;
+
+/** A fixed-size cache of the answers to hierarchy queries, keyed by a pair
+ * of numbers such as a class number and a subsignature number.
+ *
+ * <p>The cache is direct-mapped: each key has a single slot, and a new
+ * answer replaces whatever answer was in its slot, so the memory used never
+ * grows beyond the given number of entries. Each answer is stored with the
+ * {@link Scene#getHierarchyModCount() hierarchy stamp} it was computed at,
+ * and is ignored once the stamp has changed.
+ *
+ * <p>Several threads may use the cache at the same time. Entries are
+ * immutable, so a thread sees either a complete entry or none; the hit and
+ * miss counts are not synchronized, and may then be slightly off.
+ */
+public final class DispatchCache<V>
+{
+    /** A cached answer. */
+    public static final class Entry<V> {
+        final long key;
+        final int stamp;
+        final V value;
+        Entry( long key, int stamp, V value ) {
+            this.key = key;
+            this.stamp = stamp;
+            this.value = value;
+        }
+        /** Returns the answer, which may be null. */
+        public V value() {
+            return value;
+        }
+    }
+
+    private final String name;
+    private final Entry<V>[] table;
+    private final int mask;
+
+    private long hits;
+    private long misses;
+    private long stale;
+    private long evictions;
+
+    /** Creates a cache called name holding at most capacity answers, where
+     * capacity is rounded up to a power of two. */
+    public DispatchCache( String name, int capacity ) {
+        this.name = name;
+        int size = 1;
+        while( size < capacity ) size <<= 1;
+        @SuppressWarnings("unchecked")
+        Entry<V>[] table = (Entry<V>[]) new Entry<?>[size];
+        this.table = table;
+        mask = size - 1;
+    }
+
+    private static long key( int a, int b ) {
+        return ( (long) a << 32 ) | ( b & 0xFFFFFFFFL );
+    }
+
+    private int slot( long key ) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /** Returns the entry holding the answer for (a, b) computed at the
+     * given stamp, or null if there is none. */
+    public Entry<V> lookup( int a, int b, int stamp ) {
+        long key = key( a, b );
+        Entry<V> e = table[slot( key )];
+        if( e == null || e.key != key ) {
+            misses++;
+            return null;
+        }
+        if( e.stamp != stamp ) {
+            misses++;
+            stale++;
+            return null;
+        }
+        hits++;
+        return e;
+    }
+
+    /** Stores the answer for (a, b) computed at the given stamp, replacing
+     * the answer that was in its slot. */
+    public void put( int a, int b, int stamp, V value ) {
+        long key = key( a, b );
+        int slot = slot( key );
+        Entry<V> old = table[slot];
+        if( old != null && old.key != key && old.stamp == stamp ) evictions++;
+        table[slot] = new Entry<V>( key, stamp, value );
+    }
+
+    public long hits() { return hits; }
+    public long misses() { return misses; }
+
+    /** Returns the fraction of lookups that found their answer. */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public String toString() {
+        DecimalFormat percFormat = new DecimalFormat("00.0");
+        return name + ": " + hits + " hits, " + misses + " misses ("
+            + percFormat.format( hitRate() * 100 ) + "% hit rate), "
+            + stale + " invalidated, " + evictions + " evicted, "
+            + table.length + " entries";
+    }
+}
@@ -81,6 +81,33 @@ public class FastHierarchy
 
     protected Scene sc;
 
+    /** Number of answers kept by each of the dispatch caches. */
+    protected static final int CACHE_SIZE = 1 << 14;
+
+    protected final DispatchCache<SootMethod> concreteDispatchCache =
+        new DispatchCache<SootMethod>( "Concrete dispatch", CACHE_SIZE );
+    protected final DispatchCache<Set<SootMethod>> abstractDispatchCache =
+        new DispatchCache<Set<SootMethod>>( "Abstract dispatch", CACHE_SIZE );
+    protected final DispatchCache<Boolean> anySubTypeCache =
+        new DispatchCache<Boolean>( "AnySubType canStoreType", CACHE_SIZE );
+
+    /** Returns the second half of the dispatch cache key for m. Whether m
+     * is visible from a class depends only on its subsignature when it is
+     * public, and on the method itself otherwise. Returns 0 if m has no
+     * number yet, in which case the answer is not cached. */
+    private static int dispatchKey( SootMethod m ) {
+        if( m.isPublic() ) return m.getNumberedSubSignature().getNumber() << 1;
+        if( m.getNumber() == 0 ) return 0;
+        return ( m.getNumber() << 1 ) | 1;
+    }
+
+    /** Prints the hit rates of the dispatch caches. */
+    public void printCacheStatistics() {
+        G.v().out.println( concreteDispatchCache );
+        G.v().out.println( abstractDispatchCache );
+        G.v().out.println( anySubTypeCache );
+    }
+
     protected class Interval {
         int lower;
         int upper;
@@ -133,13 +160,14 @@ public class FastHierarchy
         }
 
         /* Now do a dfs traversal to get the Interval numbers. */
-        dfsVisit( 0, Scene.v().getSootClass( "java.lang.Object" ) );
+        int next = dfsVisit( 0, Scene.v().getSootClass( "java.lang.Object" ) );
         /* also have to traverse for all phantom classes because they also
-         * can be roots of the type hierarchy
+         * can be roots of the type hierarchy; their numbers follow on, so
+         * that the intervals of different roots do not overlap
          */
         for(SootClass phantomClass: Scene.v().getPhantomClasses()) {
         	if(!phantomClass.isInterface())
-        		dfsVisit( 0, phantomClass );
+        		next = dfsVisit( next, phantomClass );
         }
     }
 
@@ -155,7 +183,7 @@ public class FastHierarchy
 
     /** For an interface parent (MUST be an interface), returns set of all
      * implementers of it but NOT their subclasses. */
-    public Set<SootClass> getAllImplementersOfInterface( SootClass parent ) {
+    public synchronized Set<SootClass> getAllImplementersOfInterface( SootClass parent ) {
         parent.checkLevel(SootClass.HIERARCHY);
         if( !interfaceToAllImplementers.containsKey( parent ) ) {
             for(SootClass subinterface : getAllSubinterfaces( parent )) {
@@ -174,7 +202,7 @@ public class FastHierarchy
      * @param parent the parent interface.
      * @return an set, possibly empty
      * */
-    public Set<SootClass> getAllSubinterfaces( SootClass parent ) {
+    public synchronized Set<SootClass> getAllSubinterfaces( SootClass parent ) {
         parent.checkLevel(SootClass.HIERARCHY);
         if (!parent.isInterface()) return Collections.<SootClass>emptySet();
         if( !interfaceToAllSubinterfaces.containsKey( parent ) ) {
@@ -191,6 +219,21 @@ public class FastHierarchy
      * that is not a subinterface of parent, this method will return false
      * even though some objects implementing the child interface may also
      * implement the parent interface. */
+    private boolean canStoreAnySubType( SootClass base, SootClass parentClass ) {
+        LinkedList<SootClass> worklist = new LinkedList<SootClass>();
+        if( base.isInterface() ) worklist.addAll(getAllImplementersOfInterface(base));
+        else worklist.add(base);
+        Set<SootClass> workset = new HashSet<SootClass>();
+        while(!worklist.isEmpty()) {
+            SootClass cl = (SootClass) worklist.removeFirst();
+            if( !workset.add(cl) ) continue;
+            if( cl.isConcrete() 
+            &&  canStoreClass(cl, parentClass) ) return true;
+            worklist.addAll(getSubclassesOf(cl));
+        }
+        return false;
+    }
+
     public boolean canStoreType( Type child, Type parent ) {
         if( child.equals( parent ) ) return true;
         if( parent instanceof NullType ) {
@@ -220,18 +263,17 @@ public class FastHierarchy
             } else {
                 SootClass base = ((AnySubType)child).getBase().getSootClass();
                 SootClass parentClass = ((RefType) parent).getSootClass();
-                LinkedList<SootClass> worklist = new LinkedList<SootClass>();
-                if( base.isInterface() ) worklist.addAll(getAllImplementersOfInterface(base));
-                else worklist.add(base);
-                Set<SootClass> workset = new HashSet<SootClass>();
-                while(!worklist.isEmpty()) {
-                    SootClass cl = (SootClass) worklist.removeFirst();
-                    if( !workset.add(cl) ) continue;
-                    if( cl.isConcrete() 
-                    &&  canStoreClass(cl, parentClass) ) return true;
-                    worklist.addAll(getSubclassesOf(cl));
+                if( base.getNumber() == 0 || parentClass.getNumber() == 0 ) {
+                    return canStoreAnySubType( base, parentClass );
                 }
-                return false;
+                int stamp = sc.getHierarchyModCount();
+                DispatchCache.Entry<Boolean> e = anySubTypeCache.lookup(
+                        base.getNumber(), parentClass.getNumber(), stamp );
+                if( e != null ) return e.value();
+                boolean ret = canStoreAnySubType( base, parentClass );
+                anySubTypeCache.put( base.getNumber(), parentClass.getNumber(),
+                        stamp, ret );
+                return ret;
             }
         } else if (child instanceof ArrayType) {
             ArrayType achild = (ArrayType) child;
@@ -273,6 +315,31 @@ public class FastHierarchy
     protected boolean canStoreClass( SootClass child, SootClass parent ) {
         parent.checkLevel(SootClass.HIERARCHY);
         child.checkLevel(SootClass.HIERARCHY);
+        SubtypeIndex index = getSubtypeIndex();
+        if( index.covers( child ) && index.covers( parent ) ) {
+            return index.canStore( child, parent );
+        }
+        return canStoreClassUnindexed( child, parent );
+    }
+
+    private volatile SubtypeIndex subtypeIndex;
+
+    /** Returns the subtype index of this hierarchy, building it on first
+     * use. */
+    SubtypeIndex getSubtypeIndex() {
+        SubtypeIndex ret = subtypeIndex;
+        if( ret == null ) {
+            synchronized( this ) {
+                ret = subtypeIndex;
+                if( ret == null ) subtypeIndex = ret = new SubtypeIndex( this );
+            }
+        }
+        return ret;
+    }
+
+    /** Answers the same question as canStoreClass by walking the
+     * hierarchy, for classes the subtype index does not cover. */
+    boolean canStoreClassUnindexed( SootClass child, SootClass parent ) {
         Interval parentInterval = classToInterval.get( parent );
         Interval childInterval = classToInterval.get( child );
         if( parentInterval != null && childInterval != null ) {
@@ -419,6 +486,22 @@ public class FastHierarchy
     /** Given an object of declared type C, returns the methods which could
      * be called on an o.f() invocation. */
     public Set<SootMethod> resolveAbstractDispatch(SootClass abstractType, SootMethod m )
+    {
+        int key = dispatchKey( m );
+        if( key == 0 || abstractType.getNumber() == 0 ) {
+            return resolveAbstractDispatchUncached( abstractType, m );
+        }
+        int stamp = sc.getHierarchyModCount();
+        DispatchCache.Entry<Set<SootMethod>> e =
+            abstractDispatchCache.lookup( abstractType.getNumber(), key, stamp );
+        if( e != null ) return e.value();
+        Set<SootMethod> ret = Collections.unmodifiableSet(
+                resolveAbstractDispatchUncached( abstractType, m ) );
+        abstractDispatchCache.put( abstractType.getNumber(), key, stamp, ret );
+        return ret;
+    }
+
+    private Set<SootMethod> resolveAbstractDispatchUncached(SootClass abstractType, SootMethod m )
     {
         String methodSig = m.getSubSignature();
         HashSet<SootClass> resolved = new HashSet<SootClass>();
@@ -472,6 +555,21 @@ public class FastHierarchy
                 "A concrete type cannot be an interface: "+concreteType );
         }
 
+        int key = dispatchKey( m );
+        if( key == 0 || concreteType.getNumber() == 0 ) {
+            return resolveConcreteDispatchUncached( concreteType, m );
+        }
+        int stamp = sc.getHierarchyModCount();
+        DispatchCache.Entry<SootMethod> e =
+            concreteDispatchCache.lookup( concreteType.getNumber(), key, stamp );
+        if( e != null ) return e.value();
+        SootMethod ret = resolveConcreteDispatchUncached( concreteType, m );
+        concreteDispatchCache.put( concreteType.getNumber(), key, stamp, ret );
+        return ret;
+    }
+
+    private SootMethod resolveConcreteDispatchUncached(SootClass concreteType, SootMethod m)
+    {
         String methodSig = m.getSubSignature();
         while( true ) {
         	SootMethod method = concreteType.getMethodUnsafe(methodSig);
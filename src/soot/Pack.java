@@ -124,6 +124,7 @@ public abstract class Pack implements HasPhaseOptions, Iterable<Transform>
 	if (DEBUG)
 	    PhaseDumper.v().dumpBefore(b, getPhaseName());
         internalApply(b);
+        b.releaseAnalysisCache();
 	if (DEBUG)
 	    PhaseDumper.v().dumpAfter(b, getPhaseName());
     }
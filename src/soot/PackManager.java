@@ -18,6 +18,7 @@
  */
 
 package soot;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -29,9 +30,18 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.zip.GZIPOutputStream;
@@ -108,6 +118,7 @@ import soot.options.Options;
 import soot.shimple.Shimple;
 import soot.shimple.ShimpleBody;
 import soot.shimple.ShimpleTransformer;
+import soot.shimple.toolkits.scalar.SCommonSubexpressionEliminator;
 import soot.shimple.toolkits.scalar.SConstantPropagatorAndFolder;
 import soot.sootify.TemplatePrinter;
 import soot.tagkit.InnerClassTagAggregator;
@@ -237,6 +248,7 @@ public class PackManager {
         addPack(p = new BodyPack("sop"));
         {
             p.add(new Transform("sop.cpf", SConstantPropagatorAndFolder.v()));
+            p.add(new Transform("sop.cse", SCommonSubexpressionEliminator.v()));
         }
 
         // Jimple transformation pack
@@ -605,9 +617,131 @@ public class PackManager {
     }
 
     private void runBodyPacks( Iterator<SootClass> classes ) {
-    	while( classes.hasNext() ) {
-            runBodyPacks(classes.next());
+        int threadNum = getBodyPackThreadCount();
+        if( threadNum <= 1 ) {
+            while( classes.hasNext() ) {
+                runBodyPacks(classes.next());
+            }
+            return;
+        }
+
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        while( classes.hasNext() ) {
+            final SootClass c = classes.next();
+            tasks.add(new Runnable() {
+                public void run() {
+                    runBodyPacks(c);
+                }
+            });
         }
+        runInParallel(tasks, threadNum);
+    }
+
+    /**
+     * Runs the given per-class tasks on a pool of <code>threadNum</code>
+     * threads and waits for all of them. While they run,
+     * {@link #isRunningBodyPacksInParallel()} returns true. The first
+     * exception thrown by a task is rethrown.
+     */
+    private void runInParallel( List<Runnable> tasks, int threadNum ) {
+        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        runningBodyPacksInParallel = true;
+        try {
+            for( Runnable task : tasks ) {
+                futures.add(executor.submit(task));
+            }
+            // Wait until all classes have been processed, failing on
+            // the first class that could not be
+            for( Future<?> future : futures ) {
+                future.get();
+            }
+        } catch( InterruptedException e ) {
+            throw new RuntimeException("Interrupted while waiting for body packs", e);
+        } catch( ExecutionException e ) {
+            throw rethrowCause(e);
+        } finally {
+            executor.shutdownNow();
+            runningBodyPacksInParallel = false;
+        }
+    }
+
+    /**
+     * Rethrows the exception that made a task fail, looking through
+     * nested {@link ExecutionException}s.
+     */
+    private static RuntimeException rethrowCause( ExecutionException e ) {
+        Throwable cause = e.getCause();
+        while( cause instanceof ExecutionException )
+            cause = cause.getCause();
+        if( cause instanceof RuntimeException )
+            throw (RuntimeException) cause;
+        if( cause instanceof Error )
+            throw (Error) cause;
+        throw new RuntimeException(cause);
+    }
+
+    /**
+     * Returns the number of threads to run the body packs on, as given by
+     * the <code>-num-threads</code> option. Falls back to 1 when the body
+     * packs are run with options that rely on global state: timing,
+     * interactive mode, Shimple (which shares one ShimpleFactory) and Dava
+     * output.
+     */
+    private int getBodyPackThreadCount() {
+        int threadNum = Options.v().num_threads();
+        if( threadNum <= 0 )
+            threadNum = Runtime.getRuntime().availableProcessors();
+        final int format = Options.v().output_format();
+        if( threadNum > 1 && ( Options.v().time()
+                || Options.v().interactive_mode()
+                || Options.v().via_shimple() || Options.v().whole_shimple()
+                || format == Options.output_format_shimple
+                || format == Options.output_format_shimp
+                || format == Options.output_format_dava ) ) {
+            if( Options.v().verbose() )
+                G.v().out.println("Running body packs sequentially; -num-threads is ignored with the current options.");
+            threadNum = 1;
+        }
+        return threadNum;
+    }
+
+    /**
+     * Returns the number of threads to build method bodies on in
+     * {@link #retrieveAllBodies()}. This is the body pack thread count,
+     * except for the coffi and Java source front-ends, which keep
+     * per-class state in singletons while building bodies.
+     */
+    private int getBodyRetrievalThreadCount() {
+        int threadNum = getBodyPackThreadCount();
+        if( threadNum > 1 && ( Options.v().coffi()
+                || Options.v().src_prec() == Options.src_prec_java ) ) {
+            if( Options.v().verbose() )
+                G.v().out.println("Building bodies sequentially; -num-threads is not supported by the current front-end.");
+            threadNum = 1;
+        }
+        return threadNum;
+    }
+
+    private volatile boolean runningBodyPacksInParallel = false;
+    private final Object sequentialTransformLock = new Object();
+
+    /**
+     * Returns true while the body packs are being run on more than one
+     * thread. Body transformers that do not implement
+     * {@link ThreadSafeBodyTransformer} are then run one at a time.
+     */
+    public boolean isRunningBodyPacksInParallel() {
+        return runningBodyPacksInParallel;
+    }
+
+    /**
+     * The lock held while running a body transformer that does not
+     * implement {@link ThreadSafeBodyTransformer} during a parallel run of
+     * the body packs.
+     */
+    public Object sequentialTransformLock() {
+        return sequentialTransformLock;
     }
 
     private void handleInnerClasses(){
@@ -616,9 +750,83 @@ public class PackManager {
     }
 
     private void writeOutput( Iterator<SootClass> classes ) {
+        int threadNum = getOutputThreadCount();
+        if( threadNum <= 1 ) {
+            while( classes.hasNext() ) {
+                writeClass( classes.next() );
+            }
+            return;
+        }
+
+        final List<SootClass> toWrite = new ArrayList<SootClass>();
         while( classes.hasNext() ) {
-            writeClass( classes.next() );
+            toWrite.add( classes.next() );
+        }
+
+        // Classes are serialized on the worker pool, but written by a
+        // single thread in their original order, so that the output does
+        // not depend on the number of threads. The bounded queue keeps the
+        // serializers from running too far ahead of the writer.
+        final BlockingQueue<Future<byte[]>> serialized =
+            new ArrayBlockingQueue<Future<byte[]>>(4 * threadNum);
+        ExecutorService serializers = Executors.newFixedThreadPool(threadNum);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        runningBodyPacksInParallel = true;
+        try {
+            Future<?> written = writer.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    for( SootClass c : toWrite ) {
+                        writeSerializedClass(c, serialized.take().get());
+                    }
+                    return null;
+                }
+            });
+            for( final SootClass c : toWrite ) {
+                Future<byte[]> bytes = serializers.submit(new Callable<byte[]>() {
+                    public byte[] call() {
+                        return serializeClass(c);
+                    }
+                });
+                // The writer stops at the first class that could not be
+                // serialized or written; stop feeding it in that case
+                while( !written.isDone()
+                        && !serialized.offer(bytes, 100, TimeUnit.MILLISECONDS) ) {
+                }
+                if( written.isDone() )
+                    break;
+            }
+            written.get();
+        } catch( InterruptedException e ) {
+            throw new RuntimeException("Interrupted while writing output", e);
+        } catch( ExecutionException e ) {
+            throw rethrowCause(e);
+        } finally {
+            serializers.shutdownNow();
+            writer.shutdownNow();
+            runningBodyPacksInParallel = false;
+        }
+    }
+
+    /**
+     * Returns the number of threads to serialize classes on in
+     * {@link #writeOutput(Iterator)}. This is the body pack thread count,
+     * except for output formats that are not written class by class (Dava
+     * and dex) or whose printers keep global state (XML, templates and
+     * Jimple line number attributes).
+     */
+    private int getOutputThreadCount() {
+        int threadNum = getBodyPackThreadCount();
+        final int format = Options.v().output_format();
+        if( threadNum > 1 && ( format == Options.output_format_none
+                || format == Options.output_format_dava
+                || format == Options.output_format_dex
+                || format == Options.output_format_force_dex
+                || format == Options.output_format_xml
+                || format == Options.output_format_template
+                || Options.v().xml_attributes() ) ) {
+            threadNum = 1;
         }
+        return threadNum;
     }
 
 	private void tearDownJAR() {
@@ -985,11 +1193,6 @@ public class PackManager {
 	}
 
     public void writeClass(SootClass c) {
-        // Create code assignments for those values we only have in code assignments
-        if (Options.v().output_format() == Options.output_format_jimple)
-        	if (!c.isPhantom)
-        		ConstantValueToInitializerTransformer.v().transformClass(c);
-        
         final int format = Options.v().output_format();
         if( format == Options.output_format_none ) return;
         if( format == Options.output_format_dava ) return;
@@ -1000,24 +1203,27 @@ public class PackManager {
         	return;
         }
 
-        OutputStream streamOut = null;
-        PrintWriter writerOut = null;
+        writeSerializedClass(c, serializeClass(c));
+    }
 
-        String fileName = SourceLocator.v().getFileNameFor(c, format);
-        if( Options.v().gzip() ) fileName = fileName+".gz";
+    /**
+     * Returns the contents of the output file for the given class in the
+     * current output format. Only touches the given class, so different
+     * classes may be serialized concurrently.
+     */
+    private byte[] serializeClass(SootClass c) {
+        // Create code assignments for those values we only have in code assignments
+        if (Options.v().output_format() == Options.output_format_jimple)
+        	if (!c.isPhantom)
+        		ConstantValueToInitializerTransformer.v().transformClass(c);
+
+        final int format = Options.v().output_format();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream streamOut = bytes;
+        PrintWriter writerOut = null;
 
         try {
-            if( jarFile != null ) {
-            	// Fix path delimiters according to ZIP specification
-            	fileName = fileName.replace("\\", "/");
-                JarEntry entry = new JarEntry(fileName);
-                entry.setMethod(ZipEntry.DEFLATED);
-                jarFile.putNextEntry(entry);
-                streamOut = jarFile;
-            } else {
-                new File(fileName).getParentFile().mkdirs();
-                streamOut = new FileOutputStream(fileName);
-            }
             if( Options.v().gzip() ) {
                 streamOut = new GZIPOutputStream(streamOut);
             }
@@ -1027,9 +1233,8 @@ public class PackManager {
             	}
             }
             writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
-            G.v().out.println( "Writing to "+fileName );
         } catch (IOException e) {
-            throw new CompilationDeathException("Cannot output file " + fileName,e);
+            throw new CompilationDeathException("Cannot serialize class " + c.getName(),e);
         }
 
         if (Options.v().xml_attributes()) {
@@ -1087,14 +1292,42 @@ public class PackManager {
 
         try {
             writerOut.flush();
-            if( jarFile == null ) {            	
-	            streamOut.close();
-	            writerOut.close();
-            }
-            else
+            streamOut.close();
+        } catch (IOException e) {
+            throw new CompilationDeathException("Cannot serialize class " + c.getName());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the serialized form of the given class to its output file or
+     * to the output jar.
+     */
+    private void writeSerializedClass(SootClass c, byte[] bytes) {
+        String fileName = SourceLocator.v().getFileNameFor(c, Options.v().output_format());
+        if( Options.v().gzip() ) fileName = fileName+".gz";
+
+        G.v().out.println( "Writing to "+fileName );
+        try {
+            if( jarFile != null ) {
+            	// Fix path delimiters according to ZIP specification
+            	fileName = fileName.replace("\\", "/");
+                JarEntry entry = new JarEntry(fileName);
+                entry.setMethod(ZipEntry.DEFLATED);
+                jarFile.putNextEntry(entry);
+                jarFile.write(bytes);
                 jarFile.closeEntry();
+            } else {
+                new File(fileName).getParentFile().mkdirs();
+                OutputStream streamOut = new FileOutputStream(fileName);
+                try {
+                    streamOut.write(bytes);
+                } finally {
+                    streamOut.close();
+                }
+            }
         } catch (IOException e) {
-            throw new CompilationDeathException("Cannot close output file " + fileName);
+            throw new CompilationDeathException("Cannot output file " + fileName,e);
         }
     }
 
@@ -1139,24 +1372,80 @@ public class PackManager {
 
     private void retrieveAllBodies() {
         Iterator<SootClass> clIt = reachableClasses();
+        int threadNum = getBodyRetrievalThreadCount();
+        if( threadNum <= 1 ) {
+            while( clIt.hasNext() ) {
+                retrieveAllBodies(clIt.next());
+            }
+            return;
+        }
+
+        // Bodies of one class are built on the same thread, since some
+        // method sources (e.g. Jimple files) share state within a class
+        List<Runnable> tasks = new ArrayList<Runnable>();
         while( clIt.hasNext() ) {
-            SootClass cl = (SootClass) clIt.next();
-            //note: the following is a snapshot iterator;
-            //this is necessary because it can happen that phantom methods
-            //are added during resolution
-            Iterator<SootMethod> methodIt = cl.getMethods().iterator();
-            while (methodIt.hasNext()) {
-                SootMethod m = (SootMethod) methodIt.next();
-                if(DEBUG && cl.isApplicationClass()){
-                	if(m.getExceptions().size()!=0)
-                		System.out.println("PackManager printing out from within retrieveAllBodies exceptions for method "+m.toString()+" " + m.getExceptions().toString());
-                	else
-                		System.out.println("in retrieveAllBodies......Currently Method "+ m.toString() +" has no exceptions ");
+            final SootClass cl = clIt.next();
+            tasks.add(new Runnable() {
+                public void run() {
+                    retrieveAllBodies(cl);
                 }
+            });
+        }
+        runInParallel(tasks, threadNum);
+    }
 
-                if( m.isConcrete() ) {
+    /**
+     * Builds the active bodies of the given concrete methods, on the
+     * <code>-num-threads</code> worker pool if the front-end allows it.
+     * As in {@link #retrieveAllBodies()}, the methods of one class are
+     * built on the same thread.
+     */
+    public void retrieveBodies( Collection<SootMethod> methods ) {
+        Map<SootClass, List<SootMethod>> classToMethods = new LinkedHashMap<SootClass, List<SootMethod>>();
+        for( SootMethod m : methods ) {
+            if( !m.isConcrete() || m.hasActiveBody() ) continue;
+            List<SootMethod> ms = classToMethods.get(m.getDeclaringClass());
+            if( ms == null )
+                classToMethods.put(m.getDeclaringClass(), ms = new ArrayList<SootMethod>());
+            ms.add(m);
+        }
+        int threadNum = getBodyRetrievalThreadCount();
+        if( threadNum <= 1 || classToMethods.size() <= 1 ) {
+            for( List<SootMethod> ms : classToMethods.values() ) {
+                for( SootMethod m : ms )
                     m.retrieveActiveBody();
+            }
+            return;
+        }
+
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for( final List<SootMethod> ms : classToMethods.values() ) {
+            tasks.add(new Runnable() {
+                public void run() {
+                    for( SootMethod m : ms )
+                        m.retrieveActiveBody();
                 }
+            });
+        }
+        runInParallel(tasks, threadNum);
+    }
+
+    private void retrieveAllBodies( SootClass cl ) {
+        //note: the following is a snapshot iterator;
+        //this is necessary because it can happen that phantom methods
+        //are added during resolution
+        Iterator<SootMethod> methodIt = cl.getMethods().iterator();
+        while (methodIt.hasNext()) {
+            SootMethod m = (SootMethod) methodIt.next();
+            if(DEBUG && cl.isApplicationClass()){
+            	if(m.getExceptions().size()!=0)
+            		System.out.println("PackManager printing out from within retrieveAllBodies exceptions for method "+m.toString()+" " + m.getExceptions().toString());
+            	else
+            		System.out.println("in retrieveAllBodies......Currently Method "+ m.toString() +" has no exceptions ");
+            }
+
+            if( m.isConcrete() ) {
+                m.retrieveActiveBody();
             }
         }
     }
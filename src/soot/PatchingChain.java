@@ -26,8 +26,8 @@
 package soot;
 
 import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import soot.util.Chain;
@@ -92,43 +92,21 @@ public class PatchingChain<E extends Unit> extends AbstractCollection<E> impleme
     /** Inserts <code>toInsert</code> in the Chain before <code>point</code>. */
     public void insertBefore(List<E> toInsert, E point)
     {
-        LinkedList<E> backwardList = new LinkedList<E>();
-        // Insert toInsert backwards into the list
-        {
-            Iterator<E> it = toInsert.iterator();
-            
-            while(it.hasNext())
-                backwardList.addFirst(it.next());
-        }
-                
-        E previousPoint = point;
-        Iterator<E> it = backwardList.iterator();
-        while (it.hasNext())
-        {
-            E o = it.next();
-            insertBeforeNoRedirect(o, previousPoint);
-            previousPoint = o;
-        }
+        // Inserting each one right before point keeps them in order
+        for (E o : toInsert)
+            insertBeforeNoRedirect(o, point);
         point.redirectJumpsToThisTo(toInsert.get(0));
     }
     
     /** Inserts <code>toInsert</code> in the Chain before <code>point</code>. */
     public void insertBefore(Chain<E> toInsert, E point)
     {
-        LinkedList<E> backwardList = new LinkedList<E>();
         // Insert toInsert backwards into the list
-        {
-            Iterator<E> it = toInsert.iterator();
-            
-            while(it.hasNext())
-                backwardList.addFirst(it.next());
-        }
-                
+        if (toInsert.isEmpty())
+            return;
         E previousPoint = point;
-        Iterator<E> it = backwardList.iterator();
-        while (it.hasNext())
+        for (E o = toInsert.getLast(); o != null; o = toInsert.getPredOf(o))
         {
-            E o = it.next();
             insertBefore(o, previousPoint);
             previousPoint = o;
         }
@@ -269,7 +247,7 @@ public class PatchingChain<E extends Unit> extends AbstractCollection<E> impleme
      * iterated over! */
     public Iterator<E> snapshotIterator() 
     {
-        List<E> l = new LinkedList<E>(this); 
+        List<E> l = new ArrayList<E>(this); 
         return l.iterator();
     }
    
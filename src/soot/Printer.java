@@ -56,10 +56,10 @@ public class Printer {
     }
 
     int options = 0;
-    public void setOption(int opt) {
+    public synchronized void setOption(int opt) {
         options |= opt;
     }
-    public void clearOption(int opt) {
+    public synchronized void clearOption(int opt) {
         options &= ~opt;
     }
 
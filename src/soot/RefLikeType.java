@@ -28,6 +28,11 @@ package soot;
 @SuppressWarnings("serial")
 public abstract class RefLikeType extends Type
 {
+    public RefLikeType() {
+    }
+    protected RefLikeType( boolean number ) {
+        super( number );
+    }
     /**
      * If I have a variable x of declared type t, what is a good        
      * declared type for the expression ((Object[]) x)[i]? The          
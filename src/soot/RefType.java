@@ -52,10 +52,13 @@ public class RefType extends RefLikeType implements Comparable<RefType> {
 		return className;
 	}
 
-	private SootClass sootClass;
+	private volatile SootClass sootClass;
 	private AnySubType anySubType;
 
 	private RefType(String className) {
+		// numbered by the Scene once it is known to be the one registered
+		// for its name
+		super(false);
 		if (className.startsWith("["))
 			throw new RuntimeException(
 					"Attempt to create RefType whose name starts with [ --> "
@@ -79,8 +82,9 @@ public class RefType extends RefLikeType implements Comparable<RefType> {
 	public static RefType v(String className) {
 		RefType rt = Scene.v().getRefTypeUnsafe(className);
 		if (rt == null) {
-			rt = new RefType(className);
-			Scene.v().addRefType(rt);
+			// another thread may have registered the same name in the
+			// meantime; whichever RefType got into the Scene first wins
+			rt = Scene.v().getOrAddRefType(new RefType(className));
 		}
 		return rt;
 	}
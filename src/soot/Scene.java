@@ -44,6 +44,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -131,7 +133,9 @@ public class Scene  //extends AbstractHost
     Chain<SootClass> libraryClasses = new HashChain<SootClass>();
     Chain<SootClass> phantomClasses = new HashChain<SootClass>();
     
-    private final Map<String,RefType> nameToClass = new HashMap<String,RefType>();
+    // read without locking; new RefTypes are only registered through
+    // getOrAddRefType, which holds refTypeLock
+    private final ConcurrentHashMap<String,RefType> nameToClass = new ConcurrentHashMap<String,RefType>();
 
     ArrayNumberer<Kind> kindNumberer = new ArrayNumberer<Kind>();
     ArrayNumberer<Type> typeNumberer = new ArrayNumberer<Type>();
@@ -144,7 +148,7 @@ public class Scene  //extends AbstractHost
     ArrayNumberer<Local> localNumberer = new ArrayNumberer<Local>();
 
     private Hierarchy activeHierarchy;
-    private FastHierarchy activeFastHierarchy;
+    private volatile FastHierarchy activeFastHierarchy;
     private CallGraph activeCallGraph;
     private ReachableMethods reachableMethods;
     private PointsToAnalysis activePointsToAnalysis;
@@ -535,7 +539,17 @@ public class Scene  //extends AbstractHost
         activePointsToAnalysis = null;
     }
 
-    public void addClass(SootClass c) 
+    private final AtomicInteger hierarchyModCount = new AtomicInteger();
+    /** Returns a number that changes whenever a method is added to or
+     * removed from a class in the Scene, or a class's superclass, interfaces
+     * or modifiers change. Answers to dispatch queries computed at one
+     * count may be reused as long as the count stays the same. */
+    public int getHierarchyModCount() { return hierarchyModCount.get(); }
+    /** Records that a class in the Scene changed in a way that may change
+     * the answers to dispatch queries. */
+    public void hierarchyChanged() { hierarchyModCount.incrementAndGet(); }
+
+    public synchronized void addClass(SootClass c) 
     {
         if(c.isInScene())
             throw new RuntimeException("already managed: "+c.getName());
@@ -552,7 +566,7 @@ public class Scene  //extends AbstractHost
         modifyHierarchy();
     }
 
-    public void removeClass(SootClass c)
+    public synchronized void removeClass(SootClass c)
     {
         if(!c.isInScene())
             throw new RuntimeException();
@@ -660,18 +674,22 @@ public class Scene  //extends AbstractHost
             Main.v().resolveTimer.start();
         */
         
-        setPhantomRefs(true);
-        //SootResolver resolver = new SootResolver();
-        if( !getPhantomRefs() 
-        && SourceLocator.v().getClassSource(className) == null ) {
-            setPhantomRefs(false);
-            return null;
-        }
         SootResolver resolver = SootResolver.v();
-        SootClass toReturn = resolver.resolveClass(className, desiredLevel);
-        setPhantomRefs(false);
+        // the phantom-refs flag is read by the resolver, so it is only
+        // toggled while holding the resolver's lock
+        synchronized( resolver ) {
+            setPhantomRefs(true);
+            //SootResolver resolver = new SootResolver();
+            if( !getPhantomRefs() 
+            && SourceLocator.v().getClassSource(className) == null ) {
+                setPhantomRefs(false);
+                return null;
+            }
+            SootClass toReturn = resolver.resolveClass(className, desiredLevel);
+            setPhantomRefs(false);
 
-        return toReturn;
+            return toReturn;
+        }
         
         /*
         if(Options.v().time())
@@ -696,13 +714,15 @@ public class Scene  //extends AbstractHost
             Main.v().resolveTimer.start();
         */
         
-        setPhantomRefs(true);
         //SootResolver resolver = new SootResolver();
         SootResolver resolver = SootResolver.v();
-        SootClass toReturn = resolver.resolveClass(className, desiredLevel);
-        setPhantomRefs(false);
+        synchronized( resolver ) {
+            setPhantomRefs(true);
+            SootClass toReturn = resolver.resolveClass(className, desiredLevel);
+            setPhantomRefs(false);
 
-        return toReturn;
+            return toReturn;
+        }
         
         /*
         if(Options.v().time())
@@ -750,6 +770,27 @@ public class Scene  //extends AbstractHost
         nameToClass.put(type.getClassName(), type);
     }
 
+    /**
+     * Registers the given RefType unless a RefType with the same class name
+     * is already known, and returns the RefType that is registered for
+     * that name afterwards. A type that gets registered is numbered before
+     * other threads can see it, and a type that loses is never numbered.
+     */
+    public RefType getOrAddRefType(RefType type) 
+    {
+        // a lock of its own, as types are made while holding the locks of
+        // the resolver and of classes
+        synchronized (refTypeLock) {
+            RefType existing = nameToClass.get(type.getClassName());
+            if (existing != null)
+                return existing;
+            typeNumberer.add(type);
+            nameToClass.put(type.getClassName(), type);
+            return type;
+        }
+    }
+    private final Object refTypeLock = new Object();
+
     /**
      * Returns the SootClass with the given className. If no class with the
      * given name exists, null is returned
@@ -757,6 +798,13 @@ public class Scene  //extends AbstractHost
      * @return The class if it exists, otherwise null  
      */
 	public SootClass getSootClassUnsafe(String className) {
+		RefType type = nameToClass.get(className);
+		if (type != null && type.hasSootClass())
+			return type.getSootClass();
+		return getOrCreateSootClass(className);
+	}
+
+	private synchronized SootClass getOrCreateSootClass(String className) {
 		RefType type = nameToClass.get(className);
 		if (type != null) {
 			SootClass tsc = type.getSootClass();
@@ -909,10 +957,16 @@ public class Scene  //extends AbstractHost
     /** Makes a new fast hierarchy is none is active, and returns the active
      * fast hierarchy. */
     public FastHierarchy getOrMakeFastHierarchy() {
-	if(!hasFastHierarchy() ) {
-	    setFastHierarchy( new FastHierarchy() );
+	FastHierarchy ret = activeFastHierarchy;
+	if( ret != null ) return ret;
+	synchronized( this ) {
+	    ret = activeFastHierarchy;
+	    if( ret == null ) {
+		ret = new FastHierarchy();
+		setFastHierarchy( ret );
+	    }
+	    return ret;
 	}
-	return getFastHierarchy();
     }
     /**
         Retrieves the active fast hierarchy
@@ -1564,15 +1618,18 @@ public class Scene  //extends AbstractHost
      * even if resolving has actually already finished.
      */
     public SootClass forceResolve(String className, int level) {
-    	boolean tmp = doneResolving;
-    	doneResolving = false;
-    	SootClass c;
-    	try {
-			c = SootResolver.v().resolveClass(className, level);
-    	} finally {
-    		doneResolving = tmp;
-    	}    	    	
-    	return c;
+    	SootResolver resolver = SootResolver.v();
+    	synchronized( resolver ) {
+	    	boolean tmp = doneResolving;
+	    	doneResolving = false;
+	    	SootClass c;
+	    	try {
+				c = resolver.resolveClass(className, level);
+	    	} finally {
+	    		doneResolving = tmp;
+	    	}    	    	
+	    	return c;
+    	}
     }
 }
 
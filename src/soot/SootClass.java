@@ -76,7 +76,7 @@ public class SootClass extends AbstractHost implements Numberable
     protected List<SootMethod> methodList = new ArrayList<SootMethod>();
     protected Chain<SootClass> interfaces = new HashChain<SootClass>();
 
-    protected boolean isInScene;
+    protected volatile boolean isInScene;
     protected SootClass superClass;
     protected SootClass outerClass;
 
@@ -140,11 +140,15 @@ public class SootClass extends AbstractHost implements Numberable
 
   /**
    * Checks if the class has at lease the resolving level specified.
-   * This check ignores the resolution completeness.
+   * This check ignores the resolution completeness. In lazy resolution mode,
+   * once resolution is completed, the class is first resolved to the given
+   * level.
    * @param level the resolution level, one of DANGLING, HIERARCHY, SIGNATURES, and BODIES
    * @throws java.lang.RuntimeException if the resolution is at an insufficient level
    */
   public void checkLevelIgnoreResolving( int level ) {
+    if( resolvingLevel < level && Options.v().lazy_resolution() && Scene.v().doneResolving() )
+      Scene.v().forceResolve(name, level);
     if( resolvingLevel < level ) {
       String hint = "\nIf you are extending Soot, try to add the following call before calling soot.Main.main(..):\n" +
               "Scene.v().addBasicClass("+getName()+","+levelToString(level)+");\n" +
@@ -348,8 +352,10 @@ public class SootClass extends AbstractHost implements Numberable
     public SootMethod getMethodUnsafe(NumberedString subsignature)
     {
         checkLevel(SIGNATURES);
-        SootMethod ret = subSigToMethods.get( subsignature );
-        return ret;
+        synchronized (this) {
+            SootMethod ret = subSigToMethods.get( subsignature );
+            return ret;
+        }
     }
 
     /**
@@ -358,8 +364,10 @@ public class SootClass extends AbstractHost implements Numberable
     public boolean declaresMethod(NumberedString subsignature)
     {
         checkLevel(SIGNATURES);
-        SootMethod ret = subSigToMethods.get( subsignature );
-        return ret != null;
+        synchronized (this) {
+            SootMethod ret = subSigToMethods.get( subsignature );
+            return ret != null;
+        }
     }
     
     
@@ -432,22 +440,30 @@ public class SootClass extends AbstractHost implements Numberable
     public int getMethodCount()
     {
         checkLevel(SIGNATURES);
-        return subSigToMethods.nonNullSize();
+        synchronized (this) {
+            return subSigToMethods.nonNullSize();
+        }
     }
 
     /**
-     * Returns an iterator over the methods in this class.
+     * Returns an iterator over the methods in this class. Like getMethods(),
+     * it iterates over a copy, so methods added or removed later are not
+     * seen and do not disturb the iteration.
      */
 
     public Iterator<SootMethod> methodIterator()
     {
         checkLevel(SIGNATURES);
-        return methodList.iterator();
+        synchronized (this) {
+            return new ArrayList<SootMethod>(methodList).iterator();
+        }
     }
 
     public List<SootMethod> getMethods() {
         checkLevel(SIGNATURES);
-        return new ArrayList<SootMethod>(methodList);
+        synchronized (this) {
+            return new ArrayList<SootMethod>(methodList);
+        }
     }
 
     /**
@@ -474,15 +490,17 @@ public class SootClass extends AbstractHost implements Numberable
             Type returnType )
     {
         checkLevel(SIGNATURES);
-        for (SootMethod method : methodList) {
-            if(method.getName().equals(name) &&
-                parameterTypes.equals(method.getParameterTypes()) &&
-                returnType.equals(method.getReturnType()))
-            {
-                return method;
+        synchronized (this) {
+            for (SootMethod method : methodList) {
+                if(method.getName().equals(name) &&
+                    parameterTypes.equals(method.getParameterTypes()) &&
+                    returnType.equals(method.getReturnType()))
+                {
+                    return method;
+                }
             }
+            return null;
         }
-        return null;
     }
     
     /**
@@ -494,22 +512,24 @@ public class SootClass extends AbstractHost implements Numberable
     public SootMethod getMethod(String name, List<Type> parameterTypes) 
     {
         checkLevel(SIGNATURES);
-        SootMethod foundMethod = null;
+        synchronized (this) {
+            SootMethod foundMethod = null;
         
-        for (SootMethod method : methodList) {
-            if(method.getName().equals(name) &&
-                parameterTypes.equals(method.getParameterTypes()))
-            {
-                if(foundMethod == null)
-                    foundMethod = method;
-                else                    
-                    throw new RuntimeException("ambiguous method");
+            for (SootMethod method : methodList) {
+                if(method.getName().equals(name) &&
+                    parameterTypes.equals(method.getParameterTypes()))
+                {
+                    if(foundMethod == null)
+                        foundMethod = method;
+                    else                    
+                        throw new RuntimeException("ambiguous method");
+                }
             }
-        }
 
-        if(foundMethod == null)
-            throw new RuntimeException("couldn't find method "+name+"("+parameterTypes+") in "+this);
-        return foundMethod;
+            if(foundMethod == null)
+                throw new RuntimeException("couldn't find method "+name+"("+parameterTypes+") in "+this);
+            return foundMethod;
+        }
     }
 
     
@@ -522,18 +542,20 @@ public class SootClass extends AbstractHost implements Numberable
     public SootMethod getMethodByNameUnsafe(String name) 
     {
         checkLevel(SIGNATURES);
-        SootMethod foundMethod = null;
+        synchronized (this) {
+            SootMethod foundMethod = null;
         
-        for (SootMethod method : methodList) {
-            if(method.getName().equals(name))
-            {
-                if(foundMethod == null)
-                    foundMethod = method;
-                else                    
-                    throw new RuntimeException("ambiguous method: " + name + " in class " + this);
+            for (SootMethod method : methodList) {
+                if(method.getName().equals(name))
+                {
+                    if(foundMethod == null)
+                        foundMethod = method;
+                    else                    
+                        throw new RuntimeException("ambiguous method: " + name + " in class " + this);
+                }
             }
+            return foundMethod;
         }
-        return foundMethod;
     }
 
     /**
@@ -557,13 +579,15 @@ public class SootClass extends AbstractHost implements Numberable
     public boolean declaresMethod(String name, List<Type> parameterTypes)
     {
         checkLevel(SIGNATURES);
-        for (SootMethod method : methodList) {
-            if(method.getName().equals(name) &&
-                method.getParameterTypes().equals(parameterTypes))
-                return true;
-        }
+        synchronized (this) {
+            for (SootMethod method : methodList) {
+                if(method.getName().equals(name) &&
+                    method.getParameterTypes().equals(parameterTypes))
+                    return true;
+            }
         
-        return false;
+            return false;
+        }
     }
 
     /**
@@ -573,15 +597,17 @@ public class SootClass extends AbstractHost implements Numberable
     public boolean declaresMethod(String name, List<Type> parameterTypes, Type returnType)
     {
         checkLevel(SIGNATURES);
-        for (SootMethod method : methodList) {
-            if(method.getName().equals(name) &&
-                method.getParameterTypes().equals(parameterTypes) &&
-                method.getReturnType().equals(returnType))
+        synchronized (this) {
+            for (SootMethod method : methodList) {
+                if(method.getName().equals(name) &&
+                    method.getParameterTypes().equals(parameterTypes) &&
+                    method.getReturnType().equals(returnType))
                 
-                return true;
-        }
+                    return true;
+            }
         
-        return false;
+            return false;
+        }
     }
 
     /**
@@ -591,12 +617,14 @@ public class SootClass extends AbstractHost implements Numberable
     public boolean declaresMethodByName(String name)
     {
         checkLevel(SIGNATURES);
-        for (SootMethod method : methodList) {
-            if(method.getName().equals(name))
-                return true;
-        }
+        synchronized (this) {
+            for (SootMethod method : methodList) {
+                if(method.getName().equals(name))
+                    return true;
+            }
         
-        return false;
+            return false;
+        }
     }
 
     /*
@@ -613,23 +641,25 @@ public class SootClass extends AbstractHost implements Numberable
     public void addMethod(SootMethod m) 
     {
         checkLevel(SIGNATURES);
-        if(m.isDeclared())
-            throw new RuntimeException("already declared: "+m.getName());
-
-        /*
-        if(declaresMethod(m.getName(), m.getParameterTypes()))
-            throw new RuntimeException("duplicate signature for: " + m.getName());
-        */
+        synchronized (this) {
+            if(m.isDeclared())
+                throw new RuntimeException("already declared: "+m.getName());
+
+            /*
+            if(declaresMethod(m.getName(), m.getParameterTypes()))
+                throw new RuntimeException("duplicate signature for: " + m.getName());
+            */
         
-        if(subSigToMethods.get(m.getNumberedSubSignature()) != null ) {
-            throw new RuntimeException(
-                    "Attempting to add method "+m.getSubSignature()+" to class "+this+", but the class already has a method with that signature.");
+            if(subSigToMethods.get(m.getNumberedSubSignature()) != null ) {
+                throw new RuntimeException(
+                        "Attempting to add method "+m.getSubSignature()+" to class "+this+", but the class already has a method with that signature.");
+            }
+            subSigToMethods.put(m.getNumberedSubSignature(),m);
+            methodList.add(m);
+            m.setDeclared(true);
+            m.setDeclaringClass(this);
+            if(isInScene) Scene.v().hierarchyChanged();
         }
-        subSigToMethods.put(m.getNumberedSubSignature(),m);
-        methodList.add(m);
-        m.setDeclared(true);
-        m.setDeclaringClass(this);
-        
     }
 
     /**
@@ -639,16 +669,19 @@ public class SootClass extends AbstractHost implements Numberable
     public void removeMethod(SootMethod m) 
     {
         checkLevel(SIGNATURES);
-        if(!m.isDeclared() || m.getDeclaringClass() != this)
-            throw new RuntimeException("incorrect declarer for remove: "+m.getName());
+        synchronized (this) {
+            if(!m.isDeclared() || m.getDeclaringClass() != this)
+                throw new RuntimeException("incorrect declarer for remove: "+m.getName());
 
-        if(subSigToMethods.get(m.getNumberedSubSignature()) == null) {
-            throw new RuntimeException(
-                    "Attempt to remove method "+m.getSubSignature()+" which is not in class "+this);
+            if(subSigToMethods.get(m.getNumberedSubSignature()) == null) {
+                throw new RuntimeException(
+                        "Attempt to remove method "+m.getSubSignature()+" which is not in class "+this);
+            }
+            subSigToMethods.put(m.getNumberedSubSignature(),null);
+            methodList.remove(m);
+            m.setDeclared(false);
+            if(isInScene) Scene.v().hierarchyChanged();
         }
-        subSigToMethods.put(m.getNumberedSubSignature(),null);
-        methodList.remove(m);
-        m.setDeclared(false);
     }
 
     /**
@@ -667,6 +700,7 @@ public class SootClass extends AbstractHost implements Numberable
     public void setModifiers(int modifiers)
     {
         this.modifiers = modifiers;
+        if(isInScene) Scene.v().hierarchyChanged();
     }
 
     /**
@@ -722,6 +756,7 @@ public class SootClass extends AbstractHost implements Numberable
         if(implementsInterface(interfaceClass.getName()))
             throw new RuntimeException("duplicate interface: "+interfaceClass.getName());
         interfaces.add(interfaceClass);
+        if(isInScene) Scene.v().hierarchyChanged();
     }
 
     /**
@@ -735,6 +770,7 @@ public class SootClass extends AbstractHost implements Numberable
             throw new RuntimeException("no such interface: "+interfaceClass.getName());
 
         interfaces.remove(interfaceClass);
+        if(isInScene) Scene.v().hierarchyChanged();
     }
 
     /**
@@ -772,6 +808,7 @@ public class SootClass extends AbstractHost implements Numberable
     {
         checkLevel(HIERARCHY);
         superClass = c;
+        if(isInScene) Scene.v().hierarchyChanged();
     }
 
     public boolean hasOuterClass(){
@@ -988,10 +1025,13 @@ public class SootClass extends AbstractHost implements Numberable
     /** Makes this class an application class. */
     public void setApplicationClass()
     {
-        Chain<SootClass> c = Scene.v().getContainingChain(this);
-        if (c != null)
-            c.remove(this);
-        Scene.v().getApplicationClasses().add(this);
+        Scene scene = Scene.v();
+        synchronized (scene) {
+            Chain<SootClass> c = scene.getContainingChain(this);
+            if (c != null)
+                c.remove(this);
+            scene.getApplicationClasses().add(this);
+        }
 
         isPhantom = false;
     }
@@ -1007,10 +1047,13 @@ public class SootClass extends AbstractHost implements Numberable
     /** Makes this class a library class. */
     public void setLibraryClass()
     {
-        Chain<SootClass> c = Scene.v().getContainingChain(this);
-        if (c != null)
-            c.remove(this);
-        Scene.v().getLibraryClasses().add(this);
+        Scene scene = Scene.v();
+        synchronized (scene) {
+            Chain<SootClass> c = scene.getContainingChain(this);
+            if (c != null)
+                c.remove(this);
+            scene.getLibraryClasses().add(this);
+        }
 
         isPhantom = false;
     }
@@ -1045,10 +1088,13 @@ public class SootClass extends AbstractHost implements Numberable
     /** Makes this class a phantom class. */
     public void setPhantomClass()
     {
-        Chain<SootClass> c = Scene.v().getContainingChain(this);
-        if (c != null)
-            c.remove(this);
-        Scene.v().getPhantomClasses().add(this);
+        Scene scene = Scene.v();
+        synchronized (scene) {
+            Chain<SootClass> c = scene.getContainingChain(this);
+            if (c != null)
+                c.remove(this);
+            scene.getPhantomClasses().add(this);
+        }
         isPhantom = true;
     }
     
@@ -238,6 +238,8 @@ public class SootMethod
         if ((declaringClass != null) && (!declaringClass.isApplicationClass()))
             throw new RuntimeException("Cannot set modifiers of a method from a non-app class!");
         this.modifiers = modifiers;
+        if (isDeclared && declaringClass.isInScene())
+            Scene.v().hierarchyChanged();
     }
 
     /** Returns the return type of this method. */
@@ -310,7 +312,7 @@ public class SootMethod
      * Please call setApplicationClass() on the relevant class.
      */
 
-    public Body retrieveActiveBody() {
+    public synchronized Body retrieveActiveBody() {
         declaringClass.checkLevel(SootClass.BODIES);
         if (declaringClass.isPhantomClass())
             throw new RuntimeException(
@@ -129,10 +129,17 @@ class SootMethodRefImpl implements SootMethodRef {
                 return checkStatic(sm);
             if(Scene.v().allowsPhantomRefs() && (cl.isPhantom() || Options.v().ignore_resolution_errors()))
             {
-                SootMethod m = new SootMethod(name, parameterTypes, returnType, isStatic()?Modifier.STATIC:0);
-                m.setPhantom(true);
-                cl.addMethod(m);
-                return checkStatic(m);
+                synchronized(cl) {
+                    // another thread may have created the phantom method
+                    // since we last looked
+                    sm = cl.getMethodUnsafe(getSubSignature());
+                    if( sm != null )
+                        return checkStatic(sm);
+                    SootMethod m = new SootMethod(name, parameterTypes, returnType, isStatic()?Modifier.STATIC:0);
+                    m.setPhantom(true);
+                    cl.addMethod(m);
+                    return checkStatic(m);
+                }
             }
             if( cl.hasSuperclass() ) cl = cl.getSuperclass();
             else break;
@@ -219,7 +226,12 @@ class SootMethodRefImpl implements SootMethodRef {
 		//throw exc
 		body.getUnits().insertAfter(Jimple.v().newThrowStmt(exceptionLocal), initStmt);
 
-		declaringClass.addMethod(m);
+		synchronized (declaringClass) {
+			SootMethod existing = declaringClass.getMethodUnsafe(getSubSignature());
+			if (existing != null)
+				return existing;
+			declaringClass.addMethod(m);
+		}
 		return m;
 	}
     
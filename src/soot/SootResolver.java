@@ -29,6 +29,7 @@ package soot;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -52,6 +53,10 @@ public class SootResolver {
 	/** Maps each resolved class to a list of all references in it. */
 	private final Map<SootClass, Collection<Type>> classToTypesHierarchy = new HashMap<SootClass, Collection<Type>>();
 
+	/** Set when classes joined the hierarchy in lazy mode during the
+	 * current round of resolution. */
+	private boolean hierarchyGrown = false;
+
 	/** SootClasses waiting to be resolved. */
 	@SuppressWarnings("unchecked")
 	private final Deque<SootClass>[] worklist = new Deque[4];
@@ -93,7 +98,7 @@ public class SootResolver {
 
 	/** Returns true if we are resolving all class refs recursively. */
 	private boolean resolveEverything() {
-		if (Options.v().on_the_fly())
+		if (Options.v().on_the_fly() || Options.v().lazy_resolution())
 			return false;
 		return (Options.v().whole_program() || Options.v().whole_shimple()
 				|| Options.v().full_resolver() || Options.v().output_format() == Options.output_format_dava);
@@ -103,25 +108,35 @@ public class SootResolver {
 	 * Returns a (possibly not yet resolved) SootClass to be used in references
 	 * to a class. If/when the class is resolved, it will be resolved into this
 	 * SootClass.
+	 * 
+	 * This only touches the Scene and therefore synchronizes on the Scene
+	 * rather than on the resolver, so that it may be called while the Scene
+	 * is locked.
 	 * */
 	public SootClass makeClassRef(String className) {
-		if (Scene.v().containsClass(className))
-			return Scene.v().getSootClass(className);
+		Scene scene = Scene.v();
+		synchronized (scene) {
+			if (scene.containsClass(className))
+				return scene.getSootClass(className);
 
-		SootClass newClass;
-		newClass = new SootClass(className);
-		newClass.setResolvingLevel(SootClass.DANGLING);
-		Scene.v().addClass(newClass);
+			SootClass newClass;
+			newClass = new SootClass(className);
+			newClass.setResolvingLevel(SootClass.DANGLING);
+			scene.addClass(newClass);
 
-		return newClass;
+			return newClass;
+		}
 	}
 
 	/**
 	 * Resolves the given class. Depending on the resolver settings, may decide
 	 * to resolve other classes as well. If the class has already been resolved,
 	 * just returns the class that was already resolved.
+	 * 
+	 * Resolution is serialized on this resolver, since the worklists are
+	 * shared by all threads.
 	 * */
-	public SootClass resolveClass(String className, int desiredLevel) {
+	public synchronized SootClass resolveClass(String className, int desiredLevel) {
 		SootClass resolvedClass = null;
 		try {
 			resolvedClass = makeClassRef(className);
@@ -135,6 +150,8 @@ public class SootResolver {
 				Scene.v().removeClass(resolvedClass);
 			}
 			throw e;
+		} finally {
+			releaseGrownHierarchy();
 		}
 	}
 
@@ -241,6 +258,24 @@ public class SootResolver {
 				classToTypesHierarchy.put(sc, dependencies.typesToHierarchy);
 		}
 		reResolveHierarchy(sc);
+
+		// in lazy mode, classes can join the hierarchy after it was built
+		if (Options.v().lazy_resolution())
+			hierarchyGrown = true;
+	}
+
+	/**
+	 * Drops the hierarchies of the Scene if classes joined the hierarchy
+	 * during the last round of resolution. This is done once per round
+	 * rather than once per class, so that the fast hierarchy is rebuilt at
+	 * most once for all the classes a round brings in.
+	 */
+	private void releaseGrownHierarchy() {
+		if (!hierarchyGrown)
+			return;
+		hierarchyGrown = false;
+		Scene.v().releaseFastHierarchy();
+		Scene.v().releaseActiveHierarchy();
 	}
 
 	public void reResolveHierarchy(SootClass sc) {
@@ -304,6 +339,12 @@ public class SootResolver {
 			G.v().out.println("bringing to BODIES: " + sc);
 		sc.setResolvingLevel(SootClass.BODIES);
 
+		// in lazy mode, referenced classes are resolved when first used
+		if (Options.v().lazy_resolution()) {
+			prefetchReferences(sc);
+			return;
+		}
+
 		{
 			Collection<Type> references = classToTypesHierarchy.get(sc);
 			if (references != null) {
@@ -331,14 +372,39 @@ public class SootResolver {
 		}
 	}
 
-	public void reResolve(SootClass cl, int newResolvingLevel) {
+	/**
+	 * Hands the classes referenced by sc that have not been resolved yet to
+	 * the class prefetcher, if there is one.
+	 * */
+	private void prefetchReferences(SootClass sc) {
+		ClassPrefetcher prefetcher = SourceLocator.v().prefetcher();
+		if (prefetcher == null)
+			return;
+		for (Map<SootClass, Collection<Type>> m : Arrays.asList(classToTypesHierarchy, classToTypesSignature)) {
+			Collection<Type> references = m.get(sc);
+			if (references == null)
+				continue;
+			for (Type t : references) {
+				if (t instanceof ArrayType)
+					t = ((ArrayType) t).baseType;
+				if (t instanceof RefType && ((RefType) t).getSootClass().resolvingLevel() == SootClass.DANGLING)
+					prefetcher.prefetch(((RefType) t).getClassName());
+			}
+		}
+	}
+
+	public synchronized void reResolve(SootClass cl, int newResolvingLevel) {
 		int resolvingLevel = cl.resolvingLevel();
 		if (resolvingLevel >= newResolvingLevel)
 			return;
 		reResolveHierarchy(cl);
 		cl.setResolvingLevel(newResolvingLevel);
 		addToResolveWorklist(cl, resolvingLevel);
-		processResolveWorklist();
+		try {
+			processResolveWorklist();
+		} finally {
+			releaseGrownHierarchy();
+		}
 	}
 
 	public void reResolve(SootClass cl) {
@@ -156,6 +156,36 @@ public class SourceLocator
     public List<String> classPath() { return classPath; }
     public void invalidateClassPath() {
         classPath = null;
+        classPathIndex = null;
+        if( prefetcher != null ) {
+            prefetcher.shutdown();
+            prefetcher = null;
+        }
+    }
+
+    private volatile ClassPrefetcher prefetcher;
+    /** Returns the class prefetcher, starting it on first use, or null if
+     * classes are not prefetched. */
+    public synchronized ClassPrefetcher prefetcher() {
+        if( prefetcher == null && Options.v().lazy_resolution() && Options.v().prefetch_classes() ) {
+            prefetcher = new ClassPrefetcher(this);
+        }
+        return prefetcher;
+    }
+
+    private ClassPathIndex classPathIndex;
+    /** Returns the index of the archives on the class path, building it
+     * on first use. */
+    public synchronized ClassPathIndex classPathIndex() {
+        if( classPathIndex == null ) {
+            if( classPath == null ) {
+                classPath = explodeClassPath(Scene.v().getSootClassPath());
+            }
+            String cache = Options.v().classpath_index();
+            classPathIndex = ClassPathIndex.build(classPath,
+                    cache.length() == 0 ? null : new File(cache));
+        }
+        return classPathIndex;
     }
 
     private List<String> sourcePath;
@@ -226,6 +256,15 @@ public class SourceLocator
 			inputExtensions.add(".class");
 			inputExtensions.add(".jimple");
 
+			int position = indexPositionOf(aPath);
+			if (position >= 0) {
+				for (String entryName : classPathIndex().namesIn(position)) {
+					int extensionIndex = entryName.lastIndexOf('.');
+					if (extensionIndex >= 0 && inputExtensions.contains(entryName.substring(extensionIndex)))
+						classes.add(entryName.substring(0, extensionIndex).replace('/', '.'));
+				}
+				return classes;
+			}
 			try {
 				ZipFile archive = new ZipFile(aPath);				
 				for (Enumeration<? extends ZipEntry> entries = archive.entries(); entries.hasMoreElements();) {
@@ -460,6 +499,16 @@ public class SourceLocator
         }
         return ret;
     }
+    /** Returns the position of the archive aPath in the class path index,
+     * or -1 if it is not in the index. */
+    private int indexPositionOf(String aPath) {
+        try {
+            return classPathIndex().positionOf(new File(aPath).getCanonicalPath());
+        } catch( IOException e ) {
+            return -1;
+        }
+    }
+
     public static class FoundFile {
         FoundFile( ZipFile zipFile, ZipEntry entry ) {
             this.zipFile = zipFile;
@@ -468,12 +517,23 @@ public class SourceLocator
         FoundFile( File file ) {
             this.file = file;
         }
+        FoundFile( ClassPathIndex index, int indexedFile ) {
+            this.index = index;
+            this.indexedFile = indexedFile;
+        }
         public File file;
         public ZipFile zipFile;
         public ZipEntry entry;
+        /** The index and number of a file found in the class path index. */
+        public ClassPathIndex index;
+        public int indexedFile;
+        /** The contents of the file, if they have already been read. */
+        public byte[] contents;
         public InputStream inputStream() {
             try {
+                if( contents != null ) return new ByteArrayInputStream(contents);
                 if( file != null ) return new FileInputStream(file);
+                if( index != null ) return index.inputStream(indexedFile);
                 return doJDKBugWorkaround(zipFile.getInputStream(entry),
                         entry.getSize());
             } catch( IOException e ) {
@@ -483,9 +543,18 @@ public class SourceLocator
         public File inputFile(){
             if (file != null)
                 return file;
+            else if (index != null)
+                return index.archiveOf(indexedFile);
             else
                 return new File(zipFile.getName());
         }
+        /** Returns the path of the archive holding this file, or null if it
+         * is not in an archive. */
+        public String archivePath(){
+            if (file != null)
+                return null;
+            return inputFile().getPath();
+        }
     }
 
     private static InputStream doJDKBugWorkaround(InputStream is, long size) throws IOException {
@@ -508,7 +577,23 @@ public class SourceLocator
 
     /** Searches for a file with the given name in the exploded classPath. */
     public FoundFile lookupInClassPath( String fileName ) {
-        for (String dir : classPath) {
+        if( prefetcher != null ) {
+            FoundFile ret = prefetcher.take(fileName);
+            if( ret != null ) return ret;
+        }
+        return findInClassPath(fileName);
+    }
+    /** Searches for a file in the exploded classPath, ignoring prefetched
+     * files. */
+    FoundFile findInClassPath( String fileName ) {
+        ClassPathIndex index = classPathIndex();
+        int indexed = index.lookup(fileName);
+        int last = indexed < 0 ? classPath.size() : index.positionOfFile(indexed);
+        // the entries before the first indexed archive holding the file
+        // could still hold it if they are directories or unindexed archives
+        for (int i = 0; i < last; i++) {
+            if (index.isIndexed(i)) continue;
+            String dir = classPath.get(i);
             FoundFile ret = null;
             ClassSourceType cst = getClassSourceType(dir);
             if(cst == ClassSourceType.zip || cst == ClassSourceType.jar) {
@@ -520,7 +605,7 @@ public class SourceLocator
             if( ret != null )
             	return ret;
         }
-        return null;
+        return indexed < 0 ? null : new FoundFile(index, indexed);
     }
     private FoundFile lookupInDir(String dir, String fileName) {
         File f = new File( dir+File.separatorChar+fileName );
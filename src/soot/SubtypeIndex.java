@@ -0,0 +1,158 @@
+package soot;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import soot.util.BitVector;
+
+/** The subtype relation between the classes and interfaces of a
+ * {@link FastHierarchy}, indexed by class number, so that
+ * {@link FastHierarchy#canStoreClass(SootClass, SootClass)} is answered
+ * without walking the hierarchy.
+ *
+ * <p>A class is a subtype of another class if its preorder number falls
+ * within the interval of the other. The classes implementing an interface
+ * are the union of the intervals of its implementers; the merged intervals
+ * are kept as an array when there are few of them, and as a bit-vector of
+ * preorder numbers otherwise. The subinterfaces of an interface are a
+ * bit-vector of interface indices.
+ *
+ * <p>The index is a snapshot of the hierarchy when it is built; classes
+ * numbered later, or not yet resolved to the hierarchy level then, are not
+ * in it, and {@link #covers(SootClass)} is false for them.
+ */
+final class SubtypeIndex
+{
+    /** Interfaces whose implementers form at most this many intervals keep
+     * them in an array, which is scanned. */
+    private static final int MAX_RANGES = 4;
+
+    private final int size;
+    /** The interval of each class, or -1 for interfaces. */
+    private final int[] lower;
+    private final int[] upper;
+    /** The index among interfaces of each interface, or -1 for classes. */
+    private final int[] interfaceIndex;
+    /** For each interface, the merged intervals of its implementers as
+     * lower, upper pairs, or null if there are too many. */
+    private final int[][] ranges;
+    /** For each interface with too many intervals, the preorder numbers
+     * they cover, less the first one. */
+    private final BitVector[] rangeBits;
+    private final int[] rangeBase;
+    private final BitVector[] subinterfaces;
+    private final int objectNumber;
+
+    SubtypeIndex( FastHierarchy fh ) {
+        size = Scene.v().getClassNumberer().size() + 1;
+        lower = new int[size];
+        upper = new int[size];
+        interfaceIndex = new int[size];
+        Arrays.fill( lower, -1 );
+        Arrays.fill( upper, -1 );
+        Arrays.fill( interfaceIndex, -1 );
+        SootClass object = Scene.v().getObjectType().getSootClass();
+        objectNumber = object.getNumber();
+
+        int interfaces = 0;
+        // classes resolved lazily while the index is built are left out
+        for( SootClass cl : Scene.v().getClassNumberer() ) {
+            if( cl.getNumber() >= size ) break;
+            FastHierarchy.Interval i = fh.classToInterval.get( cl );
+            if( i != null ) {
+                lower[cl.getNumber()] = i.lower;
+                upper[cl.getNumber()] = i.upper;
+            } else if( cl.resolvingLevel() >= SootClass.HIERARCHY && cl.isInterface() ) {
+                interfaceIndex[cl.getNumber()] = interfaces++;
+            }
+        }
+
+        ranges = new int[interfaces][];
+        rangeBits = new BitVector[interfaces];
+        rangeBase = new int[interfaces];
+        subinterfaces = new BitVector[interfaces];
+        for( SootClass cl : Scene.v().getClassNumberer() ) {
+            if( cl.getNumber() >= size ) break;
+            int index = interfaceIndex[cl.getNumber()];
+            if( index < 0 ) continue;
+            BitVector sub = new BitVector( interfaces );
+            for( SootClass si : fh.getAllSubinterfaces( cl ) ) {
+                int siIndex = covers( si ) ? interfaceIndex[si.getNumber()] : -1;
+                if( siIndex >= 0 ) sub.set( siIndex );
+            }
+            subinterfaces[index] = sub;
+            int[] merged = mergedRanges( fh.getAllImplementersOfInterface( cl ) );
+            if( merged.length <= 2*MAX_RANGES ) {
+                ranges[index] = merged;
+            } else {
+                int base = merged[0];
+                BitVector bits = new BitVector( merged[merged.length-1] - base + 1 );
+                for( int r = 0; r < merged.length; r += 2 ) {
+                    for( int n = merged[r]; n <= merged[r+1]; n++ ) bits.set( n - base );
+                }
+                rangeBits[index] = bits;
+                rangeBase[index] = base;
+            }
+        }
+    }
+
+    /** Returns the intervals of the given classes, sorted and with nested
+     * and adjacent intervals merged, as lower, upper pairs. */
+    private int[] mergedRanges( Set<SootClass> classes ) {
+        long[] sorted = new long[classes.size()];
+        int n = 0;
+        for( SootClass cl : classes ) {
+            if( !covers( cl ) || lower[cl.getNumber()] < 0 ) continue;
+            sorted[n++] = ( (long) lower[cl.getNumber()] << 32 )
+                | upper[cl.getNumber()];
+        }
+        Arrays.sort( sorted, 0, n );
+        int[] ret = new int[2*n];
+        int m = 0;
+        for( int i = 0; i < n; i++ ) {
+            int lo = (int) ( sorted[i] >>> 32 );
+            int hi = (int) sorted[i];
+            if( m > 0 && lo <= ret[m-1] + 1 ) {
+                if( hi > ret[m-1] ) ret[m-1] = hi;
+            } else {
+                ret[m++] = lo;
+                ret[m++] = hi;
+            }
+        }
+        return Arrays.copyOf( ret, m );
+    }
+
+    /** Returns true if cl was in the hierarchy when the index was built. */
+    boolean covers( SootClass cl ) {
+        int n = cl.getNumber();
+        return n > 0 && n < size && ( lower[n] >= 0 || interfaceIndex[n] >= 0 );
+    }
+
+    /** Returns the same answer as
+     * {@link FastHierarchy#canStoreClass(SootClass, SootClass)}; both
+     * classes must be {@link #covers(SootClass) covered}. */
+    boolean canStore( SootClass child, SootClass parent ) {
+        int c = child.getNumber();
+        int p = parent.getNumber();
+        int childLower = lower[c];
+        if( lower[p] >= 0 ) {
+            if( childLower >= 0 ) {
+                return lower[p] <= childLower && upper[c] <= upper[p];
+            }
+            return p == objectNumber;
+        }
+        int index = interfaceIndex[p];
+        if( childLower < 0 ) {
+            return subinterfaces[index].get( interfaceIndex[c] );
+        }
+        int[] r = ranges[index];
+        if( r == null ) {
+            int bit = childLower - rangeBase[index];
+            return bit >= 0 && rangeBits[index].get( bit );
+        }
+        for( int i = 0; i < r.length; i += 2 ) {
+            if( r[i] <= childLower && childLower <= r[i+1] ) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package soot;
+
+/**
+ * Marker interface for {@link BodyTransformer}s that may be applied to
+ * several bodies at the same time.
+ *
+ * <p>When the body packs are run on more than one thread (see the
+ * <tt>-num-threads</tt> option), a transformer implementing this interface
+ * is invoked concurrently on bodies of different methods. By implementing
+ * it, a transformer promises that
+ * <ul>
+ * <li>it keeps no per-invocation state in fields of the transformer
+ * object, and</li>
+ * <li>it only modifies the body it is given; the rest of the program
+ * (the {@link Scene}, other classes and bodies) is only read.</li>
+ * </ul>
+ *
+ * <p>Body transformers that do not implement this interface keep working
+ * unchanged: {@link Transform#apply(Body)} runs them one at a time, holding
+ * {@link PackManager#sequentialTransformLock()}.
+ */
+public interface ThreadSafeBodyTransformer {
+}
@@ -219,6 +219,11 @@ public class Timers
                                " totalFlowComputations: " + totalFlowComputations + " avg: " + 
                                truncatedOf((double) totalFlowComputations / totalFlowNodes, 2));
         }
+
+        if(Scene.v().hasFastHierarchy()) {
+            G.v().out.println();
+            Scene.v().getFastHierarchy().printCacheStatistics();
+        }
     }
 
 
@@ -102,7 +102,16 @@ public class Transform implements HasPhaseOptions
 	if (DEBUG)
 	    PhaseDumper.v().dumpBefore(b, getPhaseName());
 
-        ((BodyTransformer) t).transform( b, phaseName, options );
+        PackManager pm = PackManager.v();
+        if( t instanceof ThreadSafeBodyTransformer || !pm.isRunningBodyPacksInParallel() ) {
+            ((BodyTransformer) t).transform( b, phaseName, options );
+        } else {
+            // transformers that do not declare themselves thread-safe are
+            // run one at a time
+            synchronized( pm.sequentialTransformLock() ) {
+                ((BodyTransformer) t).transform( b, phaseName, options );
+            }
+        }
 
 	if (DEBUG)
 	    PhaseDumper.v().dumpAfter(b, getPhaseName());
@@ -35,7 +35,13 @@ import java.io.*;
 public abstract class Type implements Switchable, Serializable, Numberable
 {
     public Type() {
-        Scene.v().getTypeNumberer().add( this );
+        this( true );
+    }
+    /** Creates a type, which is added to the type numberer only if
+     * number is true. Subclasses that create types which may be thrown
+     * away pass false, and number the instance they keep. */
+    protected Type( boolean number ) {
+        if( number ) Scene.v().getTypeNumberer().add( this );
     }
     /** Returns a textual representation of this type. */
     public abstract String toString();
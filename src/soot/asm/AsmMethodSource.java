@@ -137,6 +137,7 @@ import soot.util.Chain;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Table;
 
@@ -1764,7 +1765,10 @@ final class AsmMethodSource implements MethodSource {
 		labels = ArrayListMultimap.create(4, 1);
 		units = new HashMap<AbstractInsnNode, Unit>(nrInsn);
 		frames = new HashMap<AbstractInsnNode, StackFrame>(nrInsn);
-		trapHandlers = ArrayListMultimap.create(tryCatchBlocks.size(),1);
+		// keyed by identity-hashed labels; keep the handlers in bytecode
+		// order so that the stack locals of handlers are created in the same
+		// order whichever thread builds the body
+		trapHandlers = LinkedListMultimap.create(tryCatchBlocks.size());
 		body = jb;
 		/* retrieve all trap handlers */
 		for (TryCatchBlockNode tc : tryCatchBlocks)
@@ -83,6 +83,7 @@ public class BafLocal implements Local
     public void setType(Type t)
     {
         this.type = t;
+        Body.contentsModified();
     }
 
     public String toString()
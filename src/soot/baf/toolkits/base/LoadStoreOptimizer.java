@@ -34,14 +34,11 @@ import soot.baf.*;
 import soot.toolkits.scalar.*;
 import soot.toolkits.graph.*;
 
-public class LoadStoreOptimizer extends BodyTransformer
+public class LoadStoreOptimizer extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public LoadStoreOptimizer( Singletons.Global g ) {}
     public static LoadStoreOptimizer v() { return G.v().soot_baf_toolkits_base_LoadStoreOptimizer(); }
 
-    // Constants
-    boolean debug = false;
-    
     // constants returned by the stackIndependent function.
     final static private int FAILURE = 0;
     final static private int SUCCESS = 1;
@@ -54,8 +51,6 @@ public class LoadStoreOptimizer extends BodyTransformer
     final static private int STORE_LOAD_ELIMINATION = 0;
     final static private int STORE_LOAD_LOAD_ELIMINATION = -1;
 
-        
-    private Map<String,String> gOptions;
 
     /** The method that drives the optimizations. */
     /* This is the public interface to LoadStoreOptimizer */
@@ -63,13 +58,12 @@ public class LoadStoreOptimizer extends BodyTransformer
     protected void internalTransform(Body body, String phaseName, Map<String,String> options) 
     {   
 
-        gOptions = options;
-
         Instance instance = new Instance();
+        instance.gOptions = options;
         instance.mBody = body;        
         instance.mUnits =  body.getUnits();
         
-        debug = PhaseOptions.getBoolean(gOptions, "debug");
+        boolean debug = instance.debug = PhaseOptions.getBoolean(options, "debug");
         
         if(Options.v().verbose())
             G.v().out.println("[" + body.getMethod().getName() + "] Performing LoadStore optimizations...");
@@ -80,6 +74,8 @@ public class LoadStoreOptimizer extends BodyTransformer
     }
 class Instance {
     // Instance vars.
+    private Map<String,String> gOptions;
+    private boolean debug = false;
     private Chain<Unit> mUnits;
     private Body mBody;
     private LocalDefs mLocalDefs;
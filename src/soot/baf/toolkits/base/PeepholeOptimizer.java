@@ -41,68 +41,77 @@ import soot.*;
  *   @see ExamplePeephole
  */
 
-public class PeepholeOptimizer extends BodyTransformer
+public class PeepholeOptimizer extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public PeepholeOptimizer( Singletons.Global g ) {}
     public static PeepholeOptimizer v() { return G.v().soot_baf_toolkits_base_PeepholeOptimizer(); }
 
-    private InputStream peepholeListingStream = null;
     private final String packageName = "soot.baf.toolkits.base";
 
-    private final Map<String, Class<?>> peepholeMap = new HashMap<String, Class<?>>();
+    /** The peephole classes listed in peephole.dat, in the order in
+     * which they are applied; read once on first use. */
+    private List<Class<?>> peepholeClasses = null;
 
-    /** The method that drives the optimizations. */
-    /* This is the public interface to PeepholeOptimizer */
-  
-    protected void internalTransform(Body body, String phaseName, Map<String,String> options) 
-    {           
-        boolean changed = true;
-        BufferedReader reader = null;
-        
-        peepholeListingStream = PeepholeOptimizer.class.getResourceAsStream("peephole.dat");
+    private synchronized List<Class<?>> getPeepholeClasses() {
+        if (peepholeClasses != null)
+            return peepholeClasses;
+
+        InputStream peepholeListingStream = PeepholeOptimizer.class.getResourceAsStream("peephole.dat");
 	if (peepholeListingStream == null)
 	    throw new RuntimeException("could not open file peephole.dat!");
-        reader = new BufferedReader(new InputStreamReader(peepholeListingStream));        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(peepholeListingStream));        
 
         String line = null;
-        List<String> peepholes = new LinkedList<String>();
+        List<Class<?>> classes = new ArrayList<Class<?>>();
         try {
             line = reader.readLine();
             while(line != null) {
                 if(line.length() > 0)
-                    if(!(line.charAt(0) == '#'))
-                        peepholes.add(line);
+                    if(!(line.charAt(0) == '#')) {
+                        try {
+                            classes.add(Class.forName(packageName + "." + line));
+                        } catch (ClassNotFoundException e) {
+                            throw new RuntimeException(e.toString());
+                        }
+                    }
                 line = reader.readLine();
             }
         } catch (IOException e) {
             throw new RuntimeException("IO error occured while reading file:  " +
                                        line + System.getProperty("line.separator") + e);
         }
+        finally {
+            try
+            {
+                peepholeListingStream.close();
+            }
+            catch (IOException e)
+                {}
+        }
+        peepholeClasses = classes;
+        return peepholeClasses;
+    }
+
+    /** The method that drives the optimizations. */
+    /* This is the public interface to PeepholeOptimizer */
+  
+    protected void internalTransform(Body body, String phaseName, Map<String,String> options) 
+    {           
+        boolean changed = true;
+        List<Class<?>> peepholes = getPeepholeClasses();
 
-        
         while(changed) {
             changed = false;           
 
-            Iterator<String>  it = peepholes.iterator();
+            Iterator<Class<?>> it = peepholes.iterator();
             while(it.hasNext()) {
                 
                 boolean peepholeWorked = true;
-                String peepholeName = it.next();
+                Class<?> peepholeClass = it.next();
                 
                 while(peepholeWorked) {
                     peepholeWorked = false;
 
-                
-                    Class<?> peepholeClass;
-                    if((peepholeClass = peepholeMap.get(peepholeName)) == null) {
-                        try {
-                            peepholeClass =  Class.forName(packageName + "." + peepholeName);
-                        } catch (ClassNotFoundException e) {
-                            throw new RuntimeException(e.toString());
-                        }
-                        peepholeMap.put(peepholeName, peepholeClass);
-                    }
-                    
                     Peephole p = null;
                     try {
                         p = (Peephole) peepholeClass.newInstance();
@@ -118,11 +127,5 @@ public class PeepholeOptimizer extends BodyTransformer
                 }
             }
         }
-        try
-        {
-            peepholeListingStream.close();
-        }
-        catch (IOException e)
-            {}
     }
 }
@@ -46,6 +46,7 @@ import soot.SootClass;
 import soot.SootMethod;
 import soot.SootResolver;
 import soot.Type;
+import soot.dexpler.typing.DalvikTyper;
 import soot.jimple.Jimple;
 import soot.jimple.toolkits.typing.TypeAssigner;
 import soot.options.Options;
@@ -147,7 +148,11 @@ public class DexMethod {
             public Body getBody(SootMethod m, String phaseName) {
                 Body b = Jimple.v().newBody(m);
                 try {
-					dexBody.jimplify(b, m);
+                    // jimplify() keeps per-body state in the DalvikTyper
+                    // singleton, so dex bodies are built one at a time
+                    synchronized (DalvikTyper.v()) {
+                        dexBody.jimplify(b, m);
+                    }
                 } catch (InvalidDalvikBytecodeException e) {
                     String msg = "Warning: Invalid bytecode in method "+ m +": "+ e;
                     G.v().out.println(msg);
@@ -40,6 +40,7 @@ import soot.BodyTransformer;
 import soot.G;
 import soot.Local;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Unit;
 import soot.Value;
 import soot.grimp.Grimp;
@@ -58,7 +59,7 @@ import soot.toolkits.scalar.SmartLocalDefsPool;
 import soot.toolkits.scalar.UnitValueBoxPair;
 import soot.util.Chain;
 
-public class ConstructorFolder extends BodyTransformer
+public class ConstructorFolder extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public ConstructorFolder( Singletons.Global g ) {}
     public static ConstructorFolder v() { return G.v().soot_grimp_toolkits_base_ConstructorFolder(); }
@@ -122,6 +122,7 @@ abstract public class AbstractCastExpr implements CastExpr, ConvertToBaf
     public void setCastType(Type castType)
     {
         this.type = castType;
+        Body.contentsModified();
     }
 
     public Type getType()
@@ -85,6 +85,7 @@ public class JimpleLocal implements Local, ConvertToBaf {
 	/** Sets the type of this local. */
 	public void setType(Type t) {
 		this.type = t;
+		Body.contentsModified();
 	}
 
 	public String toString() {
@@ -18,8 +18,11 @@
  */
 
 package soot.jimple.spark;
+import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
 
 import soot.G;
 import soot.Local;
@@ -37,6 +40,7 @@ import soot.jimple.FieldRef;
 import soot.jimple.ReachingTypeDumper;
 import soot.jimple.Stmt;
 import soot.jimple.spark.builder.ContextInsensitiveBuilder;
+import soot.jimple.spark.builder.IncrementalBuilder;
 import soot.jimple.spark.geom.geomPA.GeomPointsTo;
 import soot.jimple.spark.ondemand.DemandCSPointsTo;
 import soot.jimple.spark.pag.AllocDotField;
@@ -45,14 +49,17 @@ import soot.jimple.spark.pag.Node;
 import soot.jimple.spark.pag.PAG;
 import soot.jimple.spark.pag.PAG2HTML;
 import soot.jimple.spark.pag.PAGDumper;
+import soot.jimple.spark.pag.PAGSnapshot;
 import soot.jimple.spark.pag.VarNode;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
 import soot.jimple.spark.solver.EBBCollapser;
 import soot.jimple.spark.solver.PropAlias;
 import soot.jimple.spark.solver.PropCycle;
+import soot.jimple.spark.solver.PropDiff;
 import soot.jimple.spark.solver.PropIter;
 import soot.jimple.spark.solver.PropMerge;
+import soot.jimple.spark.solver.PropParallel;
 import soot.jimple.spark.solver.PropWorklist;
 import soot.jimple.spark.solver.Propagator;
 import soot.jimple.spark.solver.SCCCollapser;
@@ -75,8 +82,24 @@ public class SparkTransformer extends SceneTransformer
         SparkOptions opts = new SparkOptions( options );
         final String output_dir = SourceLocator.v().getOutputDir();
 
+        IncrementalBuilder incrementalBuilder = incrementalBuilder();
+        if( opts.incremental() && incrementalBuilder != null
+                && options.equals( incrementalBuilder.getOptions() ) ) {
+            updateIncrementally( opts, incrementalBuilder );
+            return;
+        }
+
+        final boolean useSnapshot = opts.snapshot().length() > 0
+            && !opts.incremental() && !opts.geom_pta() && !opts.cs_demand();
+        String fingerprint = null;
+        if( useSnapshot ) {
+            fingerprint = PAGSnapshot.fingerprint( options );
+            if( loadSnapshot( opts, fingerprint ) ) return;
+        }
+
         // Build pointer assignment graph
-        ContextInsensitiveBuilder b = new ContextInsensitiveBuilder();
+        ContextInsensitiveBuilder b = opts.incremental()
+            ? new IncrementalBuilder( options ) : new ContextInsensitiveBuilder();
         if( opts.pre_jimplify() ) b.preJimplify();
         if( opts.force_gc() ) doGC();
         Date startBuild = new Date();
@@ -127,29 +150,8 @@ public class SparkTransformer extends SceneTransformer
 
         // Propagate
         Date startProp = new Date();
-        final Propagator[] propagator = new Propagator[1];
-        switch( opts.propagator() ) {
-            case SparkOptions.propagator_iter:
-                propagator[0] = new PropIter( pag );
-                break;
-            case SparkOptions.propagator_worklist:
-                propagator[0] = new PropWorklist( pag );
-                break;
-            case SparkOptions.propagator_cycle:
-                propagator[0] = new PropCycle( pag );
-                break;
-            case SparkOptions.propagator_merge:
-                propagator[0] = new PropMerge( pag );
-                break;
-            case SparkOptions.propagator_alias:
-                propagator[0] = new PropAlias( pag );
-                break;
-            case SparkOptions.propagator_none:
-                break;
-            default:
-                throw new RuntimeException();
-        }
-        if( propagator[0] != null ) propagator[0].propagate();
+        final Propagator propagator = makePropagator( opts, pag );
+        if( propagator != null ) propagator.propagate();
         Date endProp = new Date();
         reportTime( "Propagation", startProp, endProp );
         reportTime( "Solution found", startSimplify, endProp );
@@ -161,20 +163,8 @@ public class SparkTransformer extends SceneTransformer
             cgb.build();
         }
 
-        if( opts.verbose() ) {
-            G.v().out.println( "[Spark] Number of reachable methods: "
-                    +Scene.v().getReachableMethods().size() );
-        }
-
-        if( opts.set_mass() ) findSetMass( pag );
-
-        if( opts.dump_answer() ) new ReachingTypeDumper( pag, output_dir ).dump();
-        if( opts.dump_solution() ) dumper.dumpPointsToSets();
-        if( opts.dump_html() ) new PAG2HTML( pag, output_dir ).dump();
-        Scene.v().setPointsToAnalysis( pag );
-        if( opts.add_tags() ) {
-            addTags( pag );
-        }
+        publishResults( pag, dumper, opts, output_dir );
+        if( useSnapshot ) saveSnapshot( pag, fingerprint, opts );
 
         if ( opts.geom_pta() ) {
         	if ( opts.simplify_offline() || opts.simplify_sccs() ) {
@@ -199,6 +189,151 @@ public class SparkTransformer extends SceneTransformer
         }
     }
     
+    /** Records that the body of m was modified in place, so that the next
+     * incremental run of Spark builds it again. Bodies that were replaced
+     * are found without this. */
+    public void methodChanged( SootMethod m ) {
+        IncrementalBuilder incrementalBuilder = incrementalBuilder();
+        if( incrementalBuilder != null ) incrementalBuilder.methodChanged( m );
+    }
+
+    /** Returns the builder of the points-to analysis of the Scene, if it
+     * is the result of an incremental run of Spark. The builder is kept
+     * with the graph it updates, so both go away with the Scene. */
+    protected IncrementalBuilder incrementalBuilder() {
+        if( !Scene.v().hasPointsToAnalysis() ) return null;
+        PointsToAnalysis pa = Scene.v().getPointsToAnalysis();
+        if( !( pa instanceof PAG ) ) return null;
+        return ((PAG) pa).getIncrementalBuilder();
+    }
+
+    /** Returns the propagator selected by the options, or null for none. */
+    protected Propagator makePropagator( SparkOptions opts, PAG pag ) {
+        switch( opts.propagator() ) {
+            case SparkOptions.propagator_iter:
+                return new PropIter( pag );
+            case SparkOptions.propagator_worklist:
+                return new PropWorklist( pag );
+            case SparkOptions.propagator_parallel:
+                return new PropParallel( pag );
+            case SparkOptions.propagator_diff:
+                return new PropDiff( pag );
+            case SparkOptions.propagator_cycle:
+                return new PropCycle( pag );
+            case SparkOptions.propagator_merge:
+                return new PropMerge( pag );
+            case SparkOptions.propagator_alias:
+                return new PropAlias( pag );
+            case SparkOptions.propagator_none:
+                return null;
+            default:
+                throw new RuntimeException();
+        }
+    }
+
+    /** Reports, dumps and tags the propagated points-to sets as the options
+     * ask for, and makes pag the points-to analysis of the scene. */
+    protected void publishResults( PAG pag, PAGDumper dumper, SparkOptions opts,
+            String output_dir ) {
+        if( opts.verbose() ) {
+            G.v().out.println( "[Spark] Number of reachable methods: "
+                    +Scene.v().getReachableMethods().size() );
+        }
+
+        if( opts.set_mass() ) findSetMass( pag );
+
+        if( opts.dump_answer() ) new ReachingTypeDumper( pag, output_dir ).dump();
+        if( opts.dump_solution() ) dumper.dumpPointsToSets();
+        if( opts.dump_html() ) new PAG2HTML( pag, output_dir ).dump();
+        Scene.v().setPointsToAnalysis( pag );
+        if( opts.add_tags() ) {
+            addTags( pag );
+        }
+    }
+
+    /** Brings the pointer assignment graph and the points-to sets of the
+     * previous incremental run up to date with the changed methods. */
+    protected void updateIncrementally( SparkOptions opts,
+            IncrementalBuilder incrementalBuilder ) {
+        final PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+        final String output_dir = SourceLocator.v().getOutputDir();
+        Date startUpdate = new Date();
+        Set<VarNode> changed = incrementalBuilder.update();
+        Date endUpdate = new Date();
+        reportTime( "Pointer Assignment Graph updated", startUpdate, endUpdate );
+        if( opts.verbose() ) {
+            G.v().out.println( "[Spark] Nodes to propagate again: "+changed.size() );
+        }
+        if( opts.force_gc() ) doGC();
+
+        PAGDumper dumper = null;
+        if( opts.dump_pag() || opts.dump_solution() ) {
+            dumper = new PAGDumper( pag, output_dir );
+        }
+        if( opts.dump_pag() ) dumper.dump();
+
+        Date startProp = new Date();
+        Propagator propagator = makePropagator( opts, pag );
+        if( propagator instanceof PropWorklist ) {
+            ((PropWorklist) propagator).propagate( changed );
+        } else if( propagator != null ) {
+            // only the worklist propagator can resume from the changed
+            // nodes; the others propagate the updated graph from scratch
+            clearPointsToSets( pag );
+            propagator.propagate();
+        }
+        Date endProp = new Date();
+        reportTime( "Propagation", startProp, endProp );
+        if( opts.force_gc() ) doGC();
+
+        new CallGraphBuilder( pag ).build();
+        publishResults( pag, dumper, opts, output_dir );
+    }
+
+    /** Empties the points-to sets of all variables and fields of pag. */
+    protected void clearPointsToSets( PAG pag ) {
+        for( VarNode vn : pag.getVarNodeNumberer() ) vn.setP2Set( null );
+        for( AllocDotField adf : pag.getAllocDotFieldNodeNumberer() ) adf.setP2Set( null );
+    }
+
+    /** Loads the results of an earlier run from the snapshot file.
+     * Returns false if there is no snapshot for the current program. */
+    protected boolean loadSnapshot( SparkOptions opts, String fingerprint ) {
+        Date startLoad = new Date();
+        PAGSnapshot snapshot;
+        try {
+            snapshot = PAGSnapshot.read( new File( opts.snapshot() ), fingerprint, opts );
+        } catch( IOException e ) {
+            G.v().out.println( "[Spark] Couldn't load snapshot: "+e.getMessage() );
+            return false;
+        }
+        if( snapshot == null ) return false;
+        Scene.v().setCallGraph( snapshot.getCallGraph() );
+        Scene.v().setPointsToAnalysis( snapshot.getPAG() );
+        Date endLoad = new Date();
+        reportTime( "Snapshot loaded", startLoad, endLoad );
+        if( opts.verbose() ) {
+            G.v().out.println( "[Spark] Number of reachable methods: "
+                    +Scene.v().getReachableMethods().size() );
+        }
+        if( opts.add_tags() ) addTags( snapshot.getPAG() );
+        return true;
+    }
+
+    /** Saves the results of this run to the snapshot file. */
+    protected void saveSnapshot( PAG pag, String fingerprint, SparkOptions opts ) {
+        Date startSave = new Date();
+        try {
+            PAGSnapshot.write( pag, Scene.v().getCallGraph(), fingerprint,
+                    new File( opts.snapshot() ) );
+        } catch( IOException e ) {
+            G.v().out.println( "[Spark] Couldn't save snapshot: "+e.getMessage() );
+            return;
+        }
+        Date endSave = new Date();
+        reportTime( "Snapshot saved", startSave, endSave );
+    }
+
     protected void addTags( PAG pag ) {
         final Tag unknown = new StringTag( "Untagged Spark node" );
         final Map<Node, Tag> nodeToTag = pag.getNodeTags();
@@ -304,5 +439,3 @@ public class SparkTransformer extends SceneTransformer
         }
     }
 }
-
-
@@ -120,10 +120,10 @@ public class ContextInsensitiveBuilder {
     }
 
 
-    private PAG pag;
-    private CallGraphBuilder cgb;
+    protected PAG pag;
+    protected CallGraphBuilder cgb;
     private OnFlyCallGraph ofcg;
-    private ReachableMethods reachables;
+    protected ReachableMethods reachables;
     int classes = 0;
     int totalMethods = 0;
     int analyzedMethods = 0;
@@ -0,0 +1,666 @@
+package soot.jimple.spark.builder;
+import soot.jimple.spark.pag.*;
+import soot.jimple.spark.sets.*;
+import soot.jimple.toolkits.callgraph.*;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+import soot.*;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+
+import java.util.*;
+
+import soot.toolkits.scalar.Pair;
+import soot.util.ArrayNumberer;
+import soot.util.queue.*;
+import soot.options.*;
+
+/** A context insensitive pointer assignment graph builder that can bring
+ * the graph, and the points-to sets already propagated over it, up to date
+ * after the bodies of some methods have changed.
+ *
+ * <p>A method counts as changed if its active body is not the one the
+ * graph was built from, or if it was passed to {@link #methodChanged}.
+ * {@link #update} removes the nodes and edges of the changed methods and
+ * of the methods that are no longer reachable, clears the points-to sets
+ * that may have depended on them, builds the changed and newly reachable
+ * methods again, and returns the nodes from which propagation has to be
+ * resumed. All other points-to sets are kept, so the work done depends on
+ * the size of the change rather than on the size of the program.
+ *
+ * <p>The call edges are found again only for the changed and the newly
+ * reachable methods, and the nodes of a method are looked up in an index
+ * kept as the graph grows. If classes or methods were added to the Scene,
+ * any call may have new targets, so the whole CHA call graph is built
+ * again instead.
+ *
+ * <p>Only the CHA call graph is supported, and nodes must not have been
+ * merged, so the options on-fly-cg, vta, simplify-sccs and
+ * simplify-offline must be off, and the propagator must not be merge.
+ */
+public class IncrementalBuilder extends ContextInsensitiveBuilder {
+    /** Creates a builder for a run of Spark with the given phase options,
+     * which are kept to tell whether a later run can update its graph. */
+    public IncrementalBuilder( Map<String, String> options ) {
+        this.options = new HashMap<String, String>( options );
+    }
+    /** Returns the phase options of the run this builder was made for. */
+    public Map<String, String> getOptions() {
+        return options;
+    }
+    /** Creates an empty pointer assignment graph. */
+    public PAG setup( SparkOptions opts ) {
+        if( opts.on_fly_cg() || opts.vta()
+                || opts.simplify_sccs() || opts.simplify_offline()
+                || opts.propagator() == SparkOptions.propagator_merge ) {
+            throw new RuntimeException( "Incompatible options for incremental:true for cg.spark. Use -p cg.spark on-fly-cg:false,vta:false,simplify-sccs:false,simplify-offline:false and a propagator other than merge." );
+        }
+        PAG ret = super.setup( opts );
+        ret.setIncrementalBuilder( this );
+        return ret;
+    }
+    /** Fills in the pointer assignment graph returned by setup. */
+    public void build() {
+        super.build();
+        for( Edge e : cgb.getCallGraph() ) {
+            recordCall( e );
+        }
+        recordBodies();
+        indexNewNodes();
+        recordHierarchy();
+    }
+    /** Marks the body of m as changed, for bodies that were modified in
+     * place rather than replaced. */
+    public void methodChanged( SootMethod m ) {
+        changed.add( m );
+    }
+    /** Updates the pointer assignment graph for the methods that changed
+     * since the last call to build() or update(). Clears the points-to
+     * sets that may have to shrink, and returns the variable nodes from
+     * which propagation must resume; all other sets are left as they were
+     * after the last propagation. */
+    public Set<VarNode> update() {
+        indexNewNodes();
+
+        // the reachable methods whose bodies changed
+        Set<SootMethod> modified = new HashSet<SootMethod>();
+        for( Map.Entry<SootMethod, Body> e : bodies.entrySet() ) {
+            SootMethod m = e.getKey();
+            Body b = m.hasActiveBody() ? m.getActiveBody() : null;
+            if( b != e.getValue() || changed.contains( m ) ) modified.add( m );
+        }
+        changed.clear();
+
+        // find the methods to throw away, with their old call edges, and
+        // the methods to build
+        Set<SootMethod> stale = new HashSet<SootMethod>();
+        Set<SootMethod> rebuilt = new HashSet<SootMethod>();
+        Map<SootMethod, Set<Edge>> oldEdges = new HashMap<SootMethod, Set<Edge>>();
+        if( Scene.v().getClasses().size() != classCount
+                || Scene.v().getMethodNumberer().size() != methodCount ) {
+            rebuildCallGraph( modified, stale, rebuilt, oldEdges );
+        } else {
+            updateCallGraph( modified, stale, rebuilt, oldEdges );
+        }
+        if( pag.getOpts().verbose() ) {
+            G.v().out.println( "[Spark] Incremental update: "+stale.size()+
+                    " stale methods, "+rebuilt.size()+" methods to build" );
+        }
+
+        // the nodes of the stale methods
+        staleNodes = new HashSet<Node>();
+        for( SootMethod m : stale ) {
+            List<Node> nodes = methodNodes.get( m );
+            if( nodes != null ) staleNodes.addAll( nodes );
+        }
+
+        // remove their edges, and find the nodes that may lose points-to
+        // set elements
+        deleted = new HashMap<Node, Set<Node>>();
+        pending = new HashMap<Node, Set<Node>>();
+        pendingList = new LinkedList<Node>();
+        deletedElements = 0;
+        for( Node n : staleNodes ) {
+            if( n instanceof VarNode ) {
+                VarNode vn = (VarNode) n;
+                removeVarNodeEdges( vn );
+                for( FieldRefNode fr : vn.getAllFieldRefs() ) {
+                    removeFieldRefNodeEdges( fr );
+                }
+            } else {
+                AllocNode an = (AllocNode) n;
+                for( Node target : pag.allocLookup( an ) ) {
+                    pag.removeEdge( an, target );
+                    delete( target, an );
+                }
+            }
+        }
+
+        // constants passed as arguments are not nodes of the caller, so
+        // the edges from them are removed for all callees of stale methods,
+        // and added again below for the call edges still there
+        Set<SootMethod> callees = new HashSet<SootMethod>();
+        for( Set<Edge> edges : oldEdges.values() ) {
+            for( Edge e : edges ) {
+                SootMethod tgt = e.tgt();
+                if( stale.contains( tgt ) || !bodies.containsKey( tgt ) ) continue;
+                if( callees.add( tgt ) ) removeConstantArguments( tgt );
+            }
+        }
+        for( SootMethod m : stale ) {
+            forgetCalls( m );
+        }
+
+        // delete everything that may have been derived from what was
+        // deleted, then take the deleted nodes out of the sets; if that
+        // reaches a large part of the graph, propagating from scratch is
+        // cheaper than deleting element by element
+        boolean fromScratch =
+            !propagateDeletions( pag.getVarNodeNumberer().size() );
+        if( fromScratch ) {
+            for( VarNode vn : pag.getVarNodeNumberer() ) {
+                vn.setP2Set( null );
+            }
+            for( AllocNode an : pag.getAllocNodeNumberer() ) {
+                for( AllocDotField adf : an.getFields() ) {
+                    adf.setP2Set( null );
+                }
+            }
+        } else {
+            for( Node n : staleNodes ) {
+                n.setP2Set( null );
+            }
+            for( Map.Entry<Node, Set<Node>> e : deleted.entrySet() ) {
+                removeFromSet( e.getKey(), e.getValue() );
+            }
+        }
+        if( pag.getOpts().verbose() ) {
+            G.v().out.println( "[Spark] "+( fromScratch
+                        ? "Points-to sets cleared"
+                        : "Points-to sets of "+deleted.size()+" nodes reduced" ) );
+        }
+
+        // build the methods again, and connect them
+        QueueReader<Node> addedEdges = pag.edgeReader();
+        for( SootMethod m : stale ) {
+            G.v().MethodPAG_methodToPag.remove( m );
+            bodies.remove( m );
+        }
+        for( SootMethod m : rebuilt ) {
+            if( !m.isConcrete() && !m.isNative() ) continue;
+            MethodPAG mpag = MethodPAG.v( pag, m );
+            mpag.build();
+            mpag.addToPAG( null );
+        }
+        CallGraph cg = cgb.getCallGraph();
+        Set<Edge> edges = new LinkedHashSet<Edge>();
+        for( SootMethod m : rebuilt ) {
+            addAll( edges, cg.edgesOutOf( m ) );
+            addAll( edges, cg.edgesInto( m ) );
+        }
+        for( SootMethod m : callees ) {
+            addAll( edges, cg.edgesInto( m ) );
+        }
+        for( Edge e : edges ) {
+            addCallTarget( e );
+        }
+        for( SootMethod m : rebuilt ) {
+            bodies.put( m, m.hasActiveBody() ? m.getActiveBody() : null );
+        }
+        indexNewNodes();
+        recordHierarchy();
+
+        // seed the nodes that lost elements and the targets of new edges
+        // with the sets of their sources; the sets of the fields of objects
+        // are filled again by the propagator
+        Set<VarNode> ret = new HashSet<VarNode>();
+        for( Node n : fromScratch ? Collections.<Node>emptySet() : deleted.keySet() ) {
+            if( n instanceof VarNode ) ret.add( (VarNode) n );
+        }
+        while( !fromScratch && addedEdges.hasNext() ) {
+            addedEdges.next();
+            Node tgt = addedEdges.next();
+            if( tgt instanceof VarNode ) ret.add( (VarNode) tgt );
+        }
+        for( VarNode vn : ret ) {
+            pullSources( vn );
+        }
+        staleNodes = null;
+        deleted = null;
+        pending = null;
+        pendingList = null;
+        return ret;
+    }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    /** Finds the call edges out of the modified methods again, and out of
+     * the methods that only they reach, and removes the methods that are
+     * no longer reachable. The call edges of all other methods stay as
+     * they are, which is right as long as the class hierarchy has not
+     * changed. */
+    protected void updateCallGraph( Set<SootMethod> modified, Set<SootMethod> stale,
+            Set<SootMethod> rebuilt, Map<SootMethod, Set<Edge>> oldEdges ) {
+        CallGraph cg = cgb.getCallGraph();
+        for( SootMethod m : modified ) {
+            oldEdges.put( m, removeEdgesOutOf( cg, m ) );
+        }
+
+        // the new edges are found in a separate graph, which is followed
+        // only to methods that were not reachable before
+        CallGraph newEdges = new CallGraph();
+        ReachableMethods rm = new ReachableMethods( newEdges,
+                new ArrayList<MethodOrMethodContext>( modified ).iterator(),
+                new Filter( new EdgePredicate() {
+                public boolean want( Edge e ) {
+                        return !bodies.containsKey( e.tgt() );
+                    }
+                } ) );
+        new CallGraphBuilder( DumbPointerAnalysis.v(), newEdges, rm ).build();
+        for( Edge e : newEdges ) {
+            cg.addEdge( new Edge( e.getSrc(), e.srcUnit(), e.getTgt(), e.kind() ) );
+        }
+        rebuilt.addAll( modified );
+        stale.addAll( modified );
+        for( Iterator<MethodOrMethodContext> mIt = rm.listener(); mIt.hasNext(); ) {
+            rebuilt.add( mIt.next().method() );
+        }
+
+        // methods may only have become unreachable if edges were lost
+        boolean lost = false;
+        for( SootMethod m : modified ) {
+            if( !edgesOutOf( cg, m ).containsAll( oldEdges.get( m ) ) ) lost = true;
+        }
+        if( !lost ) return;
+        Set<SootMethod> reached = reachableMethods( cg );
+        Set<SootMethod> candidates = new HashSet<SootMethod>( bodies.keySet() );
+        candidates.addAll( rebuilt );
+        for( SootMethod m : candidates ) {
+            if( reached.contains( m ) ) continue;
+            Set<Edge> edges = removeEdgesOutOf( cg, m );
+            rebuilt.remove( m );
+            if( !bodies.containsKey( m ) ) continue;
+            stale.add( m );
+            if( !oldEdges.containsKey( m ) ) oldEdges.put( m, edges );
+        }
+    }
+
+    /** Builds the CHA call graph again, and compares it to the old one to
+     * find the methods whose call edges changed. */
+    protected void rebuildCallGraph( Set<SootMethod> modified, Set<SootMethod> stale,
+            Set<SootMethod> rebuilt, Map<SootMethod, Set<Edge>> oldEdges ) {
+        CallGraph oldCallGraph = cgb.getCallGraph();
+        cgb = new CallGraphBuilder( DumbPointerAnalysis.v() );
+        cgb.build();
+        ReachableMethods rm = cgb.reachables();
+        for( SootMethod m : bodies.keySet() ) {
+            Set<Edge> edges = edgesOutOf( oldCallGraph, m );
+            if( !rm.contains( m ) ) {
+                stale.add( m );
+                oldEdges.put( m, edges );
+            } else if( modified.contains( m )
+                    || !edgesOutOf( cgb.getCallGraph(), m ).equals( edges ) ) {
+                // a method whose call edges changed, for example because
+                // the class hierarchy has grown, is built again too
+                stale.add( m );
+                rebuilt.add( m );
+                oldEdges.put( m, edges );
+            }
+        }
+        for( Iterator<MethodOrMethodContext> mIt = rm.listener(); mIt.hasNext(); ) {
+            final SootMethod m = mIt.next().method();
+            if( !bodies.containsKey( m ) ) rebuilt.add( m );
+        }
+    }
+
+    /** Returns the methods reachable from the entry points over the edges
+     * now in cg. */
+    protected static Set<SootMethod> reachableMethods( CallGraph cg ) {
+        Set<SootMethod> ret = new HashSet<SootMethod>();
+        LinkedList<SootMethod> worklist = new LinkedList<SootMethod>();
+        for( SootMethod m : Scene.v().getEntryPoints() ) {
+            if( ret.add( m ) ) worklist.add( m );
+        }
+        while( !worklist.isEmpty() ) {
+            SootMethod m = worklist.removeFirst();
+            for( Iterator<Edge> eIt = cg.edgesOutOf( m ); eIt.hasNext(); ) {
+                SootMethod tgt = eIt.next().tgt();
+                if( ret.add( tgt ) ) worklist.add( tgt );
+            }
+        }
+        return ret;
+    }
+
+    /** Records the body each reachable method was built from. */
+    protected void recordBodies() {
+        for( Iterator<MethodOrMethodContext> mIt = reachables.listener(); mIt.hasNext(); ) {
+            final SootMethod m = mIt.next().method();
+            if( bodies.containsKey( m ) ) continue;
+            bodies.put( m, m.hasActiveBody() ? m.getActiveBody() : null );
+        }
+    }
+
+    /** Records the size of the class hierarchy the call graph was built
+     * for. */
+    protected void recordHierarchy() {
+        classCount = Scene.v().getClasses().size();
+        methodCount = Scene.v().getMethodNumberer().size();
+    }
+
+    /** Adds the nodes created since the last call to the index of the
+     * nodes of each method, and of the field references of each field. */
+    protected void indexNewNodes() {
+        ArrayNumberer<VarNode> varNodes = pag.getVarNodeNumberer();
+        for( ; indexedVarNodes < varNodes.size(); indexedVarNodes++ ) {
+            VarNode vn = varNodes.get( indexedVarNodes+1 );
+            addNode( ownerOf( vn ), vn );
+        }
+        ArrayNumberer<AllocNode> allocNodes = pag.getAllocNodeNumberer();
+        for( ; indexedAllocNodes < allocNodes.size(); indexedAllocNodes++ ) {
+            AllocNode an = allocNodes.get( indexedAllocNodes+1 );
+            addNode( an.getMethod(), an );
+            Object newExpr = an.getNewExpr();
+            if( newExpr instanceof Pair && ((Pair) newExpr).getO1() instanceof VarNode ) {
+                SootMethod m = ownerOf( (VarNode) ((Pair) newExpr).getO1() );
+                if( m != an.getMethod() ) addNode( m, an );
+            }
+        }
+        ArrayNumberer<FieldRefNode> fieldRefNodes = pag.getFieldRefNodeNumberer();
+        for( ; indexedFieldRefNodes < fieldRefNodes.size(); indexedFieldRefNodes++ ) {
+            FieldRefNode fr = fieldRefNodes.get( indexedFieldRefNodes+1 );
+            List<FieldRefNode> frs = fieldRefsByField.get( fr.getField() );
+            if( frs == null ) {
+                fieldRefsByField.put( fr.getField(), frs = new ArrayList<FieldRefNode>() );
+            }
+            frs.add( fr );
+        }
+    }
+
+    /** Returns the method whose local vn stands for, if any. */
+    protected static SootMethod ownerOf( VarNode vn ) {
+        if( vn instanceof LocalVarNode ) return ((LocalVarNode) vn).getMethod();
+        if( vn.getVariable() instanceof LocalVarNode ) {
+            return ((LocalVarNode) vn.getVariable()).getMethod();
+        }
+        return null;
+    }
+
+    protected void addNode( SootMethod m, Node n ) {
+        if( m == null ) return;
+        List<Node> nodes = methodNodes.get( m );
+        if( nodes == null ) methodNodes.put( m, nodes = new ArrayList<Node>() );
+        nodes.add( n );
+    }
+
+    /** Adds the edges for the call edge e to the graph. */
+    protected void addCallTarget( Edge e ) {
+        if( e.getTgt().method().getDeclaringClass().isPhantom() ) return;
+        MethodPAG.v( pag, e.tgt() ).addToPAG( null );
+        pag.addCallTarget( e );
+        recordCall( e );
+    }
+
+    /** Records the call of e, under which the graph keeps the edges
+     * added for it. */
+    protected void recordCall( Edge e ) {
+        if( !( e.srcUnit() instanceof Stmt ) ) return;
+        Stmt s = e.srcStmt();
+        if( !s.containsInvokeExpr() ) return;
+        Set<InvokeExpr> calls = callsOf.get( e.src() );
+        if( calls == null ) callsOf.put( e.src(), calls = new HashSet<InvokeExpr>() );
+        calls.add( s.getInvokeExpr() );
+    }
+
+    /** Forgets what the graph records about the calls in m. */
+    protected void forgetCalls( SootMethod m ) {
+        Set<InvokeExpr> calls = callsOf.remove( m );
+        if( calls == null ) return;
+        for( InvokeExpr ie : calls ) {
+            pag.callToMethod.remove( ie );
+            pag.callAssigns.remove( ie );
+            pag.virtualCallsToReceivers.remove( ie );
+        }
+    }
+
+    protected static void addAll( Set<Edge> edges, Iterator<Edge> eIt ) {
+        while( eIt.hasNext() ) edges.add( eIt.next() );
+    }
+
+    protected static Set<Edge> removeEdgesOutOf( CallGraph cg, SootMethod m ) {
+        Set<Edge> ret = edgesOutOf( cg, m );
+        for( Edge e : ret ) cg.removeEdge( e );
+        return ret;
+    }
+
+    protected static Set<Edge> edgesOutOf( CallGraph cg, SootMethod m ) {
+        Set<Edge> ret = new HashSet<Edge>();
+        for( Iterator<Edge> eIt = cg.edgesOutOf( m ); eIt.hasNext(); ) {
+            ret.add( eIt.next() );
+        }
+        return ret;
+    }
+
+    protected void removeVarNodeEdges( VarNode vn ) {
+        for( Node target : pag.simpleLookup( vn ) ) {
+            pag.removeEdge( vn, target );
+            deleteAll( target, vn.getP2Set() );
+        }
+        for( Node source : pag.simpleInvLookup( vn ) ) {
+            pag.removeEdge( source, vn );
+        }
+        for( Node target : pag.storeLookup( vn ) ) {
+            deleteFromFields( (FieldRefNode) target,
+                    ((FieldRefNode) target).getBase().getP2Set(), vn.getP2Set() );
+            pag.removeEdge( vn, target );
+        }
+        for( Node source : pag.loadInvLookup( vn ) ) {
+            pag.removeEdge( source, vn );
+        }
+        for( Node source : pag.allocInvLookup( vn ) ) {
+            pag.removeEdge( source, vn );
+        }
+    }
+
+    protected void removeFieldRefNodeEdges( FieldRefNode fr ) {
+        PointsToSetInternal bases = fr.getBase().getP2Set();
+        for( Node target : pag.loadLookup( fr ) ) {
+            pag.removeEdge( fr, target );
+            deleteLoaded( fr, bases, target );
+        }
+        for( Node source : pag.storeInvLookup( fr ) ) {
+            deleteFromFields( fr, bases, source.getP2Set() );
+            pag.removeEdge( source, fr );
+        }
+    }
+
+    /** Removes the edges from constants to the parameters of m. */
+    protected void removeConstantArguments( SootMethod m ) {
+        MethodNodeFactory nf = MethodPAG.v( pag, m ).nodeFactory();
+        List<Node> parms = new ArrayList<Node>();
+        if( !m.isStatic() ) parms.add( nf.caseThis() );
+        for( int i = 0; i < m.getParameterCount(); i++ ) {
+            if( m.getParameterType( i ) instanceof RefLikeType ) {
+                parms.add( nf.caseParm( i ) );
+            }
+        }
+        for( Node parm : parms ) {
+            for( Node source : pag.simpleInvLookup( (VarNode) parm ) ) {
+                // the variable of a string or class constant is its
+                // allocation site
+                if( !( source instanceof GlobalVarNode ) ) continue;
+                if( !( ((GlobalVarNode) source).getVariable() instanceof AllocNode ) ) continue;
+                pag.removeEdge( source, parm );
+                deleteAll( parm, source.getP2Set() );
+            }
+        }
+    }
+
+    /** Records that n may lose the element e of its points-to set. */
+    protected void delete( Node n, Node e ) {
+        if( staleNodes.contains( n ) ) return;
+        if( !n.getP2Set().contains( e ) ) return;
+        Set<Node> nDeleted = deleted.get( n );
+        if( nDeleted == null ) deleted.put( n, nDeleted = new HashSet<Node>() );
+        if( !nDeleted.add( e ) ) return;
+        deletedElements++;
+        Set<Node> nPending = pending.get( n );
+        if( nPending == null ) {
+            pending.put( n, nPending = new HashSet<Node>() );
+            pendingList.add( n );
+        }
+        nPending.add( e );
+    }
+
+    protected void deleteAll( final Node n, PointsToSetInternal elements ) {
+        elements.forall( new P2SetVisitor() {
+        public final void visit( Node e ) {
+                delete( n, e );
+            }
+        } );
+    }
+
+    protected void deleteAll( Node n, Collection<Node> elements ) {
+        for( Node e : elements ) delete( n, e );
+    }
+
+    /** Deletes the elements from the fields f of the objects in bases,
+     * where f is the field of fr. */
+    protected void deleteFromFields( FieldRefNode fr, PointsToSetInternal bases,
+            final PointsToSetInternal elements ) {
+        final SparkField field = fr.getField();
+        bases.forall( new P2SetVisitor() {
+        public final void visit( Node n ) {
+                AllocDotField nDotF = pag.findAllocDotField( (AllocNode) n, field );
+                if( nDotF != null ) deleteAll( nDotF, elements );
+            }
+        } );
+    }
+
+    /** Deletes from target what the load from fr may have loaded from the
+     * objects in bases. */
+    protected void deleteLoaded( FieldRefNode fr, PointsToSetInternal bases,
+            final Node target ) {
+        final SparkField field = fr.getField();
+        bases.forall( new P2SetVisitor() {
+        public final void visit( Node n ) {
+                AllocDotField nDotF = pag.findAllocDotField( (AllocNode) n, field );
+                if( nDotF != null ) deleteAll( target, nDotF.getP2Set() );
+            }
+        } );
+    }
+
+    /** Deletes the elements that may have been derived from deleted
+     * elements, following the points-to sets computed before the change.
+     * Gives up and returns false once more than maxElements elements are
+     * deleted. */
+    protected boolean propagateDeletions( int maxElements ) {
+        while( !pendingList.isEmpty() ) {
+            if( deletedElements > maxElements ) return false;
+            Node n = pendingList.removeFirst();
+            final Set<Node> elements = pending.remove( n );
+            if( n instanceof VarNode ) {
+                VarNode vn = (VarNode) n;
+                for( Node target : pag.simpleLookup( vn ) ) {
+                    deleteAll( target, elements );
+                }
+                for( Node target : pag.storeLookup( vn ) ) {
+                    final SparkField field = ((FieldRefNode) target).getField();
+                    ((FieldRefNode) target).getBase().getP2Set().forall( new P2SetVisitor() {
+                    public final void visit( Node base ) {
+                            AllocDotField nDotF = pag.findAllocDotField( (AllocNode) base, field );
+                            if( nDotF != null ) deleteAll( nDotF, elements );
+                        }
+                    } );
+                }
+                // vn may no longer point to the objects in elements, so
+                // nothing may have been loaded from or stored into them
+                // through vn
+                for( FieldRefNode fr : vn.getAllFieldRefs() ) {
+                    for( Node base : elements ) {
+                        AllocDotField nDotF = pag.findAllocDotField( (AllocNode) base, fr.getField() );
+                        if( nDotF == null ) continue;
+                        for( Node target : pag.loadLookup( fr ) ) {
+                            deleteAll( target, nDotF.getP2Set() );
+                        }
+                        for( Node source : pag.storeInvLookup( fr ) ) {
+                            deleteAll( nDotF, source.getP2Set() );
+                        }
+                    }
+                }
+            } else {
+                AllocDotField nDotF = (AllocDotField) n;
+                List<FieldRefNode> loads = fieldRefsByField.get( nDotF.getField() );
+                if( loads == null ) continue;
+                for( FieldRefNode fr : loads ) {
+                    if( !fr.getBase().getP2Set().contains( nDotF.getBase() ) ) continue;
+                    for( Node target : pag.loadLookup( fr ) ) {
+                        deleteAll( target, elements );
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Replaces the points-to set of n by the set without the elements in
+     * removed. The remaining elements count as propagated already. */
+    protected void removeFromSet( Node n, final Set<Node> removed ) {
+        PointsToSetInternal old = n.getP2Set();
+        n.setP2Set( null );
+        final PointsToSetInternal p2set = n.makeP2Set();
+        old.forall( new P2SetVisitor() {
+        public final void visit( Node e ) {
+                if( !removed.contains( e ) ) p2set.add( e );
+            }
+        } );
+        p2set.flushNew();
+    }
+
+    /** Adds the points-to sets of the sources of vn to the set of vn. */
+    protected void pullSources( VarNode vn ) {
+        final PointsToSetInternal p2set = vn.makeP2Set();
+        for( Node source : pag.simpleInvLookup( vn ) ) {
+            p2set.addAll( source.getP2Set(), null );
+        }
+        for( Node source : pag.loadInvLookup( vn ) ) {
+            final SparkField field = ((FieldRefNode) source).getField();
+            ((FieldRefNode) source).getBase().getP2Set().forall( new P2SetVisitor() {
+            public final void visit( Node n ) {
+                    AllocDotField nDotF = pag.findAllocDotField( (AllocNode) n, field );
+                    if( nDotF != null ) p2set.addAll( nDotF.getP2Set(), null );
+                }
+            } );
+        }
+    }
+
+    /** The body each reachable method was built from, or null if it has
+     * none. */
+    private final Map<SootMethod, Body> bodies = new HashMap<SootMethod, Body>();
+    private final Set<SootMethod> changed = new HashSet<SootMethod>();
+    private final Map<String, String> options;
+    /** The number of classes and methods of the Scene when the call graph
+     * was last built. */
+    private int classCount;
+    private int methodCount;
+    /** The nodes of each method, including those of earlier bodies. */
+    private final Map<SootMethod, List<Node>> methodNodes = new HashMap<SootMethod, List<Node>>();
+    /** The field reference nodes of each field, for the loads through
+     * them. */
+    private final Map<SparkField, List<FieldRefNode>> fieldRefsByField =
+        new HashMap<SparkField, List<FieldRefNode>>();
+    /** The numbers of nodes up to which the indexes above are complete. */
+    private int indexedVarNodes;
+    private int indexedAllocNodes;
+    private int indexedFieldRefNodes;
+    /** The calls of each method that edges were added to the graph for. */
+    private final Map<SootMethod, Set<InvokeExpr>> callsOf = new HashMap<SootMethod, Set<InvokeExpr>>();
+    private Set<Node> staleNodes;
+    /** For each node, the elements it may lose. */
+    private Map<Node, Set<Node>> deleted;
+    /** For each node, the elements it may lose whose consequences have
+     * not been followed yet. */
+    private Map<Node, Set<Node>> pending;
+    private LinkedList<Node> pendingList;
+    /** The number of elements in deleted. */
+    private int deletedElements;
+}
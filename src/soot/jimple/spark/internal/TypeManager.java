@@ -19,7 +19,6 @@
 
 package soot.jimple.spark.internal;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,6 +38,7 @@ import soot.TypeSwitch;
 import soot.jimple.spark.pag.AllocNode;
 import soot.jimple.spark.pag.Node;
 import soot.jimple.spark.pag.PAG;
+import soot.options.Options;
 import soot.util.ArrayNumberer;
 import soot.util.BitVector;
 import soot.util.LargeNumberedMap;
@@ -78,6 +78,29 @@ public final class TypeManager {
     }
     final public BitVector get( Type type ) {
         if( type == null ) return null;
+        updateTypeMasks();
+        BitVector ret = (BitVector) typeMask.get( type );
+        if( ret == null && fh != null )
+        	// If we have a phantom class and have no type mask, we make one
+        	// that agrees with castNeverFails(), which is what small points-to
+        	// sets are filtered with. It is not stored, so that masks can be
+        	// looked up from several threads.
+        	if (type instanceof RefType && ((RefType) type).getSootClass().isPhantom()) {
+        		ret = new BitVector();
+        		for( final AllocNode an : pag.getAllocNodeNumberer()) {
+        			if( castNeverFails( an.getType(), type ) ) {
+        				ret.set( an.getNumber() );
+        			}
+        		}
+        	} else
+        		throw new RuntimeException( "Type mask not found for type "+type );
+        return ret;
+    }
+    /** Adds the allocation nodes created since the last call to the type
+     * masks. {@link #get(Type)} does this on its own; callers that look up
+     * masks from several threads at once must call it beforehand. */
+    final public void updateTypeMasks() {
+        if( allocNodeListener == null ) return;
         while(allocNodeListener.hasNext()) {
             AllocNode n = allocNodeListener.next();
             for( final Type t : Scene.v().getTypeNumberer()) {
@@ -99,15 +122,6 @@ public final class TypeManager {
                 }
             }
         }
-        BitVector ret = (BitVector) typeMask.get( type );
-        if( ret == null && fh != null )
-        	// If we have a phantom class and have no type mask, we assume that
-        	// it is not cast-compatible to anything
-        	if (type instanceof RefType && ((RefType) type).getSootClass().isPhantom())
-        		return new BitVector();
-        	else
-        		throw new RuntimeException( "Type mask not found for type "+type );
-        return ret;
     }
     final public void clearTypeMask() {
         typeMask = null;
@@ -138,7 +152,9 @@ public final class TypeManager {
                 if (sc.isInterface()) {
                     makeMaskOfInterface(sc);
                 }
-                continue;
+                // phantom classes are not in the class hierarchy walked
+                // above, so their masks are made node by node below
+                if (!sc.isPhantom() || typeMask.get(t) != null) continue;
             }
             // **
             BitVector mask = new BitVector( allocNodes.size() );
@@ -164,12 +180,30 @@ public final class TypeManager {
         if( src instanceof AnySubType ) return true;
         if( dst instanceof NullType ) return false;
         if( dst instanceof AnySubType ) throw new RuntimeException( "oops src="+src+" dst="+dst );
-        return fh.canStoreType( src, dst );
+        return currentFastHierarchy().canStoreType( src, dst );
+    }
+    /** In lazy resolution mode, classes can join the hierarchy while the
+     * points-to sets are computed, and the resolver then drops the fast
+     * hierarchy of the Scene. A hierarchy taken from the Scene is replaced
+     * by the one the Scene makes next, so that casts to the new classes are
+     * not filtered against a stale hierarchy. */
+    final protected FastHierarchy currentFastHierarchy() {
+        FastHierarchy ret = fh;
+        if( ret != null && fromScene ) {
+            FastHierarchy current = Scene.v().getOrMakeFastHierarchy();
+            if( current != ret ) fh = ret = current;
+        }
+        return ret;
+    }
+    public void setFastHierarchy( FastHierarchy fh ) {
+        this.fh = fh;
+        fromScene = fh != null && Options.v().lazy_resolution()
+            && fh == Scene.v().getOrMakeFastHierarchy();
     }
-    public void setFastHierarchy( FastHierarchy fh ) { this.fh = fh; }
-    public FastHierarchy getFastHierarchy() { return fh; }
+    public FastHierarchy getFastHierarchy() { return currentFastHierarchy(); }
 
     protected FastHierarchy fh = null;
+    private boolean fromScene = false;
     protected PAG pag;
     protected QueueReader<AllocNode> allocNodeListener = null;
     // ** new methods
@@ -210,8 +244,8 @@ public final class TypeManager {
             }
         }
 
-        Collection<SootClass> subclasses = fh.getSubclassesOf(clazz);
-        if (subclasses == Collections.EMPTY_LIST) {
+        Collection<SootClass> subclasses = currentFastHierarchy().getSubclassesOf(clazz);
+        if (subclasses.isEmpty()) {
             for (AllocNode an : anySubtypeAllocs) {
                 mask.set(an.getNumber());
             }
@@ -232,7 +266,7 @@ public final class TypeManager {
         
         BitVector ret = new BitVector(pag.getAllocNodeNumberer().size());
         typeMask.put(interf.getType(), ret);
-        Collection<SootClass> implementers = fh.getAllImplementersOfInterface(interf);
+        Collection<SootClass> implementers = currentFastHierarchy().getAllImplementersOfInterface(interf);
             
         for (SootClass impl : implementers) {
             BitVector other = (BitVector)typeMask.get(impl.getType());
@@ -48,13 +48,16 @@ import soot.jimple.InvokeExpr;
 import soot.jimple.NullConstant;
 import soot.jimple.Stmt;
 import soot.jimple.spark.builder.GlobalNodeFactory;
+import soot.jimple.spark.builder.IncrementalBuilder;
 import soot.jimple.spark.builder.MethodNodeFactory;
 import soot.jimple.spark.internal.TypeManager;
 import soot.jimple.spark.sets.BitPointsToSet;
+import soot.jimple.spark.sets.CompressedPointsToSet;
 import soot.jimple.spark.sets.DoublePointsToSet;
 import soot.jimple.spark.sets.EmptyPointsToSet;
 import soot.jimple.spark.sets.HashPointsToSet;
 import soot.jimple.spark.sets.HybridPointsToSet;
+import soot.jimple.spark.sets.InternedPointsToSet;
 import soot.jimple.spark.sets.P2SetFactory;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
@@ -111,6 +114,12 @@ public class PAG implements PointsToAnalysis {
             case SparkOptions.set_impl_bit:
                 setFactory = BitPointsToSet.getFactory();
                 break;
+            case SparkOptions.set_impl_compressed:
+                setFactory = CompressedPointsToSet.getFactory();
+                break;
+            case SparkOptions.set_impl_interned:
+                setFactory = InternedPointsToSet.getFactory();
+                break;
             case SparkOptions.set_impl_double:
                 P2SetFactory oldF;
                 P2SetFactory newF;
@@ -133,6 +142,12 @@ public class PAG implements PointsToAnalysis {
                     case SparkOptions.double_set_old_bit:
                         oldF = BitPointsToSet.getFactory();
                         break;
+                    case SparkOptions.double_set_old_compressed:
+                        oldF = CompressedPointsToSet.getFactory();
+                        break;
+                    case SparkOptions.double_set_old_interned:
+                        oldF = InternedPointsToSet.getFactory();
+                        break;
                     default:
                         throw new RuntimeException();
                 }
@@ -155,6 +170,12 @@ public class PAG implements PointsToAnalysis {
                     case SparkOptions.double_set_new_bit:
                         newF = BitPointsToSet.getFactory();
                         break;
+                    case SparkOptions.double_set_new_compressed:
+                        newF = CompressedPointsToSet.getFactory();
+                        break;
+                    case SparkOptions.double_set_new_interned:
+                        newF = InternedPointsToSet.getFactory();
+                        break;
                     default:
                         throw new RuntimeException();
                 }
@@ -720,6 +741,27 @@ public class PAG implements PointsToAnalysis {
 		}
     }
 
+    /** Removes an edge from the graph, returning false if it was not there.
+     * Unlike addEdge, this does not look for the replacements of merged
+     * nodes, and does not notify readers of the edge queue. */
+    public final boolean removeEdge( Node from, Node to ) {
+        if( from instanceof VarNode ) {
+            if( to instanceof VarNode ) {
+                return removeFromMap( simple, (VarNode) from, to )
+                    | removeFromMap( simpleInv, (VarNode) to, from );
+            } else {
+                return removeFromMap( store, (VarNode) from, to )
+                    | removeFromMap( storeInv, (FieldRefNode) to, from );
+            }
+        } else if( from instanceof FieldRefNode ) {
+            return removeFromMap( load, (FieldRefNode) from, to )
+                | removeFromMap( loadInv, (VarNode) to, from );
+        } else {
+            return removeFromMap( alloc, (AllocNode) from, to )
+                | removeFromMap( allocInv, (VarNode) to, from );
+        }
+    }
+
     protected ChunkedQueue<Node> edgeQueue = new ChunkedQueue<Node>();
     public QueueReader<Node> edgeReader() { return edgeQueue.reader(); }
 
@@ -733,6 +775,10 @@ public class PAG implements PointsToAnalysis {
     public void setOnFlyCallGraph( OnFlyCallGraph ofcg ) { this.ofcg = ofcg; }
     public OnFlyCallGraph getOnFlyCallGraph() { return ofcg; }
     public OnFlyCallGraph ofcg() { return ofcg; }
+    /** Sets the builder that keeps this graph up to date with changed
+     * methods in incremental runs of Spark. */
+    public void setIncrementalBuilder( IncrementalBuilder incrementalBuilder ) { this.incrementalBuilder = incrementalBuilder; }
+    public IncrementalBuilder getIncrementalBuilder() { return incrementalBuilder; }
     /** Adds the base of a dereference to the list of dereferenced 
      * variables. */
     public void addDereference( VarNode base ) {
@@ -1149,12 +1195,38 @@ public class PAG implements PointsToAnalysis {
 	return ((Set<Node>) valueList).add( value );
     }
 	
+    protected <K extends Node> boolean removeFromMap( Map<K, Object> m, K key, Node value ) {
+	Object valueList = m.get( key );
+	if( valueList == null ) return false;
+	if( valueList instanceof Set ) {
+	    Set<Node> vl = (Set<Node>) valueList;
+	    if( !vl.remove( value ) ) return false;
+	    if( vl.isEmpty() ) m.remove( key );
+	    return true;
+	}
+	Node[] ar = (Node[]) valueList;
+	for( int i = 0; i < ar.length; i++ ) {
+	    if( ar[i] != value ) continue;
+	    if( ar.length == 1 ) {
+		m.remove( key );
+	    } else {
+		Node[] newArray = new Node[ar.length-1];
+		System.arraycopy( ar, 0, newArray, 0, i );
+		System.arraycopy( ar, i+1, newArray, i, ar.length-i-1 );
+		m.put( key, newArray );
+	    }
+	    return true;
+	}
+	return false;
+    }
+	
     private boolean runGeomPTA = false;
     protected Map<Pair, Set<Edge>> assign2edges = new HashMap<Pair, Set<Edge>>();
     private final Map<Object, LocalVarNode> valToLocalVarNode = new HashMap<Object, LocalVarNode>(1000);
     private final Map<Object, GlobalVarNode> valToGlobalVarNode = new HashMap<Object, GlobalVarNode>(1000);
     private final Map<Object, AllocNode> valToAllocNode = new HashMap<Object, AllocNode>(1000);
     private OnFlyCallGraph ofcg;
+    private IncrementalBuilder incrementalBuilder;
     private final ArrayList<VarNode> dereferences = new ArrayList<VarNode>();
     protected TypeManager typeManager;
     private final LargeNumberedMap<Local, LocalVarNode> localToNodeMap =
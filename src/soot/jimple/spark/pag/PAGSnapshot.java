@@ -0,0 +1,803 @@
+package soot.jimple.spark.pag;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import soot.AnySubType;
+import soot.ArrayType;
+import soot.Body;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Kind;
+import soot.Local;
+import soot.LongType;
+import soot.NullType;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.VoidType;
+import soot.jimple.ClassConstant;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+import soot.options.SparkOptions;
+import soot.toolkits.scalar.Pair;
+
+/** Saves a solved pointer assignment graph, with its points-to sets and
+ * the call graph, to a binary file, and loads it back into a later run of
+ * Soot on the same program.
+ *
+ * <p>Methods, fields and types are stored by their signatures; locals by
+ * their name and expressions by their position in the body of their
+ * method, so loading resolves them against the bodies of the new run.
+ * The file starts with a fingerprint of the class path, the entry points
+ * and the Spark options; {@link #read} ignores files whose fingerprint
+ * differs, so that a snapshot is never used for another program. Bodies
+ * must have been produced the same way in both runs, which holds as long
+ * as nothing transforms them before Spark.
+ *
+ * <p>The file is read through a memory mapping. Only the graph, the
+ * points-to sets and the call graph are kept; the on-the-fly call graph
+ * and the call site maps of the PAG are not.
+ */
+public class PAGSnapshot {
+    /** Returns the fingerprint of the current class path, entry points
+     * and the given Spark options. */
+    public static String fingerprint( Map<String, String> options ) {
+        StringBuilder b = new StringBuilder();
+        b.append( VERSION ).append( '\n' );
+        for( String entry : Scene.v().getSootClassPath().split( File.pathSeparator ) ) {
+            File f = new File( entry );
+            long[] stamp = new long[3];
+            stampFiles( f, stamp );
+            b.append( f.getAbsolutePath() ).append( ' ' ).append( stamp[0] )
+                .append( ' ' ).append( stamp[1] ).append( ' ' ).append( stamp[2] ).append( '\n' );
+        }
+        for( String dir : Options.v().process_dir() ) b.append( dir ).append( '\n' );
+        for( SootMethod m : Scene.v().getEntryPoints() ) {
+            b.append( m.getSignature() ).append( '\n' );
+        }
+        for( Map.Entry<String, String> e : new TreeMap<String, String>( options ).entrySet() ) {
+            if( e.getKey().equals( "snapshot" ) ) continue;
+            b.append( e.getKey() ).append( ':' ).append( e.getValue() ).append( '\n' );
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( b.toString().getBytes( "UTF-8" ) );
+            StringBuilder ret = new StringBuilder();
+            for( byte d : digest ) ret.append( String.format( "%02x", d & 0xff ) );
+            return ret.toString();
+        } catch( NoSuchAlgorithmException e ) {
+            throw new RuntimeException( e );
+        } catch( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /** Writes pag and cg to file. The file is replaced only once it has
+     * been written completely. */
+    public static void write( PAG pag, CallGraph cg, String fingerprint, File file ) throws IOException {
+        File tmp = new File( file.getPath()+".tmp" );
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( new FileOutputStream( tmp ), 1<<16 ) );
+        boolean written = false;
+        try {
+            new Writer( pag, out ).write( cg, fingerprint );
+            written = true;
+        } finally {
+            out.close();
+            if( !written ) tmp.delete();
+        }
+        if( file.exists() && !file.delete() || !tmp.renameTo( file ) ) {
+            throw new IOException( "Couldn't replace "+file );
+        }
+    }
+
+    /** Reads the snapshot in file into a new pointer assignment graph with
+     * the options opts. Returns null if file does not exist or was written
+     * for another fingerprint. */
+    public static PAGSnapshot read( File file, String fingerprint, SparkOptions opts ) throws IOException {
+        if( !file.isFile() ) return null;
+        FileInputStream in = new FileInputStream( file );
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buf = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            Reader reader = new Reader( buf );
+            if( buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION
+                    || !reader.readString().equals( fingerprint ) ) {
+                return null;
+            }
+            return reader.read( new PAG( opts ) );
+        } catch( BufferUnderflowException e ) {
+            throw new IOException( "Truncated snapshot "+file );
+        } finally {
+            in.close();
+        }
+    }
+
+    public PAG getPAG() { return pag; }
+    public CallGraph getCallGraph() { return callGraph; }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    private PAGSnapshot( PAG pag, CallGraph callGraph ) {
+        this.pag = pag;
+        this.callGraph = callGraph;
+    }
+
+    /** Accumulates the number, total size and latest modification time of
+     * the files under f. */
+    private static void stampFiles( File f, long[] stamp ) {
+        File[] children = f.listFiles();
+        if( children == null ) {
+            if( !f.exists() ) return;
+            stamp[0]++;
+            stamp[1] += f.length();
+            stamp[2] = Math.max( stamp[2], f.lastModified() );
+            return;
+        }
+        Arrays.sort( children );
+        for( File child : children ) stampFiles( child, stamp );
+    }
+
+    private static final int MAGIC = 0x53504b53;
+    private static final int VERSION = 1;
+
+    // node records
+    private static final int N_END = 0;
+    private static final int N_ALLOC = 1;
+    private static final int N_STRING_CONSTANT = 2;
+    private static final int N_CLASS_CONSTANT = 3;
+    private static final int N_LOCAL_VAR = 4;
+    private static final int N_GLOBAL_VAR = 5;
+    private static final int N_FIELD_REF = 6;
+    private static final int N_ALLOC_DOT_FIELD = 7;
+
+    // variables and allocation sites
+    private static final int K_NULL = 0;
+    private static final int K_NODE = 1;
+    private static final int K_STRING = 2;
+    private static final int K_INTEGER = 3;
+    private static final int K_METHOD = 4;
+    private static final int K_FIELD = 5;
+    private static final int K_TYPE = 6;
+    private static final int K_CLASS = 7;
+    private static final int K_LOCAL = 8;
+    private static final int K_VALUE = 9;
+    private static final int K_PAIR = 10;
+    private static final int K_PARM = 11;
+    private static final int K_ARRAY_ELEMENT = 12;
+
+    // types
+    private static final int T_REF = 0;
+    private static final int T_ARRAY = 1;
+    private static final int T_ANY_SUB = 2;
+    private static final int T_NULL = 3;
+    private static final int T_BASIC = 4;
+
+    private static final Type[] basicTypes() {
+        return new Type[] { BooleanType.v(), ByteType.v(), CharType.v(),
+            ShortType.v(), IntType.v(), LongType.v(), FloatType.v(), DoubleType.v(),
+            VoidType.v() };
+    }
+
+    private static final Kind[] KINDS = { Kind.INVALID, Kind.STATIC,
+        Kind.VIRTUAL, Kind.INTERFACE, Kind.SPECIAL, Kind.CLINIT, Kind.THREAD,
+        Kind.EXECUTOR, Kind.ASYNCTASK, Kind.FINALIZE, Kind.INVOKE_FINALIZE,
+        Kind.PRIVILEGED, Kind.NEWINSTANCE, Kind.REFL_INVOKE,
+        Kind.REFL_CONSTR_NEWINSTANCE, Kind.REFL_CLASS_NEWINSTANCE };
+
+    private static class Writer {
+        Writer( PAG pag, DataOutputStream out ) {
+            this.pag = pag;
+            this.out = out;
+        }
+
+        void write( CallGraph cg, String fingerprint ) throws IOException {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            writeString( fingerprint );
+
+            for( VarNode n : pag.getVarNodeNumberer() ) writeNode( n );
+            for( AllocNode n : pag.getAllocNodeNumberer() ) writeNode( n );
+            for( FieldRefNode n : pag.getFieldRefNodeNumberer() ) writeNode( n );
+            for( AllocDotField n : pag.getAllocDotFieldNodeNumberer() ) writeNode( n );
+            writeInt( N_END );
+
+            List<VarNode> merged = new ArrayList<VarNode>();
+            for( VarNode n : pag.getVarNodeNumberer() ) {
+                if( n.getReplacement() != n ) merged.add( n );
+            }
+            writeInt( merged.size() );
+            for( VarNode n : merged ) {
+                writeInt( nodeIds.get( n ) );
+                writeInt( nodeIds.get( n.getReplacement() ) );
+            }
+
+            writeEdges( pag.allocSources(), 0 );
+            writeEdges( pag.simpleSources(), 1 );
+            writeEdges( pag.storeSources(), 2 );
+            writeEdges( pag.loadSources(), 3 );
+
+            List<Node> withSets = new ArrayList<Node>();
+            for( VarNode n : pag.getVarNodeNumberer() ) {
+                if( n.getReplacement() == n && !n.getP2Set().isEmpty() ) withSets.add( n );
+            }
+            for( AllocDotField n : pag.getAllocDotFieldNodeNumberer() ) {
+                if( n.getReplacement() == n && !n.getP2Set().isEmpty() ) withSets.add( n );
+            }
+            writeInt( withSets.size() );
+            for( Node n : withSets ) writeSet( n );
+
+            int edges = 0;
+            for( Iterator<Edge> eIt = cg.iterator(); eIt.hasNext(); eIt.next() ) edges++;
+            writeInt( edges );
+            for( Iterator<Edge> eIt = cg.iterator(); eIt.hasNext(); ) {
+                final Edge e = eIt.next();
+                if( e.srcCtxt() != null || e.tgtCtxt() != null ) {
+                    throw new IOException( "Can't save context-sensitive call graph edge "+e );
+                }
+                writeMethod( e.src() );
+                if( e.srcUnit() == null ) {
+                    writeInt( 0 );
+                } else {
+                    writeInt( unitsOf( e.src() ).get( e.srcUnit() ).intValue()+1 );
+                }
+                writeMethod( e.tgt() );
+                writeInt( Arrays.asList( KINDS ).indexOf( e.kind() ) );
+            }
+        }
+
+        /** Writes n, after the nodes it refers to. */
+        void writeNode( Node n ) throws IOException {
+            if( nodeIds.containsKey( n ) ) return;
+            if( n instanceof LocalVarNode ) {
+                LocalVarNode vn = (LocalVarNode) n;
+                if( vn instanceof ContextVarNode ) {
+                    throw new IOException( "Can't save context-sensitive node "+n );
+                }
+                writeNodesIn( vn.getVariable() );
+                writeInt( N_LOCAL_VAR );
+                writeMethod( vn.getMethod() );
+                writeType( vn.getType() );
+                writeKey( vn.getVariable(), vn.getMethod() );
+                writeInt( flags( vn ) );
+            } else if( n instanceof GlobalVarNode ) {
+                GlobalVarNode vn = (GlobalVarNode) n;
+                writeNodesIn( vn.getVariable() );
+                writeInt( N_GLOBAL_VAR );
+                writeType( vn.getType() );
+                writeKey( vn.getVariable(), null );
+                writeInt( flags( vn ) );
+            } else if( n instanceof StringConstantNode ) {
+                writeInt( N_STRING_CONSTANT );
+                writeString( ((StringConstantNode) n).getString() );
+            } else if( n instanceof ClassConstantNode ) {
+                writeInt( N_CLASS_CONSTANT );
+                writeString( ((ClassConstantNode) n).getClassConstant().getValue() );
+            } else if( n instanceof AllocNode ) {
+                AllocNode an = (AllocNode) n;
+                writeNodesIn( an.getNewExpr() );
+                writeInt( N_ALLOC );
+                writeMethod( an.getMethod() );
+                writeType( an.getType() );
+                writeKey( an.getNewExpr(), an.getMethod() );
+            } else if( n instanceof FieldRefNode ) {
+                FieldRefNode fr = (FieldRefNode) n;
+                writeNode( fr.getBase() );
+                writeInt( N_FIELD_REF );
+                writeInt( nodeIds.get( fr.getBase() ) );
+                writeKey( fr.getField(), null );
+            } else if( n instanceof AllocDotField ) {
+                AllocDotField adf = (AllocDotField) n;
+                writeNode( adf.getBase() );
+                writeInt( N_ALLOC_DOT_FIELD );
+                writeInt( nodeIds.get( adf.getBase() ) );
+                writeKey( adf.getField(), null );
+            } else {
+                throw new IOException( "Can't save node "+n );
+            }
+            nodeIds.put( n, nodeIds.size() );
+        }
+
+        /** Writes the nodes that key refers to. */
+        void writeNodesIn( Object key ) throws IOException {
+            if( key instanceof Node ) {
+                writeNode( (Node) key );
+            } else if( key instanceof Pair ) {
+                writeNodesIn( ((Pair) key).getO1() );
+                writeNodesIn( ((Pair) key).getO2() );
+            }
+        }
+
+        int flags( VarNode vn ) {
+            return ( vn.isInterProcSource() ? 1 : 0 )
+                | ( vn.isInterProcTarget() ? 2 : 0 );
+        }
+
+        /** Writes the variable or allocation site key of a node of method
+         * m, which may be null for global nodes. */
+        void writeKey( Object key, SootMethod m ) throws IOException {
+            if( key == null ) {
+                writeInt( K_NULL );
+            } else if( key instanceof Node ) {
+                writeInt( K_NODE );
+                writeInt( nodeIds.get( key ) );
+            } else if( key instanceof String ) {
+                writeInt( K_STRING );
+                writeString( (String) key );
+            } else if( key instanceof Integer ) {
+                writeInt( K_INTEGER );
+                writeInt( zigZag( ((Integer) key).intValue() ) );
+            } else if( key instanceof SootMethod ) {
+                writeInt( K_METHOD );
+                writeMethod( (SootMethod) key );
+            } else if( key instanceof SootField ) {
+                writeInt( K_FIELD );
+                writeField( (SootField) key );
+            } else if( key instanceof Type ) {
+                writeInt( K_TYPE );
+                writeType( (Type) key );
+            } else if( key instanceof SootClass ) {
+                writeInt( K_CLASS );
+                writeString( ((SootClass) key).getName() );
+            } else if( key instanceof Local && m != null ) {
+                writeInt( K_LOCAL );
+                writeString( ((Local) key).getName() );
+            } else if( key instanceof Value && m != null
+                    && valuesOf( m ).containsKey( key ) ) {
+                int[] position = valuesOf( m ).get( key );
+                writeInt( K_VALUE );
+                writeInt( position[0] );
+                writeInt( position[1] );
+            } else if( key instanceof Pair ) {
+                writeInt( K_PAIR );
+                writeKey( ((Pair) key).getO1(), m );
+                writeKey( ((Pair) key).getO2(), m );
+            } else if( key instanceof Parm ) {
+                writeInt( K_PARM );
+                writeMethod( ((Parm) key).getMethod() );
+                writeInt( zigZag( ((Parm) key).getIndex() ) );
+            } else if( key instanceof ArrayElement ) {
+                writeInt( K_ARRAY_ELEMENT );
+            } else {
+                throw new IOException( "Can't save "+key+" of "+m );
+            }
+        }
+
+        void writeEdges( java.util.Set<? extends Node> sources, int kind ) throws IOException {
+            int count = 0;
+            for( Node src : sources ) count += lookup( src, kind ).length;
+            writeInt( count );
+            for( Node src : sources ) {
+                for( Node tgt : lookup( src, kind ) ) {
+                    writeInt( nodeIds.get( src ) );
+                    writeInt( nodeIds.get( tgt ) );
+                }
+            }
+        }
+
+        Node[] lookup( Node src, int kind ) {
+            switch( kind ) {
+                case 0: return pag.allocLookup( (AllocNode) src );
+                case 1: return pag.simpleLookup( (VarNode) src );
+                case 2: return pag.storeLookup( (VarNode) src );
+                default: return pag.loadLookup( (FieldRefNode) src );
+            }
+        }
+
+        void writeSet( Node n ) throws IOException {
+            PointsToSetInternal set = n.getP2Set();
+            final int[] elements = new int[set.size()];
+            set.forall( new P2SetVisitor() {
+                int i = 0;
+                public final void visit( Node e ) {
+                    elements[i++] = nodeIds.get( e ).intValue();
+                }
+            } );
+            Arrays.sort( elements );
+            writeInt( nodeIds.get( n ) );
+            writeInt( elements.length );
+            int last = 0;
+            for( int e : elements ) {
+                writeInt( e-last );
+                last = e;
+            }
+        }
+
+        void writeMethod( SootMethod m ) throws IOException {
+            if( m == null ) {
+                writeInt( 0 );
+                return;
+            }
+            Integer id = methodIds.get( m );
+            if( id != null ) {
+                writeInt( id.intValue()+2 );
+                return;
+            }
+            writeInt( 1 );
+            writeString( m.getDeclaringClass().getName() );
+            writeString( m.getName() );
+            writeInt( m.isStatic() ? 1 : 0 );
+            writeType( m.getReturnType() );
+            writeInt( m.getParameterCount() );
+            for( Type t : m.getParameterTypes() ) writeType( t );
+            methodIds.put( m, methodIds.size() );
+        }
+
+        void writeField( SootField f ) throws IOException {
+            Integer id = fieldIds.get( f );
+            if( id != null ) {
+                writeInt( id.intValue()+1 );
+                return;
+            }
+            writeInt( 0 );
+            writeString( f.getDeclaringClass().getName() );
+            writeString( f.getName() );
+            writeInt( f.isStatic() ? 1 : 0 );
+            writeType( f.getType() );
+            fieldIds.put( f, fieldIds.size() );
+        }
+
+        void writeType( Type t ) throws IOException {
+            if( t == null ) {
+                writeInt( 0 );
+                return;
+            }
+            Integer id = typeIds.get( t );
+            if( id != null ) {
+                writeInt( id.intValue()+2 );
+                return;
+            }
+            writeInt( 1 );
+            if( t instanceof RefType ) {
+                writeInt( T_REF );
+                writeString( ((RefType) t).getClassName() );
+            } else if( t instanceof ArrayType ) {
+                writeInt( T_ARRAY );
+                writeType( ((ArrayType) t).baseType );
+                writeInt( ((ArrayType) t).numDimensions );
+            } else if( t instanceof AnySubType ) {
+                writeInt( T_ANY_SUB );
+                writeType( ((AnySubType) t).getBase() );
+            } else if( t instanceof NullType ) {
+                writeInt( T_NULL );
+            } else if( Arrays.asList( basicTypes() ).contains( t ) ) {
+                writeInt( T_BASIC );
+                writeInt( Arrays.asList( basicTypes() ).indexOf( t ) );
+            } else {
+                throw new IOException( "Can't save type "+t );
+            }
+            typeIds.put( t, typeIds.size() );
+        }
+
+        void writeString( String s ) throws IOException {
+            Integer id = stringIds.get( s );
+            if( id != null ) {
+                writeInt( id.intValue()+1 );
+                return;
+            }
+            byte[] bytes = s.getBytes( "UTF-8" );
+            writeInt( 0 );
+            writeInt( bytes.length );
+            out.write( bytes );
+            stringIds.put( s, stringIds.size() );
+        }
+
+        /** Writes a non-negative int in 7-bit groups. */
+        void writeInt( int i ) throws IOException {
+            while( ( i & ~0x7f ) != 0 ) {
+                out.writeByte( ( i & 0x7f ) | 0x80 );
+                i >>>= 7;
+            }
+            out.writeByte( i );
+        }
+
+        Map<Unit, Integer> unitsOf( SootMethod m ) {
+            Map<Unit, Integer> ret = units.get( m );
+            if( ret == null ) {
+                units.put( m, ret = new IdentityHashMap<Unit, Integer>() );
+                int i = 0;
+                for( Unit u : m.getActiveBody().getUnits() ) ret.put( u, i++ );
+            }
+            return ret;
+        }
+
+        /** Returns the index of the unit and of the box in which each value
+         * of the body of m appears. */
+        Map<Value, int[]> valuesOf( SootMethod m ) {
+            Map<Value, int[]> ret = values.get( m );
+            if( ret == null ) {
+                values.put( m, ret = new IdentityHashMap<Value, int[]>() );
+                if( m.hasActiveBody() ) {
+                    int i = 0;
+                    for( Unit u : m.getActiveBody().getUnits() ) {
+                        int j = 0;
+                        for( ValueBox vb : u.getUseAndDefBoxes() ) {
+                            if( !ret.containsKey( vb.getValue() ) ) {
+                                ret.put( vb.getValue(), new int[] { i, j } );
+                            }
+                            j++;
+                        }
+                        i++;
+                    }
+                }
+            }
+            return ret;
+        }
+
+        private final PAG pag;
+        private final DataOutputStream out;
+        private final Map<Node, Integer> nodeIds = new HashMap<Node, Integer>();
+        private final Map<SootMethod, Integer> methodIds = new HashMap<SootMethod, Integer>();
+        private final Map<SootField, Integer> fieldIds = new HashMap<SootField, Integer>();
+        private final Map<Type, Integer> typeIds = new HashMap<Type, Integer>();
+        private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        private final Map<SootMethod, Map<Unit, Integer>> units =
+            new HashMap<SootMethod, Map<Unit, Integer>>();
+        private final Map<SootMethod, Map<Value, int[]>> values =
+            new HashMap<SootMethod, Map<Value, int[]>>();
+    }
+
+    private static class Reader {
+        Reader( ByteBuffer buf ) {
+            this.buf = buf;
+        }
+
+        PAGSnapshot read( PAG pag ) throws IOException {
+            this.pag = pag;
+            while( true ) {
+                int kind = readInt();
+                if( kind == N_END ) break;
+                nodes.add( readNode( kind ) );
+            }
+            for( int i = readInt(); i > 0; i-- ) {
+                Node n = readNodeRef();
+                readNodeRef().mergeWith( n );
+            }
+            for( int kind = 0; kind < 4; kind++ ) {
+                for( int i = readInt(); i > 0; i-- ) {
+                    pag.addEdge( readNodeRef(), readNodeRef() );
+                }
+            }
+
+            // the sets were filtered by type when they were computed, and
+            // the masks must exist before elements are added again
+            pag.getTypeManager().makeTypeMask();
+            for( int i = readInt(); i > 0; i-- ) {
+                PointsToSetInternal set = readNodeRef().makeP2Set();
+                int e = 0;
+                for( int j = readInt(); j > 0; j-- ) {
+                    e += readInt();
+                    set.add( nodes.get( e ) );
+                }
+                set.flushNew();
+            }
+
+            CallGraph cg = new CallGraph();
+            for( int i = readInt(); i > 0; i-- ) {
+                SootMethod src = readMethod();
+                int unit = readInt();
+                SootMethod tgt = readMethod();
+                Kind kind = KINDS[readInt()];
+                cg.addEdge( new Edge( src, unit == 0 ? null : unitsOf( src )[unit-1], tgt, kind ) );
+            }
+            return new PAGSnapshot( pag, cg );
+        }
+
+        Node readNode( int kind ) throws IOException {
+            switch( kind ) {
+                case N_LOCAL_VAR: {
+                    SootMethod m = readMethod();
+                    Type type = readType();
+                    VarNode ret = pag.makeLocalVarNode( readKey( m ), type, m );
+                    readFlags( ret );
+                    return ret;
+                }
+                case N_GLOBAL_VAR: {
+                    Type type = readType();
+                    VarNode ret = pag.makeGlobalVarNode( readKey( null ), type );
+                    readFlags( ret );
+                    return ret;
+                }
+                case N_STRING_CONSTANT:
+                    return pag.makeStringConstantNode( readString() );
+                case N_CLASS_CONSTANT:
+                    return pag.makeClassConstantNode( ClassConstant.v( readString() ) );
+                case N_ALLOC: {
+                    SootMethod m = readMethod();
+                    Type type = readType();
+                    return pag.makeAllocNode( readKey( m ), type, m );
+                }
+                case N_FIELD_REF: {
+                    VarNode base = (VarNode) readNodeRef();
+                    return pag.makeFieldRefNode( base, (SparkField) readKey( null ) );
+                }
+                case N_ALLOC_DOT_FIELD: {
+                    AllocNode base = (AllocNode) readNodeRef();
+                    return pag.makeAllocDotField( base, (SparkField) readKey( null ) );
+                }
+                default:
+                    throw new IOException( "Bad node record "+kind );
+            }
+        }
+
+        void readFlags( VarNode vn ) {
+            int flags = readInt();
+            if( ( flags & 1 ) != 0 ) vn.setInterProcSource();
+            if( ( flags & 2 ) != 0 ) vn.setInterProcTarget();
+        }
+
+        Object readKey( SootMethod m ) throws IOException {
+            int tag = readInt();
+            switch( tag ) {
+                case K_NULL: return null;
+                case K_NODE: return readNodeRef();
+                case K_STRING: return readString();
+                case K_INTEGER: return new Integer( unZigZag( readInt() ) );
+                case K_METHOD: return readMethod();
+                case K_FIELD: return readField();
+                case K_TYPE: return readType();
+                case K_CLASS: return Scene.v().getSootClass( readString() );
+                case K_LOCAL: return localsOf( m ).get( readString() );
+                case K_VALUE: {
+                    Unit u = unitsOf( m )[readInt()];
+                    return u.getUseAndDefBoxes().get( readInt() ).getValue();
+                }
+                case K_PAIR: {
+                    Object o1 = readKey( m );
+                    return new Pair<Object, Object>( o1, readKey( m ) );
+                }
+                case K_PARM: {
+                    SootMethod parmMethod = readMethod();
+                    return Parm.v( parmMethod, unZigZag( readInt() ) );
+                }
+                case K_ARRAY_ELEMENT: return ArrayElement.v();
+                default:
+                    throw new IOException( "Bad key "+tag );
+            }
+        }
+
+        Node readNodeRef() {
+            return nodes.get( readInt() );
+        }
+
+        SootMethod readMethod() throws IOException {
+            int id = readInt();
+            if( id == 0 ) return null;
+            if( id > 1 ) return methods.get( id-2 );
+            // methods of phantom classes may only have been created while
+            // Spark ran, so resolve them the way the bodies refer to them
+            SootClass c = Scene.v().getSootClass( readString() );
+            String name = readString();
+            boolean isStatic = readInt() != 0;
+            Type returnType = readType();
+            List<Type> parameterTypes = new ArrayList<Type>();
+            for( int i = readInt(); i > 0; i-- ) parameterTypes.add( readType() );
+            SootMethod ret = Scene.v().makeMethodRef( c, name, parameterTypes,
+                    returnType, isStatic ).resolve();
+            methods.add( ret );
+            return ret;
+        }
+
+        SootField readField() throws IOException {
+            int id = readInt();
+            if( id > 0 ) return fields.get( id-1 );
+            SootClass c = Scene.v().getSootClass( readString() );
+            String name = readString();
+            boolean isStatic = readInt() != 0;
+            SootField ret = Scene.v().makeFieldRef( c, name, readType(), isStatic ).resolve();
+            fields.add( ret );
+            return ret;
+        }
+
+        Type readType() throws IOException {
+            int id = readInt();
+            if( id == 0 ) return null;
+            if( id > 1 ) return types.get( id-2 );
+            Type ret;
+            int kind = readInt();
+            switch( kind ) {
+                case T_REF: ret = RefType.v( readString() ); break;
+                case T_ARRAY: {
+                    Type base = readType();
+                    ret = ArrayType.v( base, readInt() );
+                    break;
+                }
+                case T_ANY_SUB: ret = AnySubType.v( (RefType) readType() ); break;
+                case T_NULL: ret = NullType.v(); break;
+                case T_BASIC: ret = basicTypes()[readInt()]; break;
+                default: throw new IOException( "Bad type "+kind );
+            }
+            types.add( ret );
+            return ret;
+        }
+
+        String readString() throws IOException {
+            int id = readInt();
+            if( id > 0 ) return strings.get( id-1 );
+            byte[] bytes = new byte[readInt()];
+            buf.get( bytes );
+            String ret = new String( bytes, "UTF-8" );
+            strings.add( ret );
+            return ret;
+        }
+
+        int readInt() {
+            int ret = 0;
+            for( int shift = 0; ; shift += 7 ) {
+                byte b = buf.get();
+                ret |= ( b & 0x7f ) << shift;
+                if( b >= 0 ) return ret;
+            }
+        }
+
+        Unit[] unitsOf( SootMethod m ) {
+            Unit[] ret = units.get( m );
+            if( ret == null ) {
+                Body b = m.retrieveActiveBody();
+                units.put( m, ret = b.getUnits().toArray( new Unit[b.getUnits().size()] ) );
+            }
+            return ret;
+        }
+
+        Map<String, Local> localsOf( SootMethod m ) {
+            Map<String, Local> ret = locals.get( m );
+            if( ret == null ) {
+                locals.put( m, ret = new HashMap<String, Local>() );
+                for( Local l : m.retrieveActiveBody().getLocals() ) ret.put( l.getName(), l );
+            }
+            return ret;
+        }
+
+        private final ByteBuffer buf;
+        private PAG pag;
+        private final List<Node> nodes = new ArrayList<Node>();
+        private final List<SootMethod> methods = new ArrayList<SootMethod>();
+        private final List<SootField> fields = new ArrayList<SootField>();
+        private final List<Type> types = new ArrayList<Type>();
+        private final List<String> strings = new ArrayList<String>();
+        private final Map<SootMethod, Unit[]> units = new HashMap<SootMethod, Unit[]>();
+        private final Map<SootMethod, Map<String, Local>> locals =
+            new HashMap<SootMethod, Map<String, Local>>();
+    }
+
+    private static int zigZag( int i ) {
+        return ( i << 1 ) ^ ( i >> 31 );
+    }
+    private static int unZigZag( int i ) {
+        return ( i >>> 1 ) ^ -( i & 1 );
+    }
+
+    private final PAG pag;
+    private final CallGraph callGraph;
+}
@@ -61,6 +61,10 @@ public class Parm implements SparkField {
     public int getIndex() {
       return index;
     }
+
+    public SootMethod getMethod() {
+      return method;
+    }
     
 	public Type getType() {
     	if ( index == PointsToAnalysis.RETURN_NODE )
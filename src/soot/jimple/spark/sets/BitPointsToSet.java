@@ -94,6 +94,10 @@ public final class BitPointsToSet extends PointsToSetInternal {
     }
 
     /* End of public methods. */
+    /** Returns the bits of the nodes in this set. */
+    final BitVector getBitVector() {
+        return bits;
+    }
     /* End of package methods. */
 
     private boolean fastAdd( Node n ) {
@@ -0,0 +1,464 @@
+package soot.jimple.spark.sets;
+import java.util.Arrays;
+
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.internal.*;
+import soot.util.*;
+import soot.Type;
+
+/** Implementation of points-to set as a compressed bitmap.
+ *
+ * <p>The number of an allocation node is split into a high and a low half
+ * of 16 bits. The nodes sharing the high half are kept in one container,
+ * which is a sorted array of the low halves while it holds at most
+ * {@link #ARRAY_MAX} nodes, and a bit vector of 65536 bits once it gets
+ * larger. Unlike in a {@link BitPointsToSet}, the space taken by a set
+ * thus depends on its size and not on the number of allocation nodes.
+ */
+public final class CompressedPointsToSet extends PointsToSetInternal {
+    public CompressedPointsToSet( Type type, PAG pag ) {
+        super( type );
+        this.pag = pag;
+    }
+    /** Returns true if this set contains no run-time objects. */
+    public final boolean isEmpty() {
+        return size == 0;
+    }
+
+    private final boolean nativeAddAll( PointsToSetInternal other,
+            PointsToSetInternal exclude ) {
+        if( other.isEmpty() ) return false;
+        BitVector mask = null;
+        TypeManager typeManager = pag.getTypeManager();
+        if( !typeManager.castNeverFails( other.getType(), this.getType() ) ) {
+            mask = typeManager.get( this.getType() );
+        }
+        if( other instanceof HybridPointsToSet
+        && ((HybridPointsToSet) other).getBitVector() == null ) {
+            boolean ret = false;
+            for( Node n : ((HybridPointsToSet) other).getNodes() ) {
+                if( n == null ) break;
+                if( mask != null && !mask.get( n.getNumber() ) ) continue;
+                if( exclude != null && exclude.contains( n ) ) continue;
+                ret = fastAdd( n.getNumber() ) | ret;
+            }
+            return ret;
+        }
+        CompressedPointsToSet ocomp = ( other instanceof CompressedPointsToSet
+                ? (CompressedPointsToSet) other : null );
+        BitVector obits = ( ocomp != null ? null : bitsOf( other ) );
+        CompressedPointsToSet ecomp = ( exclude instanceof CompressedPointsToSet
+                ? (CompressedPointsToSet) exclude : null );
+        Object eall = null;
+        if( exclude != null && ecomp == null ) {
+            eall = bitsOf( exclude );
+            if( eall == null ) eall = ((HybridPointsToSet) exclude).getNodes();
+        }
+        int count = ( ocomp != null ? ocomp.size : ( obits.size() + 0xFFFF ) >>> 16 );
+        boolean ret = false;
+        for( int j = 0; j < count; j++ ) {
+            int key = ( ocomp != null ? ocomp.keys[j] : j );
+            Object econt = eall;
+            int ecard = 0;
+            if( ecomp != null ) {
+                int e = ecomp.indexOf( key );
+                econt = ( e < 0 ? null : ecomp.containers[e] );
+                ecard = ( e < 0 ? 0 : ecomp.cards[e] );
+            }
+            if( ocomp != null ) {
+                ret = addContainer( key, ocomp.containers[j], ocomp.cards[j],
+                        mask, econt, ecard ) | ret;
+            } else {
+                ret = addContainer( key, obits, 0, mask, econt, ecard ) | ret;
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the bits of a bit or hybrid set, or null. */
+    private static BitVector bitsOf( PointsToSetInternal set ) {
+        if( set instanceof BitPointsToSet ) {
+            return ((BitPointsToSet) set).getBitVector();
+        }
+        if( set instanceof HybridPointsToSet ) {
+            return ((HybridPointsToSet) set).getBitVector();
+        }
+        return null;
+    }
+
+    private static boolean isNative( PointsToSetInternal set ) {
+        return set instanceof CompressedPointsToSet
+            || set instanceof HybridPointsToSet
+            || set instanceof BitPointsToSet;
+    }
+
+    /** Adds contents of other into this set, returns true if this set
+     * changed. */
+    public final boolean addAll( PointsToSetInternal other,
+            PointsToSetInternal exclude ) {
+        if( other == null ) return false;
+        // excluding the nodes already here changes nothing
+        if( exclude == this || exclude instanceof EmptyPointsToSet ) exclude = null;
+        if( !isNative( other ) || ( exclude != null && !isNative( exclude ) ) )
+            return super.addAll( other, exclude );
+        return nativeAddAll( other, exclude );
+    }
+    /** Calls v's visit method on all nodes in this set. */
+    public final boolean forall( P2SetVisitor v ) {
+        ArrayNumberer<AllocNode> numberer = pag.getAllocNodeNumberer();
+        for( int i = 0; i < size; i++ ) {
+            int base = keys[i] << 16;
+            Object cont = containers[i];
+            if( cont instanceof char[] ) {
+                char[] vals = (char[]) cont;
+                for( int j = 0; j < cards[i]; j++ ) {
+                    v.visit( numberer.get( base | vals[j] ) );
+                }
+            } else {
+                long[] words = (long[]) cont;
+                for( int w = 0; w < BITMAP_WORDS; w++ ) {
+                    long word = words[w];
+                    while( word != 0L ) {
+                        int bit = Long.numberOfTrailingZeros( word );
+                        word &= word - 1;
+                        v.visit( numberer.get( base | w << 6 | bit ) );
+                    }
+                }
+            }
+        }
+        return v.getReturnValue();
+    }
+    /** Adds n to this set, returns true if n was not already in this set. */
+    public final boolean add( Node n ) {
+        if( pag.getTypeManager().castNeverFails( n.getType(), type ) ) {
+            return fastAdd( n.getNumber() );
+        }
+        return false;
+    }
+    /** Returns true iff the set contains n. */
+    public final boolean contains( Node n ) {
+        int number = n.getNumber();
+        int i = indexOf( number >>> 16 );
+        if( i < 0 ) return false;
+        return containerContains( containers[i], cards[i], (char) number );
+    }
+    /** Returns the number of nodes in this set. */
+    public final int size() {
+        int ret = 0;
+        for( int i = 0; i < size; i++ ) ret += cards[i];
+        return ret;
+    }
+    public static P2SetFactory getFactory() {
+        return new P2SetFactory() {
+            public PointsToSetInternal newSet( Type type, PAG pag ) {
+                return new CompressedPointsToSet( type, pag );
+            }
+        };
+    }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    /** Largest number of nodes kept in a sorted array container. */
+    static final int ARRAY_MAX = 4096;
+    /** Number of words in a bitmap container, which has 65536 bits. */
+    private static final int BITMAP_WORDS = 1024;
+
+    private boolean fastAdd( int number ) {
+        int key = number >>> 16;
+        char low = (char) number;
+        int i = indexOf( key );
+        if( i < 0 ) {
+            i = insertContainer( -i-1, key, new char[4] );
+        }
+        Object cont = containers[i];
+        if( cont instanceof long[] ) {
+            long[] words = (long[]) cont;
+            long bit = 1L << low;
+            if( (words[low >>> 6] & bit) != 0L ) return false;
+            words[low >>> 6] |= bit;
+            cards[i]++;
+            return true;
+        }
+        char[] vals = (char[]) cont;
+        int card = cards[i];
+        int pos = Arrays.binarySearch( vals, 0, card, low );
+        if( pos >= 0 ) return false;
+        pos = -pos-1;
+        if( card == ARRAY_MAX ) {
+            long[] words = toBitmap( vals, card );
+            words[low >>> 6] |= 1L << low;
+            containers[i] = words;
+        } else {
+            if( card == vals.length ) {
+                char[] newVals = new char[Math.min( 2*card, ARRAY_MAX )];
+                System.arraycopy( vals, 0, newVals, 0, card );
+                containers[i] = vals = newVals;
+            }
+            System.arraycopy( vals, pos, vals, pos+1, card-pos );
+            vals[pos] = low;
+        }
+        cards[i] = card+1;
+        return true;
+    }
+
+    /** Adds the low halves in the container ocont of other that are in
+     * mask and not in the container econt of exclude to the container for
+     * key, returns true if it changed. ocont is a sorted char[] of ocard
+     * low halves, a long[] bitmap, or a BitVector of all node numbers; econt
+     * may also be an array of nodes ended by null. Containers are only
+     * allocated or grown when something is added. */
+    private boolean addContainer( int key, Object ocont, int ocard,
+            BitVector mask, Object econt, int ecard ) {
+        if( ocont instanceof char[] ) {
+            return addArray( key, (char[]) ocont, ocard, mask, econt, ecard );
+        }
+        int base = key << 10;
+        int i = indexOf( key );
+        if( i >= 0 && containers[i] instanceof long[] ) {
+            int added = orInto( (long[]) containers[i], base, ocont, mask, econt, ecard );
+            cards[i] += added;
+            return added > 0;
+        }
+        char[] mine = ( i < 0 ? null : (char[]) containers[i] );
+        int myCard = ( i < 0 ? 0 : cards[i] );
+        int card = myCard;
+        for( int w = 0, m = 0; w < BITMAP_WORDS; w++ ) {
+            long word = incoming( w, base, ocont, mask, econt, ecard );
+            if( word == 0L ) continue;
+            while( m < myCard && mine[m] >>> 6 < w ) m++;
+            for( ; m < myCard && mine[m] >>> 6 == w; m++ ) word &= ~(1L << mine[m]);
+            card += Long.bitCount( word );
+        }
+        if( card == myCard ) return false;
+        Object cont;
+        if( card > ARRAY_MAX ) {
+            long[] words = ( mine == null ? new long[BITMAP_WORDS] : toBitmap( mine, myCard ) );
+            orInto( words, base, ocont, mask, econt, ecard );
+            cont = words;
+        } else {
+            char[] vals = grow( mine, myCard, card );
+            // merge from the back, so that the entries of vals move once
+            int m = myCard - 1;
+            int k = card - 1;
+            for( int w = BITMAP_WORDS - 1; w >= 0 && k > m; w-- ) {
+                long word = incoming( w, base, ocont, mask, econt, ecard );
+                if( word == 0L ) continue;
+                while( m >= 0 && vals[m] >>> 6 > w ) vals[k--] = vals[m--];
+                for( int j = m; j >= 0 && vals[j] >>> 6 == w; j-- ) {
+                    word &= ~(1L << vals[j]);
+                }
+                while( word != 0L ) {
+                    int bit = 63 - Long.numberOfLeadingZeros( word );
+                    char low = (char) ( w << 6 | bit );
+                    while( m >= 0 && vals[m] > low ) vals[k--] = vals[m--];
+                    vals[k--] = low;
+                    word &= ~(1L << bit);
+                }
+            }
+            cont = vals;
+        }
+        setContainer( i, key, cont, card );
+        return true;
+    }
+
+    /** Adds the first ocard low halves in the sorted array ovals that are
+     * in mask and not in econt to the container for key, returns true if
+     * it changed. */
+    private boolean addArray( int key, char[] ovals, int ocard,
+            BitVector mask, Object econt, int ecard ) {
+        int high = key << 16;
+        int i = indexOf( key );
+        if( i >= 0 && containers[i] instanceof long[] ) {
+            long[] words = (long[]) containers[i];
+            int added = 0;
+            for( int j = 0; j < ocard; j++ ) {
+                char low = ovals[j];
+                long bit = 1L << low;
+                if( (words[low >>> 6] & bit) != 0L ) continue;
+                if( !admits( high | low, mask, econt, ecard ) ) continue;
+                words[low >>> 6] |= bit;
+                added++;
+            }
+            cards[i] += added;
+            return added > 0;
+        }
+        char[] mine = ( i < 0 ? null : (char[]) containers[i] );
+        int myCard = ( i < 0 ? 0 : cards[i] );
+        int card = myCard;
+        for( int j = 0, m = 0; j < ocard; j++ ) {
+            char low = ovals[j];
+            while( m < myCard && mine[m] < low ) m++;
+            if( m < myCard && mine[m] == low ) continue;
+            if( admits( high | low, mask, econt, ecard ) ) card++;
+        }
+        if( card == myCard ) return false;
+        Object cont;
+        if( card > ARRAY_MAX ) {
+            long[] words = ( mine == null ? new long[BITMAP_WORDS] : toBitmap( mine, myCard ) );
+            for( int j = 0; j < ocard; j++ ) {
+                char low = ovals[j];
+                if( admits( high | low, mask, econt, ecard ) ) words[low >>> 6] |= 1L << low;
+            }
+            cont = words;
+        } else {
+            char[] vals = grow( mine, myCard, card );
+            // merge from the back, so that the entries of vals move once
+            int m = myCard - 1;
+            int k = card - 1;
+            for( int j = ocard - 1; j >= 0 && k > m; j-- ) {
+                char low = ovals[j];
+                while( m >= 0 && vals[m] > low ) vals[k--] = vals[m--];
+                if( m >= 0 && vals[m] == low ) continue;
+                if( admits( high | low, mask, econt, ecard ) ) vals[k--] = low;
+            }
+            cont = vals;
+        }
+        setContainer( i, key, cont, card );
+        return true;
+    }
+
+    /** Returns vals, which holds myCard entries, or a copy of it with room
+     * for card entries if it has less. */
+    private static char[] grow( char[] vals, int myCard, int card ) {
+        if( vals != null && vals.length >= card ) return vals;
+        if( vals == null ) return new char[card];
+        char[] ret = new char[Math.min( Math.max( 2*vals.length, card ), ARRAY_MAX )];
+        System.arraycopy( vals, 0, ret, 0, myCard );
+        return ret;
+    }
+
+    /** Makes cont, holding card entries, the container for key, whose
+     * index is i, or (-(insertion point)-1) if it has none yet. */
+    private void setContainer( int i, int key, Object cont, int card ) {
+        if( i < 0 ) i = insertContainer( -i-1, key, cont );
+        else containers[i] = cont;
+        cards[i] = card;
+    }
+
+    /** Adds the incoming low halves to the bitmap words, returns the number
+     * of them that were not there yet. */
+    private static int orInto( long[] words, int base, Object ocont,
+            BitVector mask, Object econt, int ecard ) {
+        int added = 0;
+        for( int w = 0; w < BITMAP_WORDS; w++ ) {
+            long word = incoming( w, base, ocont, mask, econt, ecard ) & ~words[w];
+            if( word != 0L ) {
+                words[w] |= word;
+                added += Long.bitCount( word );
+            }
+        }
+        return added;
+    }
+
+    /** Returns word w of the low halves in the bitmap container ocont of
+     * other that are in mask and not in the container econt of exclude. */
+    private static long incoming( int w, int base, Object ocont,
+            BitVector mask, Object econt, int ecard ) {
+        long word = ( ocont instanceof long[] ? ((long[]) ocont)[w]
+                : ((BitVector) ocont).getWord( base + w ) );
+        if( word == 0L ) return 0L;
+        if( mask != null ) word &= mask.getWord( base + w );
+        if( econt != null && word != 0L ) word &= ~wordOf( econt, ecard, base, w );
+        return word;
+    }
+
+    /** Returns true if the node numbered number is in mask and not in the
+     * container econt of exclude. */
+    private static boolean admits( int number, BitVector mask, Object econt, int ecard ) {
+        if( mask != null && !mask.get( number ) ) return false;
+        if( econt == null ) return true;
+        if( econt instanceof BitVector ) return !((BitVector) econt).get( number );
+        if( econt instanceof Node[] ) {
+            for( Node n : (Node[]) econt ) {
+                if( n == null ) break;
+                if( n.getNumber() == number ) return false;
+            }
+            return true;
+        }
+        return !containerContains( econt, ecard, (char) number );
+    }
+
+    /** Returns word w of the low halves in the container econt, which is
+     * as in {@link #addContainer}; base+w is the index of the word among
+     * those of all node numbers. */
+    private static long wordOf( Object econt, int ecard, int base, int w ) {
+        if( econt instanceof long[] ) return ((long[]) econt)[w];
+        if( econt instanceof BitVector ) return ((BitVector) econt).getWord( base + w );
+        long word = 0L;
+        if( econt instanceof Node[] ) {
+            for( Node n : (Node[]) econt ) {
+                if( n == null ) break;
+                if( n.getNumber() >>> 6 == base + w ) word |= 1L << n.getNumber();
+            }
+            return word;
+        }
+        char[] vals = (char[]) econt;
+        int j = Arrays.binarySearch( vals, 0, ecard, (char) ( w << 6 ) );
+        for( j = ( j < 0 ? -j-1 : j ); j < ecard && vals[j] >>> 6 == w; j++ ) {
+            word |= 1L << vals[j];
+        }
+        return word;
+    }
+
+    /** Returns the index of the container for key, or (-(insertion point)-1)
+     * if there is none. */
+    private int indexOf( int key ) {
+        if( keys == null ) return -1;
+        return Arrays.binarySearch( keys, 0, size, key );
+    }
+
+    private int insertContainer( int i, int key, Object cont ) {
+        if( keys == null ) {
+            keys = new int[1];
+            containers = new Object[1];
+            cards = new int[1];
+        } else if( size == keys.length ) {
+            int newLength = 2*size;
+            int[] newKeys = new int[newLength];
+            Object[] newContainers = new Object[newLength];
+            int[] newCards = new int[newLength];
+            System.arraycopy( keys, 0, newKeys, 0, size );
+            System.arraycopy( containers, 0, newContainers, 0, size );
+            System.arraycopy( cards, 0, newCards, 0, size );
+            keys = newKeys;
+            containers = newContainers;
+            cards = newCards;
+        }
+        System.arraycopy( keys, i, keys, i+1, size-i );
+        System.arraycopy( containers, i, containers, i+1, size-i );
+        System.arraycopy( cards, i, cards, i+1, size-i );
+        keys[i] = key;
+        containers[i] = cont;
+        cards[i] = 0;
+        size++;
+        return i;
+    }
+
+    private static boolean containerContains( Object cont, int card, char low ) {
+        if( cont instanceof char[] ) {
+            return Arrays.binarySearch( (char[]) cont, 0, card, low ) >= 0;
+        }
+        return ( ((long[]) cont)[low >>> 6] & (1L << low) ) != 0L;
+    }
+
+    private static long[] toBitmap( char[] vals, int card ) {
+        long[] words = new long[BITMAP_WORDS];
+        for( int j = 0; j < card; j++ ) {
+            words[vals[j] >>> 6] |= 1L << vals[j];
+        }
+        return words;
+    }
+
+    /** High halves of the node numbers, in increasing order. */
+    private int[] keys = null;
+    /** For each key, a sorted char[] or a long[] bitmap of the low halves. */
+    private Object[] containers = null;
+    /** Number of nodes in each container. */
+    private int[] cards = null;
+    /** Number of containers. */
+    private int size = 0;
+    private PAG pag;
+}
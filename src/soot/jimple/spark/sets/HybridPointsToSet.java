@@ -130,6 +130,16 @@ public final class HybridPointsToSet extends PointsToSetInternal {
     }
 
     /* End of public methods. */
+    /** Returns the bits of the nodes in this set, or null while it keeps
+     * them in the array returned by {@link #getNodes()}. */
+    final BitVector getBitVector() {
+        return bits;
+    }
+    /** Returns the nodes of this set followed by nulls, while it has no
+     * bits. */
+    final Node[] getNodes() {
+        return nodes;
+    }
     /* End of package methods. */
 
     protected final boolean fastAdd( Node n ) {
@@ -0,0 +1,215 @@
+package soot.jimple.spark.sets;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import soot.G;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.internal.*;
+import soot.util.*;
+import soot.Type;
+
+/** Implementation of points-to set as a handle to an immutable sorted array
+ * of node numbers.
+ *
+ * <p>The arrays are hash-consed in a {@link Table} shared by all sets, so
+ * that nodes with equal points-to sets share one array, and an array is
+ * freed as soon as no set refers to it any more. Unions are memoized in
+ * the table: adding the same set to the same set again, with the same type
+ * filter and the same excluded set, only costs a cache lookup.
+ */
+public final class InternedPointsToSet extends PointsToSetInternal {
+    public InternedPointsToSet( Type type, PAG pag, Table table ) {
+        super( type );
+        this.pag = pag;
+        this.table = table;
+        this.elems = table.empty;
+    }
+    /** Returns true if this set contains no run-time objects. */
+    public final boolean isEmpty() {
+        return elems.numbers.length == 0;
+    }
+    /** Adds contents of other into this set, returns true if this set
+     * changed. */
+    public final boolean addAll( PointsToSetInternal other,
+            PointsToSetInternal exclude ) {
+        if( other != null && !(other instanceof InternedPointsToSet) )
+            return super.addAll( other, exclude );
+        if( exclude != null && !(exclude instanceof InternedPointsToSet) )
+            return super.addAll( other, exclude );
+        if( other == null ) return false;
+        InternedPointsToSet o = (InternedPointsToSet) other;
+        if( o.elems.numbers.length == 0 ) return false;
+        BitVector mask = null;
+        TypeManager typeManager = pag.getTypeManager();
+        if( !typeManager.castNeverFails( o.getType(), this.getType() ) ) {
+            mask = typeManager.get( this.getType() );
+        }
+        Elems result = table.union( elems, o.elems, mask,
+                exclude == null ? null : ((InternedPointsToSet) exclude).elems );
+        if( result == elems ) return false;
+        elems = result;
+        return true;
+    }
+    /** Calls v's visit method on all nodes in this set. */
+    public final boolean forall( P2SetVisitor v ) {
+        ArrayNumberer<AllocNode> numberer = pag.getAllocNodeNumberer();
+        for( int number : elems.numbers ) {
+            v.visit( numberer.get( number ) );
+        }
+        return v.getReturnValue();
+    }
+    /** Adds n to this set, returns true if n was not already in this set. */
+    public final boolean add( Node n ) {
+        if( !pag.getTypeManager().castNeverFails( n.getType(), type ) ) {
+            return false;
+        }
+        int[] numbers = elems.numbers;
+        int pos = Arrays.binarySearch( numbers, n.getNumber() );
+        if( pos >= 0 ) return false;
+        pos = -pos-1;
+        int[] newNumbers = new int[numbers.length+1];
+        System.arraycopy( numbers, 0, newNumbers, 0, pos );
+        newNumbers[pos] = n.getNumber();
+        System.arraycopy( numbers, pos, newNumbers, pos+1, numbers.length-pos );
+        elems = table.intern( new Elems( newNumbers ) );
+        return true;
+    }
+    /** Returns true iff the set contains n. */
+    public final boolean contains( Node n ) {
+        return Arrays.binarySearch( elems.numbers, n.getNumber() ) >= 0;
+    }
+    /** Returns the number of nodes in this set. */
+    public final int size() {
+        return elems.numbers.length;
+    }
+    /** Returns a factory whose sets share the table of the current
+     * {@link G}. */
+    public static P2SetFactory getFactory() {
+        if( G.v().InternedPointsToSet_table == null ) {
+            G.v().InternedPointsToSet_table = new Table();
+        }
+        final Table table = G.v().InternedPointsToSet_table;
+        return new P2SetFactory() {
+            public PointsToSetInternal newSet( Type type, PAG pag ) {
+                return new InternedPointsToSet( type, pag, table );
+            }
+        };
+    }
+
+    /** Table of the distinct sets of node numbers, together with a cache
+     * of the unions computed from them. It is not thread-safe. */
+    public static final class Table {
+        /** Number of distinct sets currently in the table. */
+        public int size() {
+            return sets.size();
+        }
+        /** Number of unions asked for that were not trivial. */
+        public long unions() {
+            return unions;
+        }
+        /** Number of those unions that were found in the cache. */
+        public long cacheHits() {
+            return cacheHits;
+        }
+
+        /* End of public methods. */
+
+        Elems intern( Elems e ) {
+            WeakReference<Elems> ref = sets.get( e );
+            Elems ret = ( ref == null ? null : ref.get() );
+            if( ret == null ) {
+                sets.put( e, new WeakReference<Elems>( e ) );
+                ret = e;
+            }
+            return ret;
+        }
+
+        /** Returns the interned union of a with the members of b that are
+         * in mask (unless it is null) and not in exclude (unless it is
+         * null). */
+        Elems union( Elems a, Elems b, BitVector mask, Elems exclude ) {
+            if( a == b ) return a;
+            unions++;
+            int line = ( a.hash * 31 + b.hash ) * 31
+                + System.identityHashCode( mask ) * 31
+                + ( exclude == null ? 0 : exclude.hash );
+            line = ( line ^ (line >>> 16) ) & (CACHE_SIZE - 1);
+            if( cacheA[line] == a && cacheB[line] == b
+                    && cacheMask[line] == mask && cacheExclude[line] == exclude ) {
+                cacheHits++;
+                return cacheResult[line];
+            }
+            Elems ret = merge( a, b, mask, exclude );
+            cacheA[line] = a;
+            cacheB[line] = b;
+            cacheMask[line] = mask;
+            cacheExclude[line] = exclude;
+            cacheResult[line] = ret;
+            return ret;
+        }
+
+        private Elems merge( Elems a, Elems b, BitVector mask, Elems exclude ) {
+            int[] an = a.numbers;
+            int[] bn = b.numbers;
+            int[] en = ( exclude == null ? EMPTY : exclude.numbers );
+            int[] merged = new int[an.length + bn.length];
+            int m = 0, i = 0, j = 0, k = 0;
+            while( j < bn.length ) {
+                int number = bn[j++];
+                while( i < an.length && an[i] < number ) merged[m++] = an[i++];
+                if( i < an.length && an[i] == number ) continue;
+                if( mask != null && !mask.get( number ) ) continue;
+                while( k < en.length && en[k] < number ) k++;
+                if( k < en.length && en[k] == number ) continue;
+                merged[m++] = number;
+            }
+            if( m == i ) return a;
+            while( i < an.length ) merged[m++] = an[i++];
+            return intern( new Elems( Arrays.copyOf( merged, m ) ) );
+        }
+
+        private static final int[] EMPTY = new int[0];
+        private static final int CACHE_SIZE = 1 << 14;
+
+        final Elems empty = new Elems( EMPTY );
+        private final Map<Elems, WeakReference<Elems>> sets =
+            new WeakHashMap<Elems, WeakReference<Elems>>();
+        private final Elems[] cacheA = new Elems[CACHE_SIZE];
+        private final Elems[] cacheB = new Elems[CACHE_SIZE];
+        private final BitVector[] cacheMask = new BitVector[CACHE_SIZE];
+        private final Elems[] cacheExclude = new Elems[CACHE_SIZE];
+        private final Elems[] cacheResult = new Elems[CACHE_SIZE];
+        private long unions;
+        private long cacheHits;
+    }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    /** An immutable sorted array of node numbers. */
+    static final class Elems {
+        Elems( int[] numbers ) {
+            this.numbers = numbers;
+            this.hash = Arrays.hashCode( numbers );
+        }
+        public int hashCode() {
+            return hash;
+        }
+        public boolean equals( Object o ) {
+            if( o == this ) return true;
+            if( !(o instanceof Elems) ) return false;
+            Elems other = (Elems) o;
+            return hash == other.hash && Arrays.equals( numbers, other.numbers );
+        }
+        final int[] numbers;
+        final int hash;
+    }
+
+    Elems elems;
+    final Table table;
+    private PAG pag;
+}
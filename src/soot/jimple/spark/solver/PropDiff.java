@@ -0,0 +1,318 @@
+package soot.jimple.spark.solver;
+import soot.jimple.spark.pag.*;
+import soot.jimple.spark.sets.*;
+import soot.*;
+import soot.util.PriorityQueue;
+import soot.util.queue.*;
+import java.util.*;
+
+/** Propagates points-to sets along pointer assignment graph using
+ * difference propagation.
+ *
+ * <p>Like {@link PropWorklist}, only the new part of a points-to set is
+ * propagated along the edges leaving its node. Variable nodes are taken from
+ * a {@link PriorityQueue} in the order computed by {@link TopoSorter}, so
+ * that a node is usually handled after its predecessors. Instead of
+ * rescanning all field stores and loads of the PAG after each pass over the
+ * variable nodes, each field node (<code>AllocDotField</code>) remembers
+ * the field references through which it is loaded, and only field nodes
+ * whose points-to sets grew are propagated to their loads.
+ */
+
+public final class PropDiff extends Propagator {
+    public PropDiff( PAG pag ) { this.pag = pag; }
+    /** Actually does the propagation. */
+    public final void propagate() {
+        ofcg = pag.getOnFlyCallGraph();
+        addedEdges = pag.edgeReader();
+        makeQueue();
+	for (Object object : pag.allocSources()) {
+	    handleAllocNode( (AllocNode) object );
+	}
+
+        boolean verbose = pag.getOpts().verbose();
+        do {
+            if( verbose ) {
+                G.v().out.println( "Worklist has "+(varNodeQueue.size()+newVarNodes.size())+
+                        " nodes." );
+            }
+            while( true ) {
+                VarNode src = varNodeQueue.poll();
+                if( src != null ) {
+                    handleVarNode( src );
+                    continue;
+                }
+                if( newVarNodes.isEmpty() ) break;
+                // Nodes created by the on-the-fly call graph are not in the
+                // queue. Sorting the PAG again only pays off once there
+                // are many of them.
+                if( pag.getVarNodeNumberer().size() - queuedNodes > queuedNodes / 8 ) {
+                    makeQueue();
+                } else {
+                    List<VarNode> nodes = new ArrayList<VarNode>( newVarNodes );
+                    newVarNodes.clear();
+                    for( VarNode vn : nodes ) {
+                        handleVarNode( vn );
+                    }
+                }
+            }
+            if( verbose ) {
+                G.v().out.println( "Now handling "+dirtyFields.size()+
+                        " field nodes" );
+            }
+            List<AllocDotField> fields = new ArrayList<AllocDotField>( dirtyFields );
+            dirtyFields.clear();
+            for( AllocDotField nDotF : fields ) {
+                handleAllocDotField( nDotF );
+            }
+        } while( !varNodeQueue.isEmpty() || !newVarNodes.isEmpty() );
+    }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    /** Sorts the variable nodes topologically and makes a new queue of them,
+     * keeping the nodes already waiting in the old one. */
+    private void makeQueue() {
+        new TopoSorter( pag, false ).sort();
+        List<VarNode> nodes = new ArrayList<VarNode>( pag.getVarNodeNumberer().size() );
+        lastQueuedNumber = 0;
+        for( VarNode vn : pag.getVarNodeNumberer() ) {
+            nodes.add( vn );
+            lastQueuedNumber = Math.max( lastQueuedNumber, vn.getNumber() );
+        }
+        queuedNodes = nodes.size();
+        // same order as the worklist of PropWorklist
+        Collections.sort( nodes, FINISHING_ORDER );
+        List<VarNode> waiting = new ArrayList<VarNode>( newVarNodes );
+        if( varNodeQueue != null ) waiting.addAll( varNodeQueue );
+        varNodeQueue = PriorityQueue.noneOf( nodes );
+        newVarNodes.clear();
+        varNodeQueue.addAll( waiting );
+    }
+
+    private void addToWorklist( VarNode vn ) {
+        if( vn.getNumber() <= lastQueuedNumber ) {
+            varNodeQueue.add( vn );
+        } else {
+            newVarNodes.add( vn );
+        }
+    }
+
+    /** Propagates new points-to information of node src to all its
+     * successors. */
+    protected final boolean handleAllocNode( AllocNode src ) {
+	boolean ret = false;
+	Node[] targets = pag.allocLookup( src );
+	for (Node element : targets) {
+	    if( element.makeP2Set().add( src ) ) {
+                addToWorklist( (VarNode) element );
+                ret = true;
+            }
+	}
+	return ret;
+    }
+
+    /** Propagates new points-to information of node src to all its
+     * successors. */
+    protected final void handleVarNode( final VarNode src ) {
+        boolean flush = true;
+
+        if( src.getReplacement() != src ) throw new RuntimeException(
+                "Got bad node "+src+" with rep "+src.getReplacement() );
+
+	final PointsToSetInternal newP2Set = src.getP2Set().getNewSet();
+	if( newP2Set.isEmpty() ) return;
+
+        if( ofcg != null ) {
+            ofcg.updatedNode( src );
+            ofcg.build();
+            if( handleAddedEdges( src ) ) flush = false;
+        }
+
+	Node[] simpleTargets = pag.simpleLookup( src );
+	for (Node element : simpleTargets) {
+	    if( element.makeP2Set().addAll( newP2Set, null ) ) {
+                addToWorklist( (VarNode) element );
+                if(element == src) flush = false;
+            }
+	}
+
+        Node[] storeTargets = pag.storeLookup( src );
+        for (Node element : storeTargets) {
+            final FieldRefNode fr = (FieldRefNode) element;
+            final SparkField f = fr.getField();
+            fr.getBase().getP2Set().forall( new P2SetVisitor() {
+            public final void visit( Node n ) {
+                    AllocDotField nDotF = pag.makeAllocDotField(
+                        (AllocNode) n, f );
+                    if( nDotF.makeP2Set().addAll( newP2Set, null ) ) {
+                        dirtyFields.add( nDotF );
+                    }
+		}
+	    } );
+        }
+
+        final List<Node[]> storesToPropagate = new ArrayList<Node[]>();
+        final List<Node[]> loadsToPropagate = new ArrayList<Node[]>();
+	for( final FieldRefNode fr : src.getAllFieldRefs()) {
+	    final SparkField field = fr.getField();
+	    final Node[] storeSources = pag.storeInvLookup( fr );
+            if( storeSources.length > 0 ) {
+                newP2Set.forall( new P2SetVisitor() {
+                public final void visit( Node n ) {
+                        AllocDotField nDotF = pag.makeAllocDotField(
+                            (AllocNode) n, field );
+                        for (Node element : storeSources) {
+                            Node[] pair = { element, nDotF };
+                            storesToPropagate.add( pair );
+                        }
+                    }
+                } );
+            }
+
+	    final Node[] loadTargets = pag.loadLookup( fr );
+            if( loadTargets.length > 0 ) {
+                newP2Set.forall( new P2SetVisitor() {
+                public final void visit( Node n ) {
+                        AllocDotField nDotF = pag.makeAllocDotField(
+                            (AllocNode) n, field );
+                        if( nDotF != null ) {
+                            addLoad( nDotF, fr );
+                            for (Node element : loadTargets) {
+                                Node[] pair = { nDotF, element };
+                                loadsToPropagate.add( pair );
+                            }
+                        }
+                    }
+                } );
+            }
+	}
+        if(flush) src.getP2Set().flushNew();
+        for (Node[] p : storesToPropagate) {
+            VarNode storeSource = (VarNode) p[0];
+            AllocDotField nDotF = (AllocDotField) p[1];
+            if( nDotF.makeP2Set().addAll( storeSource.getP2Set(), null ) ) {
+                dirtyFields.add( nDotF );
+            }
+        }
+        for (Node[] p : loadsToPropagate) {
+            AllocDotField nDotF = (AllocDotField) p[0];
+            VarNode loadTarget = (VarNode) p[1];
+            if( loadTarget.makeP2Set().
+                addAll( nDotF.getP2Set(), null ) ) {
+                addToWorklist( loadTarget );
+            }
+        }
+    }
+
+    /** Propagates along the edges that the on-the-fly call graph added to
+     * the PAG. Returns true if the points-to set of src grew. */
+    private boolean handleAddedEdges( VarNode src ) {
+        boolean srcChanged = false;
+        while(addedEdges.hasNext()) {
+            Node addedSrc = addedEdges.next();
+            Node addedTgt = addedEdges.next();
+            if( addedSrc instanceof VarNode ) {
+                final VarNode edgeSrc = (VarNode) addedSrc.getReplacement();
+                if( addedTgt instanceof VarNode ) {
+                    VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+                    if( edgeTgt.makeP2Set().addAll( edgeSrc.getP2Set(), null ) ) {
+                        addToWorklist( edgeTgt );
+                        if(edgeTgt == src) srcChanged = true;
+                    }
+                } else {
+                    // store
+                    final FieldRefNode fr = (FieldRefNode) addedTgt.getReplacement();
+                    final SparkField f = fr.getField();
+                    fr.getBase().getP2Set().forall( new P2SetVisitor() {
+                    public final void visit( Node n ) {
+                            AllocDotField nDotF = pag.makeAllocDotField(
+                                (AllocNode) n, f );
+                            if( nDotF.makeP2Set().addAll( edgeSrc.getP2Set(), null ) ) {
+                                dirtyFields.add( nDotF );
+                            }
+                        }
+                    } );
+                }
+            } else if( addedSrc instanceof AllocNode ) {
+                AllocNode edgeSrc = (AllocNode) addedSrc;
+                VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+                if( edgeTgt.makeP2Set().add( edgeSrc ) ) {
+                    addToWorklist( edgeTgt );
+                    if(edgeTgt == src) srcChanged = true;
+                }
+            } else {
+                // load
+                final FieldRefNode fr = (FieldRefNode) addedSrc.getReplacement();
+                final VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+                final SparkField f = fr.getField();
+                final boolean[] changed = new boolean[1];
+                fr.getBase().getP2Set().forall( new P2SetVisitor() {
+                public final void visit( Node n ) {
+                        AllocDotField nDotF = pag.makeAllocDotField(
+                            (AllocNode) n, f );
+                        if( nDotF != null ) {
+                            addLoad( nDotF, fr );
+                            if( edgeTgt.makeP2Set().addAll( nDotF.getP2Set(), null ) ) {
+                                changed[0] = true;
+                            }
+                        }
+                    }
+                } );
+                if( changed[0] ) {
+                    addToWorklist( edgeTgt );
+                    if(edgeTgt == src) srcChanged = true;
+                }
+            }
+        }
+        return srcChanged;
+    }
+
+    /** Records that nDotF is loaded through fr, whose base points to the
+     * allocation site of nDotF. */
+    private void addLoad( AllocDotField nDotF, FieldRefNode fr ) {
+        Set<FieldRefNode> frs = loads.get( nDotF );
+        if( frs == null ) loads.put( nDotF, frs = new HashSet<FieldRefNode>() );
+        frs.add( fr );
+    }
+
+    /** Propagates new points-to information of field node nDotF to the
+     * targets of the loads it is read through. */
+    private void handleAllocDotField( AllocDotField nDotF ) {
+        PointsToSetInternal p2set = nDotF.getP2Set();
+        PointsToSetInternal newP2Set = p2set.getNewSet();
+        if( newP2Set.isEmpty() ) return;
+        Set<FieldRefNode> frs = loads.get( nDotF );
+        if( frs != null ) {
+            for( FieldRefNode fr : frs ) {
+                for( Node element : pag.loadLookup( fr ) ) {
+                    if( element.makeP2Set().addAll( newP2Set, null ) ) {
+                        addToWorklist( (VarNode) element );
+                    }
+                }
+            }
+        }
+        p2set.flushNew();
+    }
+
+    /** The order of VarNode.compareTo, which PropWorklist sorts by. */
+    private static final Comparator<VarNode> FINISHING_ORDER = new Comparator<VarNode>() {
+        public int compare( VarNode a, VarNode b ) {
+            return a.compareTo( b );
+        }
+    };
+
+    protected PAG pag;
+    protected OnFlyCallGraph ofcg;
+    private QueueReader<Node> addedEdges;
+    private PriorityQueue<VarNode> varNodeQueue;
+    /** Nodes with a higher number than this were created after
+     * varNodeQueue was made, and must wait in newVarNodes. */
+    private int lastQueuedNumber;
+    private int queuedNodes;
+    private final Set<VarNode> newVarNodes = new LinkedHashSet<VarNode>();
+    private final Set<AllocDotField> dirtyFields = new LinkedHashSet<AllocDotField>();
+    private final Map<AllocDotField, Set<FieldRefNode>> loads =
+        new HashMap<AllocDotField, Set<FieldRefNode>>();
+}
@@ -0,0 +1,379 @@
+package soot.jimple.spark.solver;
+import soot.jimple.spark.pag.*;
+import soot.jimple.spark.sets.*;
+import soot.options.Options;
+import soot.options.SparkOptions;
+import soot.*;
+import soot.util.queue.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Propagates points-to sets along pointer assignment graph using a worklist,
+ * handling the simple (assignment) edges of many nodes concurrently.
+ *
+ * <p>The worklist is processed in rounds. Each round takes all nodes on the
+ * worklist, updates the on-the-fly call graph with their new points-to sets,
+ * and then flushes those new sets. The flushed sets are no longer modified,
+ * so they can be read by several threads at once while they are added to
+ * the targets of the simple edges. Every target is owned by exactly one
+ * thread, which performs all unions into it, so no two threads ever write
+ * to the same points-to set. Field stores and loads, which create new
+ * nodes in the PAG, are then handled sequentially as in
+ * {@link PropWorklist}. Every new points-to element is propagated along all
+ * edges exactly as in {@link PropWorklist}, so the result is the same fixed
+ * point.
+ *
+ * <p>The number of threads is given by the <tt>-num-threads</tt> option.
+ * Propagation is sequential unless Spark uses double points-to sets whose
+ * old and new parts are not shared between nodes (<tt>heintze</tt> and
+ * <tt>sharedlist</tt> sets keep global state).
+ */
+
+public final class PropParallel extends Propagator {
+    /** Rounds with fewer simple edges than this are handled sequentially. */
+    private static final int MIN_PARALLEL_EDGES = 256;
+
+    protected final Set<VarNode> varNodeWorkList = new TreeSet<VarNode>();
+
+    public PropParallel( PAG pag ) { this.pag = pag; }
+    /** Actually does the propagation. */
+    public final void propagate() {
+        ofcg = pag.getOnFlyCallGraph();
+        new TopoSorter( pag, false ).sort();
+	for (Object object : pag.allocSources()) {
+	    handleAllocNode( (AllocNode) object );
+	}
+
+        boolean verbose = pag.getOpts().verbose();
+        threadNum = getThreadCount();
+        if( verbose ) {
+            G.v().out.println( "Propagating on "+threadNum+" threads." );
+        }
+        if( threadNum > 1 ) executor = Executors.newFixedThreadPool( threadNum );
+        try {
+            do {
+                if( verbose ) {
+                    G.v().out.println( "Worklist has "+varNodeWorkList.size()+
+                            " nodes." );
+                }
+                while( !varNodeWorkList.isEmpty() ) {
+                    List<VarNode> round = new ArrayList<VarNode>( varNodeWorkList );
+                    varNodeWorkList.clear();
+                    handleVarNodes( round );
+                }
+                if( verbose ) {
+                    G.v().out.println( "Now handling field references" );
+                }
+                for (Object object : pag.storeSources()) {
+                    final VarNode src = (VarNode) object;
+                    Node[] targets = pag.storeLookup( src );
+                    for (Node element0 : targets) {
+                        final FieldRefNode target = (FieldRefNode) element0;
+                        target.getBase().makeP2Set().forall( new P2SetVisitor() {
+                        public final void visit( Node n ) {
+                                AllocDotField nDotF = pag.makeAllocDotField(
+                                    (AllocNode) n, target.getField() );
+                                nDotF.makeP2Set().addAll( src.getP2Set(), null );
+                            }
+                        } );
+                    }
+                }
+                HashSet<Object[]> edgesToPropagate = new HashSet<Object[]>();
+                for (Object object : pag.loadSources()) {
+                    handleFieldRefNode( (FieldRefNode) object, edgesToPropagate );
+                }
+                Set<PointsToSetInternal> nodesToFlush = Collections.newSetFromMap(new IdentityHashMap<PointsToSetInternal,Boolean>());
+                for (Object[] pair : edgesToPropagate) {
+                    PointsToSetInternal nDotF = (PointsToSetInternal) pair[0];
+                    PointsToSetInternal newP2Set = nDotF.getNewSet();
+                    VarNode loadTarget = (VarNode) pair[1];
+                    if( loadTarget.makeP2Set().addAll( newP2Set, null ) ) {
+                        varNodeWorkList.add( loadTarget );
+                    }
+                    nodesToFlush.add( nDotF );
+                }
+                for (PointsToSetInternal nDotF : nodesToFlush) {
+                    nDotF.flushNew();
+                }
+            } while( !varNodeWorkList.isEmpty() );
+        } finally {
+            if( executor != null ) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    /** Returns the number of threads to propagate on, or 1 if the points-to
+     * sets in use cannot be updated concurrently. */
+    private int getThreadCount() {
+        int ret = Options.v().num_threads();
+        if( ret <= 0 ) ret = Runtime.getRuntime().availableProcessors();
+        SparkOptions opts = pag.getOpts();
+        boolean concurrentSets = opts.set_impl() == SparkOptions.set_impl_double
+            && opts.double_set_old() != SparkOptions.double_set_old_heintze
+            && opts.double_set_old() != SparkOptions.double_set_old_sharedlist
+            && opts.double_set_old() != SparkOptions.double_set_old_interned
+            && opts.double_set_new() != SparkOptions.double_set_new_heintze
+            && opts.double_set_new() != SparkOptions.double_set_new_sharedlist
+            && opts.double_set_new() != SparkOptions.double_set_new_interned;
+        if( ret > 1 && !concurrentSets ) {
+            if( opts.verbose() ) {
+                G.v().out.println( "Points-to sets cannot be updated concurrently with the current set-impl; propagating sequentially." );
+            }
+            ret = 1;
+        }
+        return ret;
+    }
+
+    /** Propagates new points-to information of node src to all its
+     * successors. */
+    protected final boolean handleAllocNode( AllocNode src ) {
+	boolean ret = false;
+	Node[] targets = pag.allocLookup( src );
+	for (Node element : targets) {
+	    if( element.makeP2Set().add( src ) ) {
+                varNodeWorkList.add( (VarNode) element );
+                ret = true;
+            }
+	}
+	return ret;
+    }
+
+    /** Propagates new points-to information of all nodes in round to all
+     * their successors. */
+    protected final void handleVarNodes( List<VarNode> round ) {
+        // nodes of this round whose sets grew while updating the call graph
+        Set<VarNode> grown = new HashSet<VarNode>();
+        if( ofcg != null ) {
+            QueueReader<Node> addedEdges = pag.edgeReader();
+            for( VarNode src : round ) {
+                if( !src.getP2Set().getNewSet().isEmpty() ) {
+                    ofcg.updatedNode( src );
+                }
+            }
+            ofcg.build();
+
+            while(addedEdges.hasNext()) {
+                Node addedSrc = addedEdges.next();
+                Node addedTgt = addedEdges.next();
+                if( addedSrc instanceof VarNode ) {
+                    if( addedTgt instanceof VarNode ) {
+                        VarNode edgeSrc = (VarNode) addedSrc.getReplacement();
+                        VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+
+                        if( edgeTgt.makeP2Set().addAll( edgeSrc.getP2Set(), null ) ) {
+                            varNodeWorkList.add( edgeTgt );
+                            grown.add( edgeTgt );
+                        }
+                    }
+                } else if( addedSrc instanceof AllocNode ) {
+                    AllocNode edgeSrc = (AllocNode) addedSrc;
+                    VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+                    if( edgeTgt.makeP2Set().add( edgeSrc ) ) {
+                        varNodeWorkList.add( edgeTgt );
+                        grown.add( edgeTgt );
+                    }
+                }
+            }
+        }
+
+        // Detach the new sets of this round. Whatever reaches these nodes
+        // from now on puts them back on the worklist. Nodes that grew above
+        // are already back on it, and keep their new sets until the call
+        // graph has seen them.
+        List<VarNode> srcs = new ArrayList<VarNode>( round.size() );
+        List<PointsToSetInternal> newSets = new ArrayList<PointsToSetInternal>( round.size() );
+        for( VarNode src : round ) {
+            if( src.getReplacement() != src ) throw new RuntimeException(
+                    "Got bad node "+src+" with rep "+src.getReplacement() );
+            if( grown.contains( src ) ) continue;
+            PointsToSetInternal p2set = src.getP2Set();
+            PointsToSetInternal newP2Set = p2set.getNewSet();
+            if( newP2Set.isEmpty() ) continue;
+            p2set.flushNew();
+            srcs.add( src );
+            newSets.add( newP2Set );
+        }
+
+        handleSimpleEdges( srcs, newSets );
+        for( int i = 0; i < srcs.size(); i++ ) {
+            handleFieldEdges( srcs.get( i ), newSets.get( i ) );
+        }
+    }
+
+    /** Adds the new points-to sets of srcs to the targets of their simple
+     * edges, splitting the targets among the threads. */
+    private void handleSimpleEdges( List<VarNode> srcs,
+            List<PointsToSetInternal> newSets ) {
+        int edges = 0;
+        for( VarNode src : srcs ) {
+            edges += pag.simpleLookup( src ).length;
+        }
+        if( executor == null || edges < MIN_PARALLEL_EDGES ) {
+            for( int i = 0; i < srcs.size(); i++ ) {
+                PointsToSetInternal newP2Set = newSets.get( i );
+                for( Node element : pag.simpleLookup( srcs.get( i ) ) ) {
+                    if( element.makeP2Set().addAll( newP2Set, null ) ) {
+                        varNodeWorkList.add( (VarNode) element );
+                    }
+                }
+            }
+            return;
+        }
+
+        // Everything the workers touch besides their own targets must
+        // already exist: the PAG lookups, the targets' sets and the type
+        // masks are all filled in lazily.
+        pag.getTypeManager().updateTypeMasks();
+        List<List<VarNode>> targets = new ArrayList<List<VarNode>>( threadNum );
+        List<List<PointsToSetInternal>> sources = new ArrayList<List<PointsToSetInternal>>( threadNum );
+        for( int i = 0; i < threadNum; i++ ) {
+            targets.add( new ArrayList<VarNode>() );
+            sources.add( new ArrayList<PointsToSetInternal>() );
+        }
+        for( int i = 0; i < srcs.size(); i++ ) {
+            PointsToSetInternal newP2Set = newSets.get( i );
+            for( Node element : pag.simpleLookup( srcs.get( i ) ) ) {
+                VarNode target = (VarNode) element;
+                target.makeP2Set();
+                int owner = target.getNumber() % threadNum;
+                targets.get( owner ).add( target );
+                sources.get( owner ).add( newP2Set );
+            }
+        }
+
+        List<Future<List<VarNode>>> futures = new ArrayList<Future<List<VarNode>>>( threadNum );
+        for( int i = 0; i < threadNum; i++ ) {
+            final List<VarNode> ownTargets = targets.get( i );
+            final List<PointsToSetInternal> ownSources = sources.get( i );
+            if( ownTargets.isEmpty() ) continue;
+            futures.add( executor.submit( new Callable<List<VarNode>>() {
+                public List<VarNode> call() {
+                    List<VarNode> changed = new ArrayList<VarNode>();
+                    for( int j = 0; j < ownTargets.size(); j++ ) {
+                        VarNode target = ownTargets.get( j );
+                        if( target.getP2Set().addAll( ownSources.get( j ), null ) ) {
+                            changed.add( target );
+                        }
+                    }
+                    return changed;
+                }
+            } ) );
+        }
+        try {
+            for( Future<List<VarNode>> future : futures ) {
+                varNodeWorkList.addAll( future.get() );
+            }
+        } catch( InterruptedException e ) {
+            throw new RuntimeException( "Interrupted while propagating points-to sets", e );
+        } catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+            if( cause instanceof Error ) throw (Error) cause;
+            throw new RuntimeException( cause );
+        }
+    }
+
+    /** Propagates the new points-to information newP2Set of node src
+     * through the field stores and loads src takes part in. */
+    private void handleFieldEdges( final VarNode src,
+            final PointsToSetInternal newP2Set ) {
+        Node[] storeTargets = pag.storeLookup( src );
+        for (Node element : storeTargets) {
+            final FieldRefNode fr = (FieldRefNode) element;
+            final SparkField f = fr.getField();
+            fr.getBase().getP2Set().forall( new P2SetVisitor() {
+            public final void visit( Node n ) {
+                    AllocDotField nDotF = pag.makeAllocDotField(
+                        (AllocNode) n, f );
+                    nDotF.makeP2Set().addAll( newP2Set, null );
+		}
+	    } );
+        }
+
+        final HashSet<Node[]> storesToPropagate = new HashSet<Node[]>();
+        final HashSet<Node[]> loadsToPropagate = new HashSet<Node[]>();
+	for( final FieldRefNode fr : src.getAllFieldRefs()) {
+	    final SparkField field = fr.getField();
+	    final Node[] storeSources = pag.storeInvLookup( fr );
+            if( storeSources.length > 0 ) {
+                newP2Set.forall( new P2SetVisitor() {
+                public final void visit( Node n ) {
+                        AllocDotField nDotF = pag.makeAllocDotField(
+                            (AllocNode) n, field );
+                        for (Node element : storeSources) {
+                            Node[] pair = { element,
+                                nDotF.getReplacement() };
+                            storesToPropagate.add( pair );
+                        }
+                    }
+                } );
+            }
+
+	    final Node[] loadTargets = pag.loadLookup( fr );
+            if( loadTargets.length > 0 ) {
+                newP2Set.forall( new P2SetVisitor() {
+                public final void visit( Node n ) {
+                        AllocDotField nDotF = pag.makeAllocDotField(
+                            (AllocNode) n, field );
+                        if( nDotF != null ) {
+                            for (Node element : loadTargets) {
+                                Node[] pair = { nDotF.getReplacement(),
+                                    element };
+                                loadsToPropagate.add( pair );
+                            }
+                        }
+                    }
+                } );
+            }
+	}
+        for (Node[] p : storesToPropagate) {
+            VarNode storeSource = (VarNode) p[0];
+            AllocDotField nDotF = (AllocDotField) p[1];
+            nDotF.makeP2Set().addAll( storeSource.getP2Set(), null );
+        }
+        for (Node[] p : loadsToPropagate) {
+            AllocDotField nDotF = (AllocDotField) p[0];
+            VarNode loadTarget = (VarNode) p[1];
+            if( loadTarget.makeP2Set().
+                addAll( nDotF.getP2Set(), null ) ) {
+                varNodeWorkList.add( loadTarget );
+            }
+        }
+    }
+
+    /** Propagates new points-to information of node src to all its
+     * successors. */
+    protected final void handleFieldRefNode( FieldRefNode src,
+            final HashSet<Object[]> edgesToPropagate ) {
+	final Node[] loadTargets = pag.loadLookup( src );
+	if( loadTargets.length == 0 ) return;
+        final SparkField field = src.getField();
+
+	src.getBase().getP2Set().forall( new P2SetVisitor() {
+
+	public final void visit( Node n ) {
+                AllocDotField nDotF = pag.makeAllocDotField(
+                    (AllocNode) n, field );
+                if( nDotF != null ) {
+                    PointsToSetInternal p2Set = nDotF.getP2Set();
+                    if( !p2Set.getNewSet().isEmpty() ) {
+                        for (Node element : loadTargets) {
+                            Object[] pair = { p2Set, element };
+                            edgesToPropagate.add( pair );
+                        }
+                    }
+                }
+	    }
+	} );
+    }
+
+    protected PAG pag;
+    protected OnFlyCallGraph ofcg;
+    private int threadNum;
+    private ExecutorService executor;
+}
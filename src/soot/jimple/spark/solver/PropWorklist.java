@@ -34,8 +34,15 @@ public final class PropWorklist extends Propagator {
     public PropWorklist( PAG pag ) { this.pag = pag; }
     /** Actually does the propagation. */
     public final void propagate() {
+        propagate( Collections.<VarNode>emptySet() );
+    }
+    /** Does the propagation, starting from the new points-to sets of the
+     * allocation sites and of the nodes in changed. The other nodes are
+     * assumed to be done already. */
+    public final void propagate( Collection<? extends VarNode> changed ) {
         ofcg = pag.getOnFlyCallGraph();
         new TopoSorter( pag, false ).sort();
+        varNodeWorkList.addAll( changed );
 	for (Object object : pag.allocSources()) {
 	    handleAllocNode( (AllocNode) object );
 	}
@@ -35,7 +35,7 @@ import soot.util.*;
 
 import java.util.*;
 
-public class Aggregator extends BodyTransformer
+public class Aggregator extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public Aggregator( Singletons.Global g ) {}
     public static Aggregator v() { return G.v().soot_jimple_toolkits_base_Aggregator(); }
@@ -99,7 +99,7 @@ public class Aggregator extends BodyTransformer
       boolean hadAggregation = false;
       Chain<Unit> units = body.getUnits();
       
-      ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body);
+      ExceptionalUnitGraph graph = body.getAnalysisCache().getExceptionalUnitGraph();
       LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(graph);
       LocalUses localUses = LocalUses.Factory.newLocalUses(body, localDefs);
       
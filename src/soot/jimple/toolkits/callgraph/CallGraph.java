@@ -18,9 +18,11 @@
  */
 
 package soot.jimple.toolkits.callgraph;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -82,14 +84,11 @@ public class CallGraph implements Iterable<Edge>
      * @param u The unit from which to remove all outgoing edges
      * @return True if at least one edge has been removed, otherwise false
      */
-    public boolean removeAllEdgesOutOf(Unit u) {
+    public synchronized boolean removeAllEdgesOutOf(Unit u) {
     	boolean hasRemoved = false;
-    	for (QueueReader<Edge> edgeRdr = listener(); edgeRdr.hasNext(); ) {
-    		Edge e = edgeRdr.next();
-    		if (e.srcUnit() == u) {
-    			removeEdge(e);
-    			hasRemoved = true;
-    		}
+    	for (Edge e : edgeListOutOf(u)) {
+    		removeEdge(e);
+    		hasRemoved = true;
     	}
     	return hasRemoved;
     }
@@ -99,22 +98,30 @@ public class CallGraph implements Iterable<Edge>
      * given statement to some callee now go from the new statement to the same
      * callee. This method is intended to be used when a Jimple statement is
      * replaced, but the replacement does not semantically affect the edges.
+     * It may be called by body transformers running on several threads.
      * @param out The old statement
      * @param in The new statement
      * @return True if at least one edge was affected by this operation
      */
-    public boolean swapEdgesOutOf(Stmt out, Stmt in) {
+    public synchronized boolean swapEdgesOutOf(Stmt out, Stmt in) {
     	boolean hasSwapped = false;
-    	for (QueueReader<Edge> edgeRdr = listener(); edgeRdr.hasNext(); ) {
-    		Edge e = edgeRdr.next();
-    		if (e.srcUnit() == out) {
-    			removeEdge(e);
-    			addEdge(new Edge(e.getSrc(), in, e.getTgt()));
-    			hasSwapped = true;
-    		}
+    	for (Edge e : edgeListOutOf(out)) {
+    		removeEdge(e);
+    		addEdge(new Edge(e.getSrc(), in, e.getTgt()));
+    		hasSwapped = true;
     	}
     	return hasSwapped;
     }
+
+    /** Copies the edges out of u, so that they can be removed while
+     * iterating over them. */
+    private List<Edge> edgeListOutOf(Unit u) {
+    	List<Edge> ret = new ArrayList<Edge>();
+    	if (srcUnitToEdge.get(u) == null) return ret;
+    	for (Iterator<Edge> edgeIt = edgesOutOf(u); edgeIt.hasNext(); )
+    		ret.add(edgeIt.next());
+    	return ret;
+    }
     
     /** Removes the edge e from the call graph. Returns true iff the edge
      * was originally present in the call graph. */
@@ -286,6 +293,11 @@ public class CallGraph implements Iterable<Edge>
         }
         return out.toString();
     }
+    /** Returns true if e is an edge of the call graph. Unlike the stream
+     * of the graph, this leaves out the edges that were removed. */
+    boolean containsEdge( Edge e ) {
+        return edges.contains( e );
+    }
     /** Returns the number of edges in the call graph. */
     public int size() {
         return edges.size();
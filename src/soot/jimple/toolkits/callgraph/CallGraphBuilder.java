@@ -60,6 +60,16 @@ public final class CallGraphBuilder
         ContextManager cm = makeContextManager(cg);
         ofcgb = new OnFlyCallGraphBuilder( cm, reachables );
    }
+    /** This constructor adds to cg the edges out of the methods found
+     * reachable by the given ReachableMethods, which must be built over cg.
+     * The call graph of the Scene is left as it is. */
+    public CallGraphBuilder( PointsToAnalysis pa, CallGraph cg, ReachableMethods reachables ) {
+        this.pa = pa;
+        this.cg = cg;
+        this.reachables = reachables;
+        ContextManager cm = makeContextManager(cg);
+        ofcgb = new OnFlyCallGraphBuilder( cm, reachables );
+    }
     /** This constructor builds the incomplete hack call graph for the
      * Dava ThrowFinder.
      * It uses all application class methods as entry points, and it ignores
@@ -21,6 +21,8 @@ package soot.jimple.toolkits.callgraph;
 
 import soot.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import soot.options.CGOptions;
 
@@ -58,5 +60,15 @@ public class CallGraphPack extends RadioScenePack
                 }
             }
         }
+        if( options.compact() && Scene.v().hasCallGraph() ) {
+            Scene.v().setCallGraph( new CompactCallGraph( Scene.v().getCallGraph() ) );
+        }
+        if( options.export().length() > 0 && Scene.v().hasCallGraph() ) {
+            try {
+                CallGraphWriter.write( Scene.v().getCallGraph(), new File( options.export() ) );
+            } catch( IOException e ) {
+                G.v().out.println( "[Call Graph] Couldn't export call graph: "+e.getMessage() );
+            }
+        }
     }
 }
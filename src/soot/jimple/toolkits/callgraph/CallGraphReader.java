@@ -0,0 +1,467 @@
+package soot.jimple.toolkits.callgraph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import soot.ArrayType;
+import soot.BooleanType;
+import soot.Body;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Kind;
+import soot.LongType;
+import soot.MethodOrMethodContext;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.Stmt;
+import soot.util.queue.QueueReader;
+
+/** Reads a call graph written by {@link CallGraphWriter}.
+ *
+ * <p>The edges are kept in int arrays, and methods by the ids of their
+ * class, name and type strings, so that a graph can be loaded and queried
+ * by method number without a Scene. {@link #toCallGraph()} rebuilds a
+ * {@link CallGraph} of the current Scene from them lazily: the edges out
+ * of a method are added when they are first asked for, resolving each
+ * method the first time an edge refers to it, and retrieving only the
+ * bodies of the methods whose edges are asked for.
+ */
+public class CallGraphReader {
+    /** Reads the call graph in file. */
+    public static CallGraphReader read( File file ) throws IOException {
+        FileInputStream in = new FileInputStream( file );
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buf = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            if( buf.remaining() < 8 || buf.getInt() != CallGraphWriter.MAGIC
+                    || buf.getInt() != CallGraphWriter.VERSION ) {
+                throw new IOException( "Not a call graph file "+file );
+            }
+            CallGraphReader ret = new CallGraphReader();
+            ret.read( buf );
+            return ret;
+        } catch( BufferUnderflowException e ) {
+            throw new IOException( "Truncated call graph file "+file );
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Returns the number of edges. */
+    public int size() { return size; }
+
+    /** Returns the number of methods, which are numbered from 0. */
+    public int methodCount() { return methodCount; }
+
+    /** Returns the signature of method m, in the form of
+     * {@link SootMethod#getSignature()}. */
+    public String methodSignature( int m ) {
+        StringBuilder b = new StringBuilder();
+        b.append( '<' ).append( strings.get( methodClass[m] ) ).append( ": " )
+            .append( strings.get( methodReturn[m] ) ).append( ' ' )
+            .append( strings.get( methodName[m] ) ).append( '(' );
+        for( int p = paramStart[m]; p < paramStart[m+1]; p++ ) {
+            if( p > paramStart[m] ) b.append( ',' );
+            b.append( strings.get( params[p] ) );
+        }
+        return b.append( ")>" ).toString();
+    }
+
+    /** Returns the number of the method with the given signature, or -1
+     * if no edge refers to it. */
+    public synchronized int methodNumber( String signature ) {
+        if( signatureToMethod == null ) {
+            signatureToMethod = new HashMap<String, Integer>( methodCount*2 );
+            for( int m = 0; m < methodCount; m++ ) {
+                signatureToMethod.put( methodSignature( m ), m );
+            }
+        }
+        Integer ret = signatureToMethod.get( signature );
+        return ret == null ? -1 : ret.intValue();
+    }
+
+    /** Returns the source method of edge e, or -1 for edges from no
+     * method. */
+    public int edgeSource( int e ) { return edgeSrc[e]; }
+    /** Returns the target method of edge e. */
+    public int edgeTarget( int e ) { return edgeTgt[e]; }
+    /** Returns the position of the call site of edge e in the body of its
+     * source, or -1 for edges without one. */
+    public int edgeUnit( int e ) { return edgeUnit[e]; }
+    public Kind edgeKind( int e ) { return kinds[edgeKind[e]]; }
+
+    /** Returns the edges out of method m. */
+    public int[] edgesOutOf( int m ) {
+        makeIndex();
+        return Arrays.copyOfRange( outEdges, outStart[m], outStart[m+1] );
+    }
+
+    /** Returns the edges into method m. */
+    public int[] edgesInto( int m ) {
+        makeIndex();
+        return Arrays.copyOfRange( inEdges, inStart[m], inStart[m+1] );
+    }
+
+    /** Returns a call graph of the current Scene with all the edges. The
+     * edges out of a method are added the first time they are asked for,
+     * by method or through the edges into one of its callees. Queries by
+     * call site, and the whole-graph queries such as
+     * {@link CallGraph#iterator()}, {@link CallGraph#listener()} and
+     * {@link CallGraph#size()}, add all the edges first. */
+    public CallGraph toCallGraph() {
+        return new LazyCallGraph();
+    }
+
+    /* End of public methods. */
+    /* End of package methods. */
+
+    private CallGraphReader() {}
+
+    /** A call graph that adds the edges of the file out of each source
+     * method when they are first needed. Edges from no method are added
+     * at once. */
+    private final class LazyCallGraph extends CallGraph {
+        private final SootMethod[] resolved = new SootMethod[methodCount];
+        /** Methods whose edges were added, by reader method number. */
+        private final BitSet loaded = new BitSet( methodCount );
+        /** Methods of the Scene whose edges out, or whose callers' edges
+         * out, were added, by {@link SootMethod#getNumber()}. */
+        private final BitSet sourcesDone = new BitSet();
+        private final BitSet targetsDone = new BitSet();
+        private volatile boolean loadedAll = false;
+
+        LazyCallGraph() {
+            for( int e = 0; e < size; e++ ) {
+                if( edgeSrc[e] < 0 ) {
+                    super.addEdge( new Edge( null, null, resolve( resolved, edgeTgt[e] ), edgeKind( e ) ) );
+                }
+            }
+        }
+
+        /** Adds the edges out of the method numbered m, the first time. */
+        private synchronized void load( int m ) {
+            if( m < 0 || loaded.get( m ) ) return;
+            loaded.set( m );
+            makeIndex();
+            SootMethod src = resolve( resolved, m );
+            Unit[] body = null;
+            for( int i = outStart[m]; i < outStart[m+1]; i++ ) {
+                int e = outEdges[i];
+                Unit unit = null;
+                if( edgeUnit[e] >= 0 ) {
+                    if( body == null ) {
+                        Body b = src.retrieveActiveBody();
+                        body = b.getUnits().toArray( new Unit[b.getUnits().size()] );
+                    }
+                    unit = body[edgeUnit[e]];
+                }
+                super.addEdge( new Edge( src, unit, resolve( resolved, edgeTgt[e] ), edgeKind( e ) ) );
+            }
+        }
+
+        private void loadOutOf( MethodOrMethodContext m ) {
+            if( loadedAll || m == null ) return;
+            SootMethod method = m.method();
+            synchronized( this ) {
+                if( sourcesDone.get( method.getNumber() ) ) return;
+                sourcesDone.set( method.getNumber() );
+                load( methodNumber( method.getSignature() ) );
+            }
+        }
+
+        private void loadInto( MethodOrMethodContext m ) {
+            if( loadedAll ) return;
+            SootMethod method = m.method();
+            synchronized( this ) {
+                if( targetsDone.get( method.getNumber() ) ) return;
+                targetsDone.set( method.getNumber() );
+                int t = methodNumber( method.getSignature() );
+                if( t < 0 ) return;
+                makeIndex();
+                for( int i = inStart[t]; i < inStart[t+1]; i++ ) {
+                    load( edgeSrc[inEdges[i]] );
+                }
+            }
+        }
+
+        private synchronized void loadAll() {
+            if( loadedAll ) return;
+            for( int m = 0; m < methodCount; m++ ) load( m );
+            loadedAll = true;
+        }
+
+        public boolean addEdge( Edge e ) {
+            loadOutOf( e.getSrc() );
+            return super.addEdge( e );
+        }
+        public boolean removeEdge( Edge e ) {
+            loadOutOf( e.getSrc() );
+            return super.removeEdge( e );
+        }
+        public boolean removeAllEdgesOutOf( Unit u ) {
+            loadAll();
+            return super.removeAllEdgesOutOf( u );
+        }
+        public boolean swapEdgesOutOf( Stmt out, Stmt in ) {
+            loadAll();
+            return super.swapEdgesOutOf( out, in );
+        }
+        public boolean isEntryMethod( SootMethod method ) {
+            loadInto( method );
+            return super.isEntryMethod( method );
+        }
+        public Edge findEdge( Unit u, SootMethod callee ) {
+            loadAll();
+            return super.findEdge( u, callee );
+        }
+        public Iterator<MethodOrMethodContext> sourceMethods() {
+            loadAll();
+            return super.sourceMethods();
+        }
+        public Iterator<Edge> edgesOutOf( Unit u ) {
+            loadAll();
+            return super.edgesOutOf( u );
+        }
+        public Iterator<Edge> edgesOutOf( MethodOrMethodContext m ) {
+            loadOutOf( m );
+            return super.edgesOutOf( m );
+        }
+        public Iterator<Edge> edgesInto( MethodOrMethodContext m ) {
+            loadInto( m );
+            return super.edgesInto( m );
+        }
+        public QueueReader<Edge> listener() {
+            loadAll();
+            return super.listener();
+        }
+        public int size() {
+            loadAll();
+            return super.size();
+        }
+        public Iterator<Edge> iterator() {
+            loadAll();
+            return super.iterator();
+        }
+    }
+
+    private SootMethod resolve( SootMethod[] resolved, int m ) {
+        SootMethod ret = resolved[m];
+        if( ret == null ) {
+            List<Type> parameterTypes = new ArrayList<Type>();
+            for( int p = paramStart[m]; p < paramStart[m+1]; p++ ) {
+                parameterTypes.add( type( strings.get( params[p] ) ) );
+            }
+            ret = Scene.v().makeMethodRef(
+                    Scene.v().getSootClass( strings.get( methodClass[m] ) ),
+                    strings.get( methodName[m] ), parameterTypes,
+                    type( strings.get( methodReturn[m] ) ),
+                    methodStatic[m] ).resolve();
+            resolved[m] = ret;
+        }
+        return ret;
+    }
+
+    private static Type[] basicTypes() {
+        return new Type[] { BooleanType.v(), ByteType.v(), CharType.v(),
+            ShortType.v(), IntType.v(), LongType.v(), FloatType.v(),
+            DoubleType.v(), VoidType.v() };
+    }
+
+    /** Returns the type called name by {@link Type#toString()}. */
+    private static Type type( String name ) {
+        int dims = 0;
+        while( name.endsWith( "[]" ) ) {
+            name = name.substring( 0, name.length()-2 );
+            dims++;
+        }
+        Type ret = null;
+        for( Type t : basicTypes() ) {
+            if( t.toString().equals( name ) ) ret = t;
+        }
+        if( ret == null ) ret = RefType.v( name );
+        return dims == 0 ? ret : ArrayType.v( ret, dims );
+    }
+
+    private static final Kind[] KINDS = { Kind.INVALID, Kind.STATIC,
+        Kind.VIRTUAL, Kind.INTERFACE, Kind.SPECIAL, Kind.CLINIT, Kind.THREAD,
+        Kind.EXECUTOR, Kind.ASYNCTASK, Kind.FINALIZE, Kind.INVOKE_FINALIZE,
+        Kind.PRIVILEGED, Kind.NEWINSTANCE, Kind.REFL_INVOKE,
+        Kind.REFL_CONSTR_NEWINSTANCE, Kind.REFL_CLASS_NEWINSTANCE };
+
+    private void read( ByteBuffer buf ) throws IOException {
+        this.buf = buf;
+        List<Kind> kindList = new ArrayList<Kind>();
+        Map<Integer, Integer> kindOfString = new HashMap<Integer, Integer>();
+        int[] paramList = new int[16];
+        int paramCount = 0;
+        while( true ) {
+            int record = readInt();
+            if( record == CallGraphWriter.R_END ) break;
+            if( record != CallGraphWriter.R_EDGE ) {
+                throw new IOException( "Bad record "+record );
+            }
+            if( size == edgeSrc.length ) {
+                int n = size*2;
+                edgeSrc = Arrays.copyOf( edgeSrc, n );
+                edgeUnit = Arrays.copyOf( edgeUnit, n );
+                edgeTgt = Arrays.copyOf( edgeTgt, n );
+                edgeKind = Arrays.copyOf( edgeKind, n );
+            }
+            for( int end = 0; end < 2; end++ ) {
+                int id = readInt();
+                int m;
+                if( id == 0 ) {
+                    if( end == 1 ) throw new IOException( "Edge without target" );
+                    m = -1;
+                } else if( id > 1 ) {
+                    m = id-2;
+                    if( m >= methodCount ) throw new IOException( "Bad method "+id );
+                } else {
+                    if( methodCount+1 >= paramStart.length ) {
+                        int n = paramStart.length*2;
+                        methodClass = Arrays.copyOf( methodClass, n );
+                        methodName = Arrays.copyOf( methodName, n );
+                        methodStatic = Arrays.copyOf( methodStatic, n );
+                        methodReturn = Arrays.copyOf( methodReturn, n );
+                        paramStart = Arrays.copyOf( paramStart, n );
+                    }
+                    m = methodCount++;
+                    methodClass[m] = readString();
+                    methodName[m] = readString();
+                    methodStatic[m] = readInt() != 0;
+                    methodReturn[m] = readString();
+                    paramStart[m] = paramCount;
+                    for( int i = readInt(); i > 0; i-- ) {
+                        if( paramCount == paramList.length ) {
+                            paramList = Arrays.copyOf( paramList, paramCount*2 );
+                        }
+                        paramList[paramCount++] = readString();
+                    }
+                    paramStart[m+1] = paramCount;
+                }
+                if( end == 0 ) {
+                    edgeSrc[size] = m;
+                    edgeUnit[size] = readInt()-1;
+                } else {
+                    edgeTgt[size] = m;
+                }
+            }
+            int kindString = readString();
+            Integer kind = kindOfString.get( kindString );
+            if( kind == null ) {
+                Kind k = lookupKind( strings.get( kindString ) );
+                if( k == null ) throw new IOException( "Bad kind "+strings.get( kindString ) );
+                kind = kindList.size();
+                kindList.add( k );
+                kindOfString.put( kindString, kind );
+            }
+            edgeKind[size] = kind.byteValue();
+            size++;
+        }
+        params = Arrays.copyOf( paramList, paramCount );
+        kinds = kindList.toArray( new Kind[kindList.size()] );
+        this.buf = null;
+    }
+
+    private static Kind lookupKind( String name ) {
+        for( Kind k : KINDS ) {
+            if( k.name().equals( name ) ) return k;
+        }
+        return null;
+    }
+
+    /** Reads a string, and returns its id. */
+    private int readString() throws IOException {
+        int id = readInt();
+        if( id > 0 ) {
+            if( id > strings.size() ) throw new IOException( "Bad string "+id );
+            return id-1;
+        }
+        byte[] bytes = new byte[readInt()];
+        buf.get( bytes );
+        strings.add( new String( bytes, "UTF-8" ) );
+        return strings.size()-1;
+    }
+
+    private int readInt() {
+        int ret = 0;
+        for( int shift = 0; ; shift += 7 ) {
+            byte b = buf.get();
+            ret |= ( b & 0x7f ) << shift;
+            if( b >= 0 ) return ret;
+        }
+    }
+
+    /** Sorts the edges by source and by target, the first time they are
+     * asked for. */
+    private synchronized void makeIndex() {
+        if( outStart != null ) return;
+        int[][] index = countingSort( edgeSrc );
+        int[][] in = countingSort( edgeTgt );
+        outEdges = index[0];
+        inEdges = in[0];
+        inStart = in[1];
+        outStart = index[1];
+    }
+
+    /** Returns the edges sorted by their method in key, and where the edges
+     * of each method start; edges with no method are left out. */
+    private int[][] countingSort( int[] key ) {
+        int[] start = new int[methodCount+1];
+        for( int e = 0; e < size; e++ ) {
+            if( key[e] >= 0 ) start[key[e]+1]++;
+        }
+        for( int m = 0; m < methodCount; m++ ) start[m+1] += start[m];
+        int[] next = Arrays.copyOf( start, methodCount );
+        int[] sorted = new int[start[methodCount]];
+        for( int e = 0; e < size; e++ ) {
+            if( key[e] >= 0 ) sorted[next[key[e]]++] = e;
+        }
+        return new int[][] { sorted, start };
+    }
+
+    private ByteBuffer buf;
+    private final List<String> strings = new ArrayList<String>();
+
+    private int methodCount;
+    private int[] methodClass = new int[16];
+    private int[] methodName = new int[16];
+    private boolean[] methodStatic = new boolean[16];
+    private int[] methodReturn = new int[16];
+    /** The parameter types of method m are params[paramStart[m]] up to
+     * params[paramStart[m+1]-1]. */
+    private int[] paramStart = new int[16];
+    private int[] params;
+    private Map<String, Integer> signatureToMethod;
+
+    private int size;
+    private int[] edgeSrc = new int[16];
+    private int[] edgeUnit = new int[16];
+    private int[] edgeTgt = new int[16];
+    private byte[] edgeKind = new byte[16];
+    private Kind[] kinds;
+
+    private volatile int[] outStart;
+    private int[] outEdges;
+    private int[] inStart;
+    private int[] inEdges;
+}
@@ -0,0 +1,186 @@
+package soot.jimple.toolkits.callgraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.util.queue.QueueReader;
+
+/** Writes the edges of a call graph to a binary file as they appear on
+ * its {@link CallGraph#listener() stream}, so that the graph can be saved
+ * while it is still being built, without building a text form of it in
+ * memory. {@link CallGraphReader} reads the file back.
+ *
+ * <p>The file starts with a magic number and a version, and is followed by
+ * one record per edge and an end record. Numbers are written in 7-bit
+ * groups. Methods and strings are given ids in the order they first
+ * appear; the first time a method appears, its id is followed by its
+ * declaring class, name, whether it is static, return type and parameter
+ * types, and the first time a string appears, it is followed by its UTF-8
+ * bytes. An edge record holds its source method, the position of its call
+ * site in the body of the source (0 for none), its target method and its
+ * kind.
+ *
+ * <p>Only the edges still in the call graph when they are written are
+ * saved; edges removed from it afterwards stay in the file.
+ */
+public class CallGraphWriter {
+    static final int MAGIC = 0x53434745;
+    static final int VERSION = 1;
+
+    static final int R_END = 0;
+    static final int R_EDGE = 1;
+
+    /** Number of methods whose call site positions are kept at a time. */
+    private static final int UNIT_CACHE_SIZE = 256;
+
+    /** Writes all edges of cg to file. */
+    public static void write( CallGraph cg, File file ) throws IOException {
+        OutputStream out = new BufferedOutputStream( new FileOutputStream( file ), 1<<16 );
+        try {
+            new CallGraphWriter( cg, out ).close();
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Starts writing the edges of cg to out. Edges added to cg before now
+     * are written too. */
+    public CallGraphWriter( CallGraph cg, OutputStream out ) throws IOException {
+        this.cg = cg;
+        this.edges = cg.listener();
+        this.out = new DataOutputStream( out );
+        this.out.writeInt( MAGIC );
+        this.out.writeInt( VERSION );
+    }
+
+    /** Writes the edges that appeared on the stream of the call graph
+     * since the last call, and returns how many were written. */
+    public int writeNewEdges() throws IOException {
+        int ret = 0;
+        while( edges.hasNext() ) {
+            Edge e = edges.next();
+            // the stream of a CallGraph still holds the removed edges
+            if( !cg.containsEdge( e ) ) continue;
+            writeEdge( e );
+            ret++;
+        }
+        edgeCount += ret;
+        return ret;
+    }
+
+    /** Writes the remaining edges and the end record, and closes the
+     * output stream. */
+    public void close() throws IOException {
+        try {
+            writeNewEdges();
+            writeInt( R_END );
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Returns the number of edges written so far. */
+    public long edgeCount() { return edgeCount; }
+
+    private void writeEdge( Edge e ) throws IOException {
+        if( e.srcCtxt() != null || e.tgtCtxt() != null ) {
+            throw new IOException( "Can't save context-sensitive call graph edge "+e );
+        }
+        writeInt( R_EDGE );
+        writeMethod( e.src() );
+        if( e.srcUnit() == null ) {
+            writeInt( 0 );
+        } else {
+            Integer position = unitsOf( e.src() ).get( e.srcUnit() );
+            if( position == null ) {
+                throw new IOException( "Call site of "+e+" is not in the body of its source" );
+            }
+            writeInt( position.intValue()+1 );
+        }
+        writeMethod( e.tgt() );
+        writeString( e.kind().name() );
+    }
+
+    private void writeMethod( SootMethod m ) throws IOException {
+        if( m == null ) {
+            writeInt( 0 );
+            return;
+        }
+        Integer id = methodIds.get( m );
+        if( id != null ) {
+            writeInt( id.intValue()+2 );
+            return;
+        }
+        writeInt( 1 );
+        writeString( m.getDeclaringClass().getName() );
+        writeString( m.getName() );
+        writeInt( m.isStatic() ? 1 : 0 );
+        writeType( m.getReturnType() );
+        writeInt( m.getParameterCount() );
+        for( Type t : m.getParameterTypes() ) writeType( t );
+        methodIds.put( m, methodIds.size() );
+    }
+
+    private void writeType( Type t ) throws IOException {
+        writeString( t.toString() );
+    }
+
+    private void writeString( String s ) throws IOException {
+        Integer id = stringIds.get( s );
+        if( id != null ) {
+            writeInt( id.intValue()+1 );
+            return;
+        }
+        byte[] bytes = s.getBytes( "UTF-8" );
+        writeInt( 0 );
+        writeInt( bytes.length );
+        out.write( bytes );
+        stringIds.put( s, stringIds.size() );
+    }
+
+    /** Writes a non-negative int in 7-bit groups. */
+    private void writeInt( int i ) throws IOException {
+        while( ( i & ~0x7f ) != 0 ) {
+            out.writeByte( ( i & 0x7f ) | 0x80 );
+            i >>>= 7;
+        }
+        out.writeByte( i );
+    }
+
+    private Map<Unit, Integer> unitsOf( SootMethod m ) {
+        Map<Unit, Integer> ret = units.get( m );
+        if( ret == null ) {
+            units.put( m, ret = new IdentityHashMap<Unit, Integer>() );
+            int i = 0;
+            for( Unit u : m.getActiveBody().getUnits() ) ret.put( u, i++ );
+        }
+        return ret;
+    }
+
+    private final CallGraph cg;
+    private final QueueReader<Edge> edges;
+    private final DataOutputStream out;
+    private long edgeCount;
+    private final Map<SootMethod, Integer> methodIds = new HashMap<SootMethod, Integer>();
+    private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+    /** The position of each unit in the bodies of the methods most
+     * recently written as sources. */
+    @SuppressWarnings("serial")
+    private final Map<SootMethod, Map<Unit, Integer>> units =
+        new LinkedHashMap<SootMethod, Map<Unit, Integer>>( 16, 0.75f, true ) {
+            protected boolean removeEldestEntry( Map.Entry<SootMethod, Map<Unit, Integer>> eldest ) {
+                return size() > UNIT_CACHE_SIZE;
+            }
+        };
+}
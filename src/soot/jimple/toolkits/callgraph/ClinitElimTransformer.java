@@ -27,7 +27,7 @@ import soot.toolkits.scalar.*;
 public class ClinitElimTransformer extends BodyTransformer {
     
     protected void internalTransform(Body b, String phaseName, Map options){
-        ClinitElimAnalysis a = new ClinitElimAnalysis( new BriefUnitGraph(b));
+        ClinitElimAnalysis a = new ClinitElimAnalysis( new CompactUnitGraph(b));
 
         CallGraph cg = Scene.v().getCallGraph();
         
@@ -0,0 +1,535 @@
+package soot.jimple.toolkits.callgraph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import soot.Kind;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.util.ArrayNumberer;
+import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
+
+import com.google.common.collect.Iterators;
+
+/** A read-optimized call graph, built once from the edges of another,
+ * context-insensitive call graph. Instead of keeping an Edge object and
+ * three linked lists per edge, the edges are sorted by source method and
+ * source unit and stored in int arrays indexed by
+ * {@link SootMethod#getNumber()} and by a number given to each call site,
+ * in the manner of a compressed sparse row matrix; the incoming edges of
+ * each method are kept in a second such index. Edge objects are created
+ * on demand by the iterators, and are equal to the edges of the original
+ * graph.
+ *
+ * <p>Edges can be removed from the graph, and the edges out of a
+ * statement can be moved to the statement replacing it. Edges added later,
+ * as by {@link soot.jimple.toolkits.invoke.StaticMethodBinder}, are kept
+ * in the linked lists inherited from {@link CallGraph}, and every query
+ * answers from both; the graph stays compact as long as few are added.
+ */
+public class CompactCallGraph extends CallGraph
+{
+    private static final int FREE = -1;
+    private static final int DELETED = -2;
+
+    private final ArrayNumberer<SootMethod> methods;
+    /** Kinds of the edges, indexing {@link #kinds}. */
+    private byte[] edgeKind;
+    private Kind[] kinds;
+    /** Call site number of each edge, or -1 if it has no source unit. */
+    private final int[] edgeUnit;
+    private final int[] edgeTgt;
+    /** The edges out of the method numbered m are those from
+     * srcStart[m] to srcStart[m+1]. */
+    private final int[] srcStart;
+    /** The edges out of call site number u are those from unitStart[u] to
+     * unitEnd[u]. */
+    private final int[] unitStart;
+    private final int[] unitEnd;
+    private final Unit[] units;
+    /** Open-addressing hash table from units to call site numbers. */
+    private final int[] unitTable;
+    /** The edges into the method numbered m are inEdges[tgtStart[m]] to
+     * inEdges[tgtStart[m+1]-1]. */
+    private final int[] tgtStart;
+    private final int[] inEdges;
+    private final BitSet removed = new BitSet();
+    private int size;
+    /** The edges of the graph as Edge objects, followed by the edges added
+     * later, made on the first call to {@link #listener()}; the readers it
+     * returns are clones of queueStart. */
+    private ChunkedQueue<Edge> queue;
+    private QueueReader<Edge> queueStart;
+
+    /** Builds a compact copy of the call graph cg, which must not contain
+     * edges between method contexts. */
+    public CompactCallGraph( CallGraph cg ) {
+        methods = Scene.v().getMethodNumberer();
+        int n = cg.size();
+        int numMethods = methods.size() + 1;
+
+        // collect the edges in the order they were added, numbering call
+        // sites by first appearance
+        int[] src = new int[n];
+        int[] site = new int[n];
+        int[] tgt = new int[n];
+        byte[] kind = new byte[n];
+        List<Kind> kindList = new ArrayList<Kind>();
+        List<Unit> siteList = new ArrayList<Unit>();
+        int[] siteSrc = new int[n];
+        Map<Unit, Integer> siteNumber = new IdentityHashMap<Unit, Integer>();
+        int e = 0;
+        Iterator<Edge> edgeRdr = cg instanceof CompactCallGraph ? cg.iterator() : cg.listener();
+        while( edgeRdr.hasNext() ) {
+            Edge edge = edgeRdr.next();
+            // the stream of a CallGraph still holds the removed edges
+            if( !cg.containsEdge( edge ) ) continue;
+            if( !(edge.getTgt() instanceof SootMethod)
+            || ( edge.getSrc() != null && !(edge.getSrc() instanceof SootMethod) ) ) {
+                throw new RuntimeException( "CompactCallGraph cannot hold context-sensitive edge "+edge );
+            }
+            src[e] = edge.getSrc() == null ? 0 : edge.getSrc().method().getNumber();
+            tgt[e] = edge.tgt().getNumber();
+            int k = kindList.indexOf( edge.kind() );
+            if( k < 0 ) {
+                k = kindList.size();
+                kindList.add( edge.kind() );
+            }
+            kind[e] = (byte) k;
+            Unit u = edge.srcUnit();
+            if( u == null ) {
+                site[e] = -1;
+            } else {
+                Integer s = siteNumber.get( u );
+                if( s == null ) {
+                    s = siteList.size();
+                    siteList.add( u );
+                    siteSrc[s] = src[e];
+                    siteNumber.put( u, s );
+                } else if( siteSrc[s] != src[e] ) {
+                    throw new RuntimeException( "Unit "+u+" is the source unit of edges out of two methods" );
+                }
+                site[e] = s;
+            }
+            e++;
+        }
+        if( e != n ) throw new RuntimeException( "Call graph listener is missing edges" );
+        size = n;
+        kinds = kindList.toArray( new Kind[kindList.size()] );
+
+        // stable counting sorts, first by call site and then by source
+        // method, give the order of the edges
+        int numSites = siteList.size();
+        int[] bySite = countingSort( identity( n ), site, 1, numSites + 1 );
+        int[] order = countingSort( bySite, src, 0, numMethods );
+
+        // renumber the call sites in the sorted order, so that the edges
+        // of each one are contiguous
+        int[] newSite = new int[numSites];
+        units = new Unit[numSites];
+        unitStart = new int[numSites];
+        unitEnd = new int[numSites];
+        edgeUnit = new int[n];
+        edgeTgt = new int[n];
+        edgeKind = new byte[n];
+        srcStart = new int[numMethods + 1];
+        int next = 0;
+        for( int i = 0; i < n; i++ ) {
+            int old = order[i];
+            srcStart[src[old] + 1]++;
+            edgeTgt[i] = tgt[old];
+            edgeKind[i] = kind[old];
+            int s = site[old];
+            if( s < 0 ) {
+                edgeUnit[i] = -1;
+                continue;
+            }
+            if( i == 0 || site[order[i-1]] != s ) {
+                newSite[s] = next;
+                units[next] = siteList.get( s );
+                unitStart[next] = i;
+                next++;
+            }
+            edgeUnit[i] = newSite[s];
+            unitEnd[edgeUnit[i]] = i + 1;
+        }
+        for( int m = 0; m < numMethods; m++ ) srcStart[m+1] += srcStart[m];
+        unitTable = newTable( numSites );
+        for( int s = 0; s < numSites; s++ ) insert( units[s], s );
+
+        // index the incoming edges
+        tgtStart = new int[numMethods + 1];
+        for( int i = 0; i < n; i++ ) tgtStart[edgeTgt[i] + 1]++;
+        for( int m = 0; m < numMethods; m++ ) tgtStart[m+1] += tgtStart[m];
+        inEdges = countingSort( identity( n ), edgeTgt, 0, numMethods );
+    }
+
+    private static int[] identity( int n ) {
+        int[] ret = new int[n];
+        for( int i = 0; i < n; i++ ) ret[i] = i;
+        return ret;
+    }
+
+    /** Returns the elements of items stably sorted by key[item]+offset,
+     * which must be between 0 and range-1. */
+    private static int[] countingSort( int[] items, int[] key, int offset, int range ) {
+        int[] start = new int[range + 1];
+        for( int item : items ) start[key[item] + offset + 1]++;
+        for( int i = 0; i < range; i++ ) start[i+1] += start[i];
+        int[] ret = new int[items.length];
+        for( int item : items ) ret[start[key[item] + offset]++] = item;
+        return ret;
+    }
+
+    private static int[] newTable( int entries ) {
+        int capacity = 16;
+        while( capacity < entries * 2 ) capacity <<= 1;
+        int[] ret = new int[capacity];
+        Arrays.fill( ret, FREE );
+        return ret;
+    }
+
+    private static int hash( Unit u, int mask ) {
+        int h = System.identityHashCode( u );
+        return ( h ^ ( h >>> 16 ) ) & mask;
+    }
+
+    private int lookup( Unit u ) {
+        int mask = unitTable.length - 1;
+        for( int i = hash( u, mask );; i = ( i + 1 ) & mask ) {
+            int s = unitTable[i];
+            if( s == FREE ) return -1;
+            if( s != DELETED && units[s] == u ) return s;
+        }
+    }
+
+    private void insert( Unit u, int s ) {
+        int mask = unitTable.length - 1;
+        int i = hash( u, mask );
+        while( unitTable[i] >= 0 ) i = ( i + 1 ) & mask;
+        unitTable[i] = s;
+    }
+
+    private void delete( Unit u ) {
+        int mask = unitTable.length - 1;
+        for( int i = hash( u, mask );; i = ( i + 1 ) & mask ) {
+            int s = unitTable[i];
+            if( s == FREE ) return;
+            if( s != DELETED && units[s] == u ) {
+                unitTable[i] = DELETED;
+                return;
+            }
+        }
+    }
+
+    private SootMethod method( int number ) {
+        return methods.get( number );
+    }
+
+    private int number( MethodOrMethodContext m ) {
+        if( !(m instanceof SootMethod) ) return -1;
+        int ret = ((SootMethod) m).getNumber();
+        return ret < srcStart.length - 1 ? ret : -1;
+    }
+
+    /** Returns the source method number of edge e. */
+    private int srcOf( int e ) {
+        int lo = 0, hi = srcStart.length - 2;
+        while( lo < hi ) {
+            int mid = ( lo + hi + 1 ) >>> 1;
+            if( srcStart[mid] <= e ) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private Edge edge( int e ) {
+        int u = edgeUnit[e];
+        return new Edge( method( srcOf( e ) ), u < 0 ? null : units[u],
+                method( edgeTgt[e] ), kinds[edgeKind[e]] );
+    }
+
+    private int kindIndex( Kind k ) {
+        for( int i = 0; i < kinds.length; i++ ) {
+            if( kinds[i] == k ) return i;
+        }
+        return -1;
+    }
+
+    /** Adds e to the edges kept outside the compact arrays, unless the
+     * graph already holds it. */
+    public boolean addEdge( Edge e ) {
+        if( find( e ) >= 0 ) return false;
+        if( !super.addEdge( e ) ) return false;
+        synchronized( this ) {
+            if( queue != null ) queue.add( e );
+        }
+        return true;
+    }
+
+    public synchronized boolean removeAllEdgesOutOf( Unit u ) {
+        boolean hasRemoved = false;
+        int s = lookup( u );
+        if( s >= 0 ) {
+            for( int e = unitStart[s]; e < unitEnd[s]; e++ ) {
+                hasRemoved |= remove( e );
+            }
+        }
+        if( super.edgesOutOf( u ).hasNext() ) hasRemoved |= super.removeAllEdgesOutOf( u );
+        return hasRemoved;
+    }
+
+    /** Moves the edges out of out to in. As in {@link CallGraph}, the kinds
+     * of the edges are recomputed from the invoke expression of in. The
+     * compact edges are moved in place if in is not yet the source unit of
+     * any edge, and are added again from in otherwise. */
+    public synchronized boolean swapEdgesOutOf( Stmt out, Stmt in ) {
+        boolean hasSwapped = false;
+        int s = lookup( out );
+        if( s >= 0 ) {
+            if( lookup( in ) < 0 && !super.edgesOutOf( in ).hasNext() ) {
+                hasSwapped = moveEdgesOutOf( s, in );
+            } else {
+                for( int e = unitStart[s]; e < unitEnd[s]; e++ ) {
+                    if( removed.get( e ) ) continue;
+                    Edge old = edge( e );
+                    remove( e );
+                    addEdge( new Edge( old.getSrc(), in, old.getTgt() ) );
+                    hasSwapped = true;
+                }
+            }
+        }
+        if( super.edgesOutOf( out ).hasNext() ) hasSwapped |= super.swapEdgesOutOf( out, in );
+        return hasSwapped;
+    }
+
+    /** Makes in the source unit of the edges of call site s, in place. */
+    private boolean moveEdgesOutOf( int s, Stmt in ) {
+        boolean hasSwapped = false;
+        for( int e = unitStart[s]; e < unitEnd[s]; e++ ) {
+            if( !removed.get( e ) ) hasSwapped = true;
+        }
+        if( !hasSwapped ) return false;
+        Kind kind = Edge.ieToKind( in.getInvokeExpr() );
+        int k = kindIndex( kind );
+        if( k < 0 ) {
+            k = kinds.length;
+            Kind[] newKinds = new Kind[k + 1];
+            System.arraycopy( kinds, 0, newKinds, 0, k );
+            newKinds[k] = kind;
+            kinds = newKinds;
+        }
+        // edges that differed only in their kinds are now the same edge
+        for( int e = unitStart[s]; e < unitEnd[s]; e++ ) {
+            edgeKind[e] = (byte) k;
+            for( int prev = unitStart[s]; prev < e; prev++ ) {
+                if( edgeTgt[prev] == edgeTgt[e] && !removed.get( prev ) ) {
+                    remove( e );
+                    break;
+                }
+            }
+        }
+        delete( units[s] );
+        units[s] = in;
+        insert( in, s );
+        return true;
+    }
+
+    boolean containsEdge( Edge e ) {
+        return find( e ) >= 0 || super.containsEdge( e );
+    }
+
+    public boolean removeEdge( Edge edge ) {
+        int e = find( edge );
+        if( e >= 0 ) return remove( e );
+        return super.removeEdge( edge );
+    }
+
+    /** Returns the compact edge equal to edge that has not been removed,
+     * or -1. */
+    private int find( Edge edge ) {
+        if( edge.srcUnit() == null ) {
+            int m = edge.getSrc() == null ? 0 : number( edge.getSrc() );
+            if( m < 0 ) return -1;
+            return findMatching( srcStart[m], srcStart[m+1], edge );
+        }
+        int s = lookup( edge.srcUnit() );
+        if( s < 0 ) return -1;
+        return findMatching( unitStart[s], unitEnd[s], edge );
+    }
+
+    private int findMatching( int start, int end, Edge edge ) {
+        int tgt = number( edge.getTgt() );
+        int k = kindIndex( edge.kind() );
+        for( int e = start; e < end; e++ ) {
+            if( edgeTgt[e] == tgt && edgeKind[e] == k && !removed.get( e )
+            && ( edge.srcUnit() != null || edgeUnit[e] < 0 )
+            && method( srcOf( e ) ) == edge.getSrc() ) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    private boolean remove( int e ) {
+        if( removed.get( e ) ) return false;
+        removed.set( e );
+        size--;
+        return true;
+    }
+
+    public boolean isEntryMethod( SootMethod method ) {
+        int m = number( method );
+        if( m >= 0 ) {
+            for( int i = tgtStart[m]; i < tgtStart[m+1]; i++ ) {
+                if( !removed.get( inEdges[i] ) ) return false;
+            }
+        }
+        return !super.edgesInto( method ).hasNext();
+    }
+
+    public Edge findEdge( Unit u, SootMethod callee ) {
+        int s = lookup( u );
+        int tgt = number( callee );
+        if( s >= 0 && tgt >= 0 ) {
+            for( int e = unitStart[s]; e < unitEnd[s]; e++ ) {
+                if( edgeTgt[e] == tgt && !removed.get( e ) ) return edge( e );
+            }
+        }
+        for( Iterator<Edge> it = super.edgesOutOf( u ); it.hasNext(); ) {
+            Edge e = it.next();
+            if( e.tgt() == callee ) return e;
+        }
+        return null;
+    }
+
+    public Iterator<MethodOrMethodContext> sourceMethods() {
+        if( super.size() == 0 ) return compactSourceMethods();
+        Set<MethodOrMethodContext> ret = new LinkedHashSet<MethodOrMethodContext>();
+        Iterators.addAll( ret, compactSourceMethods() );
+        for( Iterator<MethodOrMethodContext> it = super.sourceMethods(); it.hasNext(); ) {
+            MethodOrMethodContext m = it.next();
+            if( super.edgesOutOf( m ).hasNext() ) ret.add( m );
+        }
+        return ret.iterator();
+    }
+
+    private Iterator<MethodOrMethodContext> compactSourceMethods() {
+        return new Iterator<MethodOrMethodContext>() {
+            private int m = advance( 0 );
+            private int advance( int m ) {
+                while( m < srcStart.length - 1 && srcStart[m] == srcStart[m+1] ) m++;
+                return m;
+            }
+            public boolean hasNext() {
+                return m < srcStart.length - 1;
+            }
+            public MethodOrMethodContext next() {
+                if( !hasNext() ) throw new NoSuchElementException();
+                SootMethod ret = method( m );
+                m = advance( m + 1 );
+                return ret;
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public Iterator<Edge> edgesOutOf( Unit u ) {
+        if( u == null ) throw new RuntimeException();
+        int s = lookup( u );
+        Iterator<Edge> ret = s < 0 ? new EdgeIterator( 0, 0, null )
+            : new EdgeIterator( unitStart[s], unitEnd[s], null );
+        return withAdded( ret, super.edgesOutOf( u ) );
+    }
+
+    public Iterator<Edge> edgesOutOf( MethodOrMethodContext m ) {
+        if( m == null ) throw new RuntimeException();
+        int number = number( m );
+        Iterator<Edge> ret = number < 0 ? new EdgeIterator( 0, 0, null )
+            : new EdgeIterator( srcStart[number], srcStart[number+1], null );
+        return withAdded( ret, super.edgesOutOf( m ) );
+    }
+
+    public Iterator<Edge> edgesInto( MethodOrMethodContext m ) {
+        if( m == null ) throw new RuntimeException();
+        int number = number( m );
+        Iterator<Edge> ret = number < 0 ? new EdgeIterator( 0, 0, null )
+            : new EdgeIterator( tgtStart[number], tgtStart[number+1], inEdges );
+        return withAdded( ret, super.edgesInto( m ) );
+    }
+
+    /** Follows the compact edges by the matching added ones, if any. */
+    private static Iterator<Edge> withAdded( Iterator<Edge> compact, Iterator<Edge> added ) {
+        if( !added.hasNext() ) return compact;
+        return Iterators.concat( compact, added );
+    }
+
+    /** Iterates over the edges from start to end, or over the edges
+     * index[start] to index[end-1] if index is not null, skipping removed
+     * ones. */
+    private class EdgeIterator implements Iterator<Edge> {
+        private int position;
+        private final int end;
+        private final int[] index;
+        EdgeIterator( int start, int end, int[] index ) {
+            this.position = start;
+            this.end = end;
+            this.index = index;
+            skipRemoved();
+        }
+        private int at( int i ) {
+            return index == null ? i : index[i];
+        }
+        private void skipRemoved() {
+            while( position < end && removed.get( at( position ) ) ) position++;
+        }
+        public boolean hasNext() {
+            return position < end;
+        }
+        public Edge next() {
+            if( !hasNext() ) throw new NoSuchElementException();
+            Edge ret = edge( at( position++ ) );
+            skipRemoved();
+            return ret;
+        }
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** Returns a QueueReader object containing all edges of the graph,
+     * which will also be given the edges added later. As for a
+     * {@link CallGraph}, the edges removed after the first call are still
+     * returned. */
+    public synchronized QueueReader<Edge> listener() {
+        if( queue == null ) {
+            queue = new ChunkedQueue<Edge>();
+            queueStart = queue.reader();
+            for( Iterator<Edge> edgeIt = iterator(); edgeIt.hasNext(); ) {
+                queue.add( edgeIt.next() );
+            }
+        }
+        return queueStart.clone();
+    }
+
+    public int size() {
+        return size + super.size();
+    }
+
+    public Iterator<Edge> iterator() {
+        return withAdded( new EdgeIterator( 0, edgeTgt.length, null ), super.iterator() );
+    }
+}
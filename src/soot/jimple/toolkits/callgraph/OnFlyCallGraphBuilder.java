@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -385,6 +386,10 @@ public final class OnFlyCallGraphBuilder
 
     private ContextManager cm;
 
+    /** Reads the reachable methods whose bodies have not been built in
+     * advance yet, or is null if bodies are built one at a time. */
+    private QueueReader<MethodOrMethodContext> toPrefetch;
+
     private final ChunkedQueue<SootMethod> targetsQueue = new ChunkedQueue<SootMethod>();
     private final QueueReader<SootMethod> targets = targetsQueue.reader();
 
@@ -393,6 +398,7 @@ public final class OnFlyCallGraphBuilder
         this.cm = cm;
         this.rm = rm;
         worklist = rm.listener();
+        if( Options.v().num_threads() != 1 ) toPrefetch = rm.listener();
         options = new CGOptions( PhaseOptions.v().getPhaseOptions("cg") );
         if( !options.verbose() ) {
             G.v().out.println( "[Call Graph] For information on where the call graph may be incomplete, use the verbose option to the cg phase." );
@@ -414,6 +420,7 @@ public final class OnFlyCallGraphBuilder
                 rm.update();
                 if( !worklist.hasNext() ) break;
             }
+            if( toPrefetch != null && toPrefetch.hasNext() ) prefetchBodies();
             MethodOrMethodContext momc = (MethodOrMethodContext) worklist.next();
             SootMethod m = momc.method();
             if( appOnly && !m.getDeclaringClass().isApplicationClass() ) continue;
@@ -421,6 +428,20 @@ public final class OnFlyCallGraphBuilder
             processNewMethodContext( momc );
         }
     }
+    /** Builds the bodies of all methods that have become reachable since
+     * the last call, on the worker pool of the
+     * <code>-num-threads</code> option. Edges are still added by this
+     * thread alone, in the same order as when bodies are built one at a
+     * time. */
+    private void prefetchBodies() {
+        Set<SootMethod> methods = new LinkedHashSet<SootMethod>();
+        while( toPrefetch.hasNext() ) {
+            SootMethod m = toPrefetch.next().method();
+            if( appOnly && !m.getDeclaringClass().isApplicationClass() ) continue;
+            if( !analyzedMethods.contains( m ) ) methods.add( m );
+        }
+        PackManager.v().retrieveBodies( methods );
+    }
     public boolean wantTypes( Local receiver ) {
         return receiverToSites.get(receiver) != null;
     }
@@ -101,43 +101,9 @@ public final class VirtualCalls
             if( target != null ) targets.add( target );
         } else if( t instanceof AnySubType ) {
             RefType base = ((AnySubType)t).getBase();
-
-            List<Type> subTypes = baseToSubTypes.get(base);
-            if( subTypes != null ) {
-                for( Iterator<Type> stIt = subTypes.iterator(); stIt.hasNext(); ) {
-                    final Type st = stIt.next();
-                    resolve( st, declaredType, sigType, subSig, container, targets );
-                }
-                return;
-            }
-
-            baseToSubTypes.put(base, subTypes = new ArrayList<Type>() );
-
-            subTypes.add(base);
-
-            LinkedList<SootClass> worklist = new LinkedList<SootClass>();
-            HashSet<SootClass> workset = new HashSet<SootClass>();
-            FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
-            SootClass cl = base.getSootClass();
-
-            if( workset.add( cl ) ) worklist.add( cl );
-            while( !worklist.isEmpty() ) {
-                cl = worklist.removeFirst();
-                if( cl.isInterface() ) {
-                    for( Iterator<SootClass> cIt = fh.getAllImplementersOfInterface(cl).iterator(); cIt.hasNext(); ) {
-                        final SootClass c = cIt.next();
-                        if( workset.add( c ) ) worklist.add( c );
-                    }
-                } else {
-                    if( cl.isConcrete() ) {
-                        resolve( cl.getType(), declaredType, sigType, subSig, container, targets );
-                        subTypes.add(cl.getType());
-                    }
-                    for( Iterator<SootClass> cIt = fh.getSubclassesOf( cl ).iterator(); cIt.hasNext(); ) {
-                        final SootClass c = cIt.next();
-                        if( workset.add( c ) ) worklist.add( c );
-                    }
-                }
+            for( Iterator<Type> stIt = subTypesOf( base ).iterator(); stIt.hasNext(); ) {
+                final Type st = stIt.next();
+                resolve( st, declaredType, sigType, subSig, container, targets );
             }
         } else if( t instanceof NullType ) {
         } else {
@@ -145,6 +111,55 @@ public final class VirtualCalls
         }
     }
     
+    /** Returns the types of the concrete classes among base, its
+     * subclasses and its implementers. The list is computed once for
+     * each base. */
+    private List<Type> subTypesOf( RefType base ) {
+        List<Type> subTypes = baseToSubTypes.get(base);
+        if( subTypes != null ) return subTypes;
+
+        baseToSubTypes.put(base, subTypes = new ArrayList<Type>() );
+
+        LinkedList<SootClass> worklist = new LinkedList<SootClass>();
+        HashSet<SootClass> workset = new HashSet<SootClass>();
+        FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+        SootClass cl = base.getSootClass();
+
+        if( workset.add( cl ) ) worklist.add( cl );
+        while( !worklist.isEmpty() ) {
+            cl = worklist.removeFirst();
+            if( cl.isInterface() ) {
+                for( Iterator<SootClass> cIt = sortedByName( fh.getAllImplementersOfInterface(cl) ).iterator(); cIt.hasNext(); ) {
+                    final SootClass c = cIt.next();
+                    if( workset.add( c ) ) worklist.add( c );
+                }
+            } else {
+                if( cl.isConcrete() ) {
+                    subTypes.add(cl.getType());
+                }
+                for( Iterator<SootClass> cIt = sortedByName( fh.getSubclassesOf( cl ) ).iterator(); cIt.hasNext(); ) {
+                    final SootClass c = cIt.next();
+                    if( workset.add( c ) ) worklist.add( c );
+                }
+            }
+        }
+        return subTypes;
+    }
+
+    /** Returns the classes in c sorted by name. The hierarchy keeps
+     * subclasses and implementers in hash sets; visiting them in a fixed
+     * order makes the call graph edges come out in the same order in every
+     * run. */
+    private static List<SootClass> sortedByName( Collection<SootClass> c ) {
+        List<SootClass> ret = new ArrayList<SootClass>( c );
+        Collections.sort( ret, new Comparator<SootClass>() {
+            public int compare( SootClass c1, SootClass c2 ) {
+                return c1.getName().compareTo( c2.getName() );
+            }
+        } );
+        return ret;
+    }
+    
     public final NumberedString sigClinit =
         Scene.v().getSubSigNumberer().findOrAdd("void <clinit>()");
     public final NumberedString sigStart =
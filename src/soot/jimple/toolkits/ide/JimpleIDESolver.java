@@ -44,8 +44,29 @@ public class JimpleIDESolver<D, V, I extends InterproceduralCFG<Unit,SootMethod>
 	}
 	
 	public JimpleIDESolver(IDETabulationProblem<Unit,D,SootMethod,V,I> problem, boolean dumpResults) {
+		this(problem, dumpResults, false);
+	}
+
+	/**
+	 * Creates a solver that runs its tasks on a {@link WorkStealingExecutor}
+	 * if workStealing is true, and on the thread pool of Heros otherwise.
+	 */
+	public JimpleIDESolver(IDETabulationProblem<Unit,D,SootMethod,V,I> problem, boolean dumpResults, boolean workStealing) {
 		super(problem);
 		this.DUMP_RESULTS = dumpResults;
+		if (workStealing) {
+			executor.shutdown();
+			executor = new WorkStealingExecutor(numThreads);
+		}
+	}
+
+	/**
+	 * Prints how busy each thread was, if the tasks ran on a
+	 * {@link WorkStealingExecutor}.
+	 */
+	public void printThreadStatistics() {
+		if (executor instanceof WorkStealingExecutor)
+			((WorkStealingExecutor) executor).printStatistics();
 	}
 	
 	@Override
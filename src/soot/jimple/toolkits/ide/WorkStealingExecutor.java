@@ -0,0 +1,159 @@
+package soot.jimple.toolkits.ide;
+
+import heros.solver.CountingThreadPoolExecutor;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import soot.G;
+
+/**
+ * An executor for the Heros IFDS and IDE solvers that runs their tasks on
+ * a work-stealing {@link ForkJoinPool} instead of a shared queue.
+ *
+ * <p>The tasks a worker thread schedules while it processes a path edge are
+ * collected in a batch of that thread, and are pushed onto its own deque
+ * together once the path edge is done; idle threads steal whole batches.
+ * Each thread counts the tasks and batches it ran and the time it was busy,
+ * which {@link #printStatistics()} reports.
+ *
+ * <p>The executor keeps the task counting of
+ * {@link CountingThreadPoolExecutor}, so that the solvers can wait for
+ * their tasks and see their exceptions as usual; the thread pool of the
+ * superclass is never started.
+ */
+public class WorkStealingExecutor extends CountingThreadPoolExecutor {
+
+	/** The largest number of tasks run as one batch. */
+	private static final int BATCH_SIZE = 32;
+
+	private final ForkJoinPool pool;
+	private final List<Worker> workers = new CopyOnWriteArrayList<Worker>();
+	private final long startTime = System.nanoTime();
+
+	public WorkStealingExecutor(int numThreads) {
+		super(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		pool = new ForkJoinPool(Math.max(1, numThreads),
+				new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+					public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+						Worker w = new Worker(pool);
+						workers.add(w);
+						return w;
+					}
+				}, null, false);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (exception != null)
+			return;
+		numRunningTasks.increment();
+		Thread current = Thread.currentThread();
+		if (current instanceof Worker && ((Worker) current).getPool() == pool) {
+			Worker w = (Worker) current;
+			w.pending.add(task);
+			if (w.pending.size() >= BATCH_SIZE)
+				w.flush();
+		} else {
+			List<Runnable> batch = new ArrayList<Runnable>(1);
+			batch.add(task);
+			pool.execute(new Batch(batch));
+		}
+	}
+
+	@Override
+	public boolean isTerminating() {
+		return exception != null || super.isTerminating();
+	}
+
+	@Override
+	public void shutdown() {
+		pool.shutdown();
+		super.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		pool.shutdownNow();
+		return super.shutdownNow();
+	}
+
+	/** Prints, for each worker thread, the number of tasks and batches it
+	 * ran and the fraction of the time since the executor was created that
+	 * it was busy. */
+	public void printStatistics() {
+		DecimalFormat percFormat = new DecimalFormat("00.0");
+		long elapsed = Math.max(1, System.nanoTime() - startTime);
+		int i = 0;
+		for (Worker w : workers) {
+			G.v().out.println("[IFDS] thread " + i++ + ": " + w.tasks + " tasks in "
+					+ w.batches + " batches, "
+					+ percFormat.format(w.busyNanos * 100.0 / elapsed) + "% busy");
+		}
+		G.v().out.println("[IFDS] " + pool.getStealCount() + " batches stolen");
+	}
+
+	/** Runs the tasks of a batch in order. */
+	@SuppressWarnings("serial")
+	private class Batch extends RecursiveAction {
+		private final List<Runnable> tasks;
+
+		Batch(List<Runnable> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			Worker w = (Worker) Thread.currentThread();
+			long start = System.nanoTime();
+			int run = 0;
+			for (Runnable task : tasks) {
+				// once a task failed, the latch is reset and the rest dropped
+				if (exception != null)
+					break;
+				Throwable thrown = null;
+				try {
+					task.run();
+				} catch (Throwable t) {
+					thrown = t;
+				}
+				afterExecute(task, thrown);
+				run++;
+				if (thrown == null)
+					w.flush();
+			}
+			w.busyNanos += System.nanoTime() - start;
+			w.tasks += run;
+			w.batches++;
+		}
+	}
+
+	private class Worker extends ForkJoinWorkerThread {
+		/** The tasks scheduled by the task this thread is running. */
+		List<Runnable> pending = new ArrayList<Runnable>();
+		long busyNanos;
+		long tasks;
+		long batches;
+
+		Worker(ForkJoinPool pool) {
+			super(pool);
+		}
+
+		/** Pushes the pending tasks onto the deque of this thread. */
+		void flush() {
+			if (pending.isEmpty())
+				return;
+			ForkJoinTask<?> batch = new Batch(pending);
+			pending = new ArrayList<Runnable>();
+			batch.fork();
+		}
+	}
+}
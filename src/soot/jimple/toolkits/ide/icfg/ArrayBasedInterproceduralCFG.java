@@ -0,0 +1,553 @@
+package soot.jimple.toolkits.ide.icfg;
+
+import heros.ThreadSafe;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import soot.Body;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.exceptions.UnitThrowAnalysis;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+/**
+ * An interprocedural CFG over the same statements and calls as
+ * {@link JimpleBasedInterproceduralCFG}, computed completely when it is
+ * created and stored in arrays.
+ *
+ * The statements of the reachable methods are numbered method by method, in
+ * the order of their bodies. Successors, predecessors, callees and callers
+ * are stored as rows of int arrays indexed by these numbers, and the kinds
+ * of each statement as bit flags. The lists and sets returned to clients are
+ * read-only views of these rows, made once, so that queries allocate
+ * nothing and take no locks. Statements are found by their number through
+ * an open-addressing table keyed by identity.
+ *
+ * The CFG does not change after it is created; changes to the bodies or the
+ * call graph made afterwards are not seen.
+ */
+@ThreadSafe
+public class ArrayBasedInterproceduralCFG implements BiDiInterproceduralCFG<Unit,SootMethod> {
+
+	private static final byte CALL = 1;
+	private static final byte START = 2;
+	private static final byte EXIT = 4;
+	private static final byte RETURN_SITE = 8;
+
+	protected final boolean enableExceptions;
+
+	/** The statements and the method of each statement, by number. */
+	private final Unit[] units;
+	private final int[] unitMethod;
+	private final byte[] flags;
+
+	/** The reachable methods, and the number of their first statement;
+	 * methodStart has one more element than methods. */
+	private final SootMethod[] methods;
+	private final int[] methodStart;
+	/** The index in methods of each method, by {@link SootMethod#getNumber()},
+	 * or -1. */
+	private final int[] methodIndex;
+
+	private final Unit[] table;
+	private final int[] tableNumbers;
+
+	private final List<Unit>[] succs;
+	private final List<Unit>[] preds;
+	private final List<SootMethod>[] callees;
+	private final List<Unit>[] callers;
+	private final List<Unit>[] heads;
+	private final List<Unit>[] tails;
+	private final Set<Unit>[] callsFromWithin;
+	private final List<Value>[] parameterRefs;
+
+	public ArrayBasedInterproceduralCFG() {
+		this(true);
+	}
+
+	public ArrayBasedInterproceduralCFG(boolean enableExceptions) {
+		this.enableExceptions = enableExceptions;
+		CallGraph cg = Scene.v().getCallGraph();
+
+		List<SootMethod> methodList = new ArrayList<SootMethod>();
+		int maxNumber = 0;
+		int unitCount = 0;
+		for (Iterator<MethodOrMethodContext> iter = Scene.v().getReachableMethods().listener(); iter.hasNext();) {
+			SootMethod m = iter.next().method();
+			methodList.add(m);
+			maxNumber = Math.max(maxNumber, m.getNumber());
+			if (m.hasActiveBody())
+				unitCount += m.getActiveBody().getUnits().size();
+		}
+		methods = methodList.toArray(new SootMethod[methodList.size()]);
+		methodStart = new int[methods.length + 1];
+		methodIndex = new int[maxNumber + 1];
+		Arrays.fill(methodIndex, -1);
+
+		units = new Unit[unitCount];
+		unitMethod = new int[unitCount];
+		flags = new byte[unitCount];
+		int capacity = Integer.highestOneBit(Math.max(2, unitCount * 2 - 1)) << 1;
+		table = new Unit[capacity];
+		tableNumbers = new int[capacity];
+
+		int n = 0;
+		for (int mi = 0; mi < methods.length; mi++) {
+			SootMethod m = methods[mi];
+			methodIndex[m.getNumber()] = mi;
+			methodStart[mi] = n;
+			if (!m.hasActiveBody())
+				continue;
+			for (Unit u : m.getActiveBody().getUnits()) {
+				units[n] = u;
+				unitMethod[n] = mi;
+				if (((Stmt) u).containsInvokeExpr())
+					flags[n] |= CALL;
+				put(u, n);
+				n++;
+			}
+		}
+		methodStart[methods.length] = n;
+
+		succs = newListArray(unitCount);
+		preds = newListArray(unitCount);
+		callees = newListArray(unitCount);
+		heads = newListArray(methods.length);
+		tails = newListArray(methods.length);
+		callers = newListArray(methods.length);
+		callsFromWithin = newSetArray(methods.length);
+		parameterRefs = newListArray(methods.length);
+
+		Rows succRows = new Rows(unitCount);
+		Rows predRows = new Rows(unitCount);
+		Rows calleeRows = new Rows(unitCount);
+		Rows headRows = new Rows(methods.length);
+		Rows tailRows = new Rows(methods.length);
+		Rows callerRows = new Rows(methods.length);
+		Rows callRows = new Rows(methods.length);
+		for (int mi = 0; mi < methods.length; mi++) {
+			SootMethod m = methods[mi];
+			if (m.hasActiveBody()) {
+				Body body = m.getActiveBody();
+				DirectedGraph<Unit> graph = makeGraph(body);
+				for (int u = methodStart[mi]; u < methodStart[mi + 1]; u++) {
+					for (Unit s : graph.getSuccsOf(units[u]))
+						succRows.add(numberOf(s));
+					succRows.endRow();
+					for (Unit p : graph.getPredsOf(units[u]))
+						predRows.add(numberOf(p));
+					predRows.endRow();
+					if ((flags[u] & CALL) != 0) {
+						callRows.add(u);
+						Iterator<Edge> edgeIter = new JimpleBasedInterproceduralCFG.EdgeFilter().wrap(cg.edgesOutOf(units[u]));
+						while (edgeIter.hasNext()) {
+							SootMethod tgt = edgeIter.next().getTgt().method();
+							if (tgt.hasActiveBody() && methodIndexOf(tgt) >= 0)
+								calleeRows.add(methodIndexOf(tgt));
+						}
+					}
+					calleeRows.endRow();
+				}
+				for (Unit h : graph.getHeads()) {
+					flags[numberOf(h)] |= START;
+					headRows.add(numberOf(h));
+				}
+				for (Unit t : graph.getTails()) {
+					flags[numberOf(t)] |= EXIT;
+					tailRows.add(numberOf(t));
+				}
+				parameterRefs[mi] = Collections.unmodifiableList(body.getParameterRefs());
+			} else {
+				parameterRefs[mi] = Collections.emptyList();
+			}
+			headRows.endRow();
+			tailRows.endRow();
+			callRows.endRow();
+			Iterator<Edge> edgeIter = new JimpleBasedInterproceduralCFG.EdgeFilter().wrap(cg.edgesInto(m));
+			while (edgeIter.hasNext()) {
+				int src = numberOf(edgeIter.next().srcUnit());
+				if (src >= 0)
+					callerRows.add(src);
+			}
+			callerRows.endRow();
+		}
+
+		for (int u = 0; u < unitCount; u++) {
+			succs[u] = succRows.unitList(u);
+			preds[u] = predRows.unitList(u);
+			if ((flags[u] & CALL) != 0) {
+				callees[u] = calleeRows.methodList(u);
+				for (int i = succRows.start[u]; i < succRows.start[u + 1]; i++)
+					flags[succRows.targets[i]] |= RETURN_SITE;
+			}
+		}
+		for (int mi = 0; mi < methods.length; mi++) {
+			heads[mi] = headRows.unitList(mi);
+			tails[mi] = tailRows.unitList(mi);
+			callers[mi] = callerRows.unitList(mi);
+			callsFromWithin[mi] = callRows.start[mi] == callRows.start[mi + 1]
+					? Collections.<Unit>emptySet()
+					: new CallSet(mi, callRows.targets, callRows.start[mi], callRows.start[mi + 1]);
+		}
+	}
+
+	protected DirectedGraph<Unit> makeGraph(Body body) {
+		return enableExceptions
+				? new ExceptionalUnitGraph(body, UnitThrowAnalysis.v(), true)
+				: new BriefUnitGraph(body);
+	}
+
+	/** Returns the number of the statements in this CFG. */
+	public int size() {
+		return units.length;
+	}
+
+	/** Returns the number of u, or -1 if u is not in this CFG. */
+	public int numberOf(Unit u) {
+		if (u == null)
+			return -1;
+		int mask = table.length - 1;
+		for (int i = hash(u) & mask;; i = (i + 1) & mask) {
+			Unit k = table[i];
+			if (k == u)
+				return tableNumbers[i];
+			if (k == null)
+				return -1;
+		}
+	}
+
+	/** Returns the statement with number n. */
+	public Unit unitAt(int n) {
+		return units[n];
+	}
+
+	private void put(Unit u, int n) {
+		int mask = table.length - 1;
+		int i = hash(u) & mask;
+		while (table[i] != null)
+			i = (i + 1) & mask;
+		table[i] = u;
+		tableNumbers[i] = n;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T>[] newListArray(int n) {
+		return (List<T>[]) new List<?>[n];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Set<T>[] newSetArray(int n) {
+		return (Set<T>[]) new Set<?>[n];
+	}
+
+	private static int hash(Unit u) {
+		int h = System.identityHashCode(u) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int methodIndexOf(SootMethod m) {
+		int number = m.getNumber();
+		return number < methodIndex.length ? methodIndex[number] : -1;
+	}
+
+	@Override
+	public SootMethod getMethodOf(Unit u) {
+		int n = numberOf(u);
+		assert n >= 0 : "Statement " + u + " not in unit-to-owner mapping";
+		return n < 0 ? null : methods[unitMethod[n]];
+	}
+
+	@Override
+	public List<Unit> getPredsOf(Unit u) {
+		assert u != null;
+		int n = numberOf(u);
+		return n < 0 ? Collections.<Unit>emptyList() : preds[n];
+	}
+
+	@Override
+	public List<Unit> getSuccsOf(Unit u) {
+		int n = numberOf(u);
+		return n < 0 ? Collections.<Unit>emptyList() : succs[n];
+	}
+
+	@Override
+	public Collection<SootMethod> getCalleesOfCallAt(Unit u) {
+		int n = numberOf(u);
+		if (n < 0 || callees[n] == null)
+			return Collections.emptySet();
+		return callees[n];
+	}
+
+	@Override
+	public Collection<Unit> getCallersOf(SootMethod m) {
+		int mi = methodIndexOf(m);
+		return mi < 0 ? Collections.<Unit>emptyList() : callers[mi];
+	}
+
+	@Override
+	public Set<Unit> getCallsFromWithin(SootMethod m) {
+		int mi = methodIndexOf(m);
+		return mi < 0 ? Collections.<Unit>emptySet() : callsFromWithin[mi];
+	}
+
+	@Override
+	public Collection<Unit> getStartPointsOf(SootMethod m) {
+		int mi = methodIndexOf(m);
+		return mi < 0 ? Collections.<Unit>emptySet() : heads[mi];
+	}
+
+	@Override
+	public Collection<Unit> getEndPointsOf(SootMethod m) {
+		int mi = methodIndexOf(m);
+		return mi < 0 ? Collections.<Unit>emptySet() : tails[mi];
+	}
+
+	@Override
+	public Collection<Unit> getReturnSitesOfCallAt(Unit u) {
+		return getSuccsOf(u);
+	}
+
+	@Override
+	public List<Unit> getPredsOfCallAt(Unit u) {
+		return getPredsOf(u);
+	}
+
+	@Override
+	public boolean isCallStmt(Unit u) {
+		int n = numberOf(u);
+		return n < 0 ? ((Stmt) u).containsInvokeExpr() : (flags[n] & CALL) != 0;
+	}
+
+	@Override
+	public boolean isExitStmt(Unit u) {
+		return hasFlag(u, EXIT);
+	}
+
+	@Override
+	public boolean isStartPoint(Unit u) {
+		return hasFlag(u, START);
+	}
+
+	@Override
+	public boolean isReturnSite(Unit n) {
+		return hasFlag(n, RETURN_SITE);
+	}
+
+	private boolean hasFlag(Unit u, byte flag) {
+		int n = numberOf(u);
+		return n >= 0 && (flags[n] & flag) != 0;
+	}
+
+	@Override
+	public boolean isFallThroughSuccessor(Unit u, Unit succ) {
+		assert getSuccsOf(u).contains(succ);
+		if (!u.fallsThrough())
+			return false;
+		// statements are numbered in the order of their bodies
+		int n = numberOf(u);
+		int s = numberOf(succ);
+		return n >= 0 && s == n + 1 && unitMethod[s] == unitMethod[n];
+	}
+
+	@Override
+	public boolean isBranchTarget(Unit u, Unit succ) {
+		assert getSuccsOf(u).contains(succ);
+		if (!u.branches())
+			return false;
+		for (UnitBox ub : u.getUnitBoxes()) {
+			if (ub.getUnit() == succ)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Set<Unit> allNonCallStartNodes() {
+		Set<Unit> res = new LinkedHashSet<Unit>();
+		for (int n = 0; n < units.length; n++)
+			if ((flags[n] & (START | CALL)) == 0)
+				res.add(units[n]);
+		return res;
+	}
+
+	@Override
+	public Set<Unit> allNonCallEndNodes() {
+		Set<Unit> res = new LinkedHashSet<Unit>();
+		for (int n = 0; n < units.length; n++)
+			if ((flags[n] & (EXIT | CALL)) == 0)
+				res.add(units[n]);
+		return res;
+	}
+
+	/** Returns a view of the statements of m and the edges between them; the
+	 * graph is not built again. */
+	@Override
+	public DirectedGraph<Unit> getOrCreateUnitGraph(final SootMethod m) {
+		final int mi = methodIndexOf(m);
+		if (mi < 0)
+			throw new IllegalArgumentException("Method " + m + " is not in the interprocedural CFG");
+		return new DirectedGraph<Unit>() {
+			public List<Unit> getHeads() {
+				return heads[mi];
+			}
+
+			public List<Unit> getTails() {
+				return tails[mi];
+			}
+
+			public List<Unit> getPredsOf(Unit s) {
+				return ArrayBasedInterproceduralCFG.this.getPredsOf(s);
+			}
+
+			public List<Unit> getSuccsOf(Unit s) {
+				return ArrayBasedInterproceduralCFG.this.getSuccsOf(s);
+			}
+
+			public int size() {
+				return methodStart[mi + 1] - methodStart[mi];
+			}
+
+			public Iterator<Unit> iterator() {
+				return Arrays.asList(units).subList(methodStart[mi], methodStart[mi + 1]).iterator();
+			}
+		};
+	}
+
+	@Override
+	public List<Value> getParameterRefs(SootMethod m) {
+		int mi = methodIndexOf(m);
+		return mi < 0 ? m.getActiveBody().getParameterRefs() : parameterRefs[mi];
+	}
+
+	/** Rows of ints, stored one after the other, with the start of each. */
+	private class Rows {
+		int[] start;
+		int[] targets = new int[16];
+		int rows;
+		int size;
+
+		Rows(int rowCount) {
+			start = new int[rowCount + 1];
+		}
+
+		void add(int target) {
+			if (size == targets.length)
+				targets = Arrays.copyOf(targets, size * 2);
+			targets[size++] = target;
+		}
+
+		void endRow() {
+			start[++rows] = size;
+		}
+
+		List<Unit> unitList(int row) {
+			if (start[row] == start[row + 1])
+				return Collections.emptyList();
+			return new UnitList(targets, start[row], start[row + 1]);
+		}
+
+		List<SootMethod> methodList(int row) {
+			if (start[row] == start[row + 1])
+				return Collections.emptyList();
+			return new MethodList(targets, start[row], start[row + 1]);
+		}
+	}
+
+	/** A read-only list of the statements with the numbers in a row. */
+	private class UnitList extends AbstractList<Unit> implements RandomAccess {
+		private final int[] numbers;
+		private final int from;
+		private final int size;
+
+		UnitList(int[] numbers, int from, int to) {
+			this.numbers = numbers;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		@Override
+		public Unit get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return units[numbers[from + index]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/** A read-only list of the methods with the indices in a row. */
+	private class MethodList extends AbstractList<SootMethod> implements RandomAccess {
+		private final int[] indices;
+		private final int from;
+		private final int size;
+
+		MethodList(int[] indices, int from, int to) {
+			this.indices = indices;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		@Override
+		public SootMethod get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return methods[indices[from + index]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/** The read-only set of the calls in one method. */
+	private class CallSet extends AbstractSet<Unit> {
+		private final int method;
+		private final UnitList calls;
+
+		CallSet(int method, int[] numbers, int from, int to) {
+			this.method = method;
+			this.calls = new UnitList(numbers, from, to);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Unit))
+				return false;
+			int n = numberOf((Unit) o);
+			return n >= 0 && unitMethod[n] == method && (flags[n] & CALL) != 0;
+		}
+
+		@Override
+		public Iterator<Unit> iterator() {
+			return calls.iterator();
+		}
+
+		@Override
+		public int size() {
+			return calls.size();
+		}
+	}
+}
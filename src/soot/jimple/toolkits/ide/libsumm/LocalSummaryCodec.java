@@ -0,0 +1,27 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import soot.Local;
+import soot.SootMethod;
+
+/**
+ * Encodes facts that are locals of the method they hold in by their names,
+ * as for {@link soot.jimple.toolkits.ide.exampleproblems.IFDSLocalInfoFlow}
+ * and {@link soot.jimple.toolkits.ide.exampleproblems.IFDSUninitializedVariables}.
+ */
+public class LocalSummaryCodec implements SummaryCodec<Local> {
+
+	public String encode(SootMethod m, Local fact) {
+		if (!m.getActiveBody().getLocals().contains(fact))
+			return null;
+		return fact.getName();
+	}
+
+	public Local decode(SootMethod m, String fact) {
+		for (Local l : m.getActiveBody().getLocals()) {
+			if (l.getName().equals(fact))
+				return l;
+		}
+		return null;
+	}
+
+}
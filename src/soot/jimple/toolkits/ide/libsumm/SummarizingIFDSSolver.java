@@ -0,0 +1,300 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import heros.EdgeFunction;
+import heros.IFDSTabulationProblem;
+import heros.InterproceduralCFG;
+import heros.edgefunc.AllBottom;
+import heros.edgefunc.EdgeIdentity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.ide.JimpleIFDSSolver;
+import soot.jimple.toolkits.ide.libsumm.SummaryStore.EntrySummary;
+import soot.jimple.toolkits.ide.libsumm.SummaryStore.MethodSummary;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.google.common.collect.Table.Cell;
+
+/**
+ * An IFDS solver that takes the summaries of library methods from a
+ * {@link SummaryStore} instead of analysing their bodies again, and puts
+ * the summaries it computes back into the store.
+ *
+ * Before solving, the summaries stored for the problem are turned into end
+ * summaries of the solver; a call that reaches a start point with a fact
+ * for which there is such a summary is not propagated into the callee, and
+ * the facts at the exits of the summary are returned to the caller as
+ * usual. Facts inside the bodies of these methods are therefore not
+ * computed.
+ *
+ * After solving, the solver saves the summaries of every library method it
+ * entered whose calls all are {@link FixedMethods#isFixed fixed}, and whose
+ * callees all are saved too, so that the summaries do not depend on the
+ * code of the application. The summary of a method is only used in later
+ * runs while the bodies of the method and its callees are unchanged.
+ * Only the facts seen at start points are kept from the incoming sets of
+ * the solver; the call sites that were seen are not saved, as they belong
+ * to the run that saw them.
+ *
+ * @param <D> The type of data-flow facts.
+ */
+public class SummarizingIFDSSolver<D, I extends InterproceduralCFG<Unit, SootMethod>> extends JimpleIFDSSolver<D, I> {
+
+	/** The edge function of every summary in an IFDS problem. */
+	private static final EdgeFunction<BinaryDomain> ALL_BOTTOM = new AllBottom<BinaryDomain>(BinaryDomain.BOTTOM);
+
+	private final String problemName;
+	private final SummaryCodec<D> codec;
+	private final SummaryStore store;
+
+	/** The facts at each start point that have a stored summary. */
+	private final Map<Unit, Set<D>> summarized = new HashMap<Unit, Set<D>>();
+
+	private int loadedSummaries;
+	private int savedSummaries;
+	private final AtomicLong skippedCalls = new AtomicLong();
+
+	/**
+	 * Creates a solver for problem that uses and updates the summaries
+	 * stored in store under problemName, encoding facts with codec.
+	 */
+	public SummarizingIFDSSolver(IFDSTabulationProblem<Unit, D, SootMethod, I> problem, String problemName,
+			SummaryCodec<D> codec, SummaryStore store) {
+		super(problem);
+		this.problemName = problemName;
+		this.codec = codec;
+		this.store = store;
+	}
+
+	/**
+	 * Returns true if the summaries of m may be stored; by default, those of
+	 * methods of library classes.
+	 */
+	protected boolean isSummarized(SootMethod m) {
+		return !m.getDeclaringClass().isApplicationClass();
+	}
+
+	@Override
+	public void solve() {
+		loadSummaries();
+		super.solve();
+		saveSummaries();
+	}
+
+	@Override
+	protected void propagate(D sourceVal, Unit target, D targetVal, EdgeFunction<BinaryDomain> f,
+			Unit relatedCallSite, boolean isUnbalancedReturn) {
+		// a call propagates each fact at a start point to itself
+		if (relatedCallSite != null && !isUnbalancedReturn && f == EdgeIdentity.<BinaryDomain>v()
+				&& sourceVal == targetVal) {
+			Set<D> facts = summarized.get(target);
+			if (facts != null && facts.contains(targetVal)) {
+				skippedCalls.incrementAndGet();
+				return;
+			}
+		}
+		super.propagate(sourceVal, target, targetVal, f, relatedCallSite, isUnbalancedReturn);
+	}
+
+	/** Returns the number of summaries taken from the store. */
+	public int loadedSummaryCount() {
+		return loadedSummaries;
+	}
+
+	/** Returns the number of summaries put into the store. */
+	public int savedSummaryCount() {
+		return savedSummaries;
+	}
+
+	/** Returns the number of times a call was not propagated into its
+	 * callee because the callee had a stored summary. */
+	public long skippedCallCount() {
+		return skippedCalls.get();
+	}
+
+	private void loadSummaries() {
+		Map<String, MethodSummary> methods = store.summariesOf(problemName);
+		Map<SootMethod, Collection<SootMethod>> deps = new HashMap<SootMethod, Collection<SootMethod>>();
+		for (Map.Entry<String, MethodSummary> e : methods.entrySet()) {
+			if (!Scene.v().containsMethod(e.getKey()))
+				continue;
+			SootMethod m = Scene.v().getMethod(e.getKey());
+			MethodSummary s = e.getValue();
+			if (!isSummarized(m) || !m.hasActiveBody()
+					|| s.fingerprint != SummaryStore.fingerprint(m.getActiveBody()))
+				continue;
+			List<SootMethod> callees = new ArrayList<SootMethod>();
+			for (String c : s.callees) {
+				if (!Scene.v().containsMethod(c))
+					break;
+				callees.add(Scene.v().getMethod(c));
+			}
+			if (callees.size() < s.callees.size())
+				continue;
+			// the calls of m must not reach methods they did not reach before
+			Set<SootMethod> stored = new HashSet<SootMethod>(callees);
+			boolean sameCallees = true;
+			for (Unit call : icfg.getCallsFromWithin(m))
+				if (!stored.containsAll(icfg.getCalleesOfCallAt(call)))
+					sameCallees = false;
+			if (sameCallees)
+				deps.put(m, callees);
+		}
+
+		for (SootMethod m : closed(deps)) {
+			List<Unit> units = new ArrayList<Unit>(m.getActiveBody().getUnits());
+			entries: for (EntrySummary s : methods.get(m.getSignature()).entries.values()) {
+				D d1 = decode(m, s.fact);
+				if (d1 == null)
+					continue;
+				Table<Unit, D, EdgeFunction<BinaryDomain>> exits = HashBasedTable.create();
+				for (int x = 0; x < s.exits.length; x++) {
+					D d2 = decode(m, s.exitFacts[x]);
+					if (d2 == null)
+						continue entries;
+					exits.put(units.get(s.exits[x]), d2, ALL_BOTTOM);
+				}
+				Unit sP = units.get(s.start);
+				Table<Unit, D, EdgeFunction<BinaryDomain>> known = endSummary.get(sP, d1);
+				if (known == null)
+					endSummary.put(sP, d1, exits);
+				else
+					known.putAll(exits);
+				Set<D> facts = summarized.get(sP);
+				if (facts == null)
+					summarized.put(sP, facts = new HashSet<D>());
+				facts.add(d1);
+				loadedSummaries++;
+			}
+		}
+	}
+
+	private void saveSummaries() {
+		// the library methods entered with some fact, with all they call
+		Map<SootMethod, Collection<SootMethod>> deps = new HashMap<SootMethod, Collection<SootMethod>>();
+		LinkedList<SootMethod> work = new LinkedList<SootMethod>();
+		for (Unit sP : incoming.rowKeySet())
+			work.add(icfg.getMethodOf(sP));
+		while (!work.isEmpty()) {
+			SootMethod m = work.removeFirst();
+			if (deps.containsKey(m) || !isSummarized(m) || !m.hasActiveBody())
+				continue;
+			Set<SootMethod> callees = new LinkedHashSet<SootMethod>();
+			boolean fixed = true;
+			for (Unit call : icfg.getCallsFromWithin(m)) {
+				if (!FixedMethods.isFixed(((Stmt) call).getInvokeExpr()))
+					fixed = false;
+				callees.addAll(icfg.getCalleesOfCallAt(call));
+			}
+			if (!fixed)
+				continue;
+			deps.put(m, callees);
+			work.addAll(callees);
+		}
+
+		Map<String, MethodSummary> methods = store.summariesOf(problemName);
+		Map<SootMethod, MethodSummary> summaries = new HashMap<SootMethod, MethodSummary>();
+		for (SootMethod m : closed(deps)) {
+			List<String> callees = new ArrayList<String>();
+			for (SootMethod c : deps.get(m))
+				callees.add(c.getSignature());
+			MethodSummary s = new MethodSummary(SummaryStore.fingerprint(m.getActiveBody()), callees);
+			// keep what earlier runs saw and this one did not
+			MethodSummary old = methods.get(m.getSignature());
+			if (old != null && old.fingerprint == s.fingerprint)
+				for (EntrySummary e : old.entries.values())
+					s.add(e);
+			summaries.put(m, s);
+		}
+
+		Map<SootMethod, Map<Unit, Integer>> positions = new HashMap<SootMethod, Map<Unit, Integer>>();
+		cells: for (Cell<Unit, D, Map<Unit, Set<D>>> c : incoming.cellSet()) {
+			Unit sP = c.getRowKey();
+			SootMethod m = icfg.getMethodOf(sP);
+			MethodSummary s = summaries.get(m);
+			if (s == null)
+				continue;
+			Map<Unit, Integer> position = positions.get(m);
+			if (position == null) {
+				positions.put(m, position = new IdentityHashMap<Unit, Integer>());
+				for (Unit u : m.getActiveBody().getUnits())
+					position.put(u, position.size());
+			}
+			String fact = encode(m, c.getColumnKey());
+			if (fact == null && !zeroValue.equals(c.getColumnKey()))
+				continue;
+			Table<Unit, D, EdgeFunction<BinaryDomain>> exits = endSummary.get(sP, c.getColumnKey());
+			int exitCount = exits == null ? 0 : exits.size();
+			int[] exitUnits = new int[exitCount];
+			String[] exitFacts = new String[exitCount];
+			if (exits != null) {
+				int x = 0;
+				for (Cell<Unit, D, EdgeFunction<BinaryDomain>> exit : exits.cellSet()) {
+					exitUnits[x] = position.get(exit.getRowKey());
+					exitFacts[x] = encode(m, exit.getColumnKey());
+					if (exitFacts[x] == null && !zeroValue.equals(exit.getColumnKey()))
+						continue cells;
+					x++;
+				}
+			}
+			s.add(new EntrySummary(position.get(sP), fact, exitUnits, exitFacts));
+			savedSummaries++;
+		}
+		for (Map.Entry<SootMethod, MethodSummary> e : summaries.entrySet())
+			methods.put(e.getKey().getSignature(), e.getValue());
+	}
+
+	/** Returns the zero value for null, and the decoded fact otherwise. */
+	private D decode(SootMethod m, String fact) {
+		return fact == null ? zeroValue : codec.decode(m, fact);
+	}
+
+	/** Returns null for the zero value, and the encoded fact otherwise. */
+	private String encode(SootMethod m, D fact) {
+		return zeroValue.equals(fact) ? null : codec.encode(m, fact);
+	}
+
+	/**
+	 * Returns the methods of deps all of whose callees, transitively, are
+	 * in deps too.
+	 */
+	private static Set<SootMethod> closed(Map<SootMethod, Collection<SootMethod>> deps) {
+		Set<SootMethod> ret = new HashSet<SootMethod>(deps.keySet());
+		Map<SootMethod, List<SootMethod>> callers = new HashMap<SootMethod, List<SootMethod>>();
+		LinkedList<SootMethod> removed = new LinkedList<SootMethod>();
+		for (Map.Entry<SootMethod, Collection<SootMethod>> e : deps.entrySet()) {
+			for (SootMethod callee : e.getValue()) {
+				List<SootMethod> l = callers.get(callee);
+				if (l == null)
+					callers.put(callee, l = new ArrayList<SootMethod>());
+				l.add(e.getKey());
+				if (!deps.containsKey(callee) && ret.remove(e.getKey()))
+					removed.add(e.getKey());
+			}
+		}
+		while (!removed.isEmpty()) {
+			List<SootMethod> l = callers.get(removed.removeFirst());
+			if (l == null)
+				continue;
+			for (SootMethod caller : l)
+				if (ret.remove(caller))
+					removed.add(caller);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,30 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import soot.SootMethod;
+
+/**
+ * Turns the data-flow facts of an IFDS problem into strings that stay valid
+ * from one run of Soot to the next, so that a {@link SummaryStore} can
+ * keep summaries of methods.
+ *
+ * A fact is encoded relative to the method at whose start point or exit
+ * statement it holds; the zero value is handled by the solver and never
+ * given to the codec.
+ *
+ * @param <D> The type of data-flow facts.
+ */
+public interface SummaryCodec<D> {
+
+	/**
+	 * Returns a string for the given fact holding in m, or null if the fact
+	 * cannot be saved; summaries with such facts are not saved.
+	 */
+	public String encode(SootMethod m, D fact);
+
+	/**
+	 * Returns the fact in m for a string made by {@link #encode}, or null
+	 * if there is no such fact in this run.
+	 */
+	public D decode(SootMethod m, String fact);
+
+}
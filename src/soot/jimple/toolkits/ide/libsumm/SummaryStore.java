@@ -0,0 +1,198 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.Body;
+import soot.Unit;
+
+/**
+ * Summaries of methods computed by IFDS solvers, kept from one run of Soot
+ * to the next in a file. They are used and updated by
+ * {@link SummarizingIFDSSolver}.
+ *
+ * Summaries are kept per problem, under a name given by the client, and per
+ * method, under its signature. The summary of a method records, for each
+ * fact seen at one of its start points, the facts that hold at its exit
+ * statements. Statements are stored by their position in the body, and
+ * facts as strings made by a {@link SummaryCodec}. With each method, the
+ * store keeps a fingerprint of its body and the signatures of the methods it
+ * calls, so that a summary is only used while neither the method nor any
+ * method it calls has changed.
+ */
+public class SummaryStore {
+
+	static final int MAGIC = 0x53554d53;
+	static final int VERSION = 1;
+
+	/** The summaries of one problem, by method signature. */
+	private final Map<String, Map<String, MethodSummary>> problems = new LinkedHashMap<String, Map<String, MethodSummary>>();
+
+	/** Reads the summaries in file, or makes an empty store if there is no
+	 * such file. */
+	public static SummaryStore load(File file) throws IOException {
+		SummaryStore ret = new SummaryStore();
+		if (!file.exists())
+			return ret;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a summary file");
+			if (in.readInt() != VERSION)
+				throw new IOException(file + " has an unsupported version");
+			for (int p = in.readInt(); p > 0; p--) {
+				Map<String, MethodSummary> methods = ret.summariesOf(in.readUTF());
+				for (int m = in.readInt(); m > 0; m--) {
+					String signature = in.readUTF();
+					methods.put(signature, MethodSummary.read(in));
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return ret;
+	}
+
+	/** Writes all summaries to file. */
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(problems.size());
+			for (Map.Entry<String, Map<String, MethodSummary>> p : problems.entrySet()) {
+				out.writeUTF(p.getKey());
+				out.writeInt(p.getValue().size());
+				for (Map.Entry<String, MethodSummary> m : p.getValue().entrySet()) {
+					out.writeUTF(m.getKey());
+					m.getValue().write(out);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Returns the number of methods with summaries for the given problem. */
+	public int size(String problem) {
+		Map<String, MethodSummary> methods = problems.get(problem);
+		return methods == null ? 0 : methods.size();
+	}
+
+	/** Removes all summaries of the given problem. */
+	public void clear(String problem) {
+		problems.remove(problem);
+	}
+
+	Map<String, MethodSummary> summariesOf(String problem) {
+		Map<String, MethodSummary> ret = problems.get(problem);
+		if (ret == null)
+			problems.put(problem, ret = new HashMap<String, MethodSummary>());
+		return ret;
+	}
+
+	/** Returns a fingerprint of the statements of body. */
+	static int fingerprint(Body body) {
+		int ret = 1;
+		for (Unit u : body.getUnits())
+			ret = 31 * ret + u.toString().hashCode();
+		return ret;
+	}
+
+	/** The summary of one method. */
+	static class MethodSummary {
+		final int fingerprint;
+		final List<String> callees;
+		final Map<String, EntrySummary> entries = new LinkedHashMap<String, EntrySummary>();
+
+		MethodSummary(int fingerprint, Collection<String> callees) {
+			this.fingerprint = fingerprint;
+			this.callees = new ArrayList<String>(callees);
+		}
+
+		void add(EntrySummary e) {
+			entries.put(e.key(), e);
+		}
+
+		static MethodSummary read(DataInputStream in) throws IOException {
+			int fingerprint = in.readInt();
+			List<String> callees = new ArrayList<String>();
+			for (int c = in.readInt(); c > 0; c--)
+				callees.add(in.readUTF());
+			MethodSummary ret = new MethodSummary(fingerprint, callees);
+			for (int e = in.readInt(); e > 0; e--) {
+				int start = in.readInt();
+				String fact = readFact(in);
+				int exitCount = in.readInt();
+				int[] exits = new int[exitCount];
+				String[] exitFacts = new String[exitCount];
+				for (int x = 0; x < exitCount; x++) {
+					exits[x] = in.readInt();
+					exitFacts[x] = readFact(in);
+				}
+				ret.add(new EntrySummary(start, fact, exits, exitFacts));
+			}
+			return ret;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(fingerprint);
+			out.writeInt(callees.size());
+			for (String c : callees)
+				out.writeUTF(c);
+			out.writeInt(entries.size());
+			for (EntrySummary e : entries.values()) {
+				out.writeInt(e.start);
+				writeFact(out, e.fact);
+				out.writeInt(e.exits.length);
+				for (int x = 0; x < e.exits.length; x++) {
+					out.writeInt(e.exits[x]);
+					writeFact(out, e.exitFacts[x]);
+				}
+			}
+		}
+
+		/** Facts are null for the zero value. */
+		private static String readFact(DataInputStream in) throws IOException {
+			return in.readBoolean() ? in.readUTF() : null;
+		}
+
+		private static void writeFact(DataOutputStream out, String fact) throws IOException {
+			out.writeBoolean(fact != null);
+			if (fact != null)
+				out.writeUTF(fact);
+		}
+	}
+
+	/** The facts at the exit statements of a method for one fact at one of
+	 * its start points. Facts are null for the zero value. */
+	static class EntrySummary {
+		final int start;
+		final String fact;
+		final int[] exits;
+		final String[] exitFacts;
+
+		EntrySummary(int start, String fact, int[] exits, String[] exitFacts) {
+			this.start = start;
+			this.fact = fact;
+			this.exits = exits;
+			this.exitFacts = exitFacts;
+		}
+
+		String key() {
+			return fact == null ? Integer.toString(start) : start + ":" + fact;
+		}
+	}
+}
@@ -34,7 +34,7 @@ import soot.jimple.*;
 import java.util.*;
 
 
-public class ConditionalBranchFolder  extends BodyTransformer
+public class ConditionalBranchFolder  extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public ConditionalBranchFolder ( Singletons.Global g ) {}
     public static ConditionalBranchFolder  v() { return G.v().soot_jimple_toolkits_scalar_ConditionalBranchFolder (); }
@@ -38,7 +38,7 @@ import soot.toolkits.graph.*;
 /** Does constant propagation and folding. 
  * Constant folding is the compile-time evaluation of constant
  * expressions (i.e. 2 * 3). */
-public class ConstantPropagatorAndFolder extends BodyTransformer
+public class ConstantPropagatorAndFolder extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public ConstantPropagatorAndFolder( Singletons.Global g ) {}
     public static ConstantPropagatorAndFolder v() { return G.v().soot_jimple_toolkits_scalar_ConstantPropagatorAndFolder(); }
@@ -52,7 +52,7 @@ public class ConstantPropagatorAndFolder extends BodyTransformer
             G.v().out.println("[" + b.getMethod().getName() +
                                "] Propagating and folding constants...");
 
-        UnitGraph g = new ExceptionalUnitGraph(b);
+        UnitGraph g = b.getAnalysisCache().getExceptionalUnitGraph();
         LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(g);
 
         // Perform a constant/local propagation pass.
@@ -38,6 +38,7 @@ import soot.NullType;
 import soot.RefLikeType;
 import soot.Scene;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Timers;
 import soot.Unit;
 import soot.ValueBox;
@@ -59,7 +60,7 @@ import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.LocalDefs;
 import soot.util.Chain;
 
-public class CopyPropagator extends BodyTransformer {
+public class CopyPropagator extends BodyTransformer implements ThreadSafeBodyTransformer {
 
 	protected ThrowAnalysis throwAnalysis = null;
 	protected boolean forceOmitExceptingUnitEdges = false;
@@ -132,7 +133,7 @@ public class CopyPropagator extends BodyTransformer {
         	forceOmitExceptingUnitEdges = Options.v().omit_excepting_unit_edges();
         
         // Go through the definitions, building the webs
-    	UnitGraph graph = new ExceptionalUnitGraph(stmtBody, throwAnalysis, forceOmitExceptingUnitEdges);
+    	UnitGraph graph = stmtBody.getAnalysisCache().getExceptionalUnitGraph(throwAnalysis, forceOmitExceptingUnitEdges);
 
 		LocalDefs localDefs = LocalDefs.Factory.newLocalDefs(graph);
 
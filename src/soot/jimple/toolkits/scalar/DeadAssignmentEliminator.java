@@ -49,6 +49,7 @@ import soot.PhaseOptions;
 import soot.RefType;
 import soot.Scene;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Timers;
 import soot.Trap;
 import soot.Type;
@@ -79,7 +80,7 @@ import soot.toolkits.scalar.LocalUses;
 import soot.toolkits.scalar.UnitValueBoxPair;
 import soot.util.Chain;
 
-public class DeadAssignmentEliminator extends BodyTransformer
+public class DeadAssignmentEliminator extends BodyTransformer implements ThreadSafeBodyTransformer
 {
 	public DeadAssignmentEliminator( Singletons.Global g ) {}
 	public static DeadAssignmentEliminator v() { return G.v().soot_jimple_toolkits_scalar_DeadAssignmentEliminator(); }
@@ -51,7 +51,7 @@ public class FastAvailableExpressions implements AvailableExpressions
                 "] Finding available expressions...");
 
         FastAvailableExpressionsAnalysis analysis = 
-            new FastAvailableExpressionsAnalysis(new ExceptionalUnitGraph(b),
+            new FastAvailableExpressionsAnalysis(b.getAnalysisCache().getExceptionalUnitGraph(),
 		    b.getMethod(), st);
 
         // Build unitToExprs map
@@ -34,7 +34,7 @@ import soot.*;
 
 import java.util.*;
 
-public class LocalNameStandardizer extends BodyTransformer
+public class LocalNameStandardizer extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public LocalNameStandardizer( Singletons.Global g ) {}
     public static LocalNameStandardizer v() { return G.v().soot_jimple_toolkits_scalar_LocalNameStandardizer(); }
@@ -32,6 +32,7 @@ import soot.Body;
 import soot.BodyTransformer;
 import soot.G;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Trap;
 import soot.Unit;
 import soot.jimple.JimpleBody;
@@ -39,7 +40,7 @@ import soot.jimple.NopStmt;
 import soot.options.Options;
 import soot.util.Chain;
 
-public class NopEliminator extends BodyTransformer
+public class NopEliminator extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public NopEliminator( Singletons.Global g ) {}
     public static NopEliminator v() { return G.v().soot_jimple_toolkits_scalar_NopEliminator(); }
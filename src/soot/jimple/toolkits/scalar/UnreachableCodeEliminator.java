@@ -41,6 +41,7 @@ import soot.G;
 import soot.PhaseOptions;
 import soot.Scene;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Trap;
 import soot.Unit;
 import soot.options.Options;
@@ -51,7 +52,7 @@ import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.util.Chain;
 
 
-public class UnreachableCodeEliminator extends BodyTransformer
+public class UnreachableCodeEliminator extends BodyTransformer implements ThreadSafeBodyTransformer
 {
 	protected ThrowAnalysis throwAnalysis = null;
 
@@ -76,7 +77,7 @@ public class UnreachableCodeEliminator extends BodyTransformer
 		if (this.throwAnalysis == null)
 			this.throwAnalysis = PhaseOptions.getBoolean(options, "remove-unreachable-traps", true)
 				? Scene.v().getDefaultThrowAnalysis() : PedanticThrowAnalysis.v();
-		ExceptionalUnitGraph graph =  new ExceptionalUnitGraph(body, throwAnalysis, false);
+		ExceptionalUnitGraph graph =  body.getAnalysisCache().getExceptionalUnitGraph(throwAnalysis, false);
 
 		Chain<Unit> units = body.getUnits();
 		int numPruned = units.size();
@@ -81,7 +81,7 @@ public class LazyCodeMotion extends BodyTransformer {
 
 		CriticalEdgeRemover.v().transform(b, phaseName + ".cer");
 
-		UnitGraph graph = new BriefUnitGraph(b);
+		UnitGraph graph = new CompactUnitGraph(b);
 
 		/* map each unit to its RHS. only take binary expressions */
 		Map<Unit, EquivalentValue> unitToEquivRhs = new UnitMap<EquivalentValue>(b, graph.size() + 1, 0.7f) {
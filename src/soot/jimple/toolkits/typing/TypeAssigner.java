@@ -43,10 +43,12 @@ import soot.ErroneousType;
 import soot.G;
 import soot.Local;
 import soot.NullType;
+import soot.PackManager;
 import soot.PhaseOptions;
 import soot.Scene;
 import soot.ShortType;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Type;
 import soot.Unit;
 import soot.UnknownType;
@@ -70,8 +72,10 @@ import soot.toolkits.scalar.UnusedLocalEliminator;
  * @author Ben Bellamy
  * @author Eric Bodden 
  */
-public class TypeAssigner extends BodyTransformer {
-	private boolean ignoreWrongStaticNess;
+public class TypeAssigner extends BodyTransformer implements ThreadSafeBodyTransformer {
+	// only ever holds the value of a phase option, so concurrent
+	// invocations all write the same value
+	private volatile boolean ignoreWrongStaticNess;
 
 	public TypeAssigner(Singletons.Global g) {
 	}
@@ -123,11 +127,16 @@ public class TypeAssigner extends BodyTransformer {
 		 * would probably be removed.
 		 */
 		if (opt.compare_type_assigners()) {
-			compareTypeAssigners(b,opt.use_older_type_assigner());
+			// the old type assigner shares its class hierarchy between bodies
+			synchronized (PackManager.v().sequentialTransformLock()) {
+				compareTypeAssigners(b,opt.use_older_type_assigner());
+			}
 		} else {
-			if (opt.use_older_type_assigner())
-				TypeResolver.resolve((JimpleBody) b, Scene.v());
-			else
+			if (opt.use_older_type_assigner()) {
+				synchronized (PackManager.v().sequentialTransformLock()) {
+					TypeResolver.resolve((JimpleBody) b, Scene.v());
+				}
+			} else
 				(new soot.jimple.toolkits.typing.fast.TypeResolver(
 						(JimpleBody) b)).inferTypes();
 		}
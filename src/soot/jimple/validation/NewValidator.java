@@ -31,7 +31,7 @@ import soot.jimple.*;
 import soot.jimple.internal.JInvokeStmt;
 import soot.jimple.internal.JNewExpr;
 import soot.jimple.internal.JSpecialInvokeExpr;
-import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.CompactUnitGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 import soot.validation.BodyValidator;
@@ -57,7 +57,7 @@ public enum NewValidator implements BodyValidator {
 	 * follows.
 	 */
 	public void validate(Body body, List<ValidationException> exception) {
-		UnitGraph g = new BriefUnitGraph(body);
+		UnitGraph g = new CompactUnitGraph(body);
 		for (Unit u : body.getUnits()) {
 			if (u instanceof Stmt) {
 				Stmt s = (Stmt) u;
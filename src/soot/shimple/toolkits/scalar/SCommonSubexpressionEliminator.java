@@ -0,0 +1,462 @@
+package soot.shimple.toolkits.scalar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.BodyTransformer;
+import soot.G;
+import soot.Local;
+import soot.Singletons;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AddExpr;
+import soot.jimple.AndExpr;
+import soot.jimple.AssignStmt;
+import soot.jimple.BinopExpr;
+import soot.jimple.CastExpr;
+import soot.jimple.Constant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.EqExpr;
+import soot.jimple.FloatConstant;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.LengthExpr;
+import soot.jimple.MulExpr;
+import soot.jimple.NeExpr;
+import soot.jimple.NegExpr;
+import soot.jimple.OrExpr;
+import soot.jimple.UnopExpr;
+import soot.jimple.XorExpr;
+import soot.options.Options;
+import soot.shimple.PhiExpr;
+import soot.shimple.ShimpleBody;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Eliminates common subexpressions from a body in SSA form by
+ * numbering its values over the dominator tree.
+ *
+ * <p> Walking down the dominator tree of the units, each local is
+ * numbered by the copy, constant or earlier equal expression it is
+ * assigned.  Expressions free of side effects and independent of the
+ * heap (arithmetic, casts, instanceof, array lengths and Phi nodes)
+ * are looked up by their operator and the numbers of their operands
+ * in a table of the expressions computed by the dominating units.  An
+ * expression that is found there is replaced by the local that first
+ * held it, which SSA guarantees still holds it; unlike
+ * {@link soot.jimple.toolkits.scalar.CommonSubexpressionEliminator},
+ * no available expressions analysis is needed.  Field and array reads
+ * are left alone.
+ *
+ * <p> The replaced expressions leave copies behind, which copy
+ * propagation and dead assignment elimination remove once the body is
+ * back in Jimple.
+ **/
+public class SCommonSubexpressionEliminator extends BodyTransformer
+{
+    public SCommonSubexpressionEliminator(Singletons.Global g) {}
+
+    public static SCommonSubexpressionEliminator v()
+    { return G.v().soot_shimple_toolkits_scalar_SCommonSubexpressionEliminator(); }
+
+    protected void internalTransform(Body b, String phaseName, Map<String,String> options)
+    {
+        if(!(b instanceof ShimpleBody))
+            throw new RuntimeException("SCommonSubexpressionEliminator requires a ShimpleBody.");
+
+        ShimpleBody sb = (ShimpleBody) b;
+
+        if(!sb.isSSA())
+            throw new RuntimeException("ShimpleBody is not in proper SSA form as required by SCommonSubexpressionEliminator.  You may need to rebuild it or use CommonSubexpressionEliminator instead.");
+
+        if(Options.v().verbose())
+            G.v().out.println("[" + sb.getMethod().getName() +
+                              "] Eliminating common subexpressions (SSA)...");
+
+        int eliminated = new ValueNumbering(sb.getAnalysisCache().getExceptionalUnitGraph()).eliminate();
+
+        if(Options.v().verbose())
+            G.v().out.println("[" + sb.getMethod().getName() +
+                              "] Eliminated " + eliminated + " common subexpressions.");
+    }
+}
+
+/**
+ * The dominator-based value numbering itself.  Dominators are computed
+ * on the units, not on blocks, so that a unit that may throw does not
+ * dominate the handlers it throws to.
+ **/
+class ValueNumbering
+{
+    protected UnitGraph graph;
+
+    /** The units reachable from the heads in reverse postorder, from
+     * index 1; index 0 stands for a root above all heads. */
+    protected Unit[] units;
+
+    /** The index of the immediate dominator of each unit. */
+    protected int[] idom;
+
+    /** The value each local is known to be equal to, if not itself. */
+    protected Map<Local, Value> numbers = new HashMap<Local, Value>();
+
+    /** The local holding each expression computed by the dominators of
+     * the unit being visited. */
+    protected Map<Expression, Local> available = new HashMap<Expression, Local>();
+
+    /** The locals defined by the unit being visited and its dominators. */
+    protected Set<Local> defined = new HashSet<Local>();
+
+    /** The expressions in available and the locals in defined, in the
+     * order they were added. */
+    protected List<Object> scope = new ArrayList<Object>();
+
+    protected int eliminated;
+
+    ValueNumbering(UnitGraph graph)
+    {
+        this.graph = graph;
+    }
+
+    /**
+     * Replaces the redundant expressions of the body and returns how
+     * many were replaced.
+     **/
+    int eliminate()
+    {
+        computeDominators();
+        int[][] children = dominatorTreeChildren();
+
+        // walk the tree depth first without recursion, which could go
+        // as deep as the body is long
+        int[] stack = new int[units.length];
+        int[] nextChild = new int[units.length];
+        int[] scopeMark = new int[units.length];
+        int sp = 0;
+        while(sp >= 0){
+            int node = stack[sp];
+            if(nextChild[sp] < children[node].length){
+                int child = children[node][nextChild[sp]++];
+                sp++;
+                stack[sp] = child;
+                nextChild[sp] = 0;
+                scopeMark[sp] = scope.size();
+                visit(units[child]);
+            }
+            else{
+                // what node made available is not available in its siblings
+                for(int i = scope.size(); i > scopeMark[sp]; i--){
+                    Object o = scope.remove(i - 1);
+                    if(o instanceof Local)
+                        defined.remove(o);
+                    else
+                        available.remove(o);
+                }
+                sp--;
+            }
+        }
+
+        return eliminated;
+    }
+
+    protected void visit(Unit u)
+    {
+        for(ValueBox box : u.getDefBoxes()){
+            Value v = box.getValue();
+            if(v instanceof Local && defined.add((Local) v))
+                scope.add(v);
+        }
+
+        if(!(u instanceof AssignStmt))
+            return;
+
+        AssignStmt s = (AssignStmt) u;
+        if(!(s.getLeftOp() instanceof Local))
+            return;
+
+        Local l = (Local) s.getLeftOp();
+        Value rhs = s.getRightOp();
+
+        if(rhs instanceof Local || rhs instanceof Constant){
+            numbers.put(l, numberOf(rhs));
+            return;
+        }
+
+        if(rhs instanceof PhiExpr){
+            Value same = sameArgument(l, (PhiExpr) rhs);
+            if(same != null){
+                numbers.put(l, same);
+                if(same instanceof Constant || ((Local) same).getType().equals(l.getType())){
+                    s.setRightOp(same);
+                    eliminated++;
+                }
+                return;
+            }
+        }
+
+        Expression e = expressionOf(rhs);
+        if(e == null)
+            return;
+
+        Local first = available.get(e);
+        if(first == null){
+            available.put(e, l);
+            scope.add(e);
+        }
+        else if(first.getType().equals(l.getType())){
+            s.setRightOp(first);
+            numbers.put(l, first);
+            eliminated++;
+        }
+    }
+
+    protected Value numberOf(Value v)
+    {
+        if(v instanceof Local){
+            Value n = numbers.get(v);
+            if(n != null)
+                return n;
+        }
+        return v;
+    }
+
+    /**
+     * Returns the value all arguments of the Phi node defining l are
+     * equal to, not counting l itself, or null if they differ.  Shimple
+     * gives handlers Phi nodes over values that may not be defined yet
+     * when the exception is thrown, so a local is only returned if it
+     * is defined by a dominator of the Phi node.
+     **/
+    protected Value sameArgument(Local l, PhiExpr phi)
+    {
+        Value same = null;
+        for(Value arg : phi.getValues()){
+            Value n = numberOf(arg);
+            if(n == l)
+                continue;
+            if(same == null)
+                same = n;
+            else if(!sameValue(same, n))
+                return null;
+        }
+        if(same instanceof Local && !defined.contains(same))
+            return null;
+        return same;
+    }
+
+    protected Expression expressionOf(Value rhs)
+    {
+        if(rhs instanceof BinopExpr){
+            BinopExpr e = (BinopExpr) rhs;
+            boolean commutative = e instanceof AddExpr || e instanceof MulExpr
+                || e instanceof AndExpr || e instanceof OrExpr || e instanceof XorExpr
+                || e instanceof EqExpr || e instanceof NeExpr;
+            return new Expression(e.getClass(), e.getType(), commutative,
+                                  numberOf(e.getOp1()), numberOf(e.getOp2()));
+        }
+        if(rhs instanceof NegExpr || rhs instanceof LengthExpr){
+            UnopExpr e = (UnopExpr) rhs;
+            return new Expression(e.getClass(), e.getType(), false, numberOf(e.getOp()));
+        }
+        if(rhs instanceof CastExpr){
+            CastExpr e = (CastExpr) rhs;
+            return new Expression(e.getClass(), e.getCastType(), false, numberOf(e.getOp()));
+        }
+        if(rhs instanceof InstanceOfExpr){
+            InstanceOfExpr e = (InstanceOfExpr) rhs;
+            return new Expression(e.getClass(), e.getCheckType(), false, numberOf(e.getOp()));
+        }
+        if(rhs instanceof PhiExpr){
+            // equal only to Phi nodes of the same block, with equal
+            // arguments from each predecessor
+            PhiExpr e = (PhiExpr) rhs;
+            int count = e.getArgCount();
+            Object[] operands = new Object[2 * count];
+            for(int i = 0; i < count; i++){
+                operands[i] = numberOf(e.getValue(i));
+                operands[count + i] = e.getPred(i);
+            }
+            return new Expression(PhiExpr.class, e.getType(), false, operands);
+        }
+        return null;
+    }
+
+    /**
+     * Numbers the reachable units in reverse postorder and finds their
+     * immediate dominators with the iterative algorithm of Cooper,
+     * Harvey and Kennedy.
+     **/
+    protected void computeDominators()
+    {
+        Map<Unit, Integer> index = new HashMap<Unit, Integer>(graph.size() * 2);
+        List<Unit> postorder = new ArrayList<Unit>(graph.size());
+        List<Unit> path = new ArrayList<Unit>();
+        List<Iterator<Unit>> succs = new ArrayList<Iterator<Unit>>();
+        for(Unit head : graph.getHeads()){
+            if(index.containsKey(head))
+                continue;
+            index.put(head, -1);
+            path.add(head);
+            succs.add(graph.getSuccsOf(head).iterator());
+            while(!path.isEmpty()){
+                int top = path.size() - 1;
+                Iterator<Unit> it = succs.get(top);
+                if(it.hasNext()){
+                    Unit succ = it.next();
+                    if(!index.containsKey(succ)){
+                        index.put(succ, -1);
+                        path.add(succ);
+                        succs.add(graph.getSuccsOf(succ).iterator());
+                    }
+                }
+                else{
+                    postorder.add(path.remove(top));
+                    succs.remove(top);
+                }
+            }
+        }
+
+        int n = postorder.size();
+        units = new Unit[n + 1];
+        for(int i = 1; i <= n; i++){
+            units[i] = postorder.get(n - i);
+            index.put(units[i], i);
+        }
+
+        Set<Unit> heads = new HashSet<Unit>(graph.getHeads());
+        int[][] preds = new int[n + 1][];
+        for(int i = 1; i <= n; i++){
+            List<Unit> predList = graph.getPredsOf(units[i]);
+            int[] p = new int[predList.size() + 1];
+            int count = 0;
+            if(heads.contains(units[i]))
+                p[count++] = 0;
+            for(Unit pred : predList){
+                Integer k = index.get(pred);
+                if(k != null)
+                    p[count++] = k;
+            }
+            preds[i] = count == p.length ? p : Arrays.copyOf(p, count);
+        }
+
+        idom = new int[n + 1];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int i = 1; i <= n; i++){
+                int newIdom = -1;
+                for(int p : preds[i]){
+                    if(idom[p] == -1)
+                        continue;
+                    newIdom = newIdom == -1 ? p : intersect(p, newIdom);
+                }
+                if(idom[i] != newIdom){
+                    idom[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int a, int b)
+    {
+        while(a != b){
+            while(a > b)
+                a = idom[a];
+            while(b > a)
+                b = idom[b];
+        }
+        return a;
+    }
+
+    protected int[][] dominatorTreeChildren()
+    {
+        int[] count = new int[units.length];
+        for(int i = 1; i < units.length; i++)
+            count[idom[i]]++;
+        int[][] children = new int[units.length][];
+        for(int i = 0; i < units.length; i++)
+            children[i] = new int[count[i]];
+        Arrays.fill(count, 0);
+        for(int i = 1; i < units.length; i++)
+            children[idom[i]][count[idom[i]]++] = i;
+        return children;
+    }
+
+    /**
+     * Compares values as operands: like equals, except that floating
+     * point constants are equal only if they have the same bits, so
+     * that 0.0 and -0.0 differ and NaN equals itself.
+     **/
+    static boolean sameValue(Object a, Object b)
+    {
+        if(a instanceof FloatConstant && b instanceof FloatConstant)
+            return Float.floatToIntBits(((FloatConstant) a).value)
+                == Float.floatToIntBits(((FloatConstant) b).value);
+        if(a instanceof DoubleConstant && b instanceof DoubleConstant)
+            return Double.doubleToLongBits(((DoubleConstant) a).value)
+                == Double.doubleToLongBits(((DoubleConstant) b).value);
+        return a.equals(b);
+    }
+
+    /** An operator applied to operands, compared by value. */
+    protected static class Expression
+    {
+        final Object operator;
+        final Type type;
+        final boolean commutative;
+        final Object[] operands;
+        final int hash;
+
+        Expression(Object operator, Type type, boolean commutative, Object... operands)
+        {
+            this.operator = operator;
+            this.type = type;
+            this.commutative = commutative;
+            this.operands = operands;
+
+            int h = operator.hashCode() * 31 + type.hashCode();
+            if(commutative)
+                h = h * 31 + operands[0].hashCode() + operands[1].hashCode();
+            else{
+                for(Object o : operands)
+                    h = h * 31 + o.hashCode();
+            }
+            hash = h;
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof Expression))
+                return false;
+            Expression e = (Expression) o;
+            if(hash != e.hash || operator != e.operator || !type.equals(e.type)
+               || operands.length != e.operands.length)
+                return false;
+            if(commutative
+               && sameValue(operands[0], e.operands[1])
+               && sameValue(operands[1], e.operands[0]))
+                return true;
+            for(int i = 0; i < operands.length; i++){
+                if(!sameValue(operands[i], e.operands[i]))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
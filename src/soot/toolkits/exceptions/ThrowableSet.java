@@ -300,7 +300,7 @@ public final class ThrowableSet {
 		 *         exceptions corresponding to <code>include</code> -
 		 *         <code>exclude</code>.
 		 */
-		private ThrowableSet registerSetIfNew(Set<RefLikeType> include, Set<AnySubType> exclude) {
+		private synchronized ThrowableSet registerSetIfNew(Set<RefLikeType> include, Set<AnySubType> exclude) {
 			if (INSTRUMENTING) {
 				registrationCalls++;
 			}
@@ -395,13 +395,20 @@ public final class ThrowableSet {
 	 */
 	private Map<Object, ThrowableSet> memoizedAdds;
 
-	private ThrowableSet getMemoizedAdds(Object key) {
+	private synchronized ThrowableSet getMemoizedAdds(Object key) {
 		if (memoizedAdds == null) {
 			memoizedAdds = new HashMap<Object, ThrowableSet>();
 		}
 		return memoizedAdds.get(key);
 	}
 
+	private synchronized void addToMemoizedAdds(Object key, ThrowableSet value) {
+		if (memoizedAdds == null) {
+			memoizedAdds = new HashMap<Object, ThrowableSet>();
+		}
+		memoizedAdds.put(key, value);
+	}
+
 	/**
 	 * Constructs a <code>ThrowableSet</code> which contains the exception types
 	 * represented in <code>include</code>, except for those which are also in
@@ -525,7 +532,7 @@ public final class ThrowableSet {
 					RefType incumbentBase = ((AnySubType) incumbent)
 							.getBase();
 					if (hierarchy.canStoreType(e, incumbentBase)) {
-						memoizedAdds.put(e, this);
+						addToMemoizedAdds(e, this);
 						return this;
 					}
 				} else if (!(incumbent instanceof RefType)) {
@@ -539,7 +546,7 @@ public final class ThrowableSet {
 		Set<RefLikeType> resultSet = new HashSet<RefLikeType>(this.exceptionsIncluded);
 		resultSet.add(e);
 		result = Manager.v().registerSetIfNew(resultSet, this.exceptionsExcluded);
-		memoizedAdds.put(e, result);
+		addToMemoizedAdds(e, result);
 		return result;
 	}
 
@@ -689,7 +696,7 @@ public final class ThrowableSet {
 		} else {
 			result = this;
 		}
-		memoizedAdds.put(e, result);
+		addToMemoizedAdds(e, result);
 		return result;
 	}
 
@@ -725,7 +732,7 @@ public final class ThrowableSet {
 				Manager.v().addsExclusionWithoutSearch++;
 			}
 			result = this.add(s.exceptionsIncluded);
-			memoizedAdds.put(s, result);
+			addToMemoizedAdds(s, result);
 		} else if (INSTRUMENTING) {
 			Manager.v().addsInclusionFromMemo++;
 			Manager.v().addsExclusionWithoutSearch++;
@@ -28,6 +28,7 @@ import soot.BodyTransformer;
 import soot.G;
 import soot.Scene;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Trap;
 import soot.Unit;
 import soot.jimple.toolkits.scalar.UnreachableCodeEliminator;
@@ -52,7 +53,7 @@ import soot.util.Chain;
  * unrealizable exceptional control flow edges have been removed.
  */
 
-public final class TrapTightener extends TrapTransformer {
+public final class TrapTightener extends TrapTransformer implements ThreadSafeBodyTransformer {
 
 	protected ThrowAnalysis throwAnalysis = null;
 
@@ -77,7 +78,8 @@ public final class TrapTightener extends TrapTransformer {
 		Chain<Trap> trapChain = body.getTraps();
 		Chain<Unit> unitChain = body.getUnits();
 		if (trapChain.size() > 0) {
-			ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body, throwAnalysis);
+			ExceptionalUnitGraph graph = body.getAnalysisCache().getExceptionalUnitGraph(throwAnalysis,
+					Options.v().omit_excepting_unit_edges());
 			Set<Unit> unitsWithMonitor = getUnitsWithMonitor(graph);
 
 			for (Iterator<Trap> trapIt = trapChain.iterator(); trapIt.hasNext();) {
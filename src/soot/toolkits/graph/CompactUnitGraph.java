@@ -0,0 +1,326 @@
+package soot.toolkits.graph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import soot.Body;
+import soot.Timers;
+import soot.Unit;
+import soot.UnitBox;
+import soot.options.Options;
+
+/**
+ *  <p>
+ *  A CFG over the {@link Unit}s of a body, stored in arrays of ints.</p>
+ *
+ *  <p>
+ *  The units are numbered densely, in the order of the body, and the
+ *  successors and predecessors of each unit are ranges of int arrays
+ *  indexed by these numbers. No maps or lists are built per unit: the lists
+ *  returned by {@link #getSuccsOf(Unit)} and {@link #getPredsOf(Unit)} are
+ *  views of the arrays, and analyses that know about this class can use
+ *  the numbers directly, through {@link #numberOf(Unit)},
+ *  {@link #unitAt(int)}, {@link #succCount(int)}, {@link #succ(int, int)},
+ *  {@link #predCount(int)} and {@link #pred(int, int)}.</p>
+ *
+ *  <p>
+ *  Built from a body, the graph has the same edges, heads and tails, in
+ *  the same order, as a {@link BriefUnitGraph}. It can also be built from
+ *  any other {@link UnitGraph}, such as an {@link ExceptionalUnitGraph},
+ *  to keep its edges in less memory. Either way, the protected maps of
+ *  {@link UnitGraph} are left null.</p>
+ */
+public class CompactUnitGraph extends UnitGraph
+{
+    private final Unit[] units;
+    /** Open-addressing table from units, by identity, to their numbers. */
+    private final Unit[] tableKeys;
+    private final int[] tableValues;
+    private final int[] succOffsets;
+    private final int[] succTargets;
+    private final int[] predOffsets;
+    private final int[] predSources;
+
+    /**
+     *   Constructs a graph of the unexceptional control flow of body.
+     *   @param body The underlying body we want to make a
+     *               graph for.
+     */
+    public CompactUnitGraph(Body body)
+    {
+        super(body);
+
+        if(Options.v().time())
+            Timers.v().graphTimer.start();
+
+        units = unitChain.toArray(new Unit[unitChain.size()]);
+        int n = units.length;
+        tableKeys = new Unit[tableSize(n)];
+        tableValues = new int[tableKeys.length];
+        for (int i = 0; i < n; i++) {
+            insert(units[i], i);
+        }
+
+        succOffsets = new int[n + 1];
+        int[] targets = new int[n + 8];
+        int count = 0;
+        int[] predCounts = new int[n];
+        for (int i = 0; i < n; i++) {
+            Unit u = units[i];
+            succOffsets[i] = count;
+            if (u.fallsThrough() && i + 1 < n) {
+                if (count == targets.length)
+                    targets = Arrays.copyOf(targets, 2 * count);
+                targets[count++] = i + 1;
+            }
+            if (u.branches()) {
+                for (UnitBox box : u.getUnitBoxes()) {
+                    int t = numberOf(box.getUnit());
+                    if (t < 0)
+                        throw new RuntimeException("Unit graph contains jump to non-existing target");
+                    // Arbitrary bytecode can branch to the same
+                    // target it falls through to, so we screen for duplicates:
+                    if (contains(targets, succOffsets[i], count, t))
+                        continue;
+                    if (count == targets.length)
+                        targets = Arrays.copyOf(targets, 2 * count);
+                    targets[count++] = t;
+                }
+            }
+            for (int k = succOffsets[i]; k < count; k++) {
+                predCounts[targets[k]]++;
+            }
+        }
+        succOffsets[n] = count;
+        succTargets = count == targets.length ? targets : Arrays.copyOf(targets, count);
+
+        predOffsets = new int[n + 1];
+        predSources = new int[count];
+        buildPreds(predCounts);
+        buildHeadsAndTails();
+
+        if(Options.v().time())
+            Timers.v().graphTimer.end();
+
+        soot.util.PhaseDumper.v().dumpGraph(this, body);
+    }
+
+    /**
+     *   Constructs a graph with the same units, edges, heads and tails as
+     *   graph, whose edges must all be between units of its body.
+     *   @param graph The graph to copy.
+     */
+    public CompactUnitGraph(UnitGraph graph)
+    {
+        super(graph.getBody());
+        units = unitChain.toArray(new Unit[unitChain.size()]);
+        int n = units.length;
+        tableKeys = new Unit[tableSize(n)];
+        tableValues = new int[tableKeys.length];
+        for (int i = 0; i < n; i++) {
+            insert(units[i], i);
+        }
+
+        succOffsets = new int[n + 1];
+        succTargets = copyEdges(graph, true, succOffsets);
+        predOffsets = new int[n + 1];
+        predSources = copyEdges(graph, false, predOffsets);
+        heads = graph.getHeads();
+        tails = graph.getTails();
+    }
+
+    /** Returns the successors or predecessors of each unit in graph, in
+     * the order of graph, filling in the offsets of each unit's range. */
+    private int[] copyEdges(UnitGraph graph, boolean succs, int[] offsets) {
+        int n = units.length;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += (succs ? graph.getSuccsOf(units[i]) : graph.getPredsOf(units[i])).size();
+        }
+        int[] ret = new int[count];
+        count = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = count;
+            for (Unit u : succs ? graph.getSuccsOf(units[i]) : graph.getPredsOf(units[i])) {
+                ret[count++] = numberOf(u);
+            }
+        }
+        offsets[n] = count;
+        return ret;
+    }
+
+    /** Fills in the predecessors, in the order of their numbers, given the
+     * number of predecessors of each unit. */
+    private void buildPreds(int[] predCounts) {
+        int n = units.length;
+        for (int i = 0; i < n; i++) {
+            predOffsets[i + 1] = predOffsets[i] + predCounts[i];
+        }
+        int[] next = Arrays.copyOf(predOffsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int k = succOffsets[i]; k < succOffsets[i + 1]; k++) {
+                predSources[next[succTargets[k]]++] = i;
+            }
+        }
+    }
+
+    @Override
+    protected void buildHeadsAndTails() {
+        int n = units.length;
+        int headCount = 0, tailCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (predCount(i) == 0) headCount++;
+            if (succCount(i) == 0) tailCount++;
+        }
+        // Add the first Unit, even if it is the target of
+        // a branch.
+        boolean entryIsTarget = n > 0 && predCount(0) > 0;
+        int[] headNumbers = new int[entryIsTarget ? headCount + 1 : headCount];
+        int[] tailNumbers = new int[tailCount];
+        headCount = tailCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (predCount(i) == 0) headNumbers[headCount++] = i;
+            if (succCount(i) == 0) tailNumbers[tailCount++] = i;
+        }
+        if (entryIsTarget) headNumbers[headCount] = 0;
+        heads = new UnitList(headNumbers, 0, headNumbers.length);
+        tails = new UnitList(tailNumbers, 0, tailNumbers.length);
+    }
+
+    private static int tableSize(int n) {
+        int size = 4;
+        while (size < 2 * n) size <<= 1;
+        return size;
+    }
+
+    private static int hash(Unit u) {
+        int h = System.identityHashCode(u) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void insert(Unit u, int number) {
+        int mask = tableKeys.length - 1;
+        int i = hash(u) & mask;
+        while (tableKeys[i] != null) {
+            if (tableKeys[i] == u) return;
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = u;
+        tableValues[i] = number;
+    }
+
+    private static boolean contains(int[] a, int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            if (a[i] == value) return true;
+        }
+        return false;
+    }
+
+    /** Returns the number of u, or -1 if u is not in this graph. */
+    public int numberOf(Unit u) {
+        int mask = tableKeys.length - 1;
+        int i = hash(u) & mask;
+        Unit k;
+        while ((k = tableKeys[i]) != null) {
+            if (k == u) return tableValues[i];
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Returns the unit numbered n. */
+    public Unit unitAt(int n) {
+        return units[n];
+    }
+
+    /** Returns the number of successors of the unit numbered n. */
+    public int succCount(int n) {
+        return succOffsets[n + 1] - succOffsets[n];
+    }
+
+    /** Returns the number of the k-th successor of the unit numbered n. */
+    public int succ(int n, int k) {
+        return succTargets[succOffsets[n] + k];
+    }
+
+    /** Returns the number of predecessors of the unit numbered n. */
+    public int predCount(int n) {
+        return predOffsets[n + 1] - predOffsets[n];
+    }
+
+    /** Returns the number of the k-th predecessor of the unit numbered n. */
+    public int pred(int n, int k) {
+        return predSources[predOffsets[n] + k];
+    }
+
+    private int checkedNumberOf(Unit u) {
+        int n = numberOf(u);
+        if (n < 0)
+            throw new NoSuchElementException("Invalid unit " + u);
+        return n;
+    }
+
+    @Override
+    public List<Unit> getPredsOf(Unit u)
+    {
+        int n = checkedNumberOf(u);
+        return new UnitList(predSources, predOffsets[n], predOffsets[n + 1]);
+    }
+
+    @Override
+    public List<Unit> getSuccsOf(Unit u)
+    {
+        int n = checkedNumberOf(u);
+        return new UnitList(succTargets, succOffsets[n], succOffsets[n + 1]);
+    }
+
+    @Override
+    public int size()
+    {
+        return units.length;
+    }
+
+    @Override
+    public Iterator<Unit> iterator()
+    {
+        return Collections.unmodifiableList(Arrays.asList(units)).iterator();
+    }
+
+    /** An unmodifiable list of the units whose numbers are in a range of an
+     * array. */
+    private class UnitList extends AbstractList<Unit> implements RandomAccess {
+        private final int[] numbers;
+        private final int from, to;
+
+        UnitList(int[] numbers, int from, int to) {
+            this.numbers = numbers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Unit get(int index) {
+            if (index < 0 || index >= to - from)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            return units[numbers[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (int i = from; i < to; i++) {
+                if (units[numbers[i]] == o) return true;
+            }
+            return false;
+        }
+    }
+}
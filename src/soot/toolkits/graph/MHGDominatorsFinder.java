@@ -28,6 +28,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import soot.Unit;
 
 /**
   * Calculate dominators for basic blocks.
@@ -72,47 +75,95 @@ public class MHGDominatorsFinder<N> implements DominatorsFinder<N>
         //build full set
         fullSet = new BitSet(graph.size());
         fullSet.flip(0, graph.size());//set all to true
-        
+
+        //number the heads first, then the other nodes, both in the order of
+        //the graph, and find the predecessors of each node by number, so
+        //that the iteration below does no hashing
+        List<N> nodes = new ArrayList<N>(graph.size());
+        Set<N> headSet = new HashSet<N>(heads);
+        for(N o : graph){
+            if(headSet.contains(o)) nodes.add(o);
+        }
+        int headCount = nodes.size();
+        for(N o : graph){
+            if(!headSet.contains(o)) nodes.add(o);
+        }
+        for(N o : nodes){
+            indexOf(o);
+        }
+        int[][] preds = predecessors(nodes);
+    
         //set up domain for intersection: head nodes are only dominated by themselves,
         //other nodes are dominated by everything else
-        for(Iterator<N> i = graph.iterator(); i.hasNext();){
-            N o = i.next();
-            if(heads.contains(o)){
+        BitSet[] flowSets = new BitSet[nodes.size()];
+        for(int i = 0; i < flowSets.length; i++){
+            if(i < headCount){
                 BitSet self = new BitSet();
-                self.set(indexOf(o));
-                nodeToFlowSet.put(o, self);
+                self.set(i);
+                flowSets[i] = self;
             }
             else{
-                nodeToFlowSet.put(o, fullSet);
+                flowSets[i] = fullSet;
             }
         }
     
         boolean changed = true;
         do{
             changed = false;
-            for(Iterator<N> i = graph.iterator(); i.hasNext();){
-                N o = i.next();
-                if(heads.contains(o)) continue;
-    
+            for(int i = headCount; i < flowSets.length; i++){
                 //initialize to the "neutral element" for the intersection
                 //this clone() is fast on BitSets (opposed to on HashSets)
 				BitSet predsIntersect = (BitSet) fullSet.clone();
     
                 //intersect over all predecessors
-                for(Iterator<N> j = graph.getPredsOf(o).iterator(); j.hasNext();){
-                    BitSet predSet = nodeToFlowSet.get(j.next());
-                    predsIntersect.and(predSet);
+                for(int p : preds[i]){
+                    predsIntersect.and(flowSets[p]);
                 }
     
-                BitSet oldSet = nodeToFlowSet.get(o);
                 //each node dominates itself
-                predsIntersect.set(indexOf(o));
-                if(!predsIntersect.equals(oldSet)){
-                    nodeToFlowSet.put(o, predsIntersect);
+                predsIntersect.set(i);
+                if(!predsIntersect.equals(flowSets[i])){
+                    flowSets[i] = predsIntersect;
                     changed = true;
                 }
             }
         } while(changed);
+
+        for(int i = 0; i < flowSets.length; i++){
+            nodeToFlowSet.put(nodes.get(i), flowSets[i]);
+        }
+    }
+
+    /** Returns, for each of the given nodes, the indices of its
+     * predecessors; nodes must be in index order. */
+    private int[][] predecessors(List<N> nodes) {
+        int[][] ret = new int[nodes.size()][];
+        if(graph instanceof CompactUnitGraph){
+            //translate the graph's own numbers, saving a lookup per edge
+            CompactUnitGraph g = (CompactUnitGraph) graph;
+            int[] index = new int[g.size()];
+            for(int i = 0; i < nodes.size(); i++){
+                index[g.numberOf((Unit) nodes.get(i))] = i;
+            }
+            for(int i = 0; i < nodes.size(); i++){
+                int n = g.numberOf((Unit) nodes.get(i));
+                int[] p = new int[g.predCount(n)];
+                for(int k = 0; k < p.length; k++){
+                    p[k] = index[g.pred(n, k)];
+                }
+                ret[i] = p;
+            }
+            return ret;
+        }
+        for(int i = 0; i < nodes.size(); i++){
+            List<N> predList = graph.getPredsOf(nodes.get(i));
+            int[] p = new int[predList.size()];
+            for(int k = 0; k < p.length; k++){
+                p[k] = indexOf(predList.get(k));
+            }
+            ret[i] = p;
+        }
+        return ret;
     }
     
     protected int indexOf(N o) {
@@ -37,7 +37,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
+import soot.Unit;
 import soot.options.Options;
+import soot.toolkits.graph.CompactUnitGraph;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.interaction.FlowInfo;
 import soot.toolkits.graph.interaction.InteractionHandler;
@@ -213,6 +215,26 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 					}
 				};
 			}
+
+			@Override
+			<D, F> Graph<Entry<D, F>> newCompactGraph(final CompactUnitGraph g) {
+				return new CompactGraph<D, F>(g) {
+					@Override
+					List<Unit> roots() {
+						return g.getTails();
+					}
+
+					@Override
+					int count(int n) {
+						return g.predCount(n);
+					}
+
+					@Override
+					int at(int n, int k) {
+						return g.pred(n, k);
+					}
+				};
+			}
 		},
 
 		FORWARD {
@@ -230,9 +252,81 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 					}
 				};
 			}
+
+			@Override
+			<D, F> Graph<Entry<D, F>> newCompactGraph(final CompactUnitGraph g) {
+				return new CompactGraph<D, F>(g) {
+					@Override
+					List<Unit> roots() {
+						return g.getHeads();
+					}
+
+					@Override
+					int count(int n) {
+						return g.succCount(n);
+					}
+
+					@Override
+					int at(int n, int k) {
+						return g.succ(n, k);
+					}
+				};
+			}
 		};
 		
 		abstract <K,V> Graph<V> newGraph(DirectedGraph<K> g, Mapper<K,V> mapper);
+
+		/**
+		 * Creates an {@code Entry} graph that reads the edges of a
+		 * {@link CompactUnitGraph} from its arrays, and keeps the entries in
+		 * an array indexed by unit numbers rather than in a map.
+		 */
+		abstract <D, F> Graph<Entry<D, F>> newCompactGraph(CompactUnitGraph g);
+		
+		private static abstract class CompactGraph<D, F> implements Graph<Entry<D, F>> {
+			final CompactUnitGraph g;
+			final Entry<D, F>[] entries;
+
+			CompactGraph(CompactUnitGraph g) {
+				this.g = g;
+				entries = Arrays.copyOf(Entry.<D, F>emptyEntries(), g.size());
+			}
+
+			abstract List<Unit> roots();
+			abstract int count(int n);
+			abstract int at(int n, int k);
+
+			Entry<D, F> entry(int n) {
+				Entry<D, F> e = entries[n];
+				if (e == null) {
+					// the nodes of a CompactUnitGraph are units
+					@SuppressWarnings("unchecked")
+					D d = (D) g.unitAt(n);
+					entries[n] = e = Entry.newEntry(d);
+				}
+				return e;
+			}
+
+			@Override
+			public Entry<D, F>[] get() {
+				List<Unit> roots = roots();
+				Entry<D, F>[] a = Arrays.copyOf(Entry.<D, F>emptyEntries(), roots.size());
+				for (int i = 0; i < a.length; i++) {
+					a[i] = entry(g.numberOf(roots.get(i)));
+				}
+				return a;
+			}
+
+			@Override
+			public Entry<D, F>[] get(Entry<D, F> v) {
+				int n = g.numberOf((Unit) v.data);
+				Entry<D, F>[] a = Arrays.copyOf(Entry.<D, F>emptyEntries(), count(n));
+				for (int k = 0; k < a.length; k++) {
+					a[k] = entry(at(n, k));
+				}
+				return a;
+			}
+		}
 		
 		private static interface Graph<D> {
 			D[] get();
@@ -278,6 +372,13 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 		 */
 		<D, F> List<Entry<D, F>> newUniverse (DirectedGraph<D> g, F f) {
 			final int N = g.size();
+
+			if (g instanceof CompactUnitGraph) {
+				Entry<D, F> v = Entry.newEntry(null);
+				v.inFlow = v.outFlow = f;
+				Graph<Entry<D, F>> graph = newCompactGraph((CompactUnitGraph) g);
+				return buildUniverse(graph, Arrays.copyOf(Entry.<D, F>emptyEntries(), N), v);
+			}
 			
 			Mapper<D, Entry<D, F>> mapper = new Mapper<D, Entry<D, F>>() {
 				final Map<D, Entry<D, F>> map = new IdentityHashMap<D, Entry<D, F>>((2*N)+1);
@@ -0,0 +1,384 @@
+package soot.toolkits.scalar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.Unit;
+import soot.toolkits.graph.CompactUnitGraph;
+import soot.toolkits.graph.DirectedGraph;
+
+/**
+ * A dataflow analysis whose flow function at every node is
+ * <code>out = gen | (in & ~kill)</code>, solved over bit vectors.
+ *
+ * <p>Subclasses pass the universe of facts to the constructor, and give the
+ * gen and kill sets of each node once, in {@link #genAndKill}. The solver
+ * keeps the in, out, gen and kill sets of each node as rows of
+ * <code>long</code>s, one bit per fact, and visits the nodes from a
+ * worklist ordered by reverse post-order of the graph (of the reversed
+ * graph for a backward analysis), so that in most iterations a node is
+ * visited after the nodes it merges. No flow sets are allocated while
+ * solving, and a meet or a transfer takes one word operation per 64 facts.
+ * Unlike {@link FlowAnalysis}, nodes that are not reached from the entries,
+ * such as a loop without exit in a backward analysis, get sets too.
+ *
+ * <p>Only analyses whose flow functions have this form, such as live
+ * locals or reaching definitions, can use this class; the others should
+ * extend {@link FlowAnalysis}.
+ *
+ * @param <N> the type of the nodes of the graph
+ * @param <E> the type of the facts
+ */
+public abstract class GenKillAnalysis<N, E> {
+    protected final DirectedGraph<N> graph;
+    private final boolean forward;
+    private final boolean may;
+    private final List<E> universe;
+    private final Map<E, Integer> indices;
+    private final int words;
+
+    /** The number of each node, by its position in graph.iterator(), unless
+     * graph is a {@link CompactUnitGraph}, whose numbers are used instead. */
+    private Map<N, Integer> numbers;
+    private long[] before;
+    private long[] after;
+    private int visits;
+
+    /**
+     * @param graph the graph to analyze
+     * @param universe the facts the sets may contain, each once
+     * @param forward whether facts flow along edges, or against them
+     * @param may whether the meet is union, or intersection
+     */
+    protected GenKillAnalysis(DirectedGraph<N> graph, Collection<? extends E> universe,
+            boolean forward, boolean may) {
+        this.graph = graph;
+        this.forward = forward;
+        this.may = may;
+        this.universe = new ArrayList<E>(universe);
+        indices = new HashMap<E, Integer>(universe.size() * 2 + 1, 0.7f);
+        for (E e : this.universe) {
+            if (indices.put(e, indices.size()) != null)
+                throw new IllegalArgumentException("Fact " + e + " appears twice in the universe");
+        }
+        words = (this.universe.size() + 63) >>> 6;
+    }
+
+    /**
+     * Adds to gen the facts node generates, and to kill the facts it kills,
+     * using {@link #add(long[], Object)}. Both rows are empty on entry. A
+     * fact both generated and killed holds after the node.
+     */
+    protected abstract void genAndKill(N node, long[] gen, long[] kill);
+
+    /**
+     * Adds to row the facts that hold at the entry of the graph, the heads
+     * for a forward analysis and the tails for a backward one. The default
+     * is none.
+     */
+    protected void entryFlow(long[] row) {
+    }
+
+    /** Adds fact to the set row. */
+    protected final void add(long[] row, E fact) {
+        int i = indexOf(fact);
+        row[i >>> 6] |= 1L << i;
+    }
+
+    /** Returns the position of fact in the universe. */
+    protected final int indexOf(E fact) {
+        Integer i = indices.get(fact);
+        if (i == null)
+            throw new IllegalArgumentException("Fact " + fact + " is not in the universe");
+        return i;
+    }
+
+    /** Returns the facts the sets may contain, in order. */
+    public List<E> getUniverse() {
+        return universe;
+    }
+
+    /** Returns the facts that hold just before s, in universe order. */
+    public List<E> getFlowBefore(N s) {
+        return toList(analyzed(before), number(s));
+    }
+
+    /** Returns the facts that hold just after s, in universe order. */
+    public List<E> getFlowAfter(N s) {
+        return toList(analyzed(after), number(s));
+    }
+
+    /** Returns whether fact holds just before s. A fact that is not in
+     * the universe never holds. */
+    public boolean isBefore(N s, E fact) {
+        return contains(analyzed(before), number(s), fact);
+    }
+
+    /** Returns whether fact holds just after s. A fact that is not in
+     * the universe never holds. */
+    public boolean isAfter(N s, E fact) {
+        return contains(analyzed(after), number(s), fact);
+    }
+
+    /** Returns the number of times the flow function was applied. */
+    public int getVisitCount() {
+        return visits;
+    }
+
+    private boolean contains(long[] rows, int node, E fact) {
+        Integer i = indices.get(fact);
+        if (i == null)
+            return false;
+        return (rows[node * words + (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    private long[] analyzed(long[] rows) {
+        if (rows == null)
+            throw new IllegalStateException("doAnalysis() has not been called");
+        return rows;
+    }
+
+    private List<E> toList(long[] rows, int node) {
+        List<E> ret = new ArrayList<E>();
+        int base = node * words;
+        for (int w = 0; w < words; w++) {
+            long bits = rows[base + w];
+            while (bits != 0) {
+                ret.add(universe.get((w << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return ret;
+    }
+
+    private int number(N node) {
+        Integer ret = null;
+        if (numbers == null) {
+            if (!(graph instanceof CompactUnitGraph))
+                throw new IllegalStateException("doAnalysis() has not been called");
+            int n = ((CompactUnitGraph) graph).numberOf((Unit) node);
+            if (n >= 0) return n;
+        } else {
+            ret = numbers.get(node);
+        }
+        if (ret == null)
+            throw new IllegalArgumentException("Node " + node + " is not in the graph");
+        return ret;
+    }
+
+    /**
+     * Computes the sets before and after each node. This must be called
+     * before the results are asked for.
+     */
+    protected void doAnalysis() {
+        final int n = graph.size();
+        List<N> nodes = new ArrayList<N>(n);
+        for (N node : graph)
+            nodes.add(node);
+        if (graph instanceof CompactUnitGraph) {
+            numbers = null;
+        } else {
+            numbers = new IdentityHashMap<N, Integer>(n * 2 + 1);
+            for (N node : nodes)
+                numbers.put(node, numbers.size());
+        }
+
+        // edges in the direction of the analysis: a node meets the out sets
+        // of its sources, and its targets are revisited when its out set
+        // changes
+        int[] dstOffsets = new int[n + 1];
+        int[] targets = edges(nodes, forward, dstOffsets);
+        int[] srcOffsets = new int[n + 1];
+        int[] sources = reverse(dstOffsets, targets, srcOffsets);
+
+        boolean[] isEntry = new boolean[n];
+        for (N entry : forward ? graph.getHeads() : graph.getTails())
+            isEntry[number(entry)] = true;
+        int[] order = reversePostOrder(isEntry, dstOffsets, targets);
+
+        long[] gen = new long[n * words];
+        long[] kill = new long[n * words];
+        long[] genRow = new long[words];
+        long[] killRow = new long[words];
+        for (int i = 0; i < n; i++) {
+            genAndKill(nodes.get(i), genRow, killRow);
+            System.arraycopy(genRow, 0, gen, i * words, words);
+            System.arraycopy(killRow, 0, kill, i * words, words);
+            Arrays.fill(genRow, 0L);
+            Arrays.fill(killRow, 0L);
+        }
+        long[] entryRow = new long[words];
+        entryFlow(entryRow);
+        long[] initRow = new long[words];
+        if (!may) {
+            Arrays.fill(initRow, -1L);
+            if ((universe.size() & 63) != 0)
+                initRow[words - 1] = (1L << universe.size()) - 1;
+        }
+
+        long[] in = new long[n * words];
+        long[] out = new long[n * words];
+        for (int i = 0; i < n; i++)
+            System.arraycopy(initRow, 0, out, i * words, words);
+
+        int[] positionOf = new int[n];
+        for (int p = 0; p < n; p++)
+            positionOf[order[p]] = p;
+        BitSet pending = new BitSet(n);
+        pending.set(0, n);
+        int p = 0;
+        visits = 0;
+        while (true) {
+            p = pending.nextSetBit(p);
+            if (p < 0) {
+                p = pending.nextSetBit(0);
+                if (p < 0)
+                    break;
+            }
+            pending.clear(p);
+            int i = order[p];
+            visits++;
+
+            // meet
+            int row = i * words;
+            int k = srcOffsets[i];
+            int end = srcOffsets[i + 1];
+            if (isEntry[i])
+                System.arraycopy(entryRow, 0, in, row, words);
+            else if (k == end)
+                System.arraycopy(initRow, 0, in, row, words);
+            else
+                System.arraycopy(out, sources[k++] * words, in, row, words);
+            for (; k < end; k++) {
+                int src = sources[k] * words;
+                if (may) {
+                    for (int w = 0; w < words; w++)
+                        in[row + w] |= out[src + w];
+                } else {
+                    for (int w = 0; w < words; w++)
+                        in[row + w] &= out[src + w];
+                }
+            }
+
+            // transfer
+            boolean changed = false;
+            for (int w = row; w < row + words; w++) {
+                long v = gen[w] | (in[w] & ~kill[w]);
+                if (v != out[w]) {
+                    out[w] = v;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                for (k = dstOffsets[i]; k < dstOffsets[i + 1]; k++)
+                    pending.set(positionOf[targets[k]]);
+            }
+            p++;
+        }
+
+        if (forward) {
+            before = in;
+            after = out;
+        } else {
+            before = out;
+            after = in;
+        }
+    }
+
+    /** Returns the successors of each node if succs, or else its
+     * predecessors, filling in the offsets of each node's range. */
+    private int[] edges(List<N> nodes, boolean succs, int[] offsets) {
+        int n = nodes.size();
+        if (graph instanceof CompactUnitGraph) {
+            CompactUnitGraph g = (CompactUnitGraph) graph;
+            for (int i = 0; i < n; i++)
+                offsets[i + 1] = offsets[i] + (succs ? g.succCount(i) : g.predCount(i));
+            int[] ret = new int[offsets[n]];
+            for (int i = 0; i < n; i++) {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                    ret[k] = succs ? g.succ(i, k - offsets[i]) : g.pred(i, k - offsets[i]);
+            }
+            return ret;
+        }
+        List<List<N>> lists = new ArrayList<List<N>>(n);
+        for (int i = 0; i < n; i++) {
+            N node = nodes.get(i);
+            List<N> list = succs ? graph.getSuccsOf(node) : graph.getPredsOf(node);
+            lists.add(list);
+            offsets[i + 1] = offsets[i] + list.size();
+        }
+        int[] ret = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (N other : lists.get(i))
+                ret[k++] = number(other);
+        }
+        return ret;
+    }
+
+    /** Returns the edges given by offsets and targets reversed, filling in
+     * the offsets of each node's range in reversedOffsets. */
+    private static int[] reverse(int[] offsets, int[] targets, int[] reversedOffsets) {
+        int n = offsets.length - 1;
+        for (int t : targets)
+            reversedOffsets[t + 1]++;
+        for (int i = 0; i < n; i++)
+            reversedOffsets[i + 1] += reversedOffsets[i];
+        int[] next = Arrays.copyOf(reversedOffsets, n);
+        int[] ret = new int[targets.length];
+        for (int i = 0; i < n; i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                ret[next[targets[k]]++] = i;
+        }
+        return ret;
+    }
+
+    /** Returns the nodes in reverse post-order of a depth-first search along
+     * targets from each entry, then from each node not reached yet, the
+     * nodes reached from each root following those of the roots before. */
+    private static int[] reversePostOrder(boolean[] isEntry, int[] offsets, int[] targets) {
+        int n = isEntry.length;
+        int[] order = new int[n];
+        int count = 0;
+        boolean[] visited = new boolean[n];
+        int[] stack = new int[n];
+        int[] edge = new int[n];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int root = 0; root < n; root++) {
+                if (visited[root] || (pass == 0 && !isEntry[root]))
+                    continue;
+                int start = count;
+                int top = 0;
+                stack[0] = root;
+                edge[0] = offsets[root];
+                visited[root] = true;
+                while (top >= 0) {
+                    int node = stack[top];
+                    if (edge[top] < offsets[node + 1]) {
+                        int t = targets[edge[top]++];
+                        if (!visited[t]) {
+                            visited[t] = true;
+                            stack[++top] = t;
+                            edge[top] = offsets[t];
+                        }
+                    } else {
+                        order[count++] = node;
+                        top--;
+                    }
+                }
+                for (int i = start, j = count - 1; i < j; i++, j--) {
+                    int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                }
+            }
+        }
+        return order;
+    }
+}
@@ -45,7 +45,7 @@ public interface LiveLocals
 	static final public class Factory {
 		private Factory() {}
 		public static LiveLocals newLiveLocals(UnitGraph graph) {
-			return new SimpleLiveLocals(graph);
+			return graph.getBody().getAnalysisCache().getLiveLocals(graph);
 		}
 	}
 	
@@ -35,7 +35,6 @@ import java.util.List;
 import soot.Body;
 import soot.Local;
 import soot.Unit;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 
 /**
@@ -62,7 +61,9 @@ public interface LocalDefs
 		/**
 		 * Creates a new LocalDefs analysis based on a {@code ExceptionalUnitGraph}
 		 * If you don't trust the input you should set <code>expectUndefined</code>
-		 * to <code>true</code>
+		 * to <code>true</code>. The graph and the analysis are taken from
+		 * the body's {@link soot.BodyAnalysisCache} if the body has not changed
+		 * since they were computed.
 		 * 
 		 * @see soot.toolkits.graph.ExceptionalUnitGraph#ExceptionalUnitGraph(Body)
 		 * @param body
@@ -70,7 +71,7 @@ public interface LocalDefs
 		 * @return a new LocalDefs instance
 		 */
 		public static LocalDefs newLocalDefs(Body body, boolean expectUndefined) {
-			return newLocalDefs(new ExceptionalUnitGraph(body), expectUndefined);
+			return newLocalDefs(body.getAnalysisCache().getExceptionalUnitGraph(), expectUndefined);
 		}
 		
 		/**
@@ -87,7 +88,8 @@ public interface LocalDefs
 		/**
 		 * Creates a new LocalDefs analysis based on a given {@code UnitGraph}.
 		 * If you don't trust the input you should set <code>expectUndefined</code>
-		 * to <code>true</code>
+		 * to <code>true</code>. If the graph came from the body's
+		 * {@link soot.BodyAnalysisCache}, so does the analysis.
 		 * 
 		 * @see soot.toolkits.graph.UnitGraph#UnitGraph(Body)
 		 * @see soot.validation.UsesValidator
@@ -97,7 +99,7 @@ public interface LocalDefs
 		 */
 		public static LocalDefs newLocalDefs(UnitGraph graph, boolean expectUndefined) {
 			//return new SmartLocalDefs(graph, LiveLocals.Factory.newLiveLocals(graph)); 
-			return new SimpleLocalDefs(graph, expectUndefined);
+			return graph.getBody().getAnalysisCache().getLocalDefs(graph, expectUndefined);
 		}
 	}
 	
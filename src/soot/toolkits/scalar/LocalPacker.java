@@ -59,7 +59,7 @@ import soot.jimple.*;
  *    @see Body 
  *    @see LocalSplitter
  */
-public class LocalPacker extends BodyTransformer
+public class LocalPacker extends BodyTransformer implements ThreadSafeBodyTransformer
 {
     public LocalPacker( Singletons.Global g ) {}
     public static LocalPacker v() { return G.v().soot_toolkits_scalar_LocalPacker(); }
@@ -40,6 +40,7 @@ import soot.G;
 import soot.Local;
 import soot.Scene;
 import soot.Singletons;
+import soot.ThreadSafeBodyTransformer;
 import soot.Timers;
 import soot.Unit;
 import soot.Value;
@@ -70,7 +71,7 @@ import soot.util.NumberedSet;
  *    @see LocalPacker
  *    @see Body 
  */
-public class LocalSplitter extends BodyTransformer
+public class LocalSplitter extends BodyTransformer implements ThreadSafeBodyTransformer
 {
 	
 	protected ThrowAnalysis throwAnalysis;
@@ -110,7 +111,7 @@ public class LocalSplitter extends BodyTransformer
         	omitExceptingUnitEdges = Options.v().omit_excepting_unit_edges();
                 
         // Go through the definitions, building the webs
-    	ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body, throwAnalysis, omitExceptingUnitEdges);
+    	ExceptionalUnitGraph graph = body.getAnalysisCache().getExceptionalUnitGraph(throwAnalysis, omitExceptingUnitEdges);
  	
     	// run in panic mode on first split (maybe change this depending on the input source)
 		final LocalDefs defs = LocalDefs.Factory.newLocalDefs(graph, true);
@@ -51,7 +51,7 @@ public interface LocalUses
 		}
 		
 		public static LocalUses newLocalUses(Body body, LocalDefs localDefs) {
-			return new SimpleLocalUses(body, localDefs);
+			return body.getAnalysisCache().getLocalUses(localDefs);
 		}
 		
 		public static LocalUses newLocalUses(UnitGraph graph) {
@@ -25,7 +25,10 @@
 
 package soot.toolkits.scalar;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import soot.G;
 import soot.Local;
@@ -39,9 +42,12 @@ import soot.toolkits.graph.UnitGraph;
 
 /**
  * Analysis that provides an implementation of the LiveLocals interface.
+ * The live locals are solved as bit vectors by a {@link GenKillAnalysis},
+ * and listed in the order of the locals of the body, followed by the
+ * locals the units use or define that the body does not declare.
  */
 public class SimpleLiveLocals implements LiveLocals {
-	final FlowAnalysis<Unit, FlowSet<Local>> analysis;
+	final GenKillAnalysis<Unit, Local> analysis;
 
 	/**
 	 * Computes the analysis given a UnitGraph computed from a method body. It
@@ -60,49 +66,21 @@ public class SimpleLiveLocals implements LiveLocals {
 			G.v().out.println("[" + graph.getBody().getMethod().getName()
 					+ "]     Constructing SimpleLiveLocals...");
 
-		analysis = new BackwardFlowAnalysis<Unit, FlowSet<Local>>(graph) {
+		analysis = new GenKillAnalysis<Unit, Local>(graph,
+				localsOf(graph), false, true) {
 			@Override
-			protected FlowSet<Local> newInitialFlow() {
-				return new ArraySparseSet<Local>();
-			}
-
-			@Override
-			protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
-				copy(in, out);
-
-				// Perform kill
+			protected void genAndKill(Unit unit, long[] gen, long[] kill) {
 				for (ValueBox box : unit.getDefBoxes()) {
 					Value v = box.getValue();
-					if (v instanceof Local) {
-						Local l = (Local) v;
-						out.remove(l);
-					}
+					if (v instanceof Local)
+						add(kill, (Local) v);
 				}
-
-				// Perform generation
 				for (ValueBox box : unit.getUseBoxes()) {
 					Value v = box.getValue();
-					if (v instanceof Local) {
-						Local l = (Local) v;
-						out.add(l);
-					}
+					if (v instanceof Local)
+						add(gen, (Local) v);
 				}
 			}
-
-			@Override
-			protected void mergeInto(Unit succNode, FlowSet<Local> inout, FlowSet<Local> in) {
-				inout.union(in);
-			}
-
-			@Override
-			protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
-				in1.union(in2, out);
-			}
-
-			@Override
-			protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
-				source.copy(dest);
-			}
 		};
 
 		if (Options.v().time())
@@ -117,15 +95,29 @@ public class SimpleLiveLocals implements LiveLocals {
 			Timers.v().liveTimer.end();
 	}
 
+	/**
+	 * Returns the locals of the body, followed by any other local the units
+	 * of the graph use or define.
+	 */
+	private static Collection<Local> localsOf(UnitGraph graph) {
+		Set<Local> ret = new LinkedHashSet<Local>(graph.getBody().getLocals());
+		for (Unit u : graph) {
+			for (ValueBox box : u.getUseAndDefBoxes()) {
+				Value v = box.getValue();
+				if (v instanceof Local)
+					ret.add((Local) v);
+			}
+		}
+		return ret;
+	}
+
 	@Override
 	public List<Local> getLiveLocalsAfter(Unit s) {
-		// ArraySparseSet returns a unbacked list of elements!
-		return analysis.getFlowAfter(s).toList();
+		return analysis.getFlowAfter(s);
 	}
 
 	@Override
 	public List<Local> getLiveLocalsBefore(Unit s) {
-		// ArraySparseSet returns a unbacked list of elements!
-		return analysis.getFlowBefore(s).toList();
+		return analysis.getFlowBefore(s);
 	}
 }
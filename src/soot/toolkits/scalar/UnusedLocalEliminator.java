@@ -37,7 +37,7 @@ import java.util.*;
  * @see BodyTransformer
  * @see Body
  */
-public class UnusedLocalEliminator extends BodyTransformer {
+public class UnusedLocalEliminator extends BodyTransformer implements ThreadSafeBodyTransformer {
 	public UnusedLocalEliminator(Singletons.Global g) {
 	}
 
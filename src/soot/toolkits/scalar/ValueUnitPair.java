@@ -71,6 +71,7 @@ public class ValueUnitPair extends AbstractValueBox implements UnitBox, EquivTo
 
         // Perform link
         this.unit = unit;
+        Body.contentsModified();
 
         // Add this to back pointers
         if(this.unit != null){
@@ -19,33 +19,92 @@
 
 package soot.util;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /** A class that numbers objects, so they can be placed in bitsets.
+ *
+ * <p>Numbering is lock-free: numbers are handed out by an atomic counter,
+ * and objects are stored in fixed-size chunks, so growing the numberer
+ * never copies entries that other threads may be writing at the same
+ * time. Only allocating a new chunk takes a lock. Several threads may add
+ * objects concurrently, as long as each object is added by one thread.
+ * Instances of subclasses also keep the deprecated fields of the old
+ * array-based numberer up to date, which takes a lock on every add.
  *
  * @author Ondrej Lhotak
  * @author xiao, generalize it.
  */
 
 public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<E>[] chunks = newDirectory(16);
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /** Whether this is an instance of a subclass, which may read the
+     * deprecated fields below. */
+    private final boolean legacyFields = getClass() != ArrayNumberer.class;
+
+    /** The numbered objects indexed by their number. Only kept up to date
+     * in instances of subclasses, for code written against the old
+     * array-based numberer; changes made to it are not seen by this
+     * numberer.
+     * @deprecated use {@link #get(long)} or {@link #iterator()}. */
+    @Deprecated
     @SuppressWarnings("unchecked")
-    protected E[] numberToObj = (E[]) new Numberable[1024];
+    protected E[] numberToObj = legacyFields ? (E[]) new Numberable[1024] : null;
+    /** The highest number handed out so far. Only kept up to date in
+     * instances of subclasses, like numberToObj.
+     * @deprecated use {@link #size()}. */
+    @Deprecated
     protected int lastNumber = 0;
     
-    private void resize(int n) {
-    	E[] old = numberToObj;    	
-    	numberToObj = Arrays.copyOf(numberToObj, n);
-    	Arrays.fill(old, null);
-    }
-    
     public void add( E o ) {
         if( o.getNumber() != 0 ) return;
         
-        ++lastNumber;
-        if( lastNumber >= numberToObj.length ) {
-        	resize(numberToObj.length*2);
+        int number = counter.incrementAndGet();
+        chunkFor(number).set(number & CHUNK_MASK, o);
+        o.setNumber( number );
+        if( legacyFields ) updateLegacyFields( number, o );
+    }
+
+    private synchronized void updateLegacyFields( int number, E o ) {
+        if( number >= numberToObj.length ) {
+            numberToObj = Arrays.copyOf(numberToObj, Math.max(numberToObj.length*2, number+1));
+        }
+        numberToObj[number] = o;
+        if( number > lastNumber ) lastNumber = number;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> AtomicReferenceArray<E>[] newDirectory( int length ) {
+        return (AtomicReferenceArray<E>[]) new AtomicReferenceArray<?>[length];
+    }
+
+    private AtomicReferenceArray<E> chunkFor( int number ) {
+        int index = number >>> CHUNK_BITS;
+        AtomicReferenceArray<E>[] dir = chunks;
+        if( index < dir.length ) {
+            AtomicReferenceArray<E> chunk = dir[index];
+            if( chunk != null ) return chunk;
+        }
+        return allocateChunk(index);
+    }
+
+    private synchronized AtomicReferenceArray<E> allocateChunk( int index ) {
+        AtomicReferenceArray<E>[] dir = chunks;
+        if( index >= dir.length ) {
+            dir = Arrays.copyOf(dir, Math.max(dir.length*2, index+1));
+        }
+        if( dir[index] == null ) {
+            dir[index] = new AtomicReferenceArray<E>(CHUNK_SIZE);
         }
-        numberToObj[lastNumber] = o;
-        o.setNumber( lastNumber );
+        // (re-)publish the directory, so that the new chunk is visible
+        chunks = dir;
+        return dir[index];
     }
 
     public long get( E o ) {
@@ -57,25 +116,32 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
 
 	public E get( long number ) {
         if( number == 0 ) return null;
-		E ret = numberToObj[(int) number];
+        E ret = lookup( (int) number );
         if( ret == null ) throw new RuntimeException( "no object with number "+number );
         return ret;
     }
 
-    public int size() { 
-    	return lastNumber; 
+    private E lookup( int number ) {
+        int index = number >>> CHUNK_BITS;
+        AtomicReferenceArray<E>[] dir = chunks;
+        if( index >= dir.length || dir[index] == null ) return null;
+        return dir[index].get(number & CHUNK_MASK);
+    }
+
+    public int size() {
+    	return counter.get();
     }
 
     public Iterator<E> iterator() {
         return new Iterator<E>() {
             int cur = 1;
             public final boolean hasNext() {
-                return cur <= lastNumber && cur < numberToObj.length && numberToObj[cur] != null;
+                return cur <= counter.get() && lookup(cur) != null;
             }
 
     		public final E next() { 
                 if ( hasNext() ) {
-                	return numberToObj[cur++];
+                	return lookup(cur++);
                 }
                 throw new NoSuchElementException();
             }
@@ -30,27 +30,48 @@ import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
- * Reference implementation of the Chain interface, using a HashMap as the
- * underlying structure.
+ * Reference implementation of the Chain interface, using a hash table of
+ * doubly linked entries as the underlying structure.
+ *
+ * <p>Each element has one {@link Link}, which is both its entry in the hash
+ * table and its place in the chain, so adding an element allocates a single
+ * object. Links also carry increasing order labels, with gaps left between
+ * neighbours, which makes {@link #follows(Object, Object)} constant time.
  */
 public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
-	private final Map<E, Link<E>> map = new HashMap<E, Link<E>>();
-	private E firstItem;
-	private E lastItem;
+	/** The space left between the order labels of neighbouring links
+	 * whenever the chain is relabelled. */
+	private static final long ORDER_GAP = 1L << 20;
+
+	/** The largest range of labels, as a power of two, that is relabelled
+	 * around an insertion before the whole chain is. */
+	private static final int MAX_WINDOW_BITS = 62;
+
+	/** How many links a range of 2^i labels may hold for its labels to be
+	 * spread over it: (4/3)^i, so that larger ranges must be sparser. */
+	private static final long[] WINDOW_CAPACITY = new long[MAX_WINDOW_BITS + 1];
+	static {
+		for (int i = 0; i <= MAX_WINDOW_BITS; i++)
+			WINDOW_CAPACITY[i] = (long) Math.pow(4.0 / 3.0, i);
+	}
+
+	private Link<E>[] table = newTable(16);
+	private int size;
+	private Link<E> firstLink;
+	private Link<E> lastLink;
 	private long stateCount = 0;
 
 	/** Erases the contents of the current HashChain. */
 	public void clear() {
 		stateCount++;
-		firstItem = lastItem = null;
-		map.clear();
+		firstLink = lastLink = null;
+		table = newTable(16);
+		size = 0;
 	}
 
 	public void swapWith(E out, E in) {
@@ -76,32 +97,35 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 
 	/** Constructs an empty HashChain. */
 	public HashChain() {
-		firstItem = lastItem = null;
 	}
 
 	/** Constructs a HashChain filled with the contents of the src Chain. */
 	public HashChain(Chain<E> src) {
 		this();
+		table = newTable(tableSizeFor(src.size()));
 		addAll(src);
 	}
 
 	public boolean follows(E someObject, E someReferenceObject) {
-		Iterator<E> it = iterator(someObject);
-		while (it.hasNext()) {
-			if (it.next() == someReferenceObject)
-				return false;
-		}
-		return true;
+		if (someObject == null)
+			return true;
+		Link<E> link = find(someObject);
+		if (link == null)
+			throw new NoSuchElementException(
+					"HashChain.follows(obj, ref) with obj that is not in the chain: "
+							+ someObject.toString());
+		Link<E> reference = find(someReferenceObject);
+		return reference == null || link.order > reference.order;
 	}
 
 	public boolean contains(Object o) {
-		return map.containsKey(o);
+		return find(o) != null;
 	}
 
 	public boolean containsAll(Collection<?> c) {
 		Iterator<?> it = c.iterator();
 		while (it.hasNext())
-			if (!(map.containsKey(it.next())))
+			if (find(it.next()) == null)
 				return false;
 
 		return true;
@@ -112,18 +136,15 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 			throw new RuntimeException("Bad idea! You tried to insert "
 					+ " a null object into a Chain!");
 
-		if (map.containsKey(toInsert))
+		if (find(toInsert) != null)
 			throw new RuntimeException("Chain already contains object.");
 
-		Link<E> temp = map.get(point);
+		Link<E> temp = find(point);
 		if (temp == null) {
 			throw new RuntimeException("Insertion point not found in chain!");
 		}
 
-		stateCount++;
-
-		Link<E> newLink = temp.insertAfter(toInsert);
-		map.put(toInsert, newLink);
+		link(temp, new Link<E>(toInsert), temp.nextLink);
 	}
 
 	public void insertAfter(Collection<? extends E> toInsert, E point) {
@@ -152,17 +173,15 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 			throw new RuntimeException("Bad idea! You tried to insert "
 					+ "a null object into a Chain!");
 
-		if (map.containsKey(toInsert))
+		if (find(toInsert) != null)
 			throw new RuntimeException("Chain already contains object.");
 
-		Link<E> temp = map.get(point);
+		Link<E> temp = find(point);
 		if (temp == null) {
 			throw new RuntimeException("Insertion point not found in chain!");
 		}
-		stateCount++;
 
-		Link<E> newLink = temp.insertBefore(toInsert);
-		map.put(toInsert, newLink);
+		link(temp.previousLink, new Link<E>(toInsert), temp);
 	}
 
 	public void insertBefore(Collection<? extends E> toInsert, E point) {
@@ -197,19 +216,11 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 			throw new RuntimeException("Bad idea! You tried to remove "
 					+ " a null object from a Chain!");
 
-		stateCount++;
-		/*
-		 * 4th April 2005 Nomair A Naeem map.get(obj) can return null only
-		 * return true if this is non null else return false
-		 */
-		if (map.get(item) != null) {
-			Link<E> link = map.get(item);
-
-			link.unlinkSelf();
-			map.remove(item);
-			return true;
-		}
-		return false;
+		Link<E> link = find(item);
+		if (link == null)
+			return false;
+		unlink(link);
+		return true;
 	}
 
 	public void addFirst(E item) {
@@ -217,20 +228,10 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 			throw new RuntimeException("Bad idea!  You tried to insert "
 					+ "a null object into a Chain!");
 
-		stateCount++;
-		Link<E> newLink, temp;
-
-		if (map.containsKey(item))
+		if (find(item) != null)
 			throw new RuntimeException("Chain already contains object.");
 
-		if (firstItem != null) {
-			temp = map.get(firstItem);
-			newLink = temp.insertBefore(item);
-		} else {
-			newLink = new Link<E>(item);
-			firstItem = lastItem = item;
-		}
-		map.put(item, newLink);
+		link(null, new Link<E>(item), firstLink);
 	}
 
 	public void addLast(E item) {
@@ -238,75 +239,52 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 			throw new RuntimeException("Bad idea! You tried to insert "
 					+ " a null object into a Chain!");
 
-		stateCount++;
-		Link<E> newLink, temp;
-		if (map.containsKey(item))
+		if (find(item) != null)
 			throw new RuntimeException("Chain already contains object: " + item);
 
-		if (lastItem != null) {
-			temp = map.get(lastItem);
-			newLink = temp.insertAfter(item);
-		} else {
-			newLink = new Link<E>(item);
-			firstItem = lastItem = item;
-		}
-		map.put(item, newLink);
+		link(lastLink, new Link<E>(item), null);
 	}
 
 	public void removeFirst() {
-		stateCount++;
-		Object item = firstItem;
-		map.get(firstItem).unlinkSelf();
-		map.remove(item);
+		if (firstLink == null)
+			throw new NoSuchElementException();
+		unlink(firstLink);
 	}
 
 	public void removeLast() {
-		stateCount++;
-		Object item = lastItem;
-		map.get(lastItem).unlinkSelf();
-		map.remove(item);
+		if (lastLink == null)
+			throw new NoSuchElementException();
+		unlink(lastLink);
 	}
 
 	public E getFirst() {
-		if (firstItem == null)
+		if (firstLink == null)
 			throw new NoSuchElementException();
-		return firstItem;
+		return firstLink.item;
 	}
 
 	public E getLast() {
-		if (lastItem == null)
+		if (lastLink == null)
 			throw new NoSuchElementException();
-		return lastItem;
+		return lastLink.item;
 	}
 
 	public E getSuccOf(E point) throws NoSuchElementException {
-		Link<E> link = map.get(point);
-		try {
-			link = link.getNext();
-		} catch (NullPointerException e) {
-			throw new NoSuchElementException();
-		}
+		Link<E> link = find(point);
 		if (link == null)
-			return null;
-
-		return link.getItem();
+			throw new NoSuchElementException();
+		link = link.nextLink;
+		return link == null ? null : link.item;
 	}
 
 	public E getPredOf(E point) throws NoSuchElementException {
-		Link<E> link = map.get(point);
 		if (point == null)
 			throw new RuntimeException("trying to hash null value.");
-
-		try {
-			link = link.getPrevious();
-		} catch (NullPointerException e) {
-			throw new NoSuchElementException();
-		}
-
+		Link<E> link = find(point);
 		if (link == null)
-			return null;
-		else
-			return link.getItem();
+			throw new NoSuchElementException();
+		link = link.previousLink;
+		return link == null ? null : link.item;
 	}
 
 	public Iterator<E> snapshotIterator() {
@@ -314,7 +292,7 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 	}
 
 	public Iterator<E> snapshotIterator(E item) {
-		List<E> l = new ArrayList<E>(map.size());
+		List<E> l = new ArrayList<E>(size);
 
 		Iterator<E> it = new LinkIterator<E>(item);
 		while (it.hasNext())
@@ -324,7 +302,7 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 	}
 
 	public Iterator<E> iterator() {
-		return new LinkIterator<E>(firstItem);
+		return new LinkIterator<E>(firstLink);
 	}
 
 	public Iterator<E> iterator(E item) {
@@ -359,7 +337,17 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 	}
 
 	public int size() {
-		return map.size();
+		return size;
+	}
+
+	/** Returns the elements of this Chain in order, without going
+	 * through an iterator. */
+	public Object[] toArray() {
+		Object[] ret = new Object[size];
+		int i = 0;
+		for (Link<E> link = firstLink; link != null; link = link.nextLink)
+			ret[i++] = link.item;
+		return ret;
 	}
 
 	/** Returns a textual representation of the contents of this Chain. */
@@ -381,66 +369,190 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 		return strBuf.toString();
 	}
 
-	@SuppressWarnings("serial")
-	class Link<X extends E> implements Serializable {
-		private Link<X> nextLink;
-		private Link<X> previousLink;
-		private X item;
+	@SuppressWarnings("unchecked")
+	private static <E> Link<E>[] newTable(int length) {
+		return (Link<E>[]) new Link<?>[length];
+	}
 
-		public Link(X item) {
-			this.item = item;
-			nextLink = previousLink = null;
-		}
+	/** Returns the smallest table length that holds n links without
+	 * growing. */
+	private static int tableSizeFor(int n) {
+		int length = 16;
+		while (length * 3 / 4 < n)
+			length <<= 1;
+		return length;
+	}
 
-		public Link<X> getNext() {
-			return nextLink;
-		}
+	private static int hash(Object o) {
+		int h = o.hashCode();
+		return h ^ (h >>> 16);
+	}
 
-		public Link<X> getPrevious() {
-			return previousLink;
+	/** Returns the link of o, or null if o is not in this chain. */
+	private Link<E> find(Object o) {
+		if (o == null)
+			return null;
+		int h = hash(o);
+		for (Link<E> link = table[h & (table.length - 1)]; link != null; link = link.hashNext) {
+			if (link.hash == h && (link.item == o || o.equals(link.item)))
+				return link;
 		}
+		return null;
+	}
 
-		public void setNext(Link<X> link) {
-			this.nextLink = link;
+	/** Puts link between previous and next, either of which may be null at
+	 * the ends of the chain, and enters it in the table. */
+	private void link(Link<E> previous, Link<E> link, Link<E> next) {
+		stateCount++;
+		link.previousLink = previous;
+		link.nextLink = next;
+		if (previous == null)
+			firstLink = link;
+		else
+			previous.nextLink = link;
+		if (next == null)
+			lastLink = link;
+		else
+			next.previousLink = link;
+
+		if (previous == null && next == null)
+			link.order = 0;
+		else if (previous == null && next.order > Long.MIN_VALUE + ORDER_GAP)
+			link.order = next.order - ORDER_GAP;
+		else if (next == null && previous.order < Long.MAX_VALUE - ORDER_GAP)
+			link.order = previous.order + ORDER_GAP;
+		else if (previous != null && next != null && next.order - previous.order > 1)
+			link.order = previous.order + (next.order - previous.order) / 2;
+		else
+			relabelAround(link);
+
+		if (size >= table.length * 3 / 4) {
+			Link<E>[] old = table;
+			table = newTable(old.length << 1);
+			for (Link<E> l : old) {
+				while (l != null) {
+					Link<E> n = l.hashNext;
+					int i = l.hash & (table.length - 1);
+					l.hashNext = table[i];
+					table[i] = l;
+					l = n;
+				}
+			}
 		}
+		int i = link.hash & (table.length - 1);
+		link.hashNext = table[i];
+		table[i] = link;
+		size++;
+	}
+
+	/** Takes link out of the chain and out of the table. Its own
+	 * neighbours are kept, so iterators that are on it may go on. */
+	private void unlink(Link<E> link) {
+		stateCount++;
+		if (link.previousLink == null)
+			firstLink = link.nextLink;
+		else
+			link.previousLink.nextLink = link.nextLink;
+		if (link.nextLink == null)
+			lastLink = link.previousLink;
+		else
+			link.nextLink.previousLink = link.previousLink;
 
-		public void setPrevious(Link<X> link) {
-			this.previousLink = link;
+		int i = link.hash & (table.length - 1);
+		if (table[i] == link) {
+			table[i] = link.hashNext;
+		} else {
+			Link<E> l = table[i];
+			while (l.hashNext != link)
+				l = l.hashNext;
+			l.hashNext = link.hashNext;
 		}
+		link.hashNext = null;
+		size--;
+	}
 
-		public void unlinkSelf() {
-			bind(previousLink, nextLink);
+	/**
+	 * Gives link, just put between neighbours whose labels leave no room,
+	 * an order label by relabelling the links around it, as in the
+	 * order-maintenance structure of Bender et al. Labels, read as unsigned
+	 * numbers, are split into aligned ranges of 2^i; the smallest such range
+	 * around the neighbours that holds few enough links, counting link, has
+	 * their labels spread evenly over it. Only that window is walked, so an
+	 * insertion costs O(log n) amortized however often the same spot is
+	 * used.
+	 */
+	private void relabelAround(Link<E> link) {
+		Link<E> anchor = link.previousLink != null ? link.previousLink : link.nextLink;
+		long label = anchor.order ^ Long.MIN_VALUE;
+		Link<E> first = link;
+		Link<E> last = link;
+		int count = 1;
+		for (int i = 1; i <= MAX_WINDOW_BITS; i++) {
+			// the ranges nest, so the window only grows
+			while (first.previousLink != null && sameRange(first.previousLink, label, i)) {
+				first = first.previousLink;
+				count++;
+			}
+			while (last.nextLink != null && sameRange(last.nextLink, label, i)) {
+				last = last.nextLink;
+				count++;
+			}
+			if (count <= WINDOW_CAPACITY[i]) {
+				long gap = (1L << i) / count;
+				long order = (((label >>> i) << i) ^ Long.MIN_VALUE) + gap / 2;
+				for (Link<E> l = first;; l = l.nextLink) {
+					l.order = order;
+					order += gap;
+					if (l == last)
+						break;
+				}
+				return;
+			}
 		}
+		relabel();
+	}
 
-		public Link<X> insertAfter(X item) {
-			Link<X> newLink = new Link<X>(item);
+	/** Returns true if the label of link lies in the same range of 2^i
+	 * labels as the given unsigned label. */
+	private static boolean sameRange(Link<?> link, long label, int i) {
+		return ((link.order ^ Long.MIN_VALUE) >>> i) == (label >>> i);
+	}
 
-			bind(newLink, nextLink);
-			bind(this, newLink);
-			return newLink;
+	/** Spreads the order labels of all links evenly again, once no range
+	 * of labels around an insertion is sparse enough. */
+	private void relabel() {
+		long order = 0;
+		for (Link<E> link = firstLink; link != null; link = link.nextLink) {
+			link.order = order;
+			order += ORDER_GAP;
 		}
+	}
 
-		public Link<X> insertBefore(X item) {
-			Link<X> newLink = new Link<X>(item);
-
-			bind(previousLink, newLink);
-			bind(newLink, this);
-			return newLink;
+	@SuppressWarnings("serial")
+	static class Link<E> implements Serializable {
+		Link<E> nextLink;
+		Link<E> previousLink;
+		final E item;
+		final int hash;
+		/** The next link in the same bucket of the table. */
+		Link<E> hashNext;
+		/** Increases along the chain. */
+		long order;
+
+		public Link(E item) {
+			this.item = item;
+			this.hash = hash(item);
 		}
 
-		private void bind(Link<X> a, Link<X> b) {
-			if (a == null) {
-				firstItem = (b == null) ? null : b.item;
-			} else
-				a.nextLink = b;
+		public Link<E> getNext() {
+			return nextLink;
+		}
 
-			if (b == null) {
-				lastItem = (a == null) ? null : a.item;
-			} else
-				b.previousLink = a;
+		public Link<E> getPrevious() {
+			return previousLink;
 		}
 
-		public X getItem() {
+		public E getItem() {
 			return item;
 		}
 
@@ -455,7 +567,9 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 	}
 
 	class LinkIterator<X extends E> implements Iterator<E> {
+		/** The link returned last, or null before the first call to next(). */
 		private Link<E> currentLink;
+		private Link<E> nextLink;
 		boolean state; // only when this is true can remove() be called
 		// (in accordance w/ iterator semantics)
 
@@ -463,16 +577,11 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 		private long iteratorStateCount;
 
 		public LinkIterator(X item) {
-			Link<E> nextLink = map.get(item);
+			this(item == null ? null : find(item));
 			if (nextLink == null && item != null)
 				throw new NoSuchElementException(
 						"HashChain.LinkIterator(obj) with obj that is not in the chain: "
 								+ item.toString());
-			currentLink = new Link<E>(null);
-			currentLink.setNext(nextLink);
-			state = false;
-			destination = null;
-			iteratorStateCount = stateCount;
 		}
 
 		public LinkIterator(X from, X to) {
@@ -480,50 +589,56 @@ public class HashChain<E> extends AbstractCollection<E> implements Chain<E> {
 			destination = to;
 		}
 
+		LinkIterator(Link<E> first) {
+			nextLink = first;
+			state = false;
+			destination = null;
+			iteratorStateCount = stateCount;
+		}
+
 		public boolean hasNext() {
 			if (stateCount != iteratorStateCount) {
 				throw new ConcurrentModificationException();
 			}
 
 			if (destination == null)
-				return (currentLink.getNext() != null);
+				return (nextLink != null);
 			else
-				// Ignore whether (currentLink.getNext() == null), so
+				// Ignore whether (nextLink == null), so
 				// next() will produce a NoSuchElementException if
 				// destination is not in the chain.
-				return (destination != currentLink.getItem());
+				return currentLink == null || destination != currentLink.item;
 		}
 
 		public E next() throws NoSuchElementException {
 			if (stateCount != iteratorStateCount)
 				throw new ConcurrentModificationException();
 
-			Link<E> temp = currentLink.getNext();
-			if (temp == null) {
+			if (nextLink == null) {
 				String exceptionMsg;
-				if (destination != null && destination != currentLink.getItem())
+				if (destination != null
+						&& (currentLink == null || destination != currentLink.item))
 					exceptionMsg = "HashChain.LinkIterator.next() reached end of chain without reaching specified tail unit";
 				else
 					exceptionMsg = "HashChain.LinkIterator.next() called past the end of the Chain";
 				throw new NoSuchElementException(exceptionMsg);
 			}
-			currentLink = temp;
+			currentLink = nextLink;
+			nextLink = currentLink.nextLink;
 
 			state = true;
-			return currentLink.getItem();
+			return currentLink.item;
 		}
 
 		public void remove() throws IllegalStateException {
 			if (stateCount != iteratorStateCount)
 				throw new ConcurrentModificationException();
 
-			stateCount++;
-			iteratorStateCount++;
 			if (!state)
 				throw new IllegalStateException();
 			else {
-				currentLink.unlinkSelf();
-				map.remove(currentLink.getItem());
+				unlink(currentLink);
+				iteratorStateCount = stateCount;
 				state = false;
 			}
 
@@ -32,7 +32,10 @@ public class JasminOutputStream extends ByteArrayOutputStream {
     }
     public void flush() {
         ByteArrayInputStream bais = new ByteArrayInputStream(this.toByteArray());
-        jasmin.Main.assemble(bais, out, false);
+        // Jasmin was not written to be used from several threads at once
+        synchronized( jasmin.Main.class ) {
+            jasmin.Main.assemble(bais, out, false);
+        }
     }
 
     @Override
@@ -94,7 +94,14 @@ public class PhaseDumper {
 	    return phaseName;
 	}
     }
-    private final PhaseStack phaseStack = new PhaseStack(); 
+    // Each thread running body packs (see -num-threads) has its own stack
+    // of active phases.
+    private final ThreadLocal<PhaseStack> phaseStacks = new ThreadLocal<PhaseStack>() {
+	@Override
+	protected PhaseStack initialValue() {
+	    return new PhaseStack();
+	}
+    };
     final static String allWildcard = "ALL";
 
 
@@ -281,7 +288,7 @@ public class PhaseDumper {
      * @param phaseName the name of the phase that has just started.
      */
     public void dumpBefore(Body b, String phaseName) {
-	phaseStack.push(phaseName);
+	phaseStacks.get().push(phaseName);
 	if (isBodyDumpingPhase(phaseName)) {
 		deleteOldGraphFiles(b, phaseName);
 		dumpBody(b, phaseName + ".in");
@@ -302,7 +309,7 @@ public class PhaseDumper {
      * match the <code>PhaseDumper</code>'s record of the current phase.
      */
     public void dumpAfter(Body b, String phaseName) {
-	String poppedPhaseName = phaseStack.pop();
+	String poppedPhaseName = phaseStacks.get().pop();
 	if (poppedPhaseName != phaseName) {
 	    throw new IllegalArgumentException("dumpAfter(" + phaseName + 
 					       ") when poppedPhaseName == " +
@@ -324,7 +331,7 @@ public class PhaseDumper {
      * @param phaseName the name of the phase that has just started.
      */
     public void dumpBefore(String phaseName) {
-	phaseStack.push(phaseName);
+	phaseStacks.get().push(phaseName);
 	if (isBodyDumpingPhase(phaseName)) {
 	    dumpAllBodies(phaseName + ".in", true);
 	}
@@ -342,7 +349,7 @@ public class PhaseDumper {
      * match the <code>PhaseDumper</code>'s record of the current phase.
      */
     public void dumpAfter(String phaseName) {
-	String poppedPhaseName = phaseStack.pop();
+	String poppedPhaseName = phaseStacks.get().pop();
 	if (poppedPhaseName != phaseName) {
 	    throw new IllegalArgumentException("dumpAfter(" + phaseName + 
 					       ") when poppedPhaseName == " +
@@ -368,7 +375,7 @@ public class PhaseDumper {
 	}
 	try {
 	    alreadyDumping = true;
-	    String phaseName = phaseStack.currentPhase();
+	    String phaseName = phaseStacks.get().currentPhase();
 	    if (isCFGDumpingPhase(phaseName)) { 
 		try {
 		    String outputFile = nextGraphFileName(b, phaseName + "-" + 
@@ -402,7 +409,7 @@ public class PhaseDumper {
 	}
 	try {
 	    alreadyDumping = true;
-	    String phaseName = phaseStack.currentPhase();
+	    String phaseName = phaseStacks.get().currentPhase();
 	    if (isCFGDumpingPhase(phaseName)) {
 		try {
 		    String outputFile = nextGraphFileName(g.getBody(), 
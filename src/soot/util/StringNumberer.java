@@ -18,21 +18,39 @@
  */
 
 package soot.util;
-import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** A class that numbers strings, so they can be placed in bitsets.
+ *
+ * <p>Looking up a string that is already numbered does not lock. Strings
+ * that are not numbered yet are added under one of a few striped locks,
+ * so that every string is numbered exactly once.
  *
  * @author Ondrej Lhotak
  */
 
 public class StringNumberer extends ArrayNumberer<NumberedString> {
-    HashMap<String, NumberedString> stringToNumbered = new HashMap<String, NumberedString>(1024);
+    private final ConcurrentHashMap<String, NumberedString> stringToNumbered =
+        new ConcurrentHashMap<String, NumberedString>(1024);
+    private final Object[] locks = new Object[32];
+
+    public StringNumberer() {
+        for( int i = 0; i < locks.length; i++ ) {
+            locks[i] = new Object();
+        }
+    }
     
     public NumberedString findOrAdd( String s ) {
         NumberedString ret = stringToNumbered.get( s );
-        if( ret == null ) {
-            stringToNumbered.put( s, ret = new NumberedString(s) );
-            add( ret );
+        if( ret != null ) return ret;
+        synchronized( locks[ s.hashCode() & (locks.length-1) ] ) {
+            ret = stringToNumbered.get( s );
+            if( ret == null ) {
+                ret = new NumberedString(s);
+                add( ret );
+                // only published once it has its number
+                stringToNumbered.put( s, ret );
+            }
         }
         return ret;
     }
@@ -0,0 +1,191 @@
+package soot;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.jimple.AssignStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.options.Options;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.LiveLocals;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.LocalUses;
+
+/**
+ * Checks that the {@link BodyAnalysisCache} of a body returns the same
+ * graphs and analyses while the body does not change, and new ones after
+ * any change to it.
+ */
+public class BodyAnalysisCacheTest {
+
+	private static G globals;
+
+	public static class Target {
+		public static void main(String[] args) {
+			int s = 0;
+			for (int i = 0; i < args.length; i++)
+				s += args[i].length();
+			System.out.println(s);
+		}
+	}
+
+	@BeforeClass
+	public static void setUpScene() {
+		globals = G.v();
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(Target.class.getName());
+		Options.v().classes().add(Target.class.getName());
+		Scene.v().loadNecessaryClasses();
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private Body body() {
+		SootMethod m = Scene.v().getSootClass(Target.class.getName()).getMethodByName("main");
+		return (Body) m.retrieveActiveBody().clone();
+	}
+
+	private AssignStmt firstAssignment(Body b) {
+		for (Unit u : b.getUnits()) {
+			if (u instanceof AssignStmt)
+				return (AssignStmt) u;
+		}
+		throw new AssertionError("no assignment in " + b);
+	}
+
+	@Test
+	public void reusedWhileUnchanged() {
+		Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		ExceptionalUnitGraph graph = cache.getExceptionalUnitGraph();
+		LocalDefs defs = LocalDefs.Factory.newLocalDefs(b);
+		LocalUses uses = LocalUses.Factory.newLocalUses(b);
+		LiveLocals live = LiveLocals.Factory.newLiveLocals(graph);
+
+		assertSame(graph, cache.getExceptionalUnitGraph());
+		assertSame(defs, LocalDefs.Factory.newLocalDefs(b));
+		assertSame(defs, LocalDefs.Factory.newLocalDefs(graph));
+		assertSame(uses, LocalUses.Factory.newLocalUses(b, defs));
+		assertSame(live, LiveLocals.Factory.newLiveLocals(graph));
+		assertNotSame(defs, LocalDefs.Factory.newLocalDefs(graph, true));
+		assertTrue(cache.hits() > 0);
+	}
+
+	@Test
+	public void graphsOfOtherThrowAnalysesKeptApart() {
+		Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		assertNotSame(graph, cache.getExceptionalUnitGraph(
+				Scene.v().getDefaultThrowAnalysis(), !Options.v().omit_excepting_unit_edges()));
+		assertSame(graph, cache.getExceptionalUnitGraph());
+	}
+
+	@Test
+	public void droppedOnInsertion() {
+		Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		LocalDefs defs = LocalDefs.Factory.newLocalDefs(b);
+		b.getUnits().insertBefore(Jimple.v().newNopStmt(), (Stmt) b.getUnits().getLast());
+		assertNotSame(graph, cache.getExceptionalUnitGraph());
+		assertNotSame(defs, LocalDefs.Factory.newLocalDefs(b));
+	}
+
+	@Test
+	public void droppedOnNewValue() {
+		Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		firstAssignment(b).setRightOp(IntConstant.v(42));
+		assertNotSame(graph, cache.getExceptionalUnitGraph());
+	}
+
+	@Test
+	public void droppedOnNewType() {
+		Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		b.getLocals().getFirst().setType(LongType.v());
+		assertNotSame(graph, cache.getExceptionalUnitGraph());
+	}
+
+	@Test
+	public void droppedOnNewCastType() {
+		Body b = body();
+		Local l = b.getLocals().getFirst();
+		Stmt cast = Jimple.v().newAssignStmt(l, Jimple.v().newCastExpr(l, l.getType()));
+		b.getUnits().insertBefore(cast, (Stmt) b.getUnits().getLast());
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		((CastExpr) ((AssignStmt) cast).getRightOp()).setCastType(RefType.v("java.lang.String"));
+		assertNotSame(graph, cache.getExceptionalUnitGraph());
+	}
+
+	@Test
+	public void droppedOnChangeByOtherThread() throws InterruptedException {
+		final Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		Thread t = new Thread() {
+			public void run() {
+				firstAssignment(b).setRightOp(IntConstant.v(42));
+			}
+		};
+		t.start();
+		t.join();
+		assertNotSame(graph, cache.getExceptionalUnitGraph());
+	}
+
+	@Test
+	public void keptWhenOtherBodyChanges() {
+		Body b = body();
+		Body other = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		UnitGraph graph = cache.getExceptionalUnitGraph();
+		LocalDefs defs = LocalDefs.Factory.newLocalDefs(b);
+		firstAssignment(other).setRightOp(IntConstant.v(42));
+		other.getLocals().getFirst().setType(LongType.v());
+		assertSame(graph, cache.getExceptionalUnitGraph());
+		assertSame(defs, LocalDefs.Factory.newLocalDefs(b));
+	}
+
+	@Test
+	public void releasedByPacks() {
+		Body b = body();
+		BodyAnalysisCache cache = b.getAnalysisCache();
+		PackManager.v().getPack("jtp").apply(b);
+		assertNotSame(cache, b.getAnalysisCache());
+	}
+}
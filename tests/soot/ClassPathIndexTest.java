@@ -0,0 +1,190 @@
+package soot;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.options.Options;
+
+/**
+ * Checks that files read through a {@link ClassPathIndex} are the same as
+ * read through {@link ZipFile}, that earlier class path entries take
+ * precedence, and that the index survives being kept in a file.
+ */
+public class ClassPathIndexTest {
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private File dir, first, second, cache;
+
+	@Before
+	public void makeArchives() throws IOException {
+		G.reset();
+		dir = File.createTempFile("cpindex", "");
+		dir.delete();
+		dir.mkdir();
+		first = new File(dir, "first.jar");
+		writeJar(first, new String[] { "a/A.class", "a/Stored.class", "Shared.jimple" },
+				new String[] { "A", repeat("stored", 100), "first" });
+		second = new File(dir, "second.jar");
+		writeJar(second, new String[] { "b/B.class", "Shared.jimple" },
+				new String[] { repeat("deflated", 1000), "second" });
+		cache = new File(dir, "index");
+	}
+
+	@After
+	public void deleteArchives() {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void sameAsZipFile() throws IOException {
+		ClassPathIndex index = ClassPathIndex.build(classPath(first, second), null);
+		for (File jar : Arrays.asList(first, second)) {
+			ZipFile zip = new ZipFile(jar);
+			try {
+				for (String name : index.namesIn(index.positionOf(jar.getCanonicalPath()))) {
+					if (name.equals("Shared.jimple") && jar == second)
+						continue;
+					int file = index.lookup(name);
+					assertEquals(jar.getCanonicalFile(), index.archiveOf(file));
+					assertArrayEquals(read(zip.getInputStream(zip.getEntry(name))),
+							read(index.inputStream(file)));
+				}
+			} finally {
+				zip.close();
+			}
+		}
+		assertEquals(-1, index.lookup("a/Missing.class"));
+	}
+
+	@Test
+	public void earlierEntriesWin() throws IOException {
+		ClassPathIndex index = ClassPathIndex.build(classPath(second, first), null);
+		assertEquals("second", new String(read(index.inputStream(index.lookup("Shared.jimple")))));
+
+		File classes = new File(dir, "classes");
+		classes.mkdir();
+		FileOutputStream out = new FileOutputStream(new File(classes, "Shared.jimple"));
+		out.write("dir".getBytes());
+		out.close();
+		Options.v().set_soot_classpath(classes + File.pathSeparator + first + File.pathSeparator + second);
+		try {
+			assertEquals("dir", new String(read(SourceLocator.v().lookupInClassPath("Shared.jimple").inputStream())));
+			SourceLocator.FoundFile found = SourceLocator.v().lookupInClassPath("b/B.class");
+			assertEquals(second.getCanonicalPath(), found.archivePath());
+			assertEquals(repeat("deflated", 1000), new String(read(found.inputStream())));
+			List<String> classesUnder = SourceLocator.v().getClassesUnder(first.getPath());
+			assertEquals(Arrays.asList("a.A", "a.Stored", "Shared"), classesUnder);
+		} finally {
+			new File(classes, "Shared.jimple").delete();
+			classes.delete();
+		}
+	}
+
+	@Test
+	public void keptInFile() throws IOException {
+		ClassPathIndex.build(classPath(first, second), cache);
+		assertTrue(cache.exists());
+		long written = cache.lastModified();
+
+		ClassPathIndex index = ClassPathIndex.build(classPath(first, second), cache);
+		assertEquals(written, cache.lastModified());
+		assertEquals(repeat("stored", 100), new String(read(index.inputStream(index.lookup("a/Stored.class")))));
+		assertEquals(repeat("deflated", 1000), new String(read(index.inputStream(index.lookup("b/B.class")))));
+
+		// a changed archive is read again
+		writeJar(second, new String[] { "b/C.class" }, new String[] { "changed and longer" });
+		second.setLastModified(written + 10000);
+		index = ClassPathIndex.build(classPath(first, second), cache);
+		assertEquals(-1, index.lookup("b/B.class"));
+		assertEquals("changed and longer", new String(read(index.inputStream(index.lookup("b/C.class")))));
+		assertEquals("first", new String(read(index.inputStream(index.lookup("Shared.jimple")))));
+	}
+
+	private static List<String> classPath(File... archives) throws IOException {
+		List<String> ret = new ArrayList<String>();
+		for (File f : archives)
+			ret.add(f.getCanonicalPath());
+		return ret;
+	}
+
+	/** Writes a jar whose odd entries are stored and even entries deflated. */
+	private static void writeJar(File jar, String[] names, String[] contents) throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			for (int i = 0; i < names.length; i++) {
+				byte[] bytes = contents[i].getBytes();
+				ZipEntry e = new ZipEntry(names[i]);
+				if (i % 2 == 1) {
+					CRC32 crc = new CRC32();
+					crc.update(bytes);
+					e.setMethod(ZipEntry.STORED);
+					e.setSize(bytes.length);
+					e.setCrc(crc.getValue());
+				}
+				out.putNextEntry(e);
+				out.write(bytes);
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		byte[] buf = new byte[100];
+		int n;
+		while ((n = in.read(buf)) > 0)
+			ret.write(buf, 0, n);
+		in.close();
+		return ret.toByteArray();
+	}
+
+	private static String repeat(String s, int n) {
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < n; i++)
+			ret.append(s);
+		return ret.toString();
+	}
+}
@@ -0,0 +1,138 @@
+package soot;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the dispatch answers cached by {@link FastHierarchy} are
+ * reused for repeated queries, and are recomputed once a class changes.
+ */
+public class FastHierarchyTest {
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	SootClass root, a, b;
+	SootMethod rootFoo;
+
+	@Before
+	public void setUpScene() {
+		G.reset();
+		SootClass object = new SootClass("java.lang.Object", Modifier.PUBLIC);
+		Scene.v().addClass(object);
+		root = new SootClass("Root", Modifier.PUBLIC | Modifier.ABSTRACT);
+		root.setSuperclass(object);
+		Scene.v().addClass(root);
+		a = new SootClass("A", Modifier.PUBLIC);
+		a.setSuperclass(root);
+		Scene.v().addClass(a);
+		b = new SootClass("B", Modifier.PUBLIC);
+		b.setSuperclass(a);
+		Scene.v().addClass(b);
+		rootFoo = newFoo(root, Modifier.PUBLIC | Modifier.ABSTRACT);
+	}
+
+	private static SootMethod newFoo(SootClass c, int modifiers) {
+		SootMethod m = new SootMethod("foo", Collections.<Type>emptyList(),
+				VoidType.v(), modifiers);
+		c.addMethod(m);
+		return m;
+	}
+
+	@Test
+	public void repeatedQueriesHit() {
+		SootMethod aFoo = newFoo(a, Modifier.PUBLIC);
+		FastHierarchy fh = new FastHierarchy();
+		for (int i = 0; i < 10; i++) {
+			assertSame(aFoo, fh.resolveConcreteDispatch(b, rootFoo));
+			assertEquals(Collections.singleton(aFoo), fh.resolveAbstractDispatch(root, rootFoo));
+		}
+		assertEquals(2, fh.concreteDispatchCache.misses()
+				+ fh.abstractDispatchCache.misses());
+		assertEquals(18, fh.concreteDispatchCache.hits()
+				+ fh.abstractDispatchCache.hits());
+	}
+
+	@Test
+	public void addedMethodInvalidates() {
+		SootMethod aFoo = newFoo(a, Modifier.PUBLIC);
+		FastHierarchy fh = new FastHierarchy();
+		assertSame(aFoo, fh.resolveConcreteDispatch(b, rootFoo));
+		assertEquals(Collections.singleton(aFoo), fh.resolveAbstractDispatch(root, rootFoo));
+
+		SootMethod bFoo = newFoo(b, Modifier.PUBLIC);
+		assertSame(bFoo, fh.resolveConcreteDispatch(b, rootFoo));
+		Set<SootMethod> both = new HashSet<SootMethod>();
+		both.add(aFoo);
+		both.add(bFoo);
+		assertEquals(both, fh.resolveAbstractDispatch(root, rootFoo));
+
+		b.removeMethod(bFoo);
+		assertSame(aFoo, fh.resolveConcreteDispatch(b, rootFoo));
+	}
+
+	@Test
+	public void changedModifiersInvalidate() {
+		SootMethod aFoo = newFoo(a, Modifier.PUBLIC);
+		b.setModifiers(Modifier.PUBLIC | Modifier.ABSTRACT);
+		FastHierarchy fh = new FastHierarchy();
+		assertTrue(fh.canStoreType(AnySubType.v(root.getType()), a.getType()));
+		a.setModifiers(Modifier.PUBLIC | Modifier.ABSTRACT);
+		assertFalse(fh.canStoreType(AnySubType.v(root.getType()), a.getType()));
+		assertTrue(fh.resolveAbstractDispatch(root, rootFoo).isEmpty());
+		a.setModifiers(Modifier.PUBLIC);
+		assertEquals(Collections.singleton(aFoo), fh.resolveAbstractDispatch(root, rootFoo));
+	}
+
+	@Test
+	public void interfaces() {
+		SootClass i = new SootClass("I", Modifier.PUBLIC | Modifier.INTERFACE);
+		Scene.v().addClass(i);
+		SootClass j = new SootClass("J", Modifier.PUBLIC | Modifier.INTERFACE);
+		j.addInterface(i);
+		Scene.v().addClass(j);
+		a.addInterface(j);
+		FastHierarchy fh = new FastHierarchy();
+		assertTrue(fh.canStoreType(b.getType(), i.getType()));
+		assertTrue(fh.canStoreType(a.getType(), j.getType()));
+		assertTrue(fh.canStoreType(j.getType(), i.getType()));
+		assertFalse(fh.canStoreType(i.getType(), j.getType()));
+		assertFalse(fh.canStoreType(root.getType(), i.getType()));
+		assertTrue(fh.canStoreType(ArrayType.v(b.getType(), 2), ArrayType.v(i.getType(), 2)));
+		assertFalse(fh.canStoreType(ArrayType.v(root.getType(), 1), ArrayType.v(j.getType(), 1)));
+
+		// classes made after the index was built are answered by walking
+		SootClass c = new SootClass("C", Modifier.PUBLIC);
+		c.setSuperclass(b);
+		Scene.v().addClass(c);
+		assertFalse(fh.canStoreType(c.getType(), i.getType()));
+		assertTrue(fh.canStoreType(b.getType(), j.getType()));
+	}
+}
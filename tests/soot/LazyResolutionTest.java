@@ -0,0 +1,126 @@
+package soot;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.jimple.spark.internal.TypeManager;
+import soot.options.Options;
+
+/**
+ * Checks that in lazy resolution mode, classes referenced only from bodies
+ * are resolved when first used, and that their class files are prefetched.
+ */
+public class LazyResolutionTest {
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	static final String TARGET = Target.class.getName();
+	static final String HELPER = Helper.class.getName();
+
+	public static class Target {
+		public static void main(String[] args) {
+			Helper.help();
+		}
+	}
+
+	static class Helper {
+		static void help() {
+			new java.util.ArrayList<Object>();
+		}
+	}
+
+	private void setUpScene(boolean lazy, boolean prefetch) {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_lazy_resolution(lazy);
+		Options.v().set_prefetch_classes(prefetch);
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+	}
+
+	@Test
+	public void resolvedOnFirstUse() {
+		setUpScene(false, false);
+		int eager = Scene.v().getClasses(SootClass.HIERARCHY).size();
+
+		setUpScene(true, false);
+		assertTrue(Scene.v().getClasses(SootClass.HIERARCHY).size() < eager);
+		SootClass helper = Scene.v().getSootClass(HELPER);
+		assertEquals(SootClass.DANGLING, helper.resolvingLevel());
+
+		SootMethod help = helper.getMethodByName("help");
+		assertTrue(helper.resolvingLevel() >= SootClass.SIGNATURES);
+		help.retrieveActiveBody();
+		assertEquals(SootClass.BODIES, helper.resolvingLevel());
+		assertFalse(helper.isPhantom());
+	}
+
+	@Test
+	public void hierarchyReleasedPerRound() {
+		setUpScene(true, false);
+		FastHierarchy before = Scene.v().getOrMakeFastHierarchy();
+		TypeManager tm = new TypeManager(null);
+		tm.setFastHierarchy(before);
+
+		SootClass helper = Scene.v().getSootClass(HELPER);
+		helper.getMethodByName("help");
+		assertTrue(helper.resolvingLevel() >= SootClass.HIERARCHY);
+		assertFalse(Scene.v().hasFastHierarchy());
+
+		// the type manager follows the hierarchy the Scene makes next
+		assertTrue(tm.castNeverFails(helper.getType(), RefType.v("java.lang.Object")));
+		FastHierarchy after = Scene.v().getFastHierarchy();
+		assertNotSame(before, after);
+		assertSame(after, tm.getFastHierarchy());
+	}
+
+	@Test
+	public void prefetched() throws InterruptedException {
+		setUpScene(true, true);
+		ClassPrefetcher prefetcher = SourceLocator.v().prefetcher();
+		String fileName = HELPER.replace('.', '/') + ".class";
+		for (int i = 0; i < 500 && !prefetcher.isPrefetched(fileName); i++)
+			Thread.sleep(10);
+		assertTrue(prefetcher.isPrefetched(fileName));
+
+		SootClass helper = Scene.v().getSootClass(HELPER);
+		helper.getMethodByName("help").retrieveActiveBody();
+		assertTrue(prefetcher.hits() >= 1);
+		assertFalse(prefetcher.isPrefetched(fileName));
+		SourceLocator.v().invalidateClassPath();
+	}
+}
@@ -0,0 +1,79 @@
+package soot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import soot.options.Options;
+
+/**
+ * Compares the time {@link FastHierarchy#canStoreClass(SootClass, SootClass)}
+ * takes with the {@link SubtypeIndex} with the time it takes walking the
+ * hierarchy, and checks that both give the same answers.
+ *
+ * <p>Loads the program given by the Soot arguments, then asks both for
+ * random pairs of classes and interfaces of the Scene, and for every class
+ * against every interface. Prints the time to build the index and the
+ * time per query of each.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.SubtypeIndexBenchmark [soot arguments]</code>,
+ * e.g. <code>-cp ... -w -main-class Main -process-dir dir</code>.
+ */
+public class SubtypeIndexBenchmark {
+
+	static final int QUERIES = 10000000;
+
+	public static void main(String[] args) {
+		if (!Options.v().parse(args))
+			throw new IllegalArgumentException("bad Soot arguments");
+		Scene.v().loadNecessaryClasses();
+		FastHierarchy fh = new FastHierarchy();
+		List<SootClass> classes = new ArrayList<SootClass>();
+		List<SootClass> interfaces = new ArrayList<SootClass>();
+		for (SootClass c : Scene.v().getClasses()) {
+			if (c.resolvingLevel() < SootClass.HIERARCHY)
+				continue;
+			classes.add(c);
+			if (c.isInterface())
+				interfaces.add(c);
+		}
+		System.out.println(classes.size() + " classes, " + interfaces.size() + " interfaces");
+
+		long start = System.nanoTime();
+		SubtypeIndex index = fh.getSubtypeIndex();
+		System.out.println("index built in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		int mismatches = 0;
+		for (SootClass c : classes)
+			for (SootClass i : interfaces)
+				if (index.canStore(c, i) != fh.canStoreClassUnindexed(c, i))
+					mismatches++;
+		System.out.println(mismatches + " mismatches against every interface");
+
+		Random random = new Random(1);
+		SootClass[] children = new SootClass[QUERIES];
+		SootClass[] parents = new SootClass[QUERIES];
+		for (int q = 0; q < QUERIES; q++) {
+			children[q] = classes.get(random.nextInt(classes.size()));
+			parents[q] = random.nextBoolean() ? interfaces.get(random.nextInt(interfaces.size()))
+					: classes.get(random.nextInt(classes.size()));
+		}
+		for (int run = 0; run < 3; run++) {
+			int yes = 0;
+			start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++)
+				if (fh.canStoreClassUnindexed(children[q], parents[q]))
+					yes++;
+			long walk = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++)
+				if (fh.canStoreClass(children[q], parents[q]))
+					yes--;
+			long indexed = System.nanoTime() - start;
+			System.out.println(String.format("walk %.1f ns/query, index %.1f ns/query%s",
+					(double) walk / QUERIES, (double) indexed / QUERIES,
+					yes == 0 ? "" : ", answers differ"));
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package soot.jimple.spark.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.PhaseOptions;
+import soot.PointsToAnalysis;
+import soot.RefLikeType;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+
+/**
+ * Runs Spark incrementally on {@link Target}, changes a method, runs it
+ * again, and checks that the updated points-to sets are the ones a fresh
+ * run computes for the changed program.
+ */
+public class IncrementalBuilderTest {
+
+	static final String TARGET = Target.class.getName();
+
+	static final String INCREMENTAL = "enabled:true,incremental:true,on-fly-cg:false,"
+			+ "simplify-sccs:false,simplify-offline:false";
+
+	public static class Target {
+		static Object global;
+
+		Object field;
+
+		static class Box {
+		}
+
+		static class Circle {
+			Object radius;
+		}
+
+		static Object pick(int i) {
+			if (i > 0)
+				return new Box();
+			return new Circle();
+		}
+
+		Object id(Object o) {
+			return o;
+		}
+
+		public static void main(String[] args) {
+			Target t = new Target();
+			t.field = t.id(pick(args.length));
+			global = t.field;
+			Circle c = new Circle();
+			c.radius = t.id("r");
+			global = c.radius;
+		}
+	}
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private static Map<String, String> setUpScene(String sparkOptions) {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+		return sparkOptions(sparkOptions);
+	}
+
+	private static Map<String, String> sparkOptions(String sparkOptions) {
+		if (!PhaseOptions.v().processPhaseOptions("cg.spark", sparkOptions))
+			throw new IllegalArgumentException("bad Spark options");
+		return PhaseOptions.v().getPhaseOptions("cg.spark");
+	}
+
+	/** Describes the points-to set of every reference local of the
+	 * reachable methods of the target program. */
+	private static List<String> describe(PointsToAnalysis pa) {
+		List<String> ret = new ArrayList<String>();
+		for (SootClass c : Scene.v().getApplicationClasses()) {
+			if (!c.getName().startsWith(TARGET))
+				continue;
+			for (SootMethod m : c.getMethods()) {
+				if (!m.hasActiveBody() || !Scene.v().getReachableMethods().contains(m))
+					continue;
+				for (Local l : m.getActiveBody().getLocals()) {
+					if (!(l.getType() instanceof RefLikeType))
+						continue;
+					final List<String> objects = new ArrayList<String>();
+					((PointsToSetInternal) pa.reachingObjects(l)).forall(new P2SetVisitor() {
+						public void visit(Node n) {
+							AllocNode an = (AllocNode) n;
+							objects.add(an.getNewExpr() + " in " + an.getMethod());
+						}
+					});
+					Collections.sort(objects);
+					ret.add(m + " " + l + " -> " + objects);
+				}
+			}
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private static SootMethod method(String name) {
+		return Scene.v().getSootClass(TARGET).getMethodByName(name);
+	}
+
+	/** A change to the target program. */
+	interface Change {
+		void apply();
+	}
+
+	/** Runs Spark incrementally, applies the change, and checks that the
+	 * next run updated the graph of the first one to what a fresh run
+	 * computes for the changed program in a new Scene. */
+	private static void checkUpdate(String sparkOptions, Change change) {
+		Map<String, String> options = setUpScene(INCREMENTAL + sparkOptions);
+		SparkTransformer.v().transform("cg.spark", options);
+		PointsToAnalysis first = Scene.v().getPointsToAnalysis();
+		List<String> before = describe(first);
+		change.apply();
+		SparkTransformer.v().transform("cg.spark", options);
+		assertSame(first, Scene.v().getPointsToAnalysis());
+		List<String> updated = describe(first);
+		assertFalse(before.equals(updated));
+
+		options = setUpScene("enabled:true,on-fly-cg:false" + sparkOptions);
+		change.apply();
+		SparkTransformer.v().transform("cg.spark", options);
+		assertEquals(describe(Scene.v().getPointsToAnalysis()), updated);
+	}
+
+	@Test
+	public void removedAssignment() {
+		checkUpdate("", new Change() {
+			public void apply() {
+				// drop "t.field = t.id(...)" in place
+				SootMethod main = method("main");
+				Body b = main.retrieveActiveBody();
+				for (Unit u : b.getUnits()) {
+					if (u instanceof AssignStmt
+							&& ((AssignStmt) u).getLeftOp() instanceof InstanceFieldRef) {
+						b.getUnits().remove(u);
+						break;
+					}
+				}
+				SparkTransformer.v().methodChanged(main);
+			}
+		});
+	}
+
+	@Test
+	public void addedAllocation() {
+		checkUpdate(",propagator:iter", new Change() {
+			public void apply() {
+				// a new body for id(), which also stores a new Box
+				SootMethod id = method("id");
+				Body b = (Body) id.retrieveActiveBody().clone();
+				RefType boxType = RefType.v(TARGET + "$Box");
+				Local box = Jimple.v().newLocal("box", boxType);
+				b.getLocals().add(box);
+				Unit ret = b.getUnits().getLast();
+				b.getUnits().insertBefore(Jimple.v().newAssignStmt(box,
+						Jimple.v().newNewExpr(boxType)), ret);
+				b.getUnits().insertBefore(Jimple.v().newAssignStmt(
+						Jimple.v().newStaticFieldRef(Scene.v().getSootClass(TARGET)
+								.getFieldByName("global").makeRef()), box), ret);
+				id.setActiveBody(b);
+			}
+		});
+	}
+
+	@Test
+	public void removedCall() {
+		checkUpdate("", new Change() {
+			public void apply() {
+				// drop the call to pick(), which makes it unreachable
+				SootMethod main = method("main");
+				Body b = (Body) main.retrieveActiveBody().clone();
+				for (Unit u : b.getUnits()) {
+					Stmt s = (Stmt) u;
+					if (s.containsInvokeExpr()
+							&& s.getInvokeExpr().getMethod() == method("pick")) {
+						b.getUnits().remove(u);
+						break;
+					}
+				}
+				main.setActiveBody(b);
+			}
+		});
+		assertFalse(Scene.v().getReachableMethods().contains(method("pick")));
+	}
+}
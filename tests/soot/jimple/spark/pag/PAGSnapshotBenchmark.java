@@ -0,0 +1,81 @@
+package soot.jimple.spark.pag;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import soot.G;
+import soot.PhaseOptions;
+import soot.PointsToAnalysis;
+import soot.Scene;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.builder.ContextInsensitiveBuilder;
+import soot.options.Options;
+import soot.options.SparkOptions;
+
+/**
+ * Compares the time Spark takes to compute its results with the time it
+ * takes to load them from a {@link PAGSnapshot}.
+ *
+ * <p>For each run, loads the program given by the Soot arguments into a
+ * fresh Scene, retrieves all bodies, runs Spark and saves the snapshot;
+ * then loads the program into another fresh Scene, retrieves all bodies
+ * again and reads the snapshot. Prints the time Spark took, the time to
+ * save and to load the snapshot, and the size of the file.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.jimple.spark.pag.PAGSnapshotBenchmark [soot arguments]</code>,
+ * e.g. <code>-cp ... -main-class Main -process-dir dir</code>.
+ */
+public class PAGSnapshotBenchmark {
+
+	static final int RUNS = 3;
+
+	public static void main(String[] args) throws IOException {
+		File file = File.createTempFile("spark", ".snapshot");
+		try {
+			System.out.println(String.format("%12s %12s %12s %12s",
+					"spark ms", "save ms", "load ms", "file KB"));
+			for (int run = 0; run < RUNS; run++) {
+				Map<String, String> options = setUpScene(args);
+				long start = System.nanoTime();
+				SparkTransformer.v().transform("cg.spark", options);
+				long spark = System.nanoTime() - start;
+				PointsToAnalysis pa = Scene.v().getPointsToAnalysis();
+				start = System.nanoTime();
+				PAGSnapshot.write((PAG) pa, Scene.v().getCallGraph(),
+						PAGSnapshot.fingerprint(options), file);
+				long save = System.nanoTime() - start;
+
+				options = setUpScene(args);
+				start = System.nanoTime();
+				PAGSnapshot snapshot = PAGSnapshot.read(file,
+						PAGSnapshot.fingerprint(options), new SparkOptions(options));
+				long load = System.nanoTime() - start;
+				if (snapshot == null)
+					throw new IllegalStateException("snapshot not loaded");
+
+				System.out.println(String.format("%12d %12d %12d %12d",
+						spark / 1000000, save / 1000000, load / 1000000,
+						file.length() / 1024));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	/** Loads the program into a fresh Scene, and returns the Spark
+	 * options to use. */
+	private static Map<String, String> setUpScene(String[] args) {
+		G.reset();
+		if (!Options.v().parse(args))
+			throw new IllegalArgumentException("bad Soot arguments");
+		Options.v().set_whole_program(true);
+		Scene.v().loadNecessaryClasses();
+		// retrieve all bodies up front, so that neither side pays for them
+		new ContextInsensitiveBuilder().preJimplify();
+		if (!PhaseOptions.v().processPhaseOptions("cg.spark", "enabled:true"))
+			throw new IllegalArgumentException("bad Spark options");
+		return PhaseOptions.v().getPhaseOptions("cg.spark");
+	}
+}
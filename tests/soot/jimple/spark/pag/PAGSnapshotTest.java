@@ -0,0 +1,169 @@
+package soot.jimple.spark.pag;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PhaseOptions;
+import soot.PointsToAnalysis;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+import soot.options.SparkOptions;
+
+/**
+ * Runs Spark on {@link SnapshotTarget}, saves a snapshot, and checks that
+ * the points-to sets and the call graph loaded from it in a fresh Scene are
+ * the same as the ones computed.
+ */
+public class PAGSnapshotTest {
+
+	static final String TARGET = "soot.jimple.spark.pag.SnapshotTarget";
+
+	File file;
+
+	@Before
+	public void makeFile() throws IOException {
+		file = File.createTempFile("spark", ".snapshot");
+		file.delete();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private Map<String, String> setUpScene(String sparkOptions) {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+		if (!PhaseOptions.v().processPhaseOptions("cg.spark",
+				"enabled:true,snapshot:" + file.getPath() + sparkOptions))
+			throw new IllegalArgumentException("bad Spark options");
+		return PhaseOptions.v().getPhaseOptions("cg.spark");
+	}
+
+	/** Describes the points-to set of every reference local of the
+	 * program, and every call graph edge. */
+	private static List<String> describe(final PointsToAnalysis pa, CallGraph cg) {
+		List<String> ret = new ArrayList<String>();
+		for (SootClass c : Scene.v().getApplicationClasses()) {
+			for (SootMethod m : c.getMethods()) {
+				if (!m.hasActiveBody())
+					continue;
+				for (Local l : m.getActiveBody().getLocals()) {
+					if (!(l.getType() instanceof RefLikeType))
+						continue;
+					final List<String> objects = new ArrayList<String>();
+					((PointsToSetInternal) pa.reachingObjects(l)).forall(new P2SetVisitor() {
+						public void visit(Node n) {
+							AllocNode an = (AllocNode) n;
+							objects.add(an.getNewExpr() + " : " + an.getType() + " in " + an.getMethod());
+						}
+					});
+					Collections.sort(objects);
+					ret.add(m + " " + l + " -> " + objects);
+				}
+			}
+		}
+		for (Iterator<Edge> eIt = cg.iterator(); eIt.hasNext();) {
+			Edge e = eIt.next();
+			ret.add(e.src() + " " + e.srcUnit() + " " + e.kind() + " " + e.tgt());
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private void roundTrip(String sparkOptions) throws IOException {
+		SparkTransformer.v().transform("cg.spark", setUpScene(sparkOptions));
+		assertTrue(file.isFile());
+		List<String> computed = describe(Scene.v().getPointsToAnalysis(), Scene.v().getCallGraph());
+		assertTrue(computed.size() > 20);
+
+		Map<String, String> options = setUpScene(sparkOptions);
+		long stamp = 1000000000000L;
+		file.setLastModified(stamp);
+		PAGSnapshot snapshot = PAGSnapshot.read(file,
+				PAGSnapshot.fingerprint(options), new SparkOptions(options));
+		assertNotNull(snapshot);
+		assertEquals(computed, describe(snapshot.getPAG(), snapshot.getCallGraph()));
+
+		// Spark itself loads the snapshot rather than writing a new one
+		SparkTransformer.v().transform("cg.spark", options);
+		assertEquals(stamp, file.lastModified());
+		assertEquals(computed, describe(Scene.v().getPointsToAnalysis(), Scene.v().getCallGraph()));
+	}
+
+	@Test
+	public void onTheFlyCallGraph() throws IOException {
+		roundTrip("");
+	}
+
+	@Test
+	public void mergedNodes() throws IOException {
+		roundTrip(",on-fly-cg:false,simplify-sccs:true,simplify-offline:true");
+	}
+
+	@Test
+	public void otherOptionsIgnoreSnapshot() throws IOException {
+		SparkTransformer.v().transform("cg.spark", setUpScene(""));
+		Map<String, String> options = setUpScene(",types-for-sites:true");
+		assertNull(PAGSnapshot.read(file, PAGSnapshot.fingerprint(options),
+				new SparkOptions(options)));
+	}
+}
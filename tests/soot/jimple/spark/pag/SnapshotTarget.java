@@ -0,0 +1,62 @@
+package soot.jimple.spark.pag;
+
+/**
+ * Program analyzed by {@link PAGSnapshotTest}. It exercises the kinds of
+ * nodes Spark creates: fields, arrays, multi-dimensional arrays, casts,
+ * string and class constants, static fields, exceptions and virtual calls.
+ */
+public class SnapshotTarget {
+	static Object global;
+
+	Object field;
+
+	interface Shape {
+		Object make();
+	}
+
+	static class Box implements Shape {
+		public Object make() {
+			return new Box();
+		}
+	}
+
+	static class Circle implements Shape {
+		Object radius;
+
+		public Object make() {
+			Circle c = new Circle();
+			c.radius = "r";
+			return c;
+		}
+	}
+
+	static Shape pick(int i) {
+		if (i > 0)
+			return new Box();
+		return new Circle();
+	}
+
+	Object id(Object o) {
+		return o;
+	}
+
+	public static void main(String[] args) {
+		SnapshotTarget t = new SnapshotTarget();
+		t.field = t.id(pick(args.length).make());
+		Object[][] grid = new Object[2][3];
+		grid[1][2] = t.field;
+		global = grid[0];
+		Shape s = (Shape) t.id(new Circle());
+		global = s.make();
+		Object c = SnapshotTarget.class;
+		try {
+			if (args.length > 1)
+				throw new IllegalStateException();
+		} catch (RuntimeException e) {
+			global = e;
+		}
+		t.field = c;
+		String[] copy = args;
+		global = copy[0];
+	}
+}
@@ -0,0 +1,187 @@
+package soot.jimple.spark.sets;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.ArrayType;
+import soot.G;
+import soot.IntType;
+import soot.Type;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.options.SparkOptions;
+
+/**
+ * Checks {@link CompressedPointsToSet} against a {@link HashSet}, with
+ * enough allocation nodes that sets span several containers and switch
+ * from sorted arrays to bitmaps.
+ */
+public class CompressedPointsToSetTest {
+
+	static final int NODES = 3 * 65536 + 100;
+
+	static Type type;
+	static PAG pag;
+	static AllocNode[] nodes;
+
+	@BeforeClass
+	public static void makeNodes() {
+		Map<String, String> opts = new HashMap<String, String>();
+		opts.put("ignore-types", "true");
+		opts.put("set-impl", "compressed");
+		pag = new PAG(new SparkOptions(opts));
+		type = ArrayType.v(IntType.v(), 1);
+		nodes = new AllocNode[NODES];
+		for (int i = 0; i < NODES; i++)
+			nodes[i] = pag.makeAllocNode(new Object(), type, null);
+	}
+
+	private static CompressedPointsToSet newSet() {
+		return new CompressedPointsToSet(type, pag);
+	}
+
+	/** Adds count random nodes, drawn from a range of the given width that
+	 * starts at a random node, to both sets. */
+	private static void fill(Random random, PointsToSetInternal set,
+			Set<Node> expected, int count, int width) {
+		int start = random.nextInt(NODES - width);
+		for (int i = 0; i < count; i++) {
+			Node n = nodes[start + random.nextInt(width)];
+			assertEquals(expected.add(n), set.add(n));
+		}
+	}
+
+	private static Set<Node> contents(PointsToSetInternal set) {
+		final Set<Node> ret = new HashSet<Node>();
+		set.forall(new P2SetVisitor() {
+			public void visit(Node n) {
+				assertTrue(ret.add(n));
+			}
+		});
+		return ret;
+	}
+
+	private static void check(Set<Node> expected, PointsToSetInternal set) {
+		assertEquals(expected, contents(set));
+		assertEquals(expected.size(), set.size());
+		assertEquals(expected.isEmpty(), set.isEmpty());
+		for (Node n : expected)
+			assertTrue(set.contains(n));
+	}
+
+	@Test
+	public void addMatchesHashSet() {
+		Random random = new Random(1);
+		int[][] shapes = { { 10, 100 }, { 3000, 60000 }, { 20000, 30000 },
+				{ 50000, NODES - 1 } };
+		for (int[] shape : shapes) {
+			CompressedPointsToSet set = newSet();
+			Set<Node> expected = new HashSet<Node>();
+			fill(random, set, expected, shape[0], shape[1]);
+			check(expected, set);
+			for (int i = 0; i < 1000; i++) {
+				Node n = nodes[random.nextInt(NODES)];
+				assertEquals(expected.contains(n), set.contains(n));
+			}
+		}
+	}
+
+	@Test
+	public void addAllMatchesHashSet() {
+		Random random = new Random(2);
+		int[] counts = { 0, 5, 500, 5000, 40000 };
+		for (int a : counts) {
+			for (int b : counts) {
+				for (int e : counts) {
+					CompressedPointsToSet setA = newSet();
+					CompressedPointsToSet setB = newSet();
+					CompressedPointsToSet setE = newSet();
+					Set<Node> expected = new HashSet<Node>();
+					Set<Node> setBNodes = new HashSet<Node>();
+					Set<Node> setENodes = new HashSet<Node>();
+					fill(random, setA, expected, a, 2 * a + 70000);
+					fill(random, setB, setBNodes, b, 2 * b + 70000);
+					fill(random, setE, setENodes, e, 2 * e + 70000);
+
+					setBNodes.removeAll(setENodes);
+					boolean changed = expected.addAll(setBNodes);
+					assertEquals(changed, setA.addAll(setB, setE));
+					check(expected, setA);
+					assertFalse(setA.addAll(setB, setE));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void addAllFromOtherImplementation() {
+		Random random = new Random(3);
+		CompressedPointsToSet set = newSet();
+		HybridPointsToSet other = new HybridPointsToSet(type, pag);
+		Set<Node> expected = new HashSet<Node>();
+		fill(random, set, expected, 1000, 100000);
+		fill(random, other, new HashSet<Node>(), 1000, 100000);
+		expected.addAll(contents(other));
+		assertTrue(set.addAll(other, null));
+		check(expected, set);
+
+		HybridPointsToSet copy = new HybridPointsToSet(type, pag);
+		assertTrue(copy.addAll(set, null));
+		assertEquals(expected, contents(copy));
+	}
+
+	/** Returns a set of the given kind: 0 compressed, 1 hybrid, 2 bit. */
+	private static PointsToSetInternal newSet(int kind) {
+		switch (kind) {
+		case 0:
+			return newSet();
+		case 1:
+			return new HybridPointsToSet(type, pag);
+		default:
+			return new BitPointsToSet(type, pag);
+		}
+	}
+
+	@Test
+	public void addAllMixedMatchesHashSet() {
+		G.v().PointsToSetInternal_warnedAlready = false;
+		Random random = new Random(4);
+		// 10 nodes stay in the node array of a hybrid set
+		int[] counts = { 0, 10, 500, 40000 };
+		for (int otherKind = 0; otherKind < 3; otherKind++) {
+			for (int excludeKind = 0; excludeKind < 3; excludeKind++) {
+				for (int a : counts) {
+					for (int b : counts) {
+						for (int e : counts) {
+							CompressedPointsToSet setA = newSet();
+							PointsToSetInternal setB = newSet(otherKind);
+							PointsToSetInternal setE = newSet(excludeKind);
+							Set<Node> expected = new HashSet<Node>();
+							Set<Node> setBNodes = new HashSet<Node>();
+							Set<Node> setENodes = new HashSet<Node>();
+							fill(random, setA, expected, a, 2 * a + 70000);
+							fill(random, setB, setBNodes, b, 2 * b + 70000);
+							fill(random, setE, setENodes, e, 2 * e + 70000);
+
+							setBNodes.removeAll(setENodes);
+							boolean changed = expected.addAll(setBNodes);
+							assertEquals(changed, setA.addAll(setB, setE));
+							check(expected, setA);
+							assertFalse(setA.addAll(setB, setE));
+						}
+					}
+				}
+			}
+		}
+		assertFalse(G.v().PointsToSetInternal_warnedAlready);
+	}
+}
@@ -0,0 +1,124 @@
+package soot.jimple.spark.sets;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.ArrayType;
+import soot.IntType;
+import soot.Type;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.options.SparkOptions;
+
+/**
+ * Checks {@link InternedPointsToSet} against a {@link HashSet}, and that
+ * equal sets and repeated unions are shared.
+ */
+public class InternedPointsToSetTest {
+
+	static final int NODES = 5000;
+
+	static Type type;
+	static PAG pag;
+	static AllocNode[] nodes;
+
+	@BeforeClass
+	public static void makeNodes() {
+		Map<String, String> opts = new HashMap<String, String>();
+		opts.put("ignore-types", "true");
+		opts.put("set-impl", "interned");
+		pag = new PAG(new SparkOptions(opts));
+		type = ArrayType.v(IntType.v(), 1);
+		nodes = new AllocNode[NODES];
+		for (int i = 0; i < NODES; i++)
+			nodes[i] = pag.makeAllocNode(new Object(), type, null);
+	}
+
+	private static InternedPointsToSet.Table table;
+
+	private static InternedPointsToSet newSet() {
+		PointsToSetInternal ret = InternedPointsToSet.getFactory().newSet(type, pag);
+		table = ((InternedPointsToSet) ret).table;
+		return (InternedPointsToSet) ret;
+	}
+
+	private static void fill(Random random, PointsToSetInternal set,
+			Set<Node> expected, int count) {
+		for (int i = 0; i < count; i++) {
+			Node n = nodes[random.nextInt(NODES)];
+			assertEquals(expected.add(n), set.add(n));
+		}
+	}
+
+	private static Set<Node> contents(PointsToSetInternal set) {
+		final Set<Node> ret = new HashSet<Node>();
+		set.forall(new P2SetVisitor() {
+			public void visit(Node n) {
+				assertTrue(ret.add(n));
+			}
+		});
+		return ret;
+	}
+
+	@Test
+	public void addAllMatchesHashSet() {
+		Random random = new Random(1);
+		int[] counts = { 0, 1, 30, 2000 };
+		for (int a : counts) {
+			for (int b : counts) {
+				for (int e : counts) {
+					InternedPointsToSet setA = newSet();
+					InternedPointsToSet setB = newSet();
+					InternedPointsToSet setE = newSet();
+					Set<Node> expected = new HashSet<Node>();
+					Set<Node> setBNodes = new HashSet<Node>();
+					Set<Node> setENodes = new HashSet<Node>();
+					fill(random, setA, expected, a);
+					fill(random, setB, setBNodes, b);
+					fill(random, setE, setENodes, e);
+
+					setBNodes.removeAll(setENodes);
+					assertEquals(expected.addAll(setBNodes), setA.addAll(setB, setE));
+					assertEquals(expected, contents(setA));
+					assertEquals(expected.size(), setA.size());
+					assertFalse(setA.addAll(setB, setE));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void equalSetsAreShared() {
+		Random random = new Random(2);
+		InternedPointsToSet a = newSet();
+		fill(random, a, new HashSet<Node>(), 100);
+		InternedPointsToSet b = newSet();
+		b.addAll(a, null);
+		InternedPointsToSet c = newSet();
+		for (Node n : contents(a))
+			c.add(n);
+		assertSame(a.elems, b.elems);
+		assertSame(a.elems, c.elems);
+
+		InternedPointsToSet d = newSet();
+		fill(random, d, new HashSet<Node>(), 100);
+		InternedPointsToSet e1 = newSet();
+		InternedPointsToSet e2 = newSet();
+		e1.addAll(a, null);
+		e2.addAll(a, null);
+		long hits = table.cacheHits();
+		assertTrue(e1.addAll(d, null));
+		assertTrue(e2.addAll(d, null));
+		assertEquals(hits + 1, table.cacheHits());
+		assertSame(e1.elems, e2.elems);
+	}
+}
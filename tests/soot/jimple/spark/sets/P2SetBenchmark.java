@@ -0,0 +1,113 @@
+package soot.jimple.spark.sets;
+
+import java.util.Map;
+
+import soot.G;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.jimple.spark.builder.ContextInsensitiveBuilder;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.solver.PropWorklist;
+import soot.jimple.spark.solver.SCCCollapser;
+import soot.options.Options;
+import soot.options.SparkOptions;
+
+/**
+ * Memory and time benchmark for the points-to set implementations of Spark.
+ *
+ * <p>Loads the program given by the Soot arguments once, then for each set
+ * implementation builds the same pointer assignment graph (with the CHA call
+ * graph, so that it does not depend on the points-to sets), propagates it
+ * with the worklist propagator and prints the propagation time, the growth
+ * of the heap during propagation (measured after garbage collection), and
+ * the total size of the points-to sets.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.jimple.spark.sets.P2SetBenchmark [soot arguments]</code>,
+ * e.g. <code>-cp ... -main-class Main -process-dir dir</code>.
+ */
+public class P2SetBenchmark {
+
+	static final String[] SETS = { "set-impl:hybrid", "set-impl:heintze",
+			"set-impl:sharedlist", "set-impl:bit", "set-impl:compressed",
+			"set-impl:interned",
+			"set-impl:double double-set-old:hybrid double-set-new:hybrid",
+			"set-impl:double double-set-old:bit double-set-new:bit",
+			"set-impl:double double-set-old:compressed double-set-new:compressed",
+			"set-impl:double double-set-old:compressed double-set-new:hybrid",
+			"set-impl:double double-set-old:interned double-set-new:interned" };
+
+	static final int RUNS = 3;
+
+	public static void main(String[] args) {
+		G.reset();
+		if (!Options.v().parse(args))
+			throw new IllegalArgumentException("bad Soot arguments");
+		Options.v().set_whole_program(true);
+		Scene.v().loadNecessaryClasses();
+		// retrieve all bodies up front, so that no run pays for them
+		new ContextInsensitiveBuilder().preJimplify();
+
+		System.out.println(String.format("%-68s %10s %10s %12s", "sets",
+				"prop ms", "heap KB", "elements"));
+		for (String sets : SETS) {
+			for (int run = 0; run < RUNS; run++) {
+				long[] result;
+				try {
+					result = measure(sets);
+				} catch (StackOverflowError e) {
+					// the recursive union of sharedlist overflows on large sets
+					System.out.println(String.format("%-68s %s", sets, "stack overflow"));
+					break;
+				}
+				System.out.println(String.format("%-68s %10d %10d %12d", sets,
+						result[0], result[1] / 1024, result[2]));
+			}
+		}
+	}
+
+	/** Returns the propagation time, the growth of the heap and the total
+	 * size of the points-to sets. */
+	private static long[] measure(String sets) {
+		G.v().MethodPAG_methodToPag.clear();
+		G.v().InternedPointsToSet_table = null;
+		if (!PhaseOptions.v().processPhaseOptions("cg.spark",
+				"enabled:true,on-fly-cg:false," + sets.replace(' ', ',')))
+			throw new IllegalArgumentException("bad Spark options " + sets);
+		Map<String, String> options = PhaseOptions.v().getPhaseOptions("cg.spark");
+		SparkOptions opts = new SparkOptions(options);
+
+		ContextInsensitiveBuilder b = new ContextInsensitiveBuilder();
+		PAG pag = b.setup(opts);
+		b.build();
+		pag.getTypeManager().makeTypeMask();
+		new SCCCollapser(pag, opts.ignore_types_for_sccs()).collapse();
+		pag.cleanUpMerges();
+
+		long before = usedHeap();
+		long start = System.nanoTime();
+		new PropWorklist(pag).propagate();
+		long time = (System.nanoTime() - start) / 1000000;
+		long heap = usedHeap() - before;
+
+		long elements = 0;
+		for (VarNode vn : pag.getVarNodeNumberer()) {
+			if (vn.getReplacement() == vn && vn.getP2Set() != null)
+				elements += vn.getP2Set().size();
+		}
+		InternedPointsToSet.Table table = G.v().InternedPointsToSet_table;
+		if (table != null) {
+			System.out.println(String.format("  %d distinct sets, %d of %d unions from cache",
+					table.size(), table.cacheHits(), table.unions()));
+		}
+		return new long[] { time, heap, elements };
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
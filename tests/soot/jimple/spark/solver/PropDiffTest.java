@@ -0,0 +1,121 @@
+package soot.jimple.spark.solver;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+/**
+ * Runs Spark on {@link soot.jimple.spark.pag.SnapshotTarget} with the
+ * difference propagator and with the worklist propagator, and checks that
+ * every variable node gets the same points-to set from both.
+ */
+public class PropDiffTest {
+
+	static final String TARGET = "soot.jimple.spark.pag.SnapshotTarget";
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	/** Runs Spark in a fresh Scene, and describes the points-to set of
+	 * every variable node and every call graph edge. */
+	private static List<String> run(String sparkOptions) {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+		if (!PhaseOptions.v().processPhaseOptions("cg.spark", "enabled:true," + sparkOptions))
+			throw new IllegalArgumentException("bad Spark options");
+		SparkTransformer.v().transform("cg.spark", PhaseOptions.v().getPhaseOptions("cg.spark"));
+
+		PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+		List<String> ret = new ArrayList<String>();
+		for (Iterator<VarNode> vnIt = pag.getVarNodeNumberer().iterator(); vnIt.hasNext();) {
+			VarNode vn = vnIt.next();
+			final List<String> objects = new ArrayList<String>();
+			vn.getP2Set().forall(new P2SetVisitor() {
+				public void visit(Node n) {
+					AllocNode an = (AllocNode) n;
+					objects.add(an.getNewExpr() + " : " + an.getType() + " in " + an.getMethod());
+				}
+			});
+			Collections.sort(objects);
+			String method = vn instanceof LocalVarNode ? ((LocalVarNode) vn).getMethod() + " " : "";
+			ret.add(method + vn.getVariable() + " -> " + objects);
+		}
+		for (Iterator<Edge> eIt = Scene.v().getCallGraph().iterator(); eIt.hasNext();) {
+			Edge e = eIt.next();
+			ret.add(e.src() + " " + e.srcUnit() + " " + e.kind() + " " + e.tgt());
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private static void checkSameAsWorklist(String sparkOptions) {
+		List<String> worklist = run("propagator:worklist," + sparkOptions);
+		assertTrue(worklist.size() > 20);
+		assertEquals(worklist, run("propagator:diff," + sparkOptions));
+	}
+
+	@Test
+	public void callGraphAhead() {
+		checkSameAsWorklist("on-fly-cg:false");
+	}
+
+	/** With the call graph built on the fly, edges are added to the PAG
+	 * while the sets are propagated. */
+	@Test
+	public void callGraphOnTheFly() {
+		checkSameAsWorklist("on-fly-cg:true");
+	}
+}
@@ -0,0 +1,191 @@
+package soot.jimple.toolkits.callgraph;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Kind;
+import soot.PackManager;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.options.Options;
+
+/**
+ * Exports the CHA call graph of {@link CallGraphTarget} with
+ * {@link CallGraphWriter}, and checks that {@link CallGraphReader} gives
+ * back the same edges, both by method number and as a call graph of a
+ * fresh Scene.
+ */
+public class CallGraphExportTest {
+
+	static final String TARGET = "soot.jimple.toolkits.callgraph.CallGraphTarget";
+
+	File file;
+
+	@Before
+	public void makeFile() throws IOException {
+		file = File.createTempFile("callgraph", ".bin");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private void setUpScene() {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+	}
+
+	private static String describe(SootMethod src, int unit, Kind kind, SootMethod tgt) {
+		return src + " " + unit + " " + kind + " " + tgt;
+	}
+
+	/** Describes the edges of cg, with call sites by their position. */
+	private static List<String> describe(CallGraph cg) {
+		return describe(cg.iterator());
+	}
+
+	private static List<String> describe(Iterator<Edge> edges) {
+		List<String> ret = new ArrayList<String>();
+		while (edges.hasNext()) {
+			Edge e = edges.next();
+			int unit = -1;
+			if (e.srcUnit() != null)
+				unit = new ArrayList<Unit>(e.src().getActiveBody().getUnits()).indexOf(e.srcUnit());
+			ret.add(describe(e.src(), unit, e.kind(), e.tgt()));
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		setUpScene();
+		PhaseOptions.v().setPhaseOption("cg", "export:" + file.getPath());
+		PackManager.v().getPack("cg").apply();
+		List<String> expected = describe(Scene.v().getCallGraph());
+		assertTrue(expected.size() > 20);
+
+		CallGraphReader reader = CallGraphReader.read(file);
+		assertEquals(expected.size(), reader.size());
+		int fromMain = 0;
+		for (int m = 0; m < reader.methodCount(); m++) {
+			assertEquals(m, reader.methodNumber(reader.methodSignature(m)));
+			for (int e : reader.edgesOutOf(m))
+				assertEquals(m, reader.edgeSource(e));
+			for (int e : reader.edgesInto(m))
+				assertEquals(m, reader.edgeTarget(e));
+			if (reader.methodSignature(m).equals("<" + TARGET + ": void main(java.lang.String[])>"))
+				fromMain = reader.edgesOutOf(m).length;
+		}
+		assertTrue(fromMain > 0);
+
+		setUpScene();
+		assertEquals(expected, describe(reader.toCallGraph()));
+	}
+
+	/** Writes the edges in several batches while they are being added. */
+	@Test
+	public void streaming() throws IOException {
+		setUpScene();
+		PackManager.v().getPack("cg").apply();
+		CallGraph built = Scene.v().getCallGraph();
+		List<Edge> edges = new ArrayList<Edge>();
+		for (Iterator<Edge> edgeIt = built.iterator(); edgeIt.hasNext();)
+			edges.add(edgeIt.next());
+
+		CallGraph cg = new CallGraph();
+		CallGraphWriter writer = new CallGraphWriter(cg,
+				new BufferedOutputStream(new FileOutputStream(file)));
+		int written = 0;
+		for (int i = 0; i < edges.size(); i++) {
+			Edge e = edges.get(i);
+			cg.addEdge(new Edge(e.src(), e.srcUnit(), e.tgt(), e.kind()));
+			if (i % 10 == 0)
+				written += writer.writeNewEdges();
+		}
+		writer.close();
+		assertTrue(written > 0);
+		assertEquals(edges.size(), writer.edgeCount());
+
+		List<String> expected = describe(cg);
+		setUpScene();
+		assertEquals(expected, describe(CallGraphReader.read(file).toCallGraph()));
+	}
+
+	/** Asks the rebuilt graph for the edges of one method at a time, which
+	 * retrieves only the bodies of the methods asked for. */
+	@Test
+	public void lazy() throws IOException {
+		setUpScene();
+		PhaseOptions.v().setPhaseOption("cg", "export:" + file.getPath());
+		PackManager.v().getPack("cg").apply();
+		CallGraph built = Scene.v().getCallGraph();
+		SootMethod main = Scene.v().getMainMethod();
+		List<String> expectedOut = describe(built.edgesOutOf(main));
+		List<String> expected = describe(built);
+
+		setUpScene();
+		CallGraph cg = CallGraphReader.read(file).toCallGraph();
+		main = Scene.v().getMainMethod();
+		SootMethod visit = Scene.v().getMethod("<" + TARGET + "$Printer: void visit("
+				+ TARGET + "$Node)>");
+		assertEquals(expectedOut, describe(cg.edgesOutOf(main)));
+		assertTrue(main.hasActiveBody());
+		assertFalse(visit.hasActiveBody());
+		assertEquals(expected, describe(cg));
+		assertTrue(visit.hasActiveBody());
+	}
+}
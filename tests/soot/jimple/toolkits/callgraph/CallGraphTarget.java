@@ -0,0 +1,58 @@
+package soot.jimple.toolkits.callgraph;
+
+/**
+ * Program analyzed by {@link ParallelCallGraphTest}. Its methods are spread
+ * over several classes, and reach each other through static, special,
+ * virtual and interface calls, static initializers and threads.
+ */
+public class CallGraphTarget {
+	static final Object LOCK = new Object();
+
+	interface Visitor {
+		void visit(Node n);
+	}
+
+	static abstract class Node {
+		abstract void accept(Visitor v);
+	}
+
+	static class Leaf extends Node {
+		static int count;
+
+		void accept(Visitor v) {
+			count++;
+			v.visit(this);
+		}
+	}
+
+	static class Pair extends Node {
+		Node left = new Leaf(), right = new Leaf();
+
+		void accept(Visitor v) {
+			left.accept(v);
+			right.accept(v);
+			v.visit(this);
+		}
+	}
+
+	static class Printer implements Visitor {
+		public void visit(Node n) {
+			System.out.println(n);
+		}
+	}
+
+	static class Worker extends Thread {
+		public void run() {
+			new Pair().accept(new Printer());
+		}
+	}
+
+	public static void main(String[] args) {
+		new Worker().start();
+		Node n = args.length > 0 ? new Pair() : new Leaf();
+		n.accept(new Printer());
+		synchronized (LOCK) {
+			System.out.println(Leaf.count + n.hashCode());
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package soot.jimple.toolkits.callgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Kind;
+import soot.MethodOrMethodContext;
+import soot.Modifier;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.util.queue.QueueReader;
+
+/**
+ * Builds random call graphs, and checks that a {@link CompactCallGraph}
+ * copy of each answers every query with the same edges as the original.
+ */
+public class CompactCallGraphTest {
+
+    static final Kind[] IMPLICIT = { Kind.CLINIT, Kind.THREAD, Kind.FINALIZE };
+
+    Random random;
+    List<SootMethod> methods;
+    List<Stmt> stmts;
+    List<SootMethod> stmtMethod;
+    CallGraph cg;
+
+    @Before
+    public void buildGraph() {
+        random = new Random(11);
+        SootClass c = new SootClass("CompactCallGraphTestClass");
+        methods = new ArrayList<SootMethod>();
+        for (int i = 0; i < 60; i++) {
+            SootMethod m = new SootMethod("m" + i, Collections.<Type>emptyList(),
+                    VoidType.v(), Modifier.STATIC);
+            c.addMethod(m);
+            methods.add(m);
+        }
+        stmts = new ArrayList<Stmt>();
+        stmtMethod = new ArrayList<SootMethod>();
+        for (int i = 0; i < 300; i++) {
+            stmts.add(newCall(pick(methods)));
+            stmtMethod.add(pick(methods));
+        }
+        cg = new CallGraph();
+        for (int i = 0; i < 1500; i++) {
+            int s = random.nextInt(stmts.size());
+            cg.addEdge(new Edge(stmtMethod.get(s), stmts.get(s), pick(methods)));
+        }
+        for (int i = 0; i < 100; i++) {
+            SootMethod src = random.nextInt(4) == 0 ? null : pick(methods);
+            cg.addEdge(new Edge(src, null, pick(methods),
+                    IMPLICIT[random.nextInt(IMPLICIT.length)]));
+        }
+        // a call site with both explicit and implicit edges
+        cg.addEdge(new Edge(stmtMethod.get(0), stmts.get(0), pick(methods), Kind.CLINIT));
+        // removed edges must not be copied
+        for (int i = 0; i < 50; i++) {
+            cg.removeEdge(pick(new ArrayList<Edge>(edges(cg.iterator()))));
+        }
+    }
+
+    private <T> T pick(List<T> list) {
+        return list.get(random.nextInt(list.size()));
+    }
+
+    private Stmt newCall(SootMethod callee) {
+        return Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(callee.makeRef()));
+    }
+
+    private static Set<Edge> edges(Iterator<Edge> it) {
+        Set<Edge> ret = new HashSet<Edge>();
+        while (it.hasNext()) {
+            assertTrue(ret.add(it.next()));
+        }
+        return ret;
+    }
+
+    private void assertSameGraph(CallGraph expected, CallGraph actual) {
+        assertEquals(expected.size(), actual.size());
+        Set<Edge> all = edges(expected.iterator());
+        assertEquals(all, edges(actual.iterator()));
+        // as for a CallGraph, the listener also returns the removed edges
+        assertTrue(edges(actual.listener()).containsAll(all));
+        for (SootMethod m : methods) {
+            assertEquals(edges(expected.edgesOutOf(m)), edges(actual.edgesOutOf(m)));
+            assertEquals(edges(expected.edgesInto(m)), edges(actual.edgesInto(m)));
+        }
+        for (Stmt s : stmts) {
+            Set<Edge> out = edges(expected.edgesOutOf(s));
+            assertEquals(out, edges(actual.edgesOutOf(s)));
+            for (SootMethod m : methods) {
+                Edge e = actual.findEdge(s, m);
+                if (e == null) {
+                    for (Edge o : out)
+                        assertNotSame(m, o.tgt());
+                } else {
+                    assertTrue(out.contains(e));
+                    assertSame(m, e.tgt());
+                }
+            }
+        }
+        Set<MethodOrMethodContext> sources = new HashSet<MethodOrMethodContext>();
+        for (Edge e : all)
+            if (e.getSrc() != null)
+                sources.add(e.getSrc());
+        Set<MethodOrMethodContext> actualSources = new HashSet<MethodOrMethodContext>();
+        for (Iterator<MethodOrMethodContext> it = actual.sourceMethods(); it.hasNext();)
+            actualSources.add(it.next());
+        actualSources.remove(null);
+        assertTrue(actualSources.containsAll(sources));
+    }
+
+    @Test
+    public void sameEdges() {
+        CompactCallGraph compact = new CompactCallGraph(cg);
+        assertSameGraph(cg, compact);
+        for (SootMethod m : methods) {
+            assertEquals(!cg.edgesInto(m).hasNext(), compact.isEntryMethod(m));
+        }
+        assertFalse(compact.newListener().hasNext());
+        assertSameGraph(cg, new CompactCallGraph(compact));
+    }
+
+    @Test
+    public void removeEdges() {
+        CompactCallGraph compact = new CompactCallGraph(cg);
+        List<Edge> all = new ArrayList<Edge>(edges(cg.iterator()));
+        Collections.shuffle(all, random);
+        for (Edge e : all.subList(0, all.size() / 3)) {
+            assertTrue(compact.removeEdge(e));
+            assertFalse(compact.removeEdge(e));
+            cg.removeEdge(e);
+        }
+        for (Stmt s : stmts.subList(0, 40)) {
+            boolean hadEdges = cg.edgesOutOf(s).hasNext();
+            cg.removeAllEdgesOutOf(s);
+            assertEquals(hadEdges, compact.removeAllEdgesOutOf(s));
+        }
+        assertSameGraph(cg, compact);
+        for (SootMethod m : methods) {
+            assertEquals(!cg.edgesInto(m).hasNext(), compact.isEntryMethod(m));
+        }
+    }
+
+    @Test
+    public void swapEdges() {
+        CompactCallGraph compact = new CompactCallGraph(cg);
+        Map<Unit, Stmt> swapped = new HashMap<Unit, Stmt>();
+        for (int i = 0; i < 40; i++) {
+            Stmt out = stmts.get(i);
+            Stmt in = newCall(methods.get(0));
+            stmts.set(i, in);
+            assertEquals(cg.edgesOutOf(out).hasNext(), compact.swapEdgesOutOf(out, in));
+            assertFalse(compact.edgesOutOf(out).hasNext());
+            swapped.put(out, in);
+        }
+        // the edges out of a swapped statement all become static calls,
+        // so the CLINIT edge may merge with another one
+        CallGraph expected = new CallGraph();
+        for (Edge e : cg) {
+            Stmt in = swapped.get(e.srcUnit());
+            expected.addEdge(in == null ? new Edge(e.getSrc(), e.srcUnit(), e.getTgt(), e.kind())
+                    : new Edge(e.getSrc(), in, e.getTgt()));
+        }
+        assertSameGraph(expected, compact);
+    }
+
+    @Test
+    public void addEdges() {
+        CompactCallGraph compact = new CompactCallGraph(cg);
+        QueueReader<Edge> all = compact.listener();
+        QueueReader<Edge> added = compact.newListener();
+        for (Edge e : edges(cg.iterator()))
+            assertFalse(compact.addEdge(new Edge(e.getSrc(), e.srcUnit(), e.getTgt(), e.kind())));
+        // removeEdge unlinks the given Edge object, so each graph keeps its own
+        List<Edge> newEdges = new ArrayList<Edge>();
+        List<Edge> compactEdges = new ArrayList<Edge>();
+        for (int i = 0; i < 300; i++) {
+            int s = random.nextInt(stmts.size());
+            Edge e = new Edge(stmtMethod.get(s), stmts.get(s), pick(methods));
+            Edge copy = new Edge(e.getSrc(), e.srcUnit(), e.getTgt(), e.kind());
+            boolean isNew = cg.addEdge(e);
+            assertEquals(isNew, compact.addEdge(copy));
+            if (isNew) {
+                newEdges.add(e);
+                compactEdges.add(copy);
+            }
+        }
+        assertFalse(newEdges.isEmpty());
+        assertSameGraph(cg, compact);
+        assertEquals(new HashSet<Edge>(newEdges), edges(added));
+        assertEquals(edges(cg.iterator()), edges(all));
+        for (SootMethod m : methods) {
+            assertEquals(!cg.edgesInto(m).hasNext(), compact.isEntryMethod(m));
+        }
+
+        for (int i = 0; i < newEdges.size() / 2; i++) {
+            assertTrue(compact.removeEdge(compactEdges.get(i)));
+            cg.removeEdge(newEdges.get(i));
+        }
+        assertSameGraph(cg, compact);
+        assertSameGraph(cg, new CompactCallGraph(compact));
+    }
+
+    @Test
+    public void swapEdgesIntoUnitWithEdges() {
+        CompactCallGraph compact = new CompactCallGraph(cg);
+        compact.addEdge(new Edge(stmtMethod.get(2), stmts.get(2), methods.get(5)));
+        cg.addEdge(new Edge(stmtMethod.get(2), stmts.get(2), methods.get(5)));
+        for (int i = 0; i < 20; i++) {
+            // the edges out of stmt i join those of stmt i + 20, which
+            // then holds edges of both its own method and stmt i's
+            Stmt out = stmts.get(i);
+            Stmt in = stmts.get(i + 20);
+            boolean hadEdges = cg.swapEdgesOutOf(out, in);
+            assertEquals(hadEdges, compact.swapEdgesOutOf(out, in));
+            assertFalse(compact.edgesOutOf(out).hasNext());
+        }
+        assertSameGraph(cg, compact);
+    }
+}
@@ -0,0 +1,122 @@
+package soot.jimple.toolkits.callgraph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.AnySubType;
+import soot.G;
+import soot.PackManager;
+import soot.RefType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.options.Options;
+import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
+
+/**
+ * Builds the CHA call graph of {@link CallGraphTarget} with bodies built on
+ * one and on several threads, and checks that the edges are added in the
+ * same order, and that calls on an abstract receiver type only reach its
+ * concrete subtypes.
+ */
+public class ParallelCallGraphTest {
+
+	static final String TARGET = "soot.jimple.toolkits.callgraph.CallGraphTarget";
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	/** Returns the edges of the CHA call graph, in the order in which they
+	 * were added. */
+	private List<String> buildCallGraph(int threads) {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Options.v().set_num_threads(threads);
+		Scene.v().loadNecessaryClasses();
+		PackManager.v().getPack("cg").apply();
+
+		CallGraph cg = Scene.v().getCallGraph();
+		Set<Edge> live = new HashSet<Edge>();
+		for (Edge e : cg)
+			live.add(e);
+		// the listener also returns the edges removed by trim-clinit
+		List<String> ret = new ArrayList<String>();
+		for (Iterator<Edge> edgeIt = cg.listener(); edgeIt.hasNext();) {
+			Edge e = edgeIt.next();
+			if (live.contains(e))
+				ret.add(e.src() + " " + e.srcUnit() + " " + e.kind() + " " + e.tgt());
+		}
+		return ret;
+	}
+
+	@Test
+	public void sameEdgeOrder() {
+		List<String> sequential = buildCallGraph(1);
+		assertTrue(sequential.size() > 20);
+		assertEquals(sequential, buildCallGraph(4));
+	}
+
+	/** Collects the targets of a call on a receiver of any subtype of
+	 * base. */
+	private static List<SootMethod> targetsOf(AnySubType receiver, String subSig) {
+		ChunkedQueue<SootMethod> targets = new ChunkedQueue<SootMethod>();
+		QueueReader<SootMethod> reader = targets.reader();
+		VirtualCalls.v().resolve(receiver, receiver.getBase(),
+				Scene.v().getSubSigNumberer().findOrAdd(subSig), null, targets);
+		List<SootMethod> ret = new ArrayList<SootMethod>();
+		while (reader.hasNext())
+			ret.add(reader.next());
+		return ret;
+	}
+
+	@Test
+	public void abstractBaseIsNoTarget() {
+		buildCallGraph(1);
+		AnySubType node = AnySubType.v(RefType.v(TARGET + "$Node"));
+		List<SootMethod> first = targetsOf(node, "java.lang.String toString()");
+		// only Leaf and Pair, also once the subtypes are cached
+		assertEquals(2, first.size());
+		assertEquals(first, targetsOf(node, "java.lang.String toString()"));
+	}
+}
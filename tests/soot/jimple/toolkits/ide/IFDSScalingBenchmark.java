@@ -0,0 +1,82 @@
+package soot.jimple.toolkits.ide;
+
+import heros.IFDSTabulationProblem;
+import heros.InterproceduralCFG;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSPossibleTypes;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.options.Options;
+
+/**
+ * Compares the time the IFDS solver takes on the thread pool of Heros with
+ * the time it takes on a {@link WorkStealingExecutor}, for 1, 2, 4 and 8
+ * threads, and checks that both find the same number of facts.
+ *
+ * <p>Loads the program given by the Soot arguments and builds its call
+ * graph, then solves reaching definitions and possible types over it. For
+ * the work-stealing runs, it prints how busy each thread was.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.jimple.toolkits.ide.IFDSScalingBenchmark [soot arguments]</code>,
+ * e.g. <code>-cp ... -w -main-class Main -process-dir dir</code>.
+ */
+public class IFDSScalingBenchmark {
+
+	static final int[] THREADS = { 1, 2, 4, 8 };
+
+	public static void main(String[] args) {
+		if (!Options.v().parse(args))
+			throw new IllegalArgumentException("bad Soot arguments");
+		Scene.v().loadNecessaryClasses();
+		PackManager.v().getPack("cg").apply();
+		JimpleBasedInterproceduralCFG icfg = new JimpleBasedInterproceduralCFG();
+
+		for (final int threads : THREADS) {
+			for (int ws = 0; ws < 2; ws++) {
+				boolean workStealing = ws == 1;
+				IFDSReachingDefinitions defs = new IFDSReachingDefinitions(icfg) {
+					@Override
+					public int numThreads() {
+						return threads;
+					}
+				};
+				run("reaching definitions", defs, threads, workStealing);
+				IFDSPossibleTypes types = new IFDSPossibleTypes(icfg) {
+					@Override
+					public int numThreads() {
+						return threads;
+					}
+				};
+				run("possible types", types, threads, workStealing);
+			}
+		}
+	}
+
+	private static <D> void run(String name,
+			IFDSTabulationProblem<Unit, D, SootMethod, InterproceduralCFG<Unit, SootMethod>> problem,
+			int threads, boolean workStealing) {
+		JimpleIFDSSolver<D, InterproceduralCFG<Unit, SootMethod>> solver =
+				new JimpleIFDSSolver<D, InterproceduralCFG<Unit, SootMethod>>(problem, false, workStealing);
+		long start = System.nanoTime();
+		solver.solve();
+		long time = System.nanoTime() - start;
+		long facts = 0;
+		for (SootClass c : Scene.v().getClasses())
+			for (SootMethod m : c.getMethods())
+				if (m.hasActiveBody())
+					for (Unit u : m.getActiveBody().getUnits())
+						facts += solver.ifdsResultsAt(u).size();
+		G.v().out.println(name + ", " + threads + " threads, "
+				+ (workStealing ? "work stealing" : "thread pool") + ": "
+				+ time / 1000000 + " ms, " + facts + " facts");
+		if (workStealing)
+			solver.printThreadStatistics();
+	}
+}
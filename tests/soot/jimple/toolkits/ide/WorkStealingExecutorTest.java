@@ -0,0 +1,114 @@
+package soot.jimple.toolkits.ide;
+
+import static org.junit.Assert.*;
+
+import heros.InterproceduralCFG;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.options.Options;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Solves reaching definitions over the program of
+ * {@link soot.jimple.toolkits.callgraph.CallGraphTarget} on the thread pool
+ * of Heros and on a {@link WorkStealingExecutor}, and checks that both give
+ * the same facts at every statement.
+ */
+public class WorkStealingExecutorTest {
+
+	static final String TARGET = "soot.jimple.toolkits.callgraph.CallGraphTarget";
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private void setUpScene() {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+		PackManager.v().getPack("cg").apply();
+	}
+
+	private static Map<Unit, Set<Pair<Value, Set<DefinitionStmt>>>> solve(
+			InterproceduralCFG<Unit, SootMethod> icfg, boolean workStealing) {
+		IFDSReachingDefinitions problem = new IFDSReachingDefinitions(icfg) {
+			@Override
+			public int numThreads() {
+				return 3;
+			}
+		};
+		JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> solver =
+				new JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(
+						problem, false, workStealing);
+		solver.solve();
+		Map<Unit, Set<Pair<Value, Set<DefinitionStmt>>>> ret =
+				new HashMap<Unit, Set<Pair<Value, Set<DefinitionStmt>>>>();
+		for (SootClass c : Scene.v().getApplicationClasses())
+			for (SootMethod m : c.getMethods())
+				if (m.hasActiveBody())
+					for (Unit u : m.getActiveBody().getUnits())
+						ret.put(u, solver.ifdsResultsAt(u));
+		return ret;
+	}
+
+	@Test
+	public void sameResults() {
+		setUpScene();
+		JimpleBasedInterproceduralCFG icfg = new JimpleBasedInterproceduralCFG();
+		Map<Unit, Set<Pair<Value, Set<DefinitionStmt>>>> expected = solve(icfg, false);
+		assertFalse(expected.isEmpty());
+		int facts = 0;
+		for (Set<Pair<Value, Set<DefinitionStmt>>> s : expected.values())
+			facts += s.size();
+		assertTrue(facts > 0);
+		assertEquals(expected, solve(icfg, true));
+	}
+}
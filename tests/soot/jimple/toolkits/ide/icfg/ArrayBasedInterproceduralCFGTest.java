@@ -0,0 +1,125 @@
+package soot.jimple.toolkits.ide.icfg;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.options.Options;
+
+/**
+ * Builds an {@link ArrayBasedInterproceduralCFG} and a
+ * {@link JimpleBasedInterproceduralCFG} for the program of
+ * {@link soot.jimple.toolkits.callgraph.CallGraphTarget}, and checks that
+ * they answer every query the same for every reachable statement.
+ */
+public class ArrayBasedInterproceduralCFGTest {
+
+	static final String TARGET = "soot.jimple.toolkits.callgraph.CallGraphTarget";
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private void setUpScene() {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+		PackManager.v().getPack("cg").apply();
+	}
+
+	private static <T> void assertSameElements(Iterable<T> expected, Iterable<T> actual) {
+		List<T> e = new ArrayList<T>();
+		for (T t : expected)
+			e.add(t);
+		List<T> a = new ArrayList<T>();
+		for (T t : actual)
+			a.add(t);
+		assertEquals(e.size(), a.size());
+		assertEquals(new HashSet<T>(e), new HashSet<T>(a));
+	}
+
+	@Test
+	public void sameAnswers() {
+		setUpScene();
+		JimpleBasedInterproceduralCFG expected = new JimpleBasedInterproceduralCFG();
+		ArrayBasedInterproceduralCFG icfg = new ArrayBasedInterproceduralCFG();
+
+		int calls = 0;
+		for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+			SootMethod m = it.next().method();
+			assertSameElements(expected.getCallersOf(m), icfg.getCallersOf(m));
+			if (!m.hasActiveBody())
+				continue;
+			assertSameElements(expected.getStartPointsOf(m), icfg.getStartPointsOf(m));
+			assertSameElements(expected.getEndPointsOf(m), icfg.getEndPointsOf(m));
+			assertSameElements(expected.getCallsFromWithin(m), icfg.getCallsFromWithin(m));
+			assertEquals(expected.getParameterRefs(m), icfg.getParameterRefs(m));
+			for (Unit u : m.getActiveBody().getUnits()) {
+				assertSame(m, icfg.getMethodOf(u));
+				assertEquals(expected.getSuccsOf(u), icfg.getSuccsOf(u));
+				assertEquals(expected.getPredsOf(u), icfg.getPredsOf(u));
+				assertSameElements(expected.getReturnSitesOfCallAt(u), icfg.getReturnSitesOfCallAt(u));
+				assertEquals(expected.isCallStmt(u), icfg.isCallStmt(u));
+				assertEquals(expected.isExitStmt(u), icfg.isExitStmt(u));
+				assertEquals(expected.isStartPoint(u), icfg.isStartPoint(u));
+				assertEquals(expected.isReturnSite(u), icfg.isReturnSite(u));
+				assertEquals(expected.getCallsFromWithin(m).contains(u), icfg.getCallsFromWithin(m).contains(u));
+				for (Unit s : expected.getSuccsOf(u)) {
+					assertEquals(expected.isFallThroughSuccessor(u, s), icfg.isFallThroughSuccessor(u, s));
+					assertEquals(expected.isBranchTarget(u, s), icfg.isBranchTarget(u, s));
+				}
+				if (expected.isCallStmt(u)) {
+					calls++;
+					assertSameElements(expected.getCalleesOfCallAt(u), icfg.getCalleesOfCallAt(u));
+				}
+			}
+		}
+		assertTrue(calls > 0);
+		assertEquals(expected.allNonCallStartNodes(), icfg.allNonCallStartNodes());
+		assertEquals(expected.allNonCallEndNodes(), icfg.allNonCallEndNodes());
+	}
+}
@@ -0,0 +1,123 @@
+package soot.jimple.toolkits.ide.icfg;
+
+import heros.InterproceduralCFG;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import soot.MethodOrMethodContext;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.toolkits.ide.JimpleIFDSSolver;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.options.Options;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Compares {@link ArrayBasedInterproceduralCFG} with
+ * {@link JimpleBasedInterproceduralCFG}: the time to build each, the time
+ * and the bytes allocated for the queries the IFDS solver makes, asked for
+ * every reachable statement, first while the cached CFG fills its caches
+ * and then repeatedly, and the time to solve reaching definitions on one
+ * thread with each.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.jimple.toolkits.ide.icfg.InterproceduralCFGBenchmark [soot arguments]</code>,
+ * e.g. <code>-cp ... -w -main-class Main -process-dir dir</code>.
+ */
+public class InterproceduralCFGBenchmark {
+
+	static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		if (!Options.v().parse(args))
+			throw new IllegalArgumentException("bad Soot arguments");
+		Scene.v().loadNecessaryClasses();
+		PackManager.v().getPack("cg").apply();
+		List<Unit> units = new ArrayList<Unit>();
+		for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+			SootMethod m = it.next().method();
+			if (m.hasActiveBody())
+				units.addAll(m.getActiveBody().getUnits());
+		}
+		System.out.println(units.size() + " statements");
+
+		for (int run = 0; run < 3; run++) {
+			long start = System.nanoTime();
+			JimpleBasedInterproceduralCFG cached = new JimpleBasedInterproceduralCFG();
+			long built = System.nanoTime() - start;
+			report("cached", cached, built, units);
+			start = System.nanoTime();
+			ArrayBasedInterproceduralCFG arrays = new ArrayBasedInterproceduralCFG();
+			built = System.nanoTime() - start;
+			report("arrays", arrays, built, units);
+		}
+	}
+
+	private static void report(String name, BiDiInterproceduralCFG<Unit, SootMethod> icfg, long built,
+			List<Unit> units) {
+		// the first round fills the caches of the cached CFG
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		query(icfg, units);
+		long firstTime = System.nanoTime() - start;
+		long firstAllocated = allocatedBytes() - allocated;
+		allocated = allocatedBytes();
+		start = System.nanoTime();
+		long answers = 0;
+		for (int round = 0; round < ROUNDS; round++)
+			answers += query(icfg, units);
+		long time = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+
+		IFDSReachingDefinitions problem = new IFDSReachingDefinitions(icfg) {
+			@Override
+			public int numThreads() {
+				return 1;
+			}
+		};
+		JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> solver =
+				new JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(problem);
+		start = System.nanoTime();
+		solver.solve();
+		long solved = System.nanoTime() - start;
+
+		long queries = (long) ROUNDS * units.size();
+		System.out.println(String.format("%s: built in %d ms; first round %d ms, %d kB;"
+				+ " then %.1f ns and %.1f bytes per statement (%d answers); reaching definitions in %d ms",
+				name, built / 1000000, firstTime / 1000000, firstAllocated / 1024,
+				(double) time / queries, (double) allocated / queries, answers, solved / 1000000));
+	}
+
+	/** Asks what the IFDS solver asks about each statement. */
+	private static long query(BiDiInterproceduralCFG<Unit, SootMethod> icfg, List<Unit> units) {
+		long ret = 0;
+		for (Unit u : units) {
+			SootMethod m = icfg.getMethodOf(u);
+			if (icfg.isCallStmt(u)) {
+				for (SootMethod callee : icfg.getCalleesOfCallAt(u))
+					ret += icfg.getStartPointsOf(callee).size();
+				ret += icfg.getReturnSitesOfCallAt(u).size();
+			}
+			if (icfg.isExitStmt(u))
+				ret += icfg.getCallersOf(m).size();
+			else
+				ret += icfg.getSuccsOf(u).size();
+			if (icfg.isStartPoint(u))
+				ret++;
+		}
+		return ret;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,170 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import static org.junit.Assert.*;
+
+import heros.InterproceduralCFG;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Jimple;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSLocalInfoFlow;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.options.Options;
+
+/**
+ * Solves {@link IFDSLocalInfoFlow} over {@link SummaryTarget} twice, each
+ * time in a fresh Scene: the first run saves the summaries of the library
+ * methods, and the second uses them instead of their bodies, and must find
+ * the same facts in the main method.
+ */
+public class SummarizingIFDSSolverTest {
+
+	static final String TARGET = "soot.jimple.toolkits.ide.libsumm.SummaryTarget";
+	static final String PROBLEM = "local-info-flow";
+
+	File file;
+
+	@Before
+	public void makeFile() throws IOException {
+		file = File.createTempFile("summaries", ".bin");
+		file.delete();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private static G globals;
+
+	@BeforeClass
+	public static void saveGlobals() {
+		globals = G.v();
+	}
+
+	/** Puts back the Scene of the tests that ran before, which later tests
+	 * in the same JVM may rely on. */
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private void setUpScene() {
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(TARGET);
+		Options.v().classes().add(TARGET);
+		Scene.v().loadNecessaryClasses();
+		PackManager.v().getPack("cg").apply();
+	}
+
+	/** Solves the problem and describes the facts at each statement of
+	 * main. */
+	private List<String> solve(SummarizingIFDSSolver<Local, InterproceduralCFG<Unit, SootMethod>> solver) {
+		solver.solve();
+		List<String> ret = new ArrayList<String>();
+		for (Unit u : Scene.v().getMainMethod().getActiveBody().getUnits()) {
+			List<String> facts = new ArrayList<String>();
+			for (Local l : solver.ifdsResultsAt(u))
+				facts.add(l.getName());
+			Collections.sort(facts);
+			ret.add(u + " " + facts);
+		}
+		return ret;
+	}
+
+	private SummarizingIFDSSolver<Local, InterproceduralCFG<Unit, SootMethod>> makeSolver(SummaryStore store) {
+		IFDSLocalInfoFlow problem = new IFDSLocalInfoFlow(new JimpleBasedInterproceduralCFG());
+		return new SummarizingIFDSSolver<Local, InterproceduralCFG<Unit, SootMethod>>(problem, PROBLEM,
+				new LocalSummaryCodec(), store);
+	}
+
+	/** Facts at the start point of a callee are computed from the call
+	 * site, but those after it only by analysing the body. */
+	private static void assertNoFactsAfterStart(SummarizingIFDSSolver<Local, ?> solver, SootMethod m) {
+		for (Unit u : m.getActiveBody().getUnits())
+			if (u != m.getActiveBody().getUnits().getFirst())
+				assertTrue(solver.ifdsResultsAt(u).isEmpty());
+	}
+
+	@Test
+	public void reuseSummaries() throws IOException {
+		setUpScene();
+		assertFalse(Scene.v().getSootClass(TARGET + "$Lib").isApplicationClass());
+		SummaryStore store = SummaryStore.load(file);
+		SummarizingIFDSSolver<Local, InterproceduralCFG<Unit, SootMethod>> first = makeSolver(store);
+		List<String> expected = solve(first);
+		assertEquals(0, first.loadedSummaryCount());
+		assertTrue(first.savedSummaryCount() > 0);
+		for (String m : new String[] { "id", "copy", "fresh" })
+			assertTrue(store.summariesOf(PROBLEM).containsKey(
+					"<" + TARGET + "$Lib: java.lang.Object " + m + "(java.lang.Object)>"));
+		store.save(file);
+
+		setUpScene();
+		SummarizingIFDSSolver<Local, InterproceduralCFG<Unit, SootMethod>> second = makeSolver(SummaryStore.load(file));
+		assertEquals(expected, solve(second));
+		assertEquals(first.savedSummaryCount(), second.loadedSummaryCount());
+		assertTrue(second.skippedCallCount() > 0);
+		// the bodies of the library methods were not analysed
+		SootMethod copy = Scene.v().getMethod("<" + TARGET + "$Lib: java.lang.Object copy(java.lang.Object)>");
+		assertNoFactsAfterStart(second, copy);
+	}
+
+	/** A summary is not used once the body of its method changes. */
+	@Test
+	public void changedBody() throws IOException {
+		setUpScene();
+		SummaryStore store = new SummaryStore();
+		makeSolver(store).solve();
+		store.save(file);
+
+		setUpScene();
+		SootMethod copy = Scene.v().getMethod("<" + TARGET + "$Lib: java.lang.Object copy(java.lang.Object)>");
+		copy.getActiveBody().getUnits().insertBefore(Jimple.v().newNopStmt(),
+				copy.getActiveBody().getUnits().getLast());
+		SummarizingIFDSSolver<Local, InterproceduralCFG<Unit, SootMethod>> second = makeSolver(SummaryStore.load(file));
+		second.solve();
+		// fresh keeps its summaries, and id, which calls copy, loses them
+		SootMethod fresh = Scene.v().getMethod("<" + TARGET + "$Lib: java.lang.Object fresh(java.lang.Object)>");
+		SootMethod id = Scene.v().getMethod("<" + TARGET + "$Lib: java.lang.Object id(java.lang.Object)>");
+		assertTrue(second.loadedSummaryCount() > 0);
+		assertNoFactsAfterStart(second, fresh);
+		assertFalse(second.ifdsResultsAt(copy.getActiveBody().getUnits().getLast()).isEmpty());
+		assertFalse(second.ifdsResultsAt(id.getActiveBody().getUnits().getLast()).isEmpty());
+	}
+}
@@ -0,0 +1,32 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+/**
+ * Program analyzed by {@link SummarizingIFDSSolverTest}. Its main method
+ * passes its argument through the methods of {@link Lib}, which is loaded as
+ * a library class.
+ */
+public class SummaryTarget {
+
+	static class Lib {
+		static Object id(Object o) {
+			return copy(o);
+		}
+
+		private static Object copy(Object o) {
+			Object p = o;
+			return p;
+		}
+
+		static Object fresh(Object o) {
+			return new Object();
+		}
+	}
+
+	public static void main(String[] args) {
+		Object a = Lib.id(args);
+		Object b = Lib.fresh(a);
+		Object c = Lib.id(b);
+		Object d = Lib.id(a);
+		System.out.println(c.hashCode() + d.hashCode());
+	}
+}
@@ -0,0 +1,224 @@
+package soot.shimple.toolkits.scalar;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.Constant;
+import soot.options.Options;
+import soot.shimple.Shimple;
+import soot.shimple.ShimpleBody;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.MHGDominatorsFinder;
+
+/**
+ * Checks which expressions {@link SCommonSubexpressionEliminator} replaces,
+ * and that each is replaced by a local defined by a dominating unit.
+ */
+public class SCommonSubexpressionEliminatorTest {
+
+	private static G globals;
+
+	public static class Target {
+		public static void main(String[] args) {
+			int n = args.length;
+			System.out.println(straight(n, 2) + dominated(n, 3, n > 1) + siblings(n, 4, n > 2)
+					+ handler(n, 5) + zeros(n) + phis(n, 6, n > 3) + loop(n, 7) + casts(args));
+		}
+
+		static int straight(int a, int b) {
+			int x = a + b;
+			int y = b + a;
+			return x * y;
+		}
+
+		static int dominated(int a, int b, boolean c) {
+			int x = a * b;
+			if (c)
+				return a * b + 1;
+			return x - a * b;
+		}
+
+		static int siblings(int a, int b, boolean c) {
+			int r = 0;
+			if (c)
+				r = a - b;
+			return r + (a - b);
+		}
+
+		static int handler(int a, int b) {
+			int r;
+			try {
+				r = a / b;
+			} catch (ArithmeticException e) {
+				r = a / b + 1;
+			}
+			return r;
+		}
+
+		static double zeros(double a) {
+			return a * 0.0 + a * -0.0;
+		}
+
+		static int phis(int a, int b, boolean c) {
+			int x, y;
+			if (c) {
+				x = a + 1;
+				y = a + 1;
+			} else {
+				x = b + 1;
+				y = b + 1;
+			}
+			return x * 2 + y * 2;
+		}
+
+		static int loop(int n, int k) {
+			int s = 0;
+			for (int i = 0; i < n; i++)
+				s += i * k + (k * i);
+			return s;
+		}
+
+		static int casts(Object o) {
+			if (o instanceof String[] && ((String[]) o).length > 0)
+				return ((String[]) o).length;
+			return o instanceof String[] ? 1 : 0;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpScene() {
+		globals = G.v();
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(Target.class.getName());
+		Options.v().classes().add(Target.class.getName());
+		Scene.v().loadNecessaryClasses();
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	/**
+	 * Eliminates the common subexpressions of the named method, checks that
+	 * each replacing local is defined by a dominating unit and returns how
+	 * many expressions were replaced.
+	 */
+	private int eliminate(String name) {
+		SootMethod m = Scene.v().getSootClass(Target.class.getName()).getMethodByName(name);
+		ShimpleBody sb = Shimple.v().newBody(m.retrieveActiveBody());
+		Map<Unit, Value> before = new HashMap<Unit, Value>();
+		Map<Local, Unit> defs = new HashMap<Local, Unit>();
+		for (Unit u : sb.getUnits()) {
+			if (u instanceof AssignStmt)
+				before.put(u, ((AssignStmt) u).getRightOp());
+			for (ValueBox box : u.getDefBoxes()) {
+				if (box.getValue() instanceof Local)
+					defs.put((Local) box.getValue(), u);
+			}
+		}
+
+		SCommonSubexpressionEliminator.v().transform(sb);
+
+		MHGDominatorsFinder<Unit> dominators = new MHGDominatorsFinder<Unit>(new ExceptionalUnitGraph(sb));
+		int replaced = 0;
+		for (Unit u : sb.getUnits()) {
+			if (!(u instanceof AssignStmt))
+				continue;
+			Value rhs = ((AssignStmt) u).getRightOp();
+			Value old = before.get(u);
+			if (rhs == old)
+				continue;
+			assertFalse(old instanceof Local || old instanceof Constant);
+			if (rhs instanceof Local) {
+				Unit def = defs.get(rhs);
+				assertTrue(u + " not dominated by " + def, def != u && dominators.isDominatedBy(u, def));
+			} else {
+				assertTrue(rhs instanceof Constant);
+			}
+			replaced++;
+		}
+		assertTrue(sb.isSSA());
+		return replaced;
+	}
+
+	@Test
+	public void commutedInStraightLine() {
+		assertEquals(1, eliminate("straight"));
+	}
+
+	@Test
+	public void dominatedBranches() {
+		assertEquals(2, eliminate("dominated"));
+	}
+
+	@Test
+	public void notFromSiblingBranch() {
+		assertEquals(0, eliminate("siblings"));
+	}
+
+	@Test
+	public void notFromThrowingUnitInHandler() {
+		assertEquals(0, eliminate("handler"));
+	}
+
+	@Test
+	public void signedZerosDiffer() {
+		assertEquals(0, eliminate("zeros"));
+	}
+
+	@Test
+	public void equalPhis() {
+		// y + 1 in each branch, the Phi node of y and y * 2
+		assertEquals(4, eliminate("phis"));
+	}
+
+	@Test
+	public void commutedInLoop() {
+		assertEquals(1, eliminate("loop"));
+	}
+
+	@Test
+	public void castsAndInstanceOf() {
+		assertTrue(eliminate("casts") >= 2);
+	}
+
+	@Test
+	public void wholeTarget() {
+		eliminate("main");
+	}
+}
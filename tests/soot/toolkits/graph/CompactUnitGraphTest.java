@@ -0,0 +1,180 @@
+package soot.toolkits.graph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.ValueBox;
+import soot.options.Options;
+import soot.toolkits.scalar.SimpleLocalDefs;
+
+/**
+ * Checks that a {@link CompactUnitGraph} has the same edges as the graph it
+ * stands for, and that analyses give the same results on it.
+ */
+public class CompactUnitGraphTest {
+
+	private static G globals;
+	private static List<Body> bodies = new ArrayList<Body>();
+
+	/** Code with loops, switches, handlers and unreachable code. */
+	public static class Target {
+		public static void main(String[] args) {
+			System.out.println(loops(args.length) + branches(args.length) + handlers(args));
+		}
+
+		static int loops(int n) {
+			int s = 0;
+			outer: for (int i = 0; i < n; i++) {
+				for (int j = i; j > 0; j--) {
+					if (j == 3)
+						continue outer;
+					s += j;
+				}
+				while (s > 100)
+					s /= 2;
+			}
+			return s;
+		}
+
+		static int branches(int n) {
+			switch (n) {
+			case 0:
+				return 1;
+			case 1:
+			case 2:
+				n *= 2;
+				break;
+			case 10:
+				n = -n;
+			default:
+				n++;
+			}
+			return n > 5 ? n : n < -5 ? -n : 0;
+		}
+
+		static int handlers(String[] args) {
+			int r = 0;
+			try {
+				r = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				r = -1;
+			} catch (RuntimeException e) {
+				r = -2;
+			} finally {
+				r++;
+			}
+			synchronized (args) {
+				r += args.length;
+			}
+			return r;
+		}
+	}
+
+	@BeforeClass
+	public static void loadBodies() {
+		globals = G.v();
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(Target.class.getName());
+		Options.v().classes().add(Target.class.getName());
+		Scene.v().loadNecessaryClasses();
+		for (SootMethod m : Scene.v().getSootClass(Target.class.getName()).getMethods()) {
+			if (m.isConcrete())
+				bodies.add(m.retrieveActiveBody());
+		}
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		bodies.clear();
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	private static void assertSameGraph(UnitGraph expected, CompactUnitGraph actual) {
+		assertEquals(expected.getHeads(), actual.getHeads());
+		assertEquals(expected.getTails(), actual.getTails());
+		assertEquals(expected.size(), actual.size());
+		int n = 0;
+		for (Unit u : expected) {
+			assertEquals(n, actual.numberOf(u));
+			assertSame(u, actual.unitAt(n));
+			assertEquals(expected.getSuccsOf(u), actual.getSuccsOf(u));
+			assertEquals(expected.getPredsOf(u), actual.getPredsOf(u));
+			assertEquals(expected.getSuccsOf(u).size(), actual.succCount(n));
+			assertEquals(expected.getPredsOf(u).size(), actual.predCount(n));
+			n++;
+		}
+	}
+
+	@Test
+	public void sameAsBriefUnitGraph() {
+		assertFalse(bodies.isEmpty());
+		for (Body b : bodies)
+			assertSameGraph(new BriefUnitGraph(b), new CompactUnitGraph(b));
+	}
+
+	@Test
+	public void copiesExceptionalUnitGraph() {
+		for (Body b : bodies)
+			assertSameGraph(new ExceptionalUnitGraph(b), new CompactUnitGraph(new ExceptionalUnitGraph(b)));
+	}
+
+	@Test
+	public void sameDominators() {
+		for (Body b : bodies) {
+			MHGDominatorsFinder<Unit> expected = new MHGDominatorsFinder<Unit>(new BriefUnitGraph(b));
+			MHGDominatorsFinder<Unit> actual = new MHGDominatorsFinder<Unit>(new CompactUnitGraph(b));
+			for (Unit u : b.getUnits()) {
+				assertEquals(expected.getDominators(u), actual.getDominators(u));
+				assertEquals(expected.getImmediateDominator(u), actual.getImmediateDominator(u));
+			}
+		}
+	}
+
+	@Test
+	public void sameLocalDefs() {
+		for (Body b : bodies) {
+			SimpleLocalDefs expected = new SimpleLocalDefs(new BriefUnitGraph(b));
+			SimpleLocalDefs actual = new SimpleLocalDefs(new CompactUnitGraph(b));
+			for (Unit u : b.getUnits()) {
+				for (ValueBox box : u.getUseBoxes()) {
+					if (box.getValue() instanceof Local) {
+						Local l = (Local) box.getValue();
+						assertEquals(expected.getDefsOfAt(l, u), actual.getDefsOfAt(l, u));
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,338 @@
+package soot.toolkits.scalar;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.Jimple;
+import soot.options.Options;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.CompactUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Checks that a {@link GenKillAnalysis} computes the same sets as the
+ * equivalent {@link FlowAnalysis}, for a backward may analysis and a
+ * forward must analysis.
+ */
+public class GenKillAnalysisTest {
+
+	private static G globals;
+	private static List<Body> bodies = new ArrayList<Body>();
+
+	/** Code with loops, switches, handlers and a loop without exit. */
+	public static class Target {
+		public static void main(String[] args) {
+			System.out.println(loops(args.length) + branches(args.length) + handlers(args));
+			spin(args);
+		}
+
+		static int loops(int n) {
+			int s = 0;
+			outer: for (int i = 0; i < n; i++) {
+				for (int j = i; j > 0; j--) {
+					if (j == 3)
+						continue outer;
+					s += j;
+				}
+				while (s > 100)
+					s /= 2;
+			}
+			return s;
+		}
+
+		static int branches(int n) {
+			int a, b = 0;
+			switch (n) {
+			case 0:
+				return 1;
+			case 1:
+			case 2:
+				a = n * 2;
+				break;
+			case 10:
+				a = -n;
+				b = a;
+			default:
+				a = n + 1;
+			}
+			return a > 5 ? a + b : a < -5 ? -a : b;
+		}
+
+		static int handlers(String[] args) {
+			int r = 0;
+			try {
+				r = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				r = -1;
+			} catch (RuntimeException e) {
+				r = -2;
+			} finally {
+				r++;
+			}
+			synchronized (args) {
+				r += args.length;
+			}
+			return r;
+		}
+
+		static void spin(String[] args) {
+			int i = 0;
+			while (true) {
+				if (args.length > i)
+					System.out.println(args[i]);
+				i++;
+			}
+		}
+	}
+
+	/** Live locals as a {@link BackwardFlowAnalysis} over sparse sets. */
+	static class FlowLiveLocals extends BackwardFlowAnalysis<Unit, FlowSet<Local>> {
+		FlowLiveLocals(UnitGraph graph) {
+			super(graph);
+			doAnalysis();
+		}
+
+		@Override
+		protected FlowSet<Local> newInitialFlow() {
+			return new ArraySparseSet<Local>();
+		}
+
+		@Override
+		protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
+			in.copy(out);
+			for (ValueBox box : unit.getDefBoxes()) {
+				if (box.getValue() instanceof Local)
+					out.remove((Local) box.getValue());
+			}
+			for (ValueBox box : unit.getUseBoxes()) {
+				if (box.getValue() instanceof Local)
+					out.add((Local) box.getValue());
+			}
+		}
+
+		@Override
+		protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+			in1.union(in2, out);
+		}
+
+		@Override
+		protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+			source.copy(dest);
+		}
+	}
+
+	/** The locals assigned on every path, as a {@link GenKillAnalysis}. */
+	static class AssignedLocals extends GenKillAnalysis<Unit, Local> {
+		AssignedLocals(UnitGraph graph) {
+			super(graph, graph.getBody().getLocals(), true, false);
+			doAnalysis();
+		}
+
+		@Override
+		protected void genAndKill(Unit unit, long[] gen, long[] kill) {
+			for (ValueBox box : unit.getDefBoxes()) {
+				if (box.getValue() instanceof Local)
+					add(gen, (Local) box.getValue());
+			}
+		}
+	}
+
+	/** The locals assigned on every path, as a {@link ForwardFlowAnalysis}
+	 * over packed sets. */
+	static class FlowAssignedLocals extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+		private final FlowUniverse<Local> universe;
+
+		FlowAssignedLocals(UnitGraph graph) {
+			super(graph);
+			universe = new CollectionFlowUniverse<Local>(graph.getBody().getLocals());
+			doAnalysis();
+		}
+
+		@Override
+		protected FlowSet<Local> newInitialFlow() {
+			ArrayPackedSet<Local> ret = new ArrayPackedSet<Local>(universe);
+			ret.complement();
+			return ret;
+		}
+
+		@Override
+		protected FlowSet<Local> entryInitialFlow() {
+			return new ArrayPackedSet<Local>(universe);
+		}
+
+		@Override
+		protected void flowThrough(FlowSet<Local> in, Unit unit, FlowSet<Local> out) {
+			in.copy(out);
+			for (ValueBox box : unit.getDefBoxes()) {
+				Value v = box.getValue();
+				if (v instanceof Local)
+					out.add((Local) v);
+			}
+		}
+
+		@Override
+		protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+			in1.intersection(in2, out);
+		}
+
+		@Override
+		protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+			source.copy(dest);
+		}
+	}
+
+	@BeforeClass
+	public static void loadBodies() {
+		globals = G.v();
+		G.reset();
+		String rtJar = System.getProperty("java.home") + File.separator + "lib"
+				+ File.separator + "rt.jar";
+		Options.v().set_soot_classpath(System.getProperty("java.class.path")
+				+ File.pathSeparator + rtJar);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+		Options.v().set_main_class(Target.class.getName());
+		Options.v().classes().add(Target.class.getName());
+		Scene.v().loadNecessaryClasses();
+		for (SootMethod m : Scene.v().getSootClass(Target.class.getName()).getMethods()) {
+			if (m.isConcrete())
+				bodies.add(m.retrieveActiveBody());
+		}
+	}
+
+	@AfterClass
+	public static void restoreGlobals() {
+		bodies.clear();
+		G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+			private G instance = globals;
+
+			public G getG() {
+				return instance;
+			}
+
+			public void reset() {
+				instance = new G();
+			}
+		});
+	}
+
+	/** Returns whether the nodes of b all reach a tail and are reached from
+	 * a head, the only nodes {@link FlowAnalysis} computes sets for. */
+	private static boolean terminates(Body b) {
+		return !b.getMethod().getName().equals("spin");
+	}
+
+	private static List<UnitGraph> graphs(Body b) {
+		return Arrays.<UnitGraph> asList(new BriefUnitGraph(b), new ExceptionalUnitGraph(b),
+				new CompactUnitGraph(new ExceptionalUnitGraph(b)));
+	}
+
+	@Test
+	public void liveLocals() {
+		assertFalse(bodies.isEmpty());
+		for (Body b : bodies) {
+			if (!terminates(b))
+				continue;
+			for (UnitGraph g : graphs(b)) {
+				FlowLiveLocals expected = new FlowLiveLocals(g);
+				SimpleLiveLocals actual = new SimpleLiveLocals(g);
+				for (Unit u : b.getUnits()) {
+					assertEquals(new HashSet<Local>(expected.getFlowBefore(u).toList()),
+							new HashSet<Local>(actual.getLiveLocalsBefore(u)));
+					assertEquals(new HashSet<Local>(expected.getFlowAfter(u).toList()),
+							new HashSet<Local>(actual.getLiveLocalsAfter(u)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void assignedLocals() {
+		for (Body b : bodies) {
+			if (!terminates(b))
+				continue;
+			for (UnitGraph g : graphs(b)) {
+				FlowAssignedLocals expected = new FlowAssignedLocals(g);
+				AssignedLocals actual = new AssignedLocals(g);
+				for (Unit u : b.getUnits()) {
+					assertEquals(new HashSet<Local>(expected.getFlowBefore(u).toList()),
+							new HashSet<Local>(actual.getFlowBefore(u)));
+					assertEquals(new HashSet<Local>(expected.getFlowAfter(u).toList()),
+							new HashSet<Local>(actual.getFlowAfter(u)));
+					for (Local l : b.getLocals())
+						assertEquals(expected.getFlowAfter(u).contains(l), actual.isAfter(u, l));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void usedLocalsLive() {
+		for (Body b : bodies) {
+			for (UnitGraph g : graphs(b)) {
+				SimpleLiveLocals live = new SimpleLiveLocals(g);
+				for (Unit u : b.getUnits()) {
+					for (ValueBox box : u.getUseBoxes()) {
+						if (box.getValue() instanceof Local)
+							assertTrue(live.getLiveLocalsBefore(u).contains(box.getValue()));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void undeclaredLocals() {
+		for (Body b : bodies) {
+			if (b.getLocalCount() == 0)
+				continue;
+			Body copy = (Body) b.clone();
+			Local undeclared = copy.getLocals().getFirst();
+			copy.getLocals().removeFirst();
+			UnitGraph g = new BriefUnitGraph(copy);
+			SimpleLiveLocals live = new SimpleLiveLocals(g);
+			for (Unit u : copy.getUnits()) {
+				for (ValueBox box : u.getUseBoxes()) {
+					if (box.getValue() == undeclared)
+						assertTrue(live.getLiveLocalsBefore(u).contains(undeclared));
+				}
+			}
+			AssignedLocals assigned = new AssignedLocals(new BriefUnitGraph(b));
+			Local unknown = Jimple.v().newLocal("unknown", undeclared.getType());
+			for (Unit u : b.getUnits())
+				assertFalse(assigned.isAfter(u, unknown));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void notAnalyzed() {
+		UnitGraph g = new BriefUnitGraph(bodies.get(0));
+		GenKillAnalysis<Unit, Local> analysis = new GenKillAnalysis<Unit, Local>(g,
+				g.getBody().getLocals(), true, true) {
+			@Override
+			protected void genAndKill(Unit node, long[] gen, long[] kill) {
+			}
+		};
+		analysis.getFlowBefore(g.getHeads().get(0));
+	}
+}
@@ -0,0 +1,140 @@
+package soot.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import soot.Body;
+import soot.PatchingChain;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.UnitBox;
+import soot.jimple.Jimple;
+import soot.options.Options;
+
+/**
+ * Times the {@link HashChain} and {@link PatchingChain} operations that
+ * transformers use most on unit chains: building a chain, iterating over
+ * it, directly and through a snapshot, walking it with
+ * {@link Chain#getSuccOf(Object)}, asking whether a branch target follows
+ * its branch, and inserting and removing a unit before every unit.
+ *
+ * <p>Loads the classes given by the Soot arguments, copies the units of
+ * each of their bodies once, then runs each operation over all bodies a
+ * few times and prints the time it took.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.util.ChainBenchmark [soot arguments]</code>,
+ * e.g. <code>-w -main-class ... -process-dir dir</code>.
+ */
+public class ChainBenchmark {
+
+	static final int RUNS = 5;
+
+	interface Operation {
+		long run(List<Unit> units);
+	}
+
+	public static void main(String[] args) {
+		if (!Options.v().parse(args))
+			throw new IllegalArgumentException("bad Soot arguments");
+		Scene.v().loadNecessaryClasses();
+		final List<List<Unit>> bodies = new ArrayList<List<Unit>>();
+		int units = 0;
+		for (SootClass c : new ArrayList<SootClass>(Scene.v().getApplicationClasses())) {
+			for (SootMethod m : c.getMethods()) {
+				if (!m.isConcrete())
+					continue;
+				Body b = m.retrieveActiveBody();
+				bodies.add(new ArrayList<Unit>(b.getUnits()));
+				units += b.getUnits().size();
+			}
+		}
+		System.out.println(bodies.size() + " bodies, " + units + " units");
+
+		String[] names = { "build", "iterate", "snapshot", "succ", "follows", "insert/remove" };
+		Operation[] operations = { new Operation() {
+			public long run(List<Unit> units) {
+				return chain(units).size();
+			}
+		}, new Operation() {
+			public long run(List<Unit> units) {
+				PatchingChain<Unit> c = chain(units);
+				long n = 0;
+				for (int i = 0; i < 10; i++) {
+					for (Unit u : c)
+						n += u == null ? 0 : 1;
+				}
+				return n;
+			}
+		}, new Operation() {
+			public long run(List<Unit> units) {
+				PatchingChain<Unit> c = chain(units);
+				long n = 0;
+				for (int i = 0; i < 10; i++) {
+					for (Iterator<Unit> it = c.snapshotIterator(); it.hasNext();)
+						n += it.next() == null ? 0 : 1;
+				}
+				return n;
+			}
+		}, new Operation() {
+			public long run(List<Unit> units) {
+				PatchingChain<Unit> c = chain(units);
+				long n = 0;
+				for (int i = 0; i < 10; i++) {
+					for (Unit u = c.getFirst(); u != null; u = c.getSuccOf(u))
+						n++;
+				}
+				return n;
+			}
+		}, new Operation() {
+			public long run(List<Unit> units) {
+				PatchingChain<Unit> c = chain(units);
+				long n = 0;
+				for (Unit u : c) {
+					for (UnitBox box : u.getUnitBoxes()) {
+						if (c.contains(box.getUnit()) && c.follows(box.getUnit(), u))
+							n++;
+					}
+				}
+				return n;
+			}
+		}, new Operation() {
+			public long run(List<Unit> units) {
+				PatchingChain<Unit> c = chain(units);
+				Unit[] nops = new Unit[units.size()];
+				int i = 0;
+				for (Unit u : units) {
+					nops[i] = Jimple.v().newNopStmt();
+					c.getNonPatchingChain().insertBefore(nops[i++], u);
+				}
+				for (Unit nop : nops)
+					c.getNonPatchingChain().remove(nop);
+				return c.size();
+			}
+		} };
+
+		for (int run = 0; run < RUNS; run++) {
+			StringBuilder line = new StringBuilder();
+			for (int op = 0; op < operations.length; op++) {
+				long start = System.nanoTime();
+				long n = 0;
+				for (List<Unit> body : bodies)
+					n += operations[op].run(body);
+				line.append(names[op]).append(' ')
+						.append((System.nanoTime() - start) / 1000000).append(" ms");
+				line.append(op + 1 < operations.length ? ", " : (" (" + n + ")"));
+			}
+			System.out.println(line);
+		}
+	}
+
+	static PatchingChain<Unit> chain(List<Unit> units) {
+		PatchingChain<Unit> c = new PatchingChain<Unit>(new HashChain<Unit>());
+		for (Unit u : units)
+			c.addLast(u);
+		return c;
+	}
+}
@@ -0,0 +1,143 @@
+package soot.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link ArrayNumberer} and {@link StringNumberer} hand out
+ * unique numbers when used from several threads at once.
+ */
+public class ConcurrentNumbererTest {
+
+	static final int THREADS = 8;
+	static final int PER_THREAD = 5000;
+
+	static class Item implements Numberable {
+		private int number;
+		public void setNumber(int number) { this.number = number; }
+		public int getNumber() { return number; }
+	}
+
+	private static <T> List<T> runOnThreads(Callable<T> task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>();
+			for (int i = 0; i < THREADS; i++)
+				futures.add(executor.submit(task));
+			List<T> results = new ArrayList<T>();
+			for (Future<T> f : futures)
+				results.add(f.get());
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void arrayNumbererGivesUniqueNumbers() throws Exception {
+		final ArrayNumberer<Item> numberer = new ArrayNumberer<Item>();
+		List<List<Item>> added = runOnThreads(new Callable<List<Item>>() {
+			public List<Item> call() {
+				List<Item> items = new ArrayList<Item>();
+				for (int i = 0; i < PER_THREAD; i++) {
+					Item item = new Item();
+					numberer.add(item);
+					items.add(item);
+				}
+				return items;
+			}
+		});
+
+		int total = THREADS * PER_THREAD;
+		assertEquals(total, numberer.size());
+		Set<Integer> numbers = new HashSet<Integer>();
+		for (List<Item> items : added) {
+			for (Item item : items) {
+				assertTrue(item.getNumber() > 0 && item.getNumber() <= total);
+				assertTrue("duplicate number " + item.getNumber(), numbers.add(item.getNumber()));
+				assertSame(item, numberer.get(item.getNumber()));
+			}
+		}
+
+		int iterated = 0;
+		for (Iterator<Item> it = numberer.iterator(); it.hasNext(); it.next())
+			iterated++;
+		assertEquals(total, iterated);
+	}
+
+	@Test
+	public void addingTwiceKeepsTheNumber() {
+		ArrayNumberer<Item> numberer = new ArrayNumberer<Item>();
+		Item item = new Item();
+		numberer.add(item);
+		numberer.add(item);
+		assertEquals(1, item.getNumber());
+		assertEquals(1, numberer.size());
+	}
+
+	static class LegacyNumberer extends ArrayNumberer<Item> {
+		@SuppressWarnings("deprecation")
+		Numberable objectAt(int number) {
+			Numberable[] objects = numberToObj;
+			return number <= lastNumber ? objects[number] : null;
+		}
+	}
+
+	@Test
+	public void subclassesSeeTheDeprecatedFields() throws Exception {
+		final LegacyNumberer numberer = new LegacyNumberer();
+		runOnThreads(new Callable<Void>() {
+			public Void call() {
+				for (int i = 0; i < PER_THREAD; i++)
+					numberer.add(new Item());
+				return null;
+			}
+		});
+
+		int total = THREADS * PER_THREAD;
+		for (int i = 1; i <= total; i++)
+			assertSame(numberer.get(i), numberer.objectAt(i));
+		assertNull(numberer.objectAt(total + 1));
+	}
+
+	@Test
+	public void stringNumbererNumbersEachStringOnce() throws Exception {
+		final StringNumberer numberer = new StringNumberer();
+		// all threads ask for the same strings, in different orders
+		List<List<NumberedString>> found = runOnThreads(new Callable<List<NumberedString>>() {
+			public List<NumberedString> call() {
+				List<NumberedString> result = new ArrayList<NumberedString>();
+				int offset = (int) (Thread.currentThread().getId() % PER_THREAD);
+				for (int i = 0; i < PER_THREAD; i++) {
+					int k = (i + offset) % PER_THREAD;
+					NumberedString ns = numberer.findOrAdd("sig" + k);
+					assertTrue(ns.getNumber() > 0);
+					result.add(ns);
+				}
+				return result;
+			}
+		});
+
+		assertEquals(PER_THREAD, numberer.size());
+		for (int k = 0; k < PER_THREAD; k++) {
+			NumberedString ns = numberer.findOrAdd("sig" + k);
+			assertEquals("sig" + k, ns.getString());
+			assertSame(ns, numberer.get(ns.getNumber()));
+		}
+		for (List<NumberedString> result : found) {
+			for (NumberedString ns : result)
+				assertSame(ns, numberer.findOrAdd(ns.getString()));
+		}
+	}
+}
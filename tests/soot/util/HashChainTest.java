@@ -0,0 +1,200 @@
+package soot.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HashChainTest {
+
+	private static HashChain<Integer> chainOf(int from, int to) {
+		HashChain<Integer> c = new HashChain<Integer>();
+		for (int i = from; i < to; i++)
+			c.addLast(i);
+		return c;
+	}
+
+	@Test
+	public void testOrder() {
+		HashChain<Integer> c = chainOf(1, 4);
+		c.addFirst(0);
+		c.insertAfter(10, 1);
+		c.insertBefore(20, 3);
+		assertEquals("[0, 1, 10, 2, 20, 3]", c.toString());
+		assertEquals(6, c.size());
+		assertEquals(Integer.valueOf(0), c.getFirst());
+		assertEquals(Integer.valueOf(3), c.getLast());
+		assertEquals(Integer.valueOf(2), c.getSuccOf(10));
+		assertEquals(Integer.valueOf(1), c.getPredOf(10));
+		assertNull(c.getSuccOf(3));
+		assertNull(c.getPredOf(0));
+		assertArrayEquals(new Object[] { 0, 1, 10, 2, 20, 3 }, c.toArray());
+	}
+
+	@Test
+	public void testEquality() {
+		HashChain<String> c = new HashChain<String>();
+		c.add("a");
+		c.add("b");
+		assertTrue(c.contains(new String("a")));
+		assertEquals("b", c.getSuccOf(new String("a")));
+		assertTrue(c.remove(new String("a")));
+		assertFalse(c.contains("a"));
+		assertFalse(c.remove("a"));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testDuplicate() {
+		HashChain<Integer> c = chainOf(0, 3);
+		c.insertAfter(2, 0);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testSuccOfMissing() {
+		chainOf(0, 3).getSuccOf(5);
+	}
+
+	@Test
+	public void testFollows() {
+		HashChain<Integer> c = chainOf(0, 10);
+		assertTrue(c.follows(5, 2));
+		assertFalse(c.follows(2, 5));
+		assertFalse(c.follows(5, 5));
+		assertTrue(c.follows(5, 100));
+	}
+
+	@Test
+	public void testFollowsAfterManyInsertionsAtOnePoint() {
+		// leaves no room between the labels of 0 and 1 after a few dozen
+		HashChain<Integer> c = chainOf(0, 2);
+		List<Integer> expected = new ArrayList<Integer>();
+		expected.add(0);
+		expected.add(1);
+		for (int i = 2; i < 200; i++) {
+			c.insertAfter(i, 0);
+			expected.add(1, i);
+		}
+		for (int i = 0; i < 100; i++) {
+			c.insertBefore(-i - 1, 0);
+			expected.add(i, -i - 1);
+		}
+		assertEquals(expected, new ArrayList<Integer>(c));
+		for (int i = 0; i < expected.size(); i += 7) {
+			for (int j = 0; j < expected.size(); j += 5)
+				assertEquals(i > j, c.follows(expected.get(i), expected.get(j)));
+		}
+	}
+
+	@Test
+	public void testFollowsAfterInsertingRunsIntoLongChain() {
+		// like PatchingChain.insertBefore(List, point): each run goes in
+		// before the same point, in order, so the labels run out there
+		HashChain<Integer> c = chainOf(0, 5000);
+		List<Integer> expected = new ArrayList<Integer>(c);
+		int next = 5000;
+		for (int run = 0; run < 50; run++) {
+			int point = expected.get((run * 997) % expected.size());
+			int at = expected.indexOf(point);
+			for (int i = 0; i < 400; i++) {
+				c.insertBefore(next, point);
+				expected.add(at++, next++);
+			}
+		}
+		assertEquals(expected, new ArrayList<Integer>(c));
+		for (int i = 0; i < expected.size(); i += 53) {
+			for (int j = 0; j < expected.size(); j += 61)
+				assertEquals(i > j, c.follows(expected.get(i), expected.get(j)));
+			assertTrue(i == 0 || c.follows(expected.get(i), expected.get(i - 1)));
+		}
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42);
+		HashChain<Integer> c = new HashChain<Integer>();
+		LinkedList<Integer> expected = new LinkedList<Integer>();
+		int next = 0;
+		for (int op = 0; op < 20000; op++) {
+			int r = random.nextInt(10);
+			if (expected.isEmpty() || r < 2) {
+				c.addLast(next);
+				expected.addLast(next++);
+			} else if (r < 3) {
+				c.addFirst(next);
+				expected.addFirst(next++);
+			} else if (r < 5) {
+				int i = random.nextInt(expected.size());
+				c.insertBefore(next, expected.get(i));
+				expected.add(i, next++);
+			} else if (r < 7) {
+				int i = random.nextInt(expected.size());
+				c.insertAfter(next, expected.get(i));
+				expected.add(i + 1, next++);
+			} else if (r < 9) {
+				assertTrue(c.remove(expected.remove(random.nextInt(expected.size()))));
+			} else {
+				int i = random.nextInt(expected.size());
+				int j = random.nextInt(expected.size());
+				assertEquals(i > j, c.follows(expected.get(i), expected.get(j)));
+			}
+		}
+		assertEquals(expected.size(), c.size());
+		assertEquals(expected, new ArrayList<Integer>(c));
+		for (Integer i : expected)
+			assertTrue(c.contains(i));
+		assertFalse(c.contains(next));
+	}
+
+	@Test
+	public void testRangeIterator() {
+		HashChain<Integer> c = chainOf(0, 10);
+		List<Integer> l = new ArrayList<Integer>();
+		for (Iterator<Integer> it = c.iterator(3, 6); it.hasNext();)
+			l.add(it.next());
+		assertEquals("[3, 4, 5, 6]", l.toString());
+		assertFalse(c.iterator(4, 3).hasNext());
+		l.clear();
+		for (Iterator<Integer> it = c.iterator(7); it.hasNext();)
+			l.add(it.next());
+		assertEquals("[7, 8, 9]", l.toString());
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		HashChain<Integer> c = chainOf(0, 10);
+		for (Iterator<Integer> it = c.iterator(2, 6); it.hasNext();) {
+			if (it.next() % 2 == 0)
+				it.remove();
+		}
+		assertEquals("[0, 1, 3, 5, 7, 8, 9]", c.toString());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testConcurrentModification() {
+		HashChain<Integer> c = chainOf(0, 10);
+		for (Integer i : c) {
+			if (i == 3)
+				c.remove(5);
+		}
+	}
+
+	@Test
+	public void testSnapshotIterator() {
+		HashChain<Integer> c = chainOf(0, 10);
+		for (Iterator<Integer> it = c.snapshotIterator(); it.hasNext();)
+			c.remove(it.next());
+		assertTrue(c.isEmpty());
+		assertEquals(0, c.size());
+		c.add(1);
+		assertEquals(Integer.valueOf(1), c.getFirst());
+		c.clear();
+		assertFalse(c.iterator().hasNext());
+	}
+}
@@ -0,0 +1,148 @@
+package soot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import soot.G;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+
+/**
+ * Throughput benchmark for the Scene and numberer operations that
+ * multi-threaded clients hit most: {@link Scene#getSootClass(String)},
+ * {@link Scene#getRefType(String)}, {@link StringNumberer#findOrAdd(String)}
+ * and {@link ArrayNumberer#add(Numberable)}.
+ *
+ * <p>Each operation is run for a fixed time on 1, 2, 4, ... threads (up to
+ * the first argument, 32 by default), once as is and once with every call
+ * wrapped in one global lock, which is what clients had to do before.
+ * Prints operations per second for each configuration.
+ *
+ * <p>This is not a JUnit test; run it with
+ * <code>java -cp ... soot.util.NumbererBenchmark [maxThreads] [millis]</code>.
+ */
+public class NumbererBenchmark {
+
+	static final int CLASSES = 20000;
+
+	interface Operation {
+		void run(int thread, int i);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		final long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+		G.reset();
+		Scene.v().setPhantomRefs(false);
+		final String[] names = new String[CLASSES];
+		for (int i = 0; i < CLASSES; i++) {
+			names[i] = "bench.C" + i;
+			Scene.v().addClass(new SootClass(names[i]));
+		}
+		final StringNumberer subSigs = new StringNumberer();
+		final String[] sigs = new String[CLASSES];
+		for (int i = 0; i < CLASSES; i++)
+			sigs[i] = "void m" + i + "(int)";
+
+		// ArrayNumberer.add is measured on a fresh numberer each time, re-adding
+		// a small per-thread pool of objects to keep the heap small
+		final List<ArrayNumberer<NumberedString>> numberer = new ArrayList<ArrayNumberer<NumberedString>>();
+		numberer.add(new ArrayNumberer<NumberedString>());
+		final NumberedString[][] pool = new NumberedString[maxThreads][1024];
+		for (NumberedString[] p : pool)
+			for (int i = 0; i < p.length; i++)
+				p[i] = new NumberedString("");
+
+		Operation getSootClass = new Operation() {
+			public void run(int thread, int i) {
+				Scene.v().getSootClass(names[i]);
+			}
+		};
+		Operation getRefType = new Operation() {
+			public void run(int thread, int i) {
+				Scene.v().getRefType(names[i]);
+			}
+		};
+		Operation findOrAdd = new Operation() {
+			public void run(int thread, int i) {
+				subSigs.findOrAdd(sigs[i]);
+			}
+		};
+		Operation add = new Operation() {
+			public void run(int thread, int i) {
+				NumberedString ns = pool[thread][i & 1023];
+				ns.setNumber(0);
+				numberer.get(0).add(ns);
+			}
+		};
+		Operation refTypeV = new Operation() {
+			public void run(int thread, int i) {
+				RefType.v(names[i]);
+			}
+		};
+
+		System.out.println("operation\tthreads\tops/s\tops/s (global lock)");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			report("Scene.getSootClass", getSootClass, threads, millis);
+			report("Scene.getRefType", getRefType, threads, millis);
+			report("RefType.v", refTypeV, threads, millis);
+			report("StringNumberer.findOrAdd", findOrAdd, threads, millis);
+			numberer.set(0, new ArrayNumberer<NumberedString>());
+			report("ArrayNumberer.add", add, threads, millis);
+		}
+	}
+
+	private static void report(String name, Operation op, int threads, long millis) throws Exception {
+		long plain = measure(op, threads, millis, null);
+		long locked = measure(op, threads, millis, new Object());
+		System.out.println(name + "\t" + threads + "\t" + plain + "\t" + locked);
+	}
+
+	/** Returns the number of operations per second done by all threads. */
+	private static long measure(final Operation op, int threads, final long millis, final Object globalLock)
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(new Callable<Long>() {
+					public Long call() throws Exception {
+						start.await();
+						long end = System.currentTimeMillis() + millis;
+						long ops = 0;
+						int i = thread * 7919 % CLASSES;
+						while (System.currentTimeMillis() < end) {
+							for (int k = 0; k < 1000; k++, i = i + 1 == CLASSES ? 0 : i + 1) {
+								if (globalLock == null) {
+									op.run(thread, i);
+								} else {
+									synchronized (globalLock) {
+										op.run(thread, i);
+									}
+								}
+							}
+							ops += 1000;
+						}
+						return ops;
+					}
+				}));
+			}
+			start.countDown();
+			long total = 0;
+			for (Future<Long> f : futures)
+				total += f.get();
+			return total * 1000 / millis;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}